@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.file;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the heap retained by the structures used to map the paths of a synthetic tree of 1M files to their snapshots.
+ *
+ * The retained heap is reported as the {@code retainedBytes} secondary result. When {@code sharedPaths} is true, the path strings are also referenced from elsewhere,
+ * as they are by the file snapshots, so only the overhead of the structure itself is measured. This is the case in the file system mirror, where the snapshots keep
+ * their full paths whichever structure is used, so the result compares the overhead of the index rather than the memory used for paths.
+ */
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class PathStorageMemoryBenchmark {
+    private static final Object VALUE = new Object();
+
+    @Param({"ConcurrentHashMap", "PathTrie"})
+    String storage;
+
+    @Param({"true", "false"})
+    boolean sharedPaths;
+
+    private List<String> paths;
+
+    @Setup
+    public void createPaths() {
+        // 10 projects * 10 source sets * 100 packages * 100 classes
+        String root = new File("/home/user/workspace/some-build").getAbsolutePath();
+        paths = new ArrayList<String>(1000000);
+        for (int project = 0; project < 10; project++) {
+            for (int sourceSet = 0; sourceSet < 10; sourceSet++) {
+                for (int pkg = 0; pkg < 100; pkg++) {
+                    for (int cls = 0; cls < 100; cls++) {
+                        paths.add(root + File.separator + "project" + project + File.separator + "src" + File.separator + "sourceSet" + sourceSet
+                            + File.separator + "java" + File.separator + "org" + File.separator + "gradle" + File.separator + "pkg" + pkg + File.separator + "SomeClass" + cls + ".java");
+                    }
+                }
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RetainedHeap {
+        public long retainedBytes;
+    }
+
+    @Benchmark
+    public Object populate(RetainedHeap retainedHeap) {
+        long before = usedHeap();
+        Object result;
+        if (storage.equals("PathTrie")) {
+            PathTrie<Object> trie = new PathTrie<Object>();
+            for (String path : paths) {
+                trie.put(sharedPaths ? path : new String(path.toCharArray()), VALUE);
+            }
+            result = trie;
+        } else {
+            Map<String, Object> map = new ConcurrentHashMap<String, Object>();
+            for (String path : paths) {
+                map.put(sharedPaths ? path : new String(path.toCharArray()), VALUE);
+            }
+            result = map;
+        }
+        retainedHeap.retainedBytes = usedHeap() - before;
+        return result;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,350 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.file;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A concurrent map from absolute file paths to values, stored as a tree of path segments. Supports finding and removing the values for the ancestors and descendants of a path
+ * without looking at the other paths.
+ *
+ * The trie is an index, it does not reduce the memory used for paths. Values that hold their own absolute path, such as file snapshots, keep the full path string,
+ * and the segment nodes come on top of it.
+ *
+ * Lookups do not block. The children of a node are kept in an array that is sorted by segment name and is replaced, rather than modified, while holding the lock of the node.
+ * Nodes that no longer hold a value or have children are removed. A value that is added while a removal affecting its path is in progress may be lost.
+ * This makes the trie suitable for caches, but not for other uses.
+ */
+public class PathTrie<V> {
+    private static final Interner<String> SEGMENT_NAMES = Interners.newWeakInterner();
+    private static final Node<?>[] NO_CHILDREN = new Node<?>[0];
+
+    private volatile Node<V> root = new Node<V>("");
+
+    @Nullable
+    public V get(String path) {
+        Node<V> node = find(path);
+        return node == null ? null : node.value;
+    }
+
+    public void put(String path, V value) {
+        Node<V> node = root;
+        int start = 0;
+        while (true) {
+            int end = endOfSegment(path, start);
+            node = node.getOrCreateChild(path, start, end);
+            if (end >= path.length()) {
+                break;
+            }
+            start = startOfNextSegment(start, end);
+        }
+        node.value = value;
+    }
+
+    @Nullable
+    public V remove(String path) {
+        Node<V> node = find(path);
+        if (node == null) {
+            return null;
+        }
+        V value = node.value;
+        node.value = null;
+        pruneEmptyNodes(path);
+        return value;
+    }
+
+    /**
+     * Returns the value for the closest ancestor of the given path, or the path itself, that has a value.
+     */
+    @Nullable
+    public V getClosestAncestorOrSelf(String path) {
+        V result = null;
+        Node<V> node = root;
+        int start = 0;
+        while (true) {
+            int end = endOfSegment(path, start);
+            node = node.getChild(path, start, end);
+            if (node == null) {
+                return result;
+            }
+            if (node.value != null) {
+                result = node.value;
+            }
+            if (end >= path.length()) {
+                return result;
+            }
+            start = startOfNextSegment(start, end);
+        }
+    }
+
+    /**
+     * Removes the values for the given path and all its descendants.
+     */
+    public void removeSelfAndDescendants(String path) {
+        Node<V> node = root;
+        int start = 0;
+        while (true) {
+            int end = endOfSegment(path, start);
+            Node<V> parent = node;
+            node = node.getChild(path, start, end);
+            if (node == null) {
+                return;
+            }
+            if (end >= path.length()) {
+                node.value = null;
+                parent.removeChild(node);
+                pruneEmptyNodes(path);
+                return;
+            }
+            start = startOfNextSegment(start, end);
+        }
+    }
+
+    /**
+     * Removes the values for all ancestors of the given path, but not for the path itself.
+     */
+    public void removeAncestors(String path) {
+        Node<V> node = root;
+        int start = 0;
+        while (true) {
+            int end = endOfSegment(path, start);
+            if (end >= path.length()) {
+                // The path itself
+                break;
+            }
+            node = node.getChild(path, start, end);
+            if (node == null) {
+                break;
+            }
+            node.value = null;
+            start = startOfNextSegment(start, end);
+        }
+        pruneEmptyNodes(path);
+    }
+
+    /**
+     * Removes the values for all paths that do not satisfy the given predicate.
+     */
+    public void retainAll(Predicate<? super String> predicate) {
+        retainAll(root, null, false, predicate);
+    }
+
+    /**
+     * Returns the paths that currently have a value.
+     */
+    public List<String> getPaths() {
+        List<String> paths = new ArrayList<String>();
+        collectPaths(root, null, false, paths);
+        return paths;
+    }
+
+    /**
+     * Returns true when no path has a value.
+     */
+    public boolean isEmpty() {
+        return root.children.length == 0;
+    }
+
+    public void clear() {
+        root = new Node<V>("");
+    }
+
+    /**
+     * Removes the nodes along the given path, starting with the deepest one, that have neither a value nor children.
+     */
+    private void pruneEmptyNodes(String path) {
+        List<Node<V>> nodes = new ArrayList<Node<V>>();
+        Node<V> node = root;
+        nodes.add(node);
+        int start = 0;
+        while (true) {
+            int end = endOfSegment(path, start);
+            node = node.getChild(path, start, end);
+            if (node == null) {
+                break;
+            }
+            nodes.add(node);
+            if (end >= path.length()) {
+                break;
+            }
+            start = startOfNextSegment(start, end);
+        }
+        for (int i = nodes.size() - 1; i > 0; i--) {
+            Node<V> child = nodes.get(i);
+            if (!child.isEmpty()) {
+                return;
+            }
+            nodes.get(i - 1).removeChild(child);
+        }
+    }
+
+    @Nullable
+    private Node<V> find(String path) {
+        Node<V> node = root;
+        int start = 0;
+        while (true) {
+            int end = endOfSegment(path, start);
+            node = node.getChild(path, start, end);
+            if (node == null || end >= path.length()) {
+                return node;
+            }
+            start = startOfNextSegment(start, end);
+        }
+    }
+
+    /*
+     * The first segment of a path includes the separator that follows it, so that the root of the file system, such as '/' or 'C:\', is a segment of its own
+     * and is the ancestor of all other paths.
+     */
+    private static int endOfSegment(String path, int start) {
+        int end = path.indexOf(File.separatorChar, start);
+        if (end < 0) {
+            return path.length();
+        }
+        return start == 0 ? end + 1 : end;
+    }
+
+    private static int startOfNextSegment(int start, int end) {
+        return start == 0 ? end : end + 1;
+    }
+
+    private static String childPath(@Nullable String parentPath, boolean parentIsRoot, String name) {
+        if (parentPath == null) {
+            return name;
+        }
+        return parentIsRoot ? parentPath + name : parentPath + File.separatorChar + name;
+    }
+
+    private static <V> void retainAll(Node<V> node, @Nullable String path, boolean isRoot, Predicate<? super String> predicate) {
+        for (Node<V> child : node.children) {
+            String childPath = childPath(path, isRoot, child.name);
+            if (child.value != null && !predicate.apply(childPath)) {
+                child.value = null;
+            }
+            retainAll(child, childPath, path == null, predicate);
+            if (child.isEmpty()) {
+                node.removeChild(child);
+            }
+        }
+    }
+
+    private static <V> void collectPaths(Node<V> node, @Nullable String path, boolean isRoot, List<String> paths) {
+        for (Node<V> child : node.children) {
+            String childPath = childPath(path, isRoot, child.name);
+            if (child.value != null) {
+                paths.add(childPath);
+            }
+            collectPaths(child, childPath, path == null, paths);
+        }
+    }
+
+    private static final class Node<V> {
+        private final String name;
+        private volatile V value;
+        @SuppressWarnings("unchecked")
+        private volatile Node<V>[] children = (Node<V>[]) NO_CHILDREN;
+
+        Node(String name) {
+            this.name = name;
+        }
+
+        boolean isEmpty() {
+            return value == null && children.length == 0;
+        }
+
+        @Nullable
+        Node<V> getChild(String path, int start, int end) {
+            Node<V>[] children = this.children;
+            int index = indexOf(children, path, start, end);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node<V> getOrCreateChild(String path, int start, int end) {
+            Node<V> child = getChild(path, start, end);
+            if (child != null) {
+                return child;
+            }
+            synchronized (this) {
+                Node<V>[] children = this.children;
+                int index = indexOf(children, path, start, end);
+                if (index >= 0) {
+                    return children[index];
+                }
+                int insertionPoint = -index - 1;
+                child = new Node<V>(SEGMENT_NAMES.intern(path.substring(start, end)));
+                @SuppressWarnings("unchecked")
+                Node<V>[] newChildren = (Node<V>[]) new Node<?>[children.length + 1];
+                System.arraycopy(children, 0, newChildren, 0, insertionPoint);
+                newChildren[insertionPoint] = child;
+                System.arraycopy(children, insertionPoint, newChildren, insertionPoint + 1, children.length - insertionPoint);
+                this.children = newChildren;
+                return child;
+            }
+        }
+
+        synchronized void removeChild(Node<V> child) {
+            Node<V>[] children = this.children;
+            int index = Arrays.asList(children).indexOf(child);
+            if (index < 0) {
+                return;
+            }
+            @SuppressWarnings("unchecked")
+            Node<V>[] newChildren = (Node<V>[]) new Node<?>[children.length - 1];
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+            this.children = newChildren;
+        }
+
+        private static int indexOf(Node<?>[] children, String path, int start, int end) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int comparison = compare(children[mid].name, path, start, end);
+                if (comparison < 0) {
+                    low = mid + 1;
+                } else if (comparison > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        // Compares a segment name with a region of a path, without creating a string for the region
+        private static int compare(String name, String path, int start, int end) {
+            int length = end - start;
+            int commonLength = Math.min(name.length(), length);
+            for (int i = 0; i < commonLength; i++) {
+                int diff = name.charAt(i) - path.charAt(start + i);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return name.length() - length;
+        }
+    }
+}
@@ -18,5 +18,13 @@ package org.gradle.internal.hash;
 
 import org.gradle.internal.Factory;
 
+/**
+ * Creates the {@link Hasher}s used to hash file and resource content.
+ */
 public interface ContentHasherFactory extends Factory<Hasher> {
+    /**
+     * Returns a short identifier of the hash function used by the created hashers.
+     * Persistent caches that store content hashes use this to keep hashes created by different functions apart.
+     */
+    String getId();
 }
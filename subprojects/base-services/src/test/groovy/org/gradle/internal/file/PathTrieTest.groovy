@@ -0,0 +1,232 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.file
+
+import com.google.common.base.Predicate
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class PathTrieTest extends Specification {
+    @Rule TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def trie = new PathTrie<String>()
+
+    def "stores values by path"() {
+        def dir = tmpDir.file("dir")
+        def child = dir.file("child")
+
+        when:
+        trie.put(dir.path, "dir")
+        trie.put(child.path, "child")
+
+        then:
+        trie.get(dir.path) == "dir"
+        trie.get(child.path) == "child"
+        trie.get(dir.file("other").path) == null
+        trie.get(child.file("grandchild").path) == null
+        trie.get(tmpDir.testDirectory.path) == null
+        trie.get(tmpDir.file("dir2").path) == null
+        trie.get(tmpDir.file("di").path) == null
+        trie.paths as Set == [dir.path, child.path] as Set
+
+        when:
+        trie.put(dir.path, "new")
+
+        then:
+        trie.get(dir.path) == "new"
+
+        when:
+        def removed = trie.remove(dir.path)
+
+        then:
+        removed == "new"
+        trie.get(dir.path) == null
+        trie.get(child.path) == "child"
+        trie.paths == [child.path]
+    }
+
+    def "stores value for file system root"() {
+        def root = File.listRoots()[0]
+        def file = tmpDir.file("file")
+
+        when:
+        trie.put(root.path, "root")
+        trie.put(file.path, "file")
+
+        then:
+        trie.get(root.path) == "root"
+        trie.getClosestAncestorOrSelf(tmpDir.testDirectory.path) == "root"
+        trie.paths as Set == [root.path, file.path] as Set
+    }
+
+    def "finds value of closest ancestor"() {
+        def dir = tmpDir.file("dir")
+        def child = dir.file("child")
+
+        given:
+        trie.put(dir.path, "dir")
+
+        expect:
+        trie.getClosestAncestorOrSelf(dir.path) == "dir"
+        trie.getClosestAncestorOrSelf(child.path) == "dir"
+        trie.getClosestAncestorOrSelf(child.file("grandchild").path) == "dir"
+        trie.getClosestAncestorOrSelf(tmpDir.file("dir2").path) == null
+        trie.getClosestAncestorOrSelf(tmpDir.testDirectory.path) == null
+
+        when:
+        trie.put(child.path, "child")
+
+        then:
+        trie.getClosestAncestorOrSelf(child.file("grandchild").path) == "child"
+    }
+
+    def "removes values for a path and its descendants"() {
+        def dir = tmpDir.file("dir")
+        def child = dir.file("child")
+        def sibling = tmpDir.file("dir2")
+
+        given:
+        trie.put(tmpDir.testDirectory.path, "parent")
+        trie.put(dir.path, "dir")
+        trie.put(child.path, "child")
+        trie.put(sibling.path, "sibling")
+
+        when:
+        trie.removeSelfAndDescendants(dir.path)
+
+        then:
+        trie.get(dir.path) == null
+        trie.get(child.path) == null
+        trie.get(sibling.path) == "sibling"
+        trie.get(tmpDir.testDirectory.path) == "parent"
+
+        when:
+        trie.put(child.path, "new child")
+
+        then:
+        trie.get(child.path) == "new child"
+        trie.get(dir.path) == null
+    }
+
+    def "removes values for the ancestors of a path"() {
+        def dir = tmpDir.file("dir")
+        def child = dir.file("child")
+        def sibling = tmpDir.file("dir2")
+
+        given:
+        trie.put(tmpDir.testDirectory.path, "parent")
+        trie.put(dir.path, "dir")
+        trie.put(child.path, "child")
+        trie.put(sibling.path, "sibling")
+
+        when:
+        trie.removeAncestors(child.path)
+
+        then:
+        trie.get(tmpDir.testDirectory.path) == null
+        trie.get(dir.path) == null
+        trie.get(child.path) == "child"
+        trie.get(sibling.path) == "sibling"
+    }
+
+    def "retains values for paths that satisfy predicate"() {
+        def dir = tmpDir.file("dir")
+        def child = dir.file("child")
+        def sibling = tmpDir.file("dir2")
+
+        given:
+        trie.put(dir.path, "dir")
+        trie.put(child.path, "child")
+        trie.put(sibling.path, "sibling")
+
+        when:
+        trie.retainAll({ String path -> path.startsWith(dir.path + File.separator) } as Predicate)
+
+        then:
+        trie.paths == [child.path]
+    }
+
+    def "discards nodes left without values by removals"() {
+        def dir = tmpDir.file("dir")
+        def child = dir.file("child")
+        def sibling = tmpDir.file("dir2")
+
+        expect:
+        trie.empty
+
+        when:
+        trie.put(child.path, "child")
+        trie.remove(child.path)
+
+        then:
+        trie.empty
+
+        when:
+        trie.put(child.path, "child")
+        trie.removeSelfAndDescendants(dir.path)
+
+        then:
+        trie.empty
+
+        when:
+        trie.put(dir.path, "dir")
+        trie.removeAncestors(child.path)
+
+        then:
+        trie.empty
+
+        when:
+        trie.put(child.path, "child")
+        trie.put(sibling.path, "sibling")
+        trie.retainAll({ String path -> false } as Predicate)
+
+        then:
+        trie.empty
+    }
+
+    def "keeps all values added concurrently"() {
+        def paths = (0..<1000).collect { tmpDir.file("dir${it % 10}/sub${it % 7}/file$it").path }
+
+        when:
+        def threads = (0..<4).collect { offset ->
+            Thread.start {
+                paths.eachWithIndex { path, index ->
+                    if (index % 4 == offset) {
+                        trie.put(path, path)
+                    }
+                }
+            }
+        }
+        threads*.join()
+
+        then:
+        paths.every { trie.get(it) == it }
+        trie.paths.size() == paths.size()
+    }
+
+    def "can clear all values"() {
+        given:
+        trie.put(tmpDir.file("a").path, "a")
+
+        when:
+        trie.clear()
+
+        then:
+        trie.paths.empty
+        trie.get(tmpDir.file("a").path) == null
+    }
+}
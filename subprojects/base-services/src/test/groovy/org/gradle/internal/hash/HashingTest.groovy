@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class HashingTest extends Specification {
+    @Unroll
+    def "murmur3 hash of #length bytes matches Guava"() {
+        def bytes = new byte[length]
+        new Random(length).nextBytes(bytes)
+
+        expect:
+        Hashing.murmur3_128().hashBytes(bytes).toString() == com.google.common.hash.Hashing.murmur3_128().hashBytes(bytes).toString()
+
+        where:
+        length << [0, 1, 7, 8, 15, 16, 17, 31, 32, 33, 1000, 65536]
+    }
+
+    def "murmur3 hash is independent of how the input is split"() {
+        def bytes = new byte[100]
+        new Random(1234L).nextBytes(bytes)
+        def hasher = Hashing.murmur3_128().newHasher()
+
+        when:
+        hasher.putBytes(bytes, 0, 3)
+        hasher.putBytes(bytes, 3, 20)
+        hasher.putBytes(bytes, 23, 77)
+
+        then:
+        hasher.hash() == Hashing.murmur3_128().hashBytes(bytes)
+    }
+
+    def "murmur3 hashes primitives like Guava"() {
+        def hasher = Hashing.murmur3_128().newHasher()
+        def guavaHasher = com.google.common.hash.Hashing.murmur3_128().newHasher()
+
+        when:
+        hasher.putInt(123)
+        hasher.putLong(456L)
+        hasher.putBoolean(true)
+        hasher.putString("string")
+        guavaHasher.putInt(123)
+        guavaHasher.putLong(456L)
+        guavaHasher.putBoolean(true)
+        guavaHasher.putBytes("string".getBytes("UTF-8"))
+
+        then:
+        hasher.hash().toString() == guavaHasher.hash().toString()
+    }
+
+    def "murmur3 hasher cannot be reused"() {
+        def hasher = Hashing.murmur3_128().newHasher()
+        hasher.hash()
+
+        when:
+        hasher.putInt(1)
+
+        then:
+        thrown IllegalStateException
+    }
+}
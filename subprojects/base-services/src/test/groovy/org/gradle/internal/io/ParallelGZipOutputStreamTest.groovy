@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.io
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.concurrent.Executor
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+
+class ParallelGZipOutputStreamTest extends Specification {
+    private static final int BLOCK_SIZE = ParallelGZipOutputStream.DEFAULT_BLOCK_SIZE
+
+    ExecutorService executor = Executors.newFixedThreadPool(4)
+
+    def cleanup() {
+        executor.shutdownNow()
+    }
+
+    @Unroll
+    def "output of #size bytes can be read by GZIPInputStream"() {
+        def data = data(size)
+
+        when:
+        def compressed = compress(data, executor, 4)
+
+        then:
+        decompress(compressed) == data
+
+        where:
+        size << [0, 1, 1000, BLOCK_SIZE - 1, BLOCK_SIZE, BLOCK_SIZE + 1, 10 * BLOCK_SIZE + 17]
+    }
+
+    def "output does not depend on the number of threads"() {
+        def data = data(20 * BLOCK_SIZE)
+
+        expect:
+        compress(data, executor, 4) == compress(data, { it.run() } as Executor, 1)
+    }
+
+    def "compresses about as well as GZIPOutputStream"() {
+        def data = data(10 * BLOCK_SIZE)
+        def reference = new ByteArrayOutputStream()
+        def gzip = new GZIPOutputStream(reference)
+        gzip.write(data)
+        gzip.close()
+
+        expect:
+        compress(data, executor, 4).length < reference.size() * 1.01
+    }
+
+    def "can write single bytes"() {
+        def data = data(BLOCK_SIZE + 100)
+        def output = new ByteArrayOutputStream()
+
+        when:
+        def stream = new ParallelGZipOutputStream(output, executor, 2)
+        data.each { stream.write(it) }
+        stream.close()
+
+        then:
+        decompress(output.toByteArray()) == data
+    }
+
+    def "reports failure to compress a block"() {
+        def failure = new RuntimeException("broken")
+        def stream = new ParallelGZipOutputStream(new ByteArrayOutputStream(), { Runnable task -> throw failure } as Executor, 1)
+
+        when:
+        stream.write(data(1))
+        stream.close()
+
+        then:
+        def e = thrown(RuntimeException)
+        e.is(failure)
+    }
+
+    def "cannot write after close"() {
+        def stream = new ParallelGZipOutputStream(new ByteArrayOutputStream(), executor, 1)
+        stream.close()
+
+        when:
+        stream.write(1)
+
+        then:
+        thrown(IOException)
+    }
+
+    private static byte[] data(int size) {
+        def random = new Random(1234L)
+        def data = new byte[size]
+        for (int i = 0; i < size; i++) {
+            // Compressible, but not trivially so
+            data[i] = (byte) ('a' + random.nextInt(8))
+        }
+        return data
+    }
+
+    private static byte[] compress(byte[] data, Executor executor, int parallelism) {
+        def output = new ByteArrayOutputStream()
+        def stream = new ParallelGZipOutputStream(output, executor, parallelism)
+        def offset = 0
+        while (offset < data.length) {
+            def length = Math.min(data.length - offset, 10000)
+            stream.write(data, offset, length)
+            offset += length
+        }
+        stream.close()
+        return output.toByteArray()
+    }
+
+    private static byte[] decompress(byte[] compressed) {
+        return new GZIPInputStream(new ByteArrayInputStream(compressed)).bytes
+    }
+}
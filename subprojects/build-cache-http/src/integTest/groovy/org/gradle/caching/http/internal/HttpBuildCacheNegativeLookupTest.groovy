@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.http.internal
+
+import org.gradle.caching.BuildCacheKey
+import org.gradle.caching.BuildCacheServiceFactory
+import org.gradle.caching.http.HttpBuildCache
+import org.gradle.caching.internal.controller.BuildCacheController
+import org.gradle.caching.internal.controller.BuildCacheLoadCommand
+import org.gradle.caching.internal.controller.DefaultBuildCacheController
+import org.gradle.caching.internal.controller.service.BuildCacheServicesConfiguration
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.hash.Hashing
+import org.gradle.internal.operations.TestBuildOperationExecutor
+import org.gradle.internal.resource.transport.http.DefaultSslContextFactory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.test.fixtures.server.http.HttpBuildCacheServer
+import org.junit.Rule
+import spock.lang.Specification
+
+class HttpBuildCacheNegativeLookupTest extends Specification {
+    private static final int ENTRIES = 2000
+    private static final int MISSES = 2000
+
+    @Rule
+    TestNameTestDirectoryProvider tempDir = new TestNameTestDirectoryProvider()
+    @Rule
+    HttpBuildCacheServer server = new HttpBuildCacheServer(tempDir)
+
+    def executorFactory = new DefaultExecutorFactory()
+    BuildCacheController controller
+
+    def setup() {
+        server.start()
+        keys(0, ENTRIES).each { server.cacheDir.file(it.hashCode).text = "entry" }
+
+        def config = new HttpBuildCache()
+        config.url = new URI("${server.uri}/")
+        def service = new DefaultHttpBuildCacheServiceFactory(new DefaultSslContextFactory(), executorFactory).createBuildCacheService(config, Stub(BuildCacheServiceFactory.Describer))
+        controller = new DefaultBuildCacheController(
+            new BuildCacheServicesConfiguration(null, false, service, false),
+            new TestBuildOperationExecutor(),
+            tempDir.file("user-home"),
+            false,
+            false,
+            true,
+            false,
+            executorFactory
+        )
+    }
+
+    def cleanup() {
+        controller.close()
+        executorFactory.stop()
+    }
+
+    def "skips requests for entries the published filter rules out with false positive rate #falsePositiveProbability"() {
+        given:
+        server.publishNegativeLookupFilter(falsePositiveProbability)
+
+        when:
+        def misses = keys(ENTRIES, ENTRIES + MISSES)
+        misses.each { controller.load(loadCommand(it)) }
+
+        then:
+        // One request for the filter, and one for each false positive
+        def falsePositives = server.getRequestCount("GET") - 1
+        falsePositives / MISSES < falsePositiveProbability * 2
+
+        when:
+        server.resetRequestCounts()
+        def hits = keys(0, ENTRIES).count { controller.load(loadCommand(it)) != null }
+
+        then:
+        hits == ENTRIES
+        server.getRequestCount("GET") == ENTRIES
+
+        where:
+        falsePositiveProbability << [0.1, 0.01]
+    }
+
+    def "loads every entry when the cache does not publish a filter"() {
+        when:
+        keys(ENTRIES, ENTRIES + 100).each { controller.load(loadCommand(it)) }
+
+        then:
+        server.getRequestCount("GET") == 101
+    }
+
+    private static List<BuildCacheKey> keys(int from, int to) {
+        (from..<to).collect { int index ->
+            def hashCode = Hashing.md5().hashString("key-$index").toString()
+            new BuildCacheKey() {
+                @Override
+                String getHashCode() {
+                    hashCode
+                }
+
+                @Override
+                String getDisplayName() {
+                    hashCode
+                }
+            }
+        }
+    }
+
+    private static BuildCacheLoadCommand<String> loadCommand(BuildCacheKey key) {
+        new BuildCacheLoadCommand<String>() {
+            @Override
+            BuildCacheKey getKey() {
+                key
+            }
+
+            @Override
+            BuildCacheLoadCommand.Result<String> load(InputStream input) {
+                def content = input.text
+                new BuildCacheLoadCommand.Result<String>() {
+                    @Override
+                    long getArtifactEntryCount() {
+                        1
+                    }
+
+                    @Override
+                    String getMetadata() {
+                        content
+                    }
+                }
+            }
+        }
+    }
+}
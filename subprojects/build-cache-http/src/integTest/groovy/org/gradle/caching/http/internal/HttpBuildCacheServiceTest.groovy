@@ -25,6 +25,8 @@ import org.gradle.caching.BuildCacheKey
 import org.gradle.caching.BuildCacheService
 import org.gradle.caching.BuildCacheServiceFactory
 import org.gradle.caching.http.HttpBuildCache
+import org.gradle.caching.internal.ProbingBuildCacheService
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.resource.transport.http.DefaultSslContextFactory
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.gradle.test.fixtures.server.http.AuthScheme
@@ -79,7 +81,7 @@ class HttpBuildCacheServiceTest extends Specification {
         def config = new HttpBuildCache()
         config.url = server.uri.resolve("/cache/")
         buildCacheDescriber = new NoopBuildCacheDescriber()
-        cache = new DefaultHttpBuildCacheServiceFactory(new DefaultSslContextFactory()).createBuildCacheService(config, buildCacheDescriber)
+        cache = new DefaultHttpBuildCacheServiceFactory(new DefaultSslContextFactory(), new DefaultExecutorFactory()).createBuildCacheService(config, buildCacheDescriber)
     }
 
     def "can cache artifact"() {
@@ -163,6 +165,33 @@ class HttpBuildCacheServiceTest extends Specification {
         !fromCache
     }
 
+    def "can probe for several entries at once"() {
+        def srcFile = tempDir.file("cached.zip")
+        srcFile.text = "Data"
+        def missingKey = Stub(BuildCacheKey) {
+            getHashCode() >> "fedcba6543210"
+        }
+        server.expectHead("/cache/${key.hashCode}", srcFile)
+        server.expectHeadMissing("/cache/${missingKey.hashCode}")
+
+        when:
+        def present = (cache as ProbingBuildCacheService).probe([key, missingKey])
+
+        then:
+        present == [key] as Set
+    }
+
+    def "probe reports unreachable cache"() {
+        server.expectHeadBroken("/cache/${key.hashCode}")
+
+        when:
+        (cache as ProbingBuildCacheService).probe([key])
+
+        then:
+        BuildCacheException exception = thrown()
+        exception.message.startsWith("Unable to probe entry at '${server.uri}/cache/${key.hashCode}'")
+    }
+
     def "load reports recoverable error on http code #httpCode"(int httpCode) {
         expectError(httpCode, 'GET')
 
@@ -267,7 +296,7 @@ class HttpBuildCacheServiceTest extends Specification {
         configuration.url = server.uri.resolve("/cache/")
         configuration.credentials.username = 'user'
         configuration.credentials.password = 'password'
-        cache = new DefaultHttpBuildCacheServiceFactory(new DefaultSslContextFactory()).createBuildCacheService(configuration, buildCacheDescriber) as HttpBuildCacheService
+        cache = new DefaultHttpBuildCacheServiceFactory(new DefaultSslContextFactory(), new DefaultExecutorFactory()).createBuildCacheService(configuration, buildCacheDescriber) as HttpBuildCacheService
 
         server.authenticationScheme = AuthScheme.BASIC
 
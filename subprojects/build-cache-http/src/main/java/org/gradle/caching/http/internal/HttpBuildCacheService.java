@@ -17,6 +17,8 @@
 package org.gradle.caching.http.internal;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.apache.commons.lang.IncompleteArgumentException;
 import org.apache.http.Header;
 import org.apache.http.HttpHeaders;
@@ -25,6 +27,7 @@ import org.apache.http.HttpStatus;
 import org.apache.http.StatusLine;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.utils.HttpClientUtils;
 import org.apache.http.entity.AbstractHttpEntity;
@@ -34,27 +37,41 @@ import org.gradle.caching.BuildCacheEntryWriter;
 import org.gradle.caching.BuildCacheException;
 import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.BuildCacheService;
+import org.gradle.caching.internal.NegativeLookupBuildCacheService;
+import org.gradle.caching.internal.NegativeLookupFilter;
+import org.gradle.caching.internal.ProbingBuildCacheService;
 import org.gradle.caching.internal.tasks.TaskOutputPacker;
 import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
 import org.gradle.internal.resource.transport.http.HttpClientHelper;
 import org.gradle.util.GradleVersion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.UnknownHostException;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Build cache implementation that delegates to a service accessible via HTTP.
  */
-public class HttpBuildCacheService implements BuildCacheService {
+public class HttpBuildCacheService implements BuildCacheService, ProbingBuildCacheService, NegativeLookupBuildCacheService {
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpBuildCacheService.class);
     static final String BUILD_CACHE_CONTENT_TYPE = "application/vnd.gradle.build-cache-artifact.v" + TaskOutputPacker.CACHE_ENTRY_FORMAT;
+    static final String NEGATIVE_LOOKUP_FILTER_PATH = "negative-lookup-filter";
+    static final String NEGATIVE_LOOKUP_FILTER_CONTENT_TYPE = "application/vnd.gradle.build-cache-negative-lookup-filter.v1";
 
     private static final Set<Integer> FATAL_HTTP_ERROR_CODES = ImmutableSet.of(
         HttpStatus.SC_USE_PROXY,
@@ -67,15 +84,88 @@ public class HttpBuildCacheService implements BuildCacheService {
         511 // network authentication required
     );
 
+    /**
+     * Kept below the size of the connection pool, so that probing leaves connections for loads and stores.
+     */
+    private static final int MAX_CONCURRENT_PROBES = 16;
+
     private final URI root;
     private final HttpClientHelper httpClientHelper;
+    private final ExecutorFactory executorFactory;
+    private ManagedExecutor probeExecutor;
 
-    public HttpBuildCacheService(HttpClientHelper httpClientHelper, URI url) {
+    public HttpBuildCacheService(HttpClientHelper httpClientHelper, URI url, ExecutorFactory executorFactory) {
         if (!url.getPath().endsWith("/")) {
             throw new IncompleteArgumentException("HTTP cache root URI must end with '/'");
         }
         this.root = url;
         this.httpClientHelper = httpClientHelper;
+        this.executorFactory = executorFactory;
+    }
+
+    @Override
+    public Set<BuildCacheKey> probe(Collection<? extends BuildCacheKey> keys) throws BuildCacheException {
+        ExecutorService executor = getProbeExecutor();
+        Map<BuildCacheKey, Future<Boolean>> probes = Maps.newLinkedHashMap();
+        for (final BuildCacheKey key : keys) {
+            probes.put(key, executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return contains(key);
+                }
+            }));
+        }
+
+        Set<BuildCacheKey> present = Sets.newLinkedHashSet();
+        try {
+            for (Map.Entry<BuildCacheKey, Future<Boolean>> entry : probes.entrySet()) {
+                if (entry.getValue().get()) {
+                    present.add(entry.getKey());
+                }
+            }
+        } catch (ExecutionException e) {
+            cancel(probes.values());
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        } catch (InterruptedException e) {
+            cancel(probes.values());
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        return present;
+    }
+
+    private static void cancel(Collection<Future<Boolean>> probes) {
+        for (Future<Boolean> probe : probes) {
+            probe.cancel(false);
+        }
+    }
+
+    private synchronized ExecutorService getProbeExecutor() {
+        if (probeExecutor == null) {
+            probeExecutor = executorFactory.create("Probe remote build cache", MAX_CONCURRENT_PROBES);
+        }
+        return probeExecutor;
+    }
+
+    private boolean contains(BuildCacheKey key) {
+        final URI uri = root.resolve("./" + key.getHashCode());
+        HttpHead httpHead = new HttpHead(uri);
+        httpHead.addHeader(HttpHeaders.ACCEPT, BUILD_CACHE_CONTENT_TYPE + ", */*");
+        addDiagnosticHeaders(httpHead);
+
+        CloseableHttpResponse response = null;
+        try {
+            response = httpClientHelper.performHttpRequest(httpHead);
+            StatusLine statusLine = response.getStatusLine();
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Response for HEAD {}: {}", safeUri(uri), statusLine);
+            }
+            // Anything but a definite miss is left for the load to deal with
+            return statusLine.getStatusCode() != HttpStatus.SC_NOT_FOUND;
+        } catch (IOException e) {
+            throw new BuildCacheException(String.format("Unable to probe entry at '%s': %s", safeUri(uri), e.getMessage()), e);
+        } finally {
+            HttpClientUtils.closeQuietly(response);
+        }
     }
 
     @Override
@@ -115,6 +205,35 @@ public class HttpBuildCacheService implements BuildCacheService {
         }
     }
 
+    @Override
+    public NegativeLookupFilter loadNegativeLookupFilter() throws BuildCacheException {
+        final URI uri = root.resolve(NEGATIVE_LOOKUP_FILTER_PATH);
+        HttpGet httpGet = new HttpGet(uri);
+        httpGet.addHeader(HttpHeaders.ACCEPT, NEGATIVE_LOOKUP_FILTER_CONTENT_TYPE + ", */*");
+        addDiagnosticHeaders(httpGet);
+
+        CloseableHttpResponse response = null;
+        try {
+            response = httpClientHelper.performHttpRequest(httpGet);
+            StatusLine statusLine = response.getStatusLine();
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Response for GET {}: {}", safeUri(uri), statusLine);
+            }
+            int statusCode = statusLine.getStatusCode();
+            if (isHttpSuccess(statusCode)) {
+                return NegativeLookupFilter.readFrom(new BufferedInputStream(response.getEntity().getContent()));
+            } else if (statusCode == HttpStatus.SC_NOT_FOUND) {
+                return null;
+            } else {
+                throw new BuildCacheException(String.format("Loading negative lookup filter from '%s' response status %d: %s", safeUri(uri), statusCode, statusLine.getReasonPhrase()));
+            }
+        } catch (IOException e) {
+            throw new BuildCacheException(String.format("Unable to load negative lookup filter from '%s': %s", safeUri(uri), e.getMessage()), e);
+        } finally {
+            HttpClientUtils.closeQuietly(response);
+        }
+    }
+
     private boolean handleRedirect(URI uri, CloseableHttpResponse response, int statusCode, String defaultMessage, String action) {
         final Header locationHeader = response.getFirstHeader("location");
         if (locationHeader == null) {
@@ -210,6 +329,11 @@ public class HttpBuildCacheService implements BuildCacheService {
 
     @Override
     public void close() throws IOException {
+        synchronized (this) {
+            if (probeExecutor != null) {
+                probeExecutor.stop();
+            }
+        }
         httpClientHelper.close();
     }
 
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import org.apache.commons.io.IOUtils;
+import org.gradle.internal.io.NullOutputStream;
+import org.gradle.internal.io.ParallelGZipOutputStream;
+import org.iq80.snappy.SnappyFramedInputStream;
+import org.iq80.snappy.SnappyFramedOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares the codecs available for compressing cache entries across entry sizes.
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 7)
+@State(Scope.Benchmark)
+public class TaskOutputCompressionBenchmark {
+    private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    @Param({"gzip", "gzip.parallel", "snappy"})
+    String codec;
+
+    @Param({"64", "1024", "16384", "131072"})
+    int entrySizeInKilobytes;
+
+    ExecutorService executor;
+    byte[] entry;
+    byte[] compressedEntry;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws IOException {
+        executor = Executors.newFixedThreadPool(PARALLELISM);
+        entry = createEntry(entrySizeInKilobytes * 1024);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        compress(compressed);
+        compressedEntry = compressed.toByteArray();
+        System.out.printf(">>> %s compresses %d bytes to %d bytes (compression ratio: %,.2f%%)%n", codec, entry.length, compressedEntry.length, 100d * compressedEntry.length / entry.length);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public void compress() throws IOException {
+        compress(NullOutputStream.INSTANCE);
+    }
+
+    @Benchmark
+    public long decompress() throws IOException {
+        InputStream input = openInput(new ByteArrayInputStream(compressedEntry));
+        try {
+            return IOUtils.copyLarge(input, NullOutputStream.INSTANCE);
+        } finally {
+            input.close();
+        }
+    }
+
+    private void compress(OutputStream target) throws IOException {
+        OutputStream output = openOutput(target);
+        try {
+            output.write(entry);
+        } finally {
+            output.close();
+        }
+    }
+
+    private OutputStream openOutput(OutputStream output) throws IOException {
+        if (codec.equals("gzip")) {
+            return new GZIPOutputStream(output);
+        } else if (codec.equals("gzip.parallel")) {
+            return new ParallelGZipOutputStream(output, executor, PARALLELISM);
+        } else if (codec.equals("snappy")) {
+            return new SnappyFramedOutputStream(output);
+        }
+        throw new IllegalArgumentException(codec);
+    }
+
+    private InputStream openInput(InputStream input) throws IOException {
+        if (codec.startsWith("gzip")) {
+            return new GZIPInputStream(input);
+        } else if (codec.equals("snappy")) {
+            return new SnappyFramedInputStream(input, true);
+        }
+        throw new IllegalArgumentException(codec);
+    }
+
+    /**
+     * Creates compressible content resembling source and class files, made up of words from a limited vocabulary.
+     */
+    private static byte[] createEntry(int size) {
+        Random random = new Random(1234L);
+        String[] words = new String[4096];
+        for (int i = 0; i < words.length; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 2 + random.nextInt(10);
+            for (int j = 0; j < length; j++) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            words[i] = word.toString();
+        }
+        byte[] entry = new byte[size];
+        int offset = 0;
+        while (offset < size) {
+            // Skewed towards the first words, like identifiers in code
+            String word = words[(int) (Math.abs(random.nextGaussian()) * words.length / 4) % words.length];
+            for (int i = 0; i < word.length() && offset < size; i++) {
+                entry[offset++] = (byte) word.charAt(i);
+            }
+            if (offset < size) {
+                entry[offset++] = (byte) (random.nextInt(8) == 0 ? '\n' : ' ');
+            }
+        }
+        return entry;
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal;
+
+import org.gradle.caching.BuildCacheException;
+
+import javax.annotation.Nullable;
+
+/**
+ * A build cache service that can provide a {@link NegativeLookupFilter} of the entries it contains.
+ */
+public interface NegativeLookupBuildCacheService {
+
+    /**
+     * Loads the filter for the entries currently in the cache.
+     *
+     * @return the filter, or {@code null} if the cache does not publish one
+     * @throws BuildCacheException when the filter cannot be loaded
+     */
+    @Nullable
+    NegativeLookupFilter loadNegativeLookupFilter() throws BuildCacheException;
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal;
+
+import org.gradle.internal.hash.Hashing;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A Bloom filter over the keys of the entries in a build cache.
+ * <p>
+ * A key the filter does not contain certainly has no entry in the cache, while a key it contains has an entry with high probability.
+ * <p>
+ * The format is simple enough for a cache node to publish the filter without using this class:
+ * <ul>
+ *     <li>The index of a key for hash function {@code i} is {@code ((h1 + i * h2) & Long.MAX_VALUE) % bitCount},
+ *     where {@code h1} and {@code h2} are the first and second eight bytes of the MD5 of the key's UTF-8 bytes, read as big-endian longs.</li>
+ *     <li>The serialized form is the format version (int, currently 1), the number of hash functions (int),
+ *     the number of longs holding the bits (int) and the longs themselves, all big-endian.
+ *     Bit {@code n} is bit {@code n % 64} of long {@code n / 64}.</li>
+ * </ul>
+ */
+public class NegativeLookupFilter {
+
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_HASH_FUNCTIONS = 32;
+    private static final int MAX_WORDS = 1 << 22;
+
+    private final int numHashFunctions;
+    private final long[] bits;
+    private final long bitCount;
+
+    private NegativeLookupFilter(int numHashFunctions, long[] bits) {
+        this.numHashFunctions = numHashFunctions;
+        this.bits = bits;
+        this.bitCount = (long) bits.length * Long.SIZE;
+    }
+
+    /**
+     * Creates an empty filter sized for the given number of entries and false positive probability.
+     */
+    public static NegativeLookupFilter create(int expectedEntries, double falsePositiveProbability) {
+        if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("False positive probability must be between 0 and 1, but was " + falsePositiveProbability);
+        }
+        long entries = Math.max(1, expectedEntries);
+        long bitCount = Math.max(Long.SIZE, (long) (-entries * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2))));
+        int numHashFunctions = (int) Math.max(1, Math.min(MAX_HASH_FUNCTIONS, Math.round((double) bitCount / entries * Math.log(2))));
+        int words = (int) Math.min(MAX_WORDS, (bitCount + Long.SIZE - 1) / Long.SIZE);
+        return new NegativeLookupFilter(numHashFunctions, new long[words]);
+    }
+
+    public void put(String key) {
+        byte[] hash = Hashing.md5().hashString(key).toByteArray();
+        long h1 = toLong(hash, 0);
+        long h2 = toLong(hash, 8);
+        for (int i = 0; i < numHashFunctions; i++) {
+            long index = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+            bits[(int) (index >>> 6)] |= 1L << index;
+        }
+    }
+
+    /**
+     * Returns {@code false} if the cache certainly has no entry for the given key.
+     */
+    public boolean mightContain(String key) {
+        byte[] hash = Hashing.md5().hashString(key).toByteArray();
+        long h1 = toLong(hash, 0);
+        long h2 = toLong(hash, 8);
+        for (int i = 0; i < numHashFunctions; i++) {
+            long index = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+            if ((bits[(int) (index >>> 6)] & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void writeTo(OutputStream output) throws IOException {
+        DataOutputStream dataOutput = new DataOutputStream(output);
+        dataOutput.writeInt(FORMAT_VERSION);
+        dataOutput.writeInt(numHashFunctions);
+        dataOutput.writeInt(bits.length);
+        for (long word : bits) {
+            dataOutput.writeLong(word);
+        }
+        dataOutput.flush();
+    }
+
+    public static NegativeLookupFilter readFrom(InputStream input) throws IOException {
+        DataInputStream dataInput = new DataInputStream(input);
+        int version = dataInput.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported negative lookup filter format version " + version);
+        }
+        int numHashFunctions = dataInput.readInt();
+        int length = dataInput.readInt();
+        if (numHashFunctions < 1 || numHashFunctions > MAX_HASH_FUNCTIONS || length < 1 || length > MAX_WORDS) {
+            throw new IOException("Invalid negative lookup filter with " + numHashFunctions + " hash functions and " + length + " words");
+        }
+        long[] bits = new long[length];
+        for (int i = 0; i < length; i++) {
+            bits[i] = dataInput.readLong();
+        }
+        return new NegativeLookupFilter(numHashFunctions, bits);
+    }
+
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xff);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal;
+
+import org.gradle.caching.BuildCacheException;
+import org.gradle.caching.BuildCacheKey;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * A build cache service that can check whether it has entries for many keys at once, without loading them.
+ */
+public interface ProbingBuildCacheService {
+
+    /**
+     * Returns those of the given keys that the service has an entry for.
+     * <p>
+     * Implementations are free to check the keys concurrently.
+     * When the presence of an entry cannot be determined, the key should be reported as present.
+     *
+     * @throws BuildCacheException when the service cannot be reached
+     */
+    Set<BuildCacheKey> probe(Collection<? extends BuildCacheKey> keys) throws BuildCacheException;
+}
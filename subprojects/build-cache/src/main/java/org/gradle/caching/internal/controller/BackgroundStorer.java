@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.controller.operations.BackgroundStoreOperationDetails;
+import org.gradle.caching.internal.controller.operations.BackgroundStoreOperationResult;
+import org.gradle.caching.internal.controller.service.BuildCacheServiceHandle;
+import org.gradle.caching.internal.controller.service.LocalBuildCacheServiceHandle;
+import org.gradle.caching.internal.controller.service.StoreTarget;
+import org.gradle.caching.local.internal.BuildCacheTempFileStore;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.progress.BuildOperationDescriptor;
+import org.gradle.util.GFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Stores packed entries in the build caches in the background, so that the task that produced an entry can complete without waiting for it.
+ * <p>
+ * Each store runs on its own thread as a build operation without a parent. The operation that queued the entry usually completes
+ * before the entry is stored, and a build operation cannot complete after its parent. At most {@code maxPending} entries are stored at the same time.
+ * Stopping waits for all queued entries to be stored, and is done when the build finishes.
+ */
+class BackgroundStorer implements Stoppable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BackgroundStorer.class);
+
+    private final BuildCacheServiceHandle legacyLocal;
+    private final BuildCacheServiceHandle remote;
+    private final LocalBuildCacheServiceHandle local;
+    private final BuildOperationExecutor buildOperationExecutor;
+    private final ManagedExecutor executor;
+    private final int maxPending;
+    private final Semaphore pending;
+
+    BackgroundStorer(BuildCacheServiceHandle legacyLocal, BuildCacheServiceHandle remote, LocalBuildCacheServiceHandle local, BuildOperationExecutor buildOperationExecutor, ManagedExecutor executor, int maxPending) {
+        this.legacyLocal = legacyLocal;
+        this.remote = remote;
+        this.local = local;
+        this.buildOperationExecutor = buildOperationExecutor;
+        this.executor = executor;
+        this.maxPending = maxPending;
+        this.pending = new Semaphore(maxPending);
+    }
+
+    /**
+     * Queues the given packed entry to be stored. The file is moved out of the way, so that the caller can delete it as usual.
+     */
+    public void store(final BuildCacheKey key, File file) {
+        final File queued = moveToQueue(key, file);
+        pending.acquireUninterruptibly();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        storeInBackground(key, queued);
+                    } finally {
+                        GFileUtils.deleteQuietly(queued);
+                        pending.release();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            GFileUtils.deleteQuietly(queued);
+            pending.release();
+            throw e;
+        }
+    }
+
+    private static File moveToQueue(BuildCacheKey key, File file) {
+        try {
+            // Stays next to the temp files of the cache, and is cleaned up like them when the build is interrupted
+            File queued = File.createTempFile(key.getHashCode(), BuildCacheTempFileStore.PARTIAL_FILE_SUFFIX, file.getParentFile());
+            Files.move(file.toPath(), queued.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return queued;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void storeInBackground(final BuildCacheKey key, final File file) {
+        try {
+            buildOperationExecutor.run(new RunnableBuildOperation() {
+                @Override
+                public void run(BuildOperationContext context) {
+                    if (legacyLocal.canStore()) {
+                        legacyLocal.store(key, new StoreTarget(file));
+                    }
+
+                    StoreTarget remoteTarget = new StoreTarget(file);
+                    if (remote.canStore()) {
+                        remote.store(key, remoteTarget);
+                    }
+
+                    boolean storedLocally = false;
+                    if (local.canStore()) {
+                        local.store(key, file);
+                        storedLocally = true;
+                    }
+
+                    context.setResult(new BackgroundStoreOperationResult(storedLocally, remoteTarget.isStored()));
+                }
+
+                @Override
+                public BuildOperationDescriptor.Builder description() {
+                    return BuildOperationDescriptor.displayName("Store build cache entry " + key + " in the background")
+                        .details(new BackgroundStoreOperationDetails(key, file.length()))
+                        .progressDisplayName("Storing build cache entry");
+                }
+            });
+        } catch (Exception e) {
+            // The task that produced the entry has completed already, so there is nothing to fail
+            LOGGER.warn("Could not store entry {} in the build cache: {}", key.getDisplayName(), e.getMessage());
+            LOGGER.debug("Failure storing entry {} in the build cache", key.getDisplayName(), e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        int waitingFor = maxPending - pending.availablePermits();
+        if (waitingFor > 0) {
+            LOGGER.info("Waiting for {} build cache entries to be stored.", waitingFor);
+        }
+        executor.stop();
+    }
+}
@@ -33,6 +33,11 @@ public interface BuildCacheController extends Closeable {
 
     void store(BuildCacheStoreCommand command);
 
+    /**
+     * Whether stored entries are pushed to a remote cache, and so may be loaded by other versions of Gradle.
+     */
+    boolean canStoreRemotely();
+
     @Override
     void close();
 
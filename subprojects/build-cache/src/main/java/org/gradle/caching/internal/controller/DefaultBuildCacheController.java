@@ -23,6 +23,7 @@ import org.gradle.api.GradleException;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.BuildCacheService;
+import org.gradle.caching.internal.NegativeLookupBuildCacheService;
 import org.gradle.caching.internal.controller.operations.PackOperationDetails;
 import org.gradle.caching.internal.controller.operations.PackOperationResult;
 import org.gradle.caching.internal.controller.operations.UnpackOperationDetails;
@@ -38,11 +39,13 @@ import org.gradle.caching.internal.controller.service.NullBuildCacheServiceHandl
 import org.gradle.caching.internal.controller.service.NullLocalBuildCacheServiceHandle;
 import org.gradle.caching.internal.controller.service.OpFiringBuildCacheServiceHandle;
 import org.gradle.caching.internal.controller.service.StoreTarget;
+import org.gradle.caching.internal.controller.service.UnpackingLoadTarget;
 import org.gradle.caching.local.internal.BuildCacheTempFileStore;
 import org.gradle.caching.local.internal.DefaultBuildCacheTempFileStore;
 import org.gradle.caching.local.internal.LocalBuildCacheService;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.operations.RunnableBuildOperation;
@@ -58,6 +61,23 @@ import java.io.InputStream;
 
 public class DefaultBuildCacheController implements BuildCacheController {
 
+    /**
+     * When set, entries loaded from the remote cache are unpacked while they are being downloaded.
+     */
+    public static final String STREAMING_LOAD_PROPERTY = "org.gradle.caching.internal.streamingLoad";
+
+    /**
+     * When set, lookups in the remote cache are skipped for keys that the negative lookup filter published by the cache rules out, if it publishes one.
+     */
+    public static final String NEGATIVE_LOOKUP_PROPERTY = "org.gradle.caching.internal.negativeLookup";
+
+    /**
+     * When set, packed entries are stored in the build caches in the background, and the build waits for them to be stored when it finishes.
+     */
+    public static final String BACKGROUND_STORE_PROPERTY = "org.gradle.caching.internal.backgroundStore";
+
+    private static final int BACKGROUND_STORE_THREADS = 8;
+
     @VisibleForTesting
     final BuildCacheServiceHandle legacyLocal;
 
@@ -69,6 +89,9 @@ public class DefaultBuildCacheController implements BuildCacheController {
 
     private final BuildCacheTempFileStore tmp;
     private final BuildOperationExecutor buildOperationExecutor;
+    private final boolean streamingLoad;
+    private final RemoteNegativeLookup remoteNegativeLookup;
+    private final BackgroundStorer backgroundStorer;
 
     private boolean closed;
 
@@ -76,9 +99,14 @@ public class DefaultBuildCacheController implements BuildCacheController {
         BuildCacheServicesConfiguration config,
         BuildOperationExecutor buildOperationExecutor,
         File gradleUserHomeDir,
-        boolean logStackTraces
+        boolean logStackTraces,
+        boolean streamingLoad,
+        boolean negativeLookup,
+        boolean backgroundStore,
+        ExecutorFactory executorFactory
     ) {
         this.buildOperationExecutor = buildOperationExecutor;
+        this.streamingLoad = streamingLoad;
 
         if (config.local instanceof LocalBuildCacheService) {
             LocalBuildCacheService castLocal = (LocalBuildCacheService) config.local;
@@ -92,6 +120,17 @@ public class DefaultBuildCacheController implements BuildCacheController {
         }
 
         this.remote = toHandle(config.remote, config.remotePush, BuildCacheServiceRole.REMOTE, buildOperationExecutor, logStackTraces);
+        this.remoteNegativeLookup = negativeLookup && config.remote instanceof NegativeLookupBuildCacheService
+            ? new RemoteNegativeLookup((NegativeLookupBuildCacheService) config.remote)
+            : null;
+        this.backgroundStorer = backgroundStore
+            ? new BackgroundStorer(legacyLocal, remote, local, buildOperationExecutor, executorFactory.create("Build cache store", BACKGROUND_STORE_THREADS), BACKGROUND_STORE_THREADS)
+            : null;
+    }
+
+    @Override
+    public boolean canStoreRemotely() {
+        return remote.canStore();
     }
 
     @Nullable
@@ -122,14 +161,24 @@ public class DefaultBuildCacheController implements BuildCacheController {
                         legacyLocal.load(command.getKey(), loadTarget);
                     }
 
-                    if (remote.canLoad() && !loadTarget.isLoaded()) {
+                    if (remote.canLoad() && !loadTarget.isLoaded() && !isKnownMissingFromRemote(command.getKey())) {
                         loadedRole = BuildCacheServiceRole.REMOTE;
+                        if (streamingLoad) {
+                            loadTarget = new UnpackingLoadTarget(file, unpack.streaming());
+                        }
                         remote.load(command.getKey(), loadTarget);
                     }
 
                     if (loadTarget.isLoaded()) {
                         try {
-                            unpack.execute(file);
+                            if (loadTarget instanceof UnpackingLoadTarget) {
+                                Exception unpackFailure = ((UnpackingLoadTarget) loadTarget).getUnpackFailure();
+                                if (unpackFailure != null) {
+                                    throw unpackFailure;
+                                }
+                            } else {
+                                unpack.execute(file);
+                            }
                         } catch (Exception e) {
                             @SuppressWarnings("ConstantConditions") String roleDisplayName = loadedRole.getDisplayName();
                             throw new GradleException("Build cache entry " + command.getKey() + " from " + roleDisplayName + " build cache is invalid", e);
@@ -150,6 +199,10 @@ public class DefaultBuildCacheController implements BuildCacheController {
         }
     }
 
+    private boolean isKnownMissingFromRemote(BuildCacheKey key) {
+        return remoteNegativeLookup != null && remoteNegativeLookup.isKnownMissing(key);
+    }
+
     private class Unpack<T> implements Action<File> {
         private final BuildCacheLoadCommand<T> command;
 
@@ -160,23 +213,41 @@ public class DefaultBuildCacheController implements BuildCacheController {
         }
 
         @Override
-        public void execute(final File file) {
+        public void execute(File file) {
+            InputStream input;
+            try {
+                input = new FileInputStream(file);
+            } catch (FileNotFoundException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            try {
+                unpack(input, file.length());
+            } finally {
+                IOUtils.closeQuietly(input);
+            }
+        }
+
+        /**
+         * Unpacks from a stream whose size is not known up front.
+         */
+        Action<InputStream> streaming() {
+            return new Action<InputStream>() {
+                @Override
+                public void execute(InputStream input) {
+                    unpack(input, -1);
+                }
+            };
+        }
+
+        private void unpack(final InputStream input, final long archiveSize) {
             buildOperationExecutor.run(new RunnableBuildOperation() {
                 @Override
                 public void run(BuildOperationContext context) {
-                    InputStream input;
-                    try {
-                        input = new FileInputStream(file);
-                    } catch (FileNotFoundException e) {
-                        throw new UncheckedIOException(e);
-                    }
-
                     try {
                         result = command.load(input);
                     } catch (IOException e) {
                         throw new UncheckedIOException(e);
-                    } finally {
-                        IOUtils.closeQuietly(input);
                     }
 
                     context.setResult(new UnpackOperationResult(
@@ -187,7 +258,7 @@ public class DefaultBuildCacheController implements BuildCacheController {
                 @Override
                 public BuildOperationDescriptor.Builder description() {
                     return BuildOperationDescriptor.displayName("Unpack build cache entry " + command.getKey())
-                        .details(new UnpackOperationDetails(command.getKey(), file.length()))
+                        .details(new UnpackOperationDetails(command.getKey(), archiveSize))
                         .progressDisplayName("Unpacking build cache entry");
                 }
             });
@@ -210,6 +281,11 @@ public class DefaultBuildCacheController implements BuildCacheController {
             public void execute(File file) {
                 pack.execute(file);
 
+                if (backgroundStorer != null) {
+                    backgroundStorer.store(key, file);
+                    return;
+                }
+
                 if (legacyLocal.canStore()) {
                     legacyLocal.store(key, new StoreTarget(file));
                 }
@@ -263,7 +339,9 @@ public class DefaultBuildCacheController implements BuildCacheController {
     public void close() {
         if (!closed) {
             closed = true;
-            CompositeStoppable.stoppable(legacyLocal, local, remote).stop();
+            // Stores still in flight need the caches to be open.
+            // The controller is closed when the build finishes, so the build waits for the stores before it completes.
+            CompositeStoppable.stoppable(backgroundStorer, remoteNegativeLookup, legacyLocal, local, remote).stop();
         }
     }
 
@@ -33,6 +33,11 @@ public class NoOpBuildCacheController implements BuildCacheController {
 
     }
 
+    @Override
+    public boolean canStoreRemotely() {
+        return false;
+    }
+
     @Override
     public void close() {
 
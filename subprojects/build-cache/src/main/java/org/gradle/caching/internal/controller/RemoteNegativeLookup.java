@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller;
+
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.NegativeLookupBuildCacheService;
+import org.gradle.caching.internal.NegativeLookupFilter;
+import org.gradle.internal.concurrent.Stoppable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Answers whether the remote cache certainly has no entry for a key, using the negative lookup filter the cache publishes.
+ * <p>
+ * The filter is loaded once, on first use. Entries added to the cache after that are treated as missing for the rest of the build.
+ */
+class RemoteNegativeLookup implements Stoppable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RemoteNegativeLookup.class);
+
+    private final NegativeLookupBuildCacheService service;
+    private final AtomicInteger skipped = new AtomicInteger();
+    private NegativeLookupFilter filter;
+    private boolean loaded;
+
+    RemoteNegativeLookup(NegativeLookupBuildCacheService service) {
+        this.service = service;
+    }
+
+    public boolean mightContain(BuildCacheKey key) {
+        NegativeLookupFilter filter = getFilter();
+        return filter == null || filter.mightContain(key.getHashCode());
+    }
+
+    /**
+     * Like {@link #mightContain(BuildCacheKey)}, but counts the lookups that are skipped.
+     */
+    public boolean isKnownMissing(BuildCacheKey key) {
+        if (mightContain(key)) {
+            return false;
+        }
+        skipped.incrementAndGet();
+        return true;
+    }
+
+    private synchronized NegativeLookupFilter getFilter() {
+        if (!loaded) {
+            loaded = true;
+            try {
+                filter = service.loadNegativeLookupFilter();
+            } catch (Exception e) {
+                // Leave it to the loads to report the problem
+                LOGGER.debug("Could not load negative lookup filter of remote build cache", e);
+            }
+        }
+        return filter;
+    }
+
+    @Override
+    public void stop() {
+        if (skipped.get() > 0) {
+            LOGGER.info("Skipped {} lookups in remote build cache based on its negative lookup filter.", skipped.get());
+        }
+    }
+}
@@ -59,6 +59,11 @@ public class RootBuildCacheControllerRef {
             delegate.store(command);
         }
 
+        @Override
+        public boolean canStoreRemotely() {
+            return delegate.canStoreRemotely();
+        }
+
         @Override
         public void close() {
         }
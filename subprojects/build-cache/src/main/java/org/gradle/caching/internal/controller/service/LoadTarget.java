@@ -41,7 +41,7 @@ public class LoadTarget implements BuildCacheEntryReader {
             if (loaded) {
                 throw new IllegalStateException("Build cache entry has already been read");
             }
-            Files.asByteSink(file).writeFrom(input);
+            readInto(file, input);
             loaded = true;
         } catch (Exception e) {
             throw closer.rethrow(e);
@@ -50,6 +50,10 @@ public class LoadTarget implements BuildCacheEntryReader {
         }
     }
 
+    protected void readInto(File file, InputStream input) throws IOException {
+        Files.asByteSink(file).writeFrom(input);
+    }
+
     public boolean isLoaded() {
         return loaded;
     }
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller.service;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closer;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.input.ProxyInputStream;
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.ProxyOutputStream;
+import org.gradle.api.Action;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A load target that unpacks the entry while it is being read, instead of after it has been fully written to the target file.
+ * <p>
+ * The bytes read are still copied to the target file, so that the entry can be stored in the local cache afterwards.
+ * A failure to read from the given stream or to write the target file is reported as a failure to load the entry, even if it happens while unpacking.
+ * Any other failure to unpack is recorded and made available via {@link #getUnpackFailure()}, and the entry counts as loaded.
+ */
+public class UnpackingLoadTarget extends LoadTarget {
+
+    private final Action<? super InputStream> unpack;
+    private Exception unpackFailure;
+    private IOException transferFailure;
+
+    public UnpackingLoadTarget(File file, Action<? super InputStream> unpack) {
+        super(file);
+        this.unpack = unpack;
+    }
+
+    @Override
+    protected void readInto(File file, InputStream input) throws IOException {
+        Closer closer = Closer.create();
+        try {
+            InputStream source = new TransferInputStream(input);
+            OutputStream copy = closer.register(new TransferOutputStream(new FileOutputStream(file)));
+            InputStream tee = new TeeInputStream(source, copy);
+            try {
+                unpack.execute(new CloseShieldInputStream(tee));
+            } catch (Exception e) {
+                if (transferFailure != null) {
+                    throw transferFailure;
+                }
+                unpackFailure = e;
+                return;
+            }
+            // Consume anything the unpacker did not read, so that the copy is complete
+            ByteStreams.copy(tee, ByteStreams.nullOutputStream());
+        } catch (Throwable e) {
+            throw closer.rethrow(e);
+        } finally {
+            closer.close();
+        }
+    }
+
+    @Nullable
+    public Exception getUnpackFailure() {
+        return unpackFailure;
+    }
+
+    private class TransferInputStream extends ProxyInputStream {
+        TransferInputStream(InputStream input) {
+            super(input);
+        }
+
+        @Override
+        protected void handleIOException(IOException e) throws IOException {
+            transferFailure = e;
+            throw e;
+        }
+    }
+
+    private class TransferOutputStream extends ProxyOutputStream {
+        TransferOutputStream(OutputStream output) {
+            super(output);
+        }
+
+        @Override
+        protected void handleIOException(IOException e) throws IOException {
+            transferFailure = e;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Sets;
+import com.google.common.io.ByteStreams;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Set;
+
+/**
+ * The manifest of a build cache entry stored in a {@link ContentAddressedFileStore}.
+ *
+ * <p>A manifest holds the uncompressed tar archive of an entry, with the content of regular files replaced by references to the file store.
+ * Reassembling a manifest yields the original archive byte for byte.</p>
+ *
+ * <p>The format is a magic number and a version, followed by records that are either inline bytes, the hash and length of stored content,
+ * or a run of zeros, which is how archives end.</p>
+ */
+final class BuildCacheEntryManifest {
+
+    // "GCEM"
+    private static final int MAGIC = 0x4743454d;
+    private static final int VERSION = 1;
+
+    private static final byte END = 0;
+    private static final byte INLINE = 1;
+    private static final byte STORED = 2;
+    private static final byte ZEROS = 3;
+
+    private static final int BLOCK_SIZE = 512;
+    private static final int SIZE_OFFSET = 124;
+    private static final int SIZE_LENGTH = 12;
+    private static final int TYPE_OFFSET = 156;
+
+    // Smaller content is not worth a file of its own
+    private static final int INLINE_THRESHOLD = 1024;
+
+    private BuildCacheEntryManifest() {
+    }
+
+    public static boolean isManifest(File file) throws IOException {
+        DataInputStream input = new DataInputStream(new FileInputStream(file));
+        try {
+            return input.readInt() == MAGIC;
+        } catch (EOFException e) {
+            return false;
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Writes the manifest for the given tar archive, adding the content of its regular files to the file store.
+     */
+    public static void write(InputStream tar, OutputStream manifest, ContentAddressedFileStore fileStore) throws IOException {
+        DataOutputStream output = new DataOutputStream(manifest);
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        ByteArrayOutputStream inline = new ByteArrayOutputStream();
+        byte[] header = new byte[BLOCK_SIZE];
+        long paxSize = -1;
+        while (true) {
+            ByteStreams.readFully(tar, header);
+            if (isZeros(header)) {
+                writeInline(inline, output);
+                writeEndOfArchive(header, tar, output);
+                break;
+            }
+            inline.write(header);
+
+            long size = paxSize >= 0 ? paxSize : parseSize(header);
+            paxSize = -1;
+            byte type = header[TYPE_OFFSET];
+            if ((type == '0' || type == 0) && size >= INLINE_THRESHOLD) {
+                writeInline(inline, output);
+                String hash = fileStore.add(tar, size);
+                output.writeByte(STORED);
+                output.writeUTF(hash);
+                output.writeLong(size);
+            } else if (type == 'x') {
+                byte[] paxHeaders = new byte[checkedSize(size)];
+                ByteStreams.readFully(tar, paxHeaders);
+                inline.write(paxHeaders);
+                paxSize = parsePaxSize(paxHeaders);
+            } else {
+                copy(tar, inline, size);
+            }
+            copy(tar, inline, padding(size));
+        }
+        output.writeByte(END);
+        output.flush();
+    }
+
+    /**
+     * Writes the end of the archive, which consists of blocks of zeros up to the record size.
+     */
+    private static void writeEndOfArchive(byte[] firstBlock, InputStream tar, DataOutputStream output) throws IOException {
+        ByteArrayOutputStream trailer = new ByteArrayOutputStream();
+        trailer.write(firstBlock);
+        ByteStreams.copy(tar, trailer);
+        byte[] bytes = trailer.toByteArray();
+        if (isZeros(bytes)) {
+            output.writeByte(ZEROS);
+            output.writeInt(bytes.length);
+        } else {
+            writeInline(trailer, output);
+        }
+    }
+
+    /**
+     * Writes the tar archive described by the given manifest.
+     */
+    public static void reassemble(File manifest, ContentAddressedFileStore fileStore, OutputStream tar) throws IOException {
+        DataInputStream input = openManifest(manifest);
+        try {
+            while (true) {
+                byte record = input.readByte();
+                if (record == END) {
+                    break;
+                } else if (record == INLINE) {
+                    copy(input, tar, input.readInt());
+                } else if (record == ZEROS) {
+                    tar.write(new byte[input.readInt()]);
+                } else if (record == STORED) {
+                    File file = fileStore.get(input.readUTF());
+                    long size = input.readLong();
+                    if (file.length() != size) {
+                        throw new IOException("Stored content " + file + " is missing or has unexpected size");
+                    }
+                    InputStream content = new FileInputStream(file);
+                    try {
+                        copy(content, tar, size);
+                    } finally {
+                        content.close();
+                    }
+                } else {
+                    throw new IOException("Invalid record in build cache entry manifest " + manifest);
+                }
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Returns the hashes of the stored content the given manifest refers to.
+     */
+    public static Set<String> readReferences(File manifest) throws IOException {
+        Set<String> references = Sets.newHashSet();
+        DataInputStream input = openManifest(manifest);
+        try {
+            while (true) {
+                byte record = input.readByte();
+                if (record == END) {
+                    break;
+                } else if (record == INLINE) {
+                    ByteStreams.skipFully(input, input.readInt());
+                } else if (record == ZEROS) {
+                    input.readInt();
+                } else if (record == STORED) {
+                    references.add(input.readUTF());
+                    input.readLong();
+                } else {
+                    throw new IOException("Invalid record in build cache entry manifest " + manifest);
+                }
+            }
+        } finally {
+            input.close();
+        }
+        return references;
+    }
+
+    private static DataInputStream openManifest(File manifest) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(manifest)));
+        boolean valid = false;
+        try {
+            valid = input.readInt() == MAGIC && input.readInt() == VERSION;
+        } finally {
+            if (!valid) {
+                input.close();
+            }
+        }
+        if (!valid) {
+            throw new IOException("Unsupported build cache entry manifest " + manifest);
+        }
+        return input;
+    }
+
+    private static void writeInline(ByteArrayOutputStream inline, DataOutputStream output) throws IOException {
+        if (inline.size() > 0) {
+            output.writeByte(INLINE);
+            output.writeInt(inline.size());
+            inline.writeTo(output);
+            inline.reset();
+        }
+    }
+
+    private static boolean isZeros(byte[] bytes) {
+        for (byte b : bytes) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parseSize(byte[] header) throws IOException {
+        if ((header[SIZE_OFFSET] & 0x80) != 0) {
+            // Base-256 encoding of large sizes
+            long size = 0;
+            for (int i = SIZE_OFFSET + 1; i < SIZE_OFFSET + SIZE_LENGTH; i++) {
+                size = (size << 8) | (header[i] & 0xff);
+            }
+            return size;
+        }
+        long size = 0;
+        boolean digits = false;
+        for (int i = SIZE_OFFSET; i < SIZE_OFFSET + SIZE_LENGTH; i++) {
+            byte b = header[i];
+            if (b >= '0' && b <= '7') {
+                size = size * 8 + (b - '0');
+                digits = true;
+            } else if (b == 0 || b == ' ') {
+                if (digits) {
+                    break;
+                }
+            } else {
+                throw new IOException("Invalid size in tar header");
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the size of the next entry as given by the PAX extended headers, or -1 when they do not give one.
+     */
+    private static long parsePaxSize(byte[] headers) throws IOException {
+        int offset = 0;
+        try {
+            while (offset < headers.length) {
+                int space = offset;
+                while (space < headers.length && headers[space] != ' ') {
+                    space++;
+                }
+                if (space == headers.length) {
+                    break;
+                }
+                int length = Integer.parseInt(new String(headers, offset, space - offset, Charsets.US_ASCII));
+                if (length <= space - offset + 1 || offset + length > headers.length) {
+                    throw new IOException("Invalid PAX header in tar archive");
+                }
+                // Records are "<length> <key>=<value>\n"
+                String record = new String(headers, space + 1, offset + length - space - 2, Charsets.UTF_8);
+                if (record.startsWith("size=")) {
+                    return Long.parseLong(record.substring("size=".length()));
+                }
+                offset += length;
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid PAX header in tar archive", e);
+        }
+        return -1;
+    }
+
+    private static int checkedSize(long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Unexpectedly large PAX header in tar archive");
+        }
+        return (int) size;
+    }
+
+    private static long padding(long size) {
+        return (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+    }
+
+    private static void copy(InputStream input, OutputStream output, long length) throws IOException {
+        long copied = ByteStreams.copy(ByteStreams.limit(input, length), output);
+        if (copied < length) {
+            throw new EOFException("Unexpected end of tar archive");
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
+import org.apache.commons.io.FileUtils;
+import org.gradle.cache.CleanupAction;
+import org.gradle.cache.PersistentCache;
+import org.gradle.util.GFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Set;
+
+/**
+ * Keeps a {@link ContentAddressedBuildCacheService} below a target size, deleting the least recently used entries first.
+ *
+ * <p>Like {@link org.gradle.cache.internal.FixedSizeOldestCacheCleanup}, but the size of an entry includes the stored content it refers to,
+ * unless a more recently used entry refers to the same content. Stored content that no remaining entry refers to is deleted afterwards.</p>
+ */
+public class ContentAddressedBuildCacheCleanup implements CleanupAction {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContentAddressedBuildCacheCleanup.class);
+    private static final Comparator<File> NEWEST_FIRST = Ordering.natural().onResultOf(new Function<File, Comparable<Long>>() {
+        @Override
+        public Comparable<Long> apply(File input) {
+            return input.lastModified();
+        }
+    }).reverse();
+
+    private final long targetSizeInMB;
+    private final ContentAddressedFileStore fileStore;
+
+    ContentAddressedBuildCacheCleanup(long targetSizeInMB, ContentAddressedFileStore fileStore) {
+        this.targetSizeInMB = targetSizeInMB;
+        this.fileStore = fileStore;
+    }
+
+    @Override
+    public void clean(final PersistentCache persistentCache) {
+        final Collection<File> reservedFiles = persistentCache.getReservedCacheFiles();
+        File[] entries = persistentCache.getBaseDir().listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isFile() && !reservedFiles.contains(file);
+            }
+        });
+        if (entries == null) {
+            return;
+        }
+        Arrays.sort(entries, NEWEST_FIRST);
+
+        // All sizes are in bytes
+        long totalSize = 0;
+        long targetSize = targetSizeInMB * 1024 * 1024;
+        Set<String> counted = Sets.newHashSet();
+        Set<String> retained = Sets.newHashSet();
+        long removedSize = 0;
+        int removedEntries = 0;
+
+        for (File entry : entries) {
+            Set<String> references = readReferences(entry);
+            long size = entry.length();
+            for (String reference : references) {
+                if (counted.add(reference)) {
+                    size += fileStore.get(reference).length();
+                }
+            }
+            totalSize += size;
+
+            if (totalSize > targetSize) {
+                long entrySize = entry.length();
+                if (GFileUtils.deleteQuietly(entry)) {
+                    removedSize += entrySize;
+                    removedEntries++;
+                }
+            } else {
+                retained.addAll(references);
+            }
+        }
+
+        LOGGER.info("{} consuming {} (target: {} MB).", persistentCache, FileUtils.byteCountToDisplaySize(totalSize), targetSizeInMB);
+
+        // Done even when no entry was removed, to get rid of content left over by interrupted stores
+        removedSize += fileStore.retainOnly(retained);
+        if (removedEntries > 0) {
+            LOGGER.info("{} removing {} cache entries ({} reclaimed).", persistentCache, removedEntries, FileUtils.byteCountToDisplaySize(removedSize));
+        }
+    }
+
+    private static Set<String> readReferences(File entry) {
+        try {
+            if (BuildCacheEntryManifest.isManifest(entry)) {
+                return BuildCacheEntryManifest.readReferences(entry);
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Could not read build cache entry manifest {}", entry, e);
+        }
+        return Collections.emptySet();
+    }
+}
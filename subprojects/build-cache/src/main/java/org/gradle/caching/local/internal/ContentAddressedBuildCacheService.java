@@ -0,0 +1,269 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import com.google.common.io.Closer;
+import com.google.common.util.concurrent.Striped;
+import org.gradle.api.Action;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.PersistentCache;
+import org.gradle.caching.BuildCacheEntryReader;
+import org.gradle.caching.BuildCacheEntryWriter;
+import org.gradle.caching.BuildCacheException;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.BuildCacheService;
+import org.gradle.internal.UncheckedException;
+import org.gradle.util.GFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A build cache service backed by a local directory that stores each distinct output file once.
+ *
+ * <p>Gzip compressed entries are split up when stored: the content of their files goes into a {@link ContentAddressedFileStore} in the
+ * {@value #FILES_DIR} subdirectory, and the entry itself is replaced by a {@link BuildCacheEntryManifest} referring to it. Loading reassembles the
+ * uncompressed archive from the manifest, which only needs copying. Entries in other formats are stored as they are.</p>
+ *
+ * <p>Files are stored uncompressed, so this pays off for caches with many entries sharing the same files.
+ * Locking follows {@link DirectoryBuildCacheService}. Stored content is cleaned up by {@link ContentAddressedBuildCacheCleanup}.</p>
+ */
+public class ContentAddressedBuildCacheService implements LocalBuildCacheService, BuildCacheService {
+
+    public static final String FILES_DIR = "files";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContentAddressedBuildCacheService.class);
+
+    private final ContentAddressedFileStore fileStore;
+    private final PersistentCache persistentCache;
+    private final BuildCacheTempFileStore tempFileStore;
+    private final String failedFileSuffix;
+    private final Striped<ReadWriteLock> locks = Striped.readWriteLock(Runtime.getRuntime().availableProcessors() * 4);
+
+    ContentAddressedBuildCacheService(ContentAddressedFileStore fileStore, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, String failedFileSuffix) {
+        this.fileStore = fileStore;
+        this.persistentCache = persistentCache;
+        this.tempFileStore = tempFileStore;
+        this.failedFileSuffix = failedFileSuffix;
+    }
+
+    @Override
+    public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws BuildCacheException {
+        DirectoryBuildCacheService.LoadAction loadAction = new DirectoryBuildCacheService.LoadAction(reader);
+        loadLocally(key, loadAction);
+        return loadAction.loaded;
+    }
+
+    @Override
+    public void loadLocally(final BuildCacheKey key, final Action<? super File> reader) {
+        // We need to lock other processes out here because garbage collection can be under way in another process
+        persistentCache.withFileLock(new Runnable() {
+            @Override
+            public void run() {
+                ReadWriteLock lock = locks.get(key.getHashCode());
+                lock.readLock().lock();
+                try {
+                    loadInsideLock(key, reader);
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+        });
+    }
+
+    private void loadInsideLock(BuildCacheKey key, final Action<? super File> reader) {
+        final File file = new File(persistentCache.getBaseDir(), key.getHashCode());
+        if (!file.isFile()) {
+            return;
+        }
+        touch(file);
+
+        try {
+            if (BuildCacheEntryManifest.isManifest(file)) {
+                tempFileStore.withTempFile(key, new Action<File>() {
+                    @Override
+                    public void execute(@Nonnull File archive) {
+                        reassemble(file, archive);
+                        reader.execute(archive);
+                    }
+                });
+            } else {
+                reader.execute(file);
+            }
+        } catch (Exception e) {
+            // Try to move the file out of the way in case its permanently corrupt
+            // Don't delete, so that it can be potentially used for debugging
+            File failedFile = new File(file.getAbsolutePath() + failedFileSuffix);
+            GFileUtils.deleteQuietly(failedFile);
+            //noinspection ResultOfMethodCallIgnored
+            file.renameTo(failedFile);
+
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    private void reassemble(File manifest, File archive) {
+        try {
+            OutputStream output = new BufferedOutputStream(new FileOutputStream(archive));
+            try {
+                BuildCacheEntryManifest.reassemble(manifest, fileStore, output);
+            } finally {
+                output.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void store(final BuildCacheKey key, final BuildCacheEntryWriter result) throws BuildCacheException {
+        tempFileStore.withTempFile(key, new Action<File>() {
+            @Override
+            public void execute(@Nonnull File file) {
+                try {
+                    Closer closer = Closer.create();
+                    try {
+                        result.writeTo(closer.register(new FileOutputStream(file)));
+                    } catch (Exception e) {
+                        throw closer.rethrow(e);
+                    } finally {
+                        closer.close();
+                    }
+                } catch (IOException ex) {
+                    throw UncheckedException.throwAsUncheckedException(ex);
+                }
+
+                storeLocally(key, file);
+            }
+        });
+    }
+
+    @Override
+    public void storeLocally(final BuildCacheKey key, final File file) {
+        persistentCache.withFileLock(new Runnable() {
+            @Override
+            public void run() {
+                tempFileStore.withTempFile(key, new Action<File>() {
+                    @Override
+                    public void execute(@Nonnull File manifest) {
+                        File entry = writeManifest(file, manifest) ? manifest : file;
+                        String hashCode = key.getHashCode();
+                        File destination = new File(persistentCache.getBaseDir(), hashCode);
+                        ReadWriteLock lock = locks.get(hashCode);
+                        lock.writeLock().lock();
+                        try {
+                            move(entry, destination);
+                        } finally {
+                            lock.writeLock().unlock();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Splits up the given entry into a manifest and the content of its files.
+     *
+     * @return false when the entry is not a gzip compressed tar archive, and should be stored as it is.
+     */
+    private boolean writeManifest(File entry, File manifest) {
+        try {
+            if (!isGzipCompressed(entry)) {
+                return false;
+            }
+            InputStream input = new GZIPInputStream(new BufferedInputStream(new FileInputStream(entry)));
+            try {
+                OutputStream output = new BufferedOutputStream(new FileOutputStream(manifest));
+                try {
+                    BuildCacheEntryManifest.write(input, output, fileStore);
+                } finally {
+                    output.close();
+                }
+            } finally {
+                input.close();
+            }
+            return true;
+        } catch (IOException e) {
+            // Any content stored so far is removed by the next cleanup
+            LOGGER.debug("Could not split up build cache entry {}, storing it as it is.", entry, e);
+            return false;
+        }
+    }
+
+    private static boolean isGzipCompressed(File file) throws IOException {
+        InputStream input = new FileInputStream(file);
+        try {
+            return input.read() == 0x1f && input.read() == 0x8b;
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Renames the file into place, replacing any existing entry. Readers see either the previous or the new entry, never a partial one.
+     */
+    private static void move(File source, File destination) {
+        try {
+            try {
+                Files.move(source.toPath(), destination.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(source.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void withTempFile(final BuildCacheKey key, final Action<? super File> action) {
+        persistentCache.withFileLock(new Runnable() {
+            @Override
+            public void run() {
+                tempFileStore.withTempFile(key, action);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        persistentCache.close();
+    }
+
+    private static void touch(File file) {
+        try {
+            Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
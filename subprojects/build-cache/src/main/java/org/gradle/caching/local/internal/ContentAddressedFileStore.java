@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.util.GFileUtils;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+
+/**
+ * Stores files by the SHA-1 hash of their content, so that each distinct content is stored once.
+ *
+ * <p>Files are kept in subdirectories named after the first two characters of their hash. Adding content that is already stored leaves the
+ * stored file alone. Stored files are never modified, and are only deleted by {@link #retainOnly(Set)}.</p>
+ */
+class ContentAddressedFileStore {
+
+    private final File dir;
+
+    ContentAddressedFileStore(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Stores the next {@code length} bytes of the given stream.
+     *
+     * @return the hash of the content, by which it can be retrieved.
+     */
+    public String add(InputStream input, long length) throws IOException {
+        GFileUtils.mkdirs(dir);
+        File tempFile = File.createTempFile("content", BuildCacheTempFileStore.PARTIAL_FILE_SUFFIX, dir);
+        try {
+            Hasher hasher = Hashing.sha1().newHasher();
+            OutputStream output = new FileOutputStream(tempFile);
+            try {
+                byte[] buffer = new byte[8192];
+                long remaining = length;
+                while (remaining > 0) {
+                    int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (read < 0) {
+                        throw new EOFException("Unexpected end of content, " + remaining + " bytes missing");
+                    }
+                    hasher.putBytes(buffer, 0, read);
+                    output.write(buffer, 0, read);
+                    remaining -= read;
+                }
+            } finally {
+                output.close();
+            }
+
+            String hash = hasher.hash().toString();
+            File file = get(hash);
+            if (!file.isFile()) {
+                GFileUtils.mkdirs(file.getParentFile());
+                // Concurrent stores of the same content write the same bytes, so it does not matter which one wins
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return hash;
+        } finally {
+            GFileUtils.deleteQuietly(tempFile);
+        }
+    }
+
+    public File get(String hash) {
+        return new File(new File(dir, hash.substring(0, 2)), hash);
+    }
+
+    /**
+     * Deletes all stored files except the given ones.
+     *
+     * @return the number of bytes reclaimed.
+     */
+    public long retainOnly(Set<String> hashes) {
+        long reclaimed = 0;
+        File[] subdirs = dir.listFiles();
+        if (subdirs == null) {
+            return 0;
+        }
+        for (File subdir : subdirs) {
+            File[] files = subdir.listFiles();
+            if (files == null) {
+                // Left over content being added when a build was interrupted
+                reclaimed += delete(subdir);
+                continue;
+            }
+            for (File file : files) {
+                if (!hashes.contains(file.getName())) {
+                    reclaimed += delete(file);
+                }
+            }
+        }
+        return reclaimed;
+    }
+
+    private static long delete(File file) {
+        long size = file.length();
+        return GFileUtils.deleteQuietly(file) ? size : 0;
+    }
+}
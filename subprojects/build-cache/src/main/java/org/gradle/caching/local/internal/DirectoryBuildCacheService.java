@@ -17,6 +17,7 @@
 package org.gradle.caching.local.internal;
 
 import com.google.common.io.Closer;
+import com.google.common.util.concurrent.Striped;
 import org.gradle.api.Action;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.cache.PersistentCache;
@@ -35,18 +36,27 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.FileTime;
 import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * A build cache service backed by a local directory.
+ *
+ * <p>Access is coordinated per key rather than for the whole cache: each key maps to one of a set of lock stripes, so loads and stores of
+ * unrelated entries proceed in parallel. Stores write to a temporary file in the cache directory and rename it into place atomically, so the
+ * stripe is only held for the rename. Other processes are kept out by the shared file lock of the cache, which is only needed to exclude
+ * cleanup.</p>
+ */
 public class DirectoryBuildCacheService implements LocalBuildCacheService, BuildCacheService {
 
     private final PathKeyFileStore fileStore;
     private final PersistentCache persistentCache;
     private final BuildCacheTempFileStore tempFileStore;
     private final String failedFileSuffix;
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Striped<ReadWriteLock> locks = Striped.readWriteLock(Runtime.getRuntime().availableProcessors() * 4);
 
     public DirectoryBuildCacheService(PathKeyFileStore fileStore, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, String failedFileSuffix) {
         this.fileStore = fileStore;
@@ -55,11 +65,11 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
         this.failedFileSuffix = failedFileSuffix;
     }
 
-    private static class LoadAction implements Action<File> {
+    static class LoadAction implements Action<File> {
         private final BuildCacheEntryReader reader;
         boolean loaded;
 
-        private LoadAction(BuildCacheEntryReader reader) {
+        LoadAction(BuildCacheEntryReader reader) {
             this.reader = reader;
         }
 
@@ -96,6 +106,7 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
         persistentCache.withFileLock(new Runnable() {
             @Override
             public void run() {
+                ReadWriteLock lock = locks.get(key.getHashCode());
                 lock.readLock().lock();
                 try {
                     loadInsideLock(key, reader);
@@ -157,9 +168,14 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
         persistentCache.withFileLock(new Runnable() {
             @Override
             public void run() {
+                String hashCode = key.getHashCode();
+                File destination = new File(persistentCache.getBaseDir(), hashCode);
+                ReadWriteLock lock = locks.get(hashCode);
                 lock.writeLock().lock();
                 try {
-                    storeInsideLock(key, file);
+                    if (!moveAtomically(file, destination)) {
+                        fileStore.move(hashCode, file);
+                    }
                 } finally {
                     lock.writeLock().unlock();
                 }
@@ -167,8 +183,20 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
         });
     }
 
-    private void storeInsideLock(BuildCacheKey key, File file) {
-        fileStore.move(key.getHashCode(), file);
+    /**
+     * Renames the file into place, replacing any existing entry. Readers see either the previous or the new entry, never a partial one.
+     *
+     * @return false when the file system cannot rename the file atomically, for example when it is not in the cache directory.
+     */
+    private static boolean moveAtomically(File source, File destination) {
+        try {
+            Files.move(source.toPath(), destination.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (AtomicMoveNotSupportedException e) {
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     @Override
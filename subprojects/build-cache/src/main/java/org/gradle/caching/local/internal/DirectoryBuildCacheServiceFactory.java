@@ -40,8 +40,15 @@ import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFactory<DirectoryBuildCache> {
     public static final String FAILED_READ_SUFFIX = ".failed";
 
+    /**
+     * When set, the local build cache stores each distinct output file once, see {@link ContentAddressedBuildCacheService}.
+     * By default, such a cache lives in a different directory than a regular one, as older versions of Gradle cannot read its entries.
+     */
+    public static final String CONTENT_ADDRESSED_PROPERTY = "org.gradle.caching.internal.contentAddressedLocalCache";
+
     private static final String BUILD_CACHE_VERSION = "1";
     private static final String BUILD_CACHE_KEY = "build-cache-" + BUILD_CACHE_VERSION;
+    private static final String CONTENT_ADDRESSED_BUILD_CACHE_KEY = "content-addressed-build-cache-" + BUILD_CACHE_VERSION;
     private static final String DIRECTORY_BUILD_CACHE_TYPE = "directory";
 
     private final CacheRepository cacheRepository;
@@ -61,12 +68,13 @@ public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFacto
 
     @Override
     public BuildCacheService createBuildCacheService(DirectoryBuildCache configuration, Describer describer) {
+        boolean contentAddressed = Boolean.getBoolean(CONTENT_ADDRESSED_PROPERTY);
         Object cacheDirectory = configuration.getDirectory();
         File target;
         if (cacheDirectory != null) {
             target = resolver.resolve(cacheDirectory);
         } else {
-            target = cacheScopeMapping.getBaseDirectory(null, BUILD_CACHE_KEY, VersionStrategy.SharedCache);
+            target = cacheScopeMapping.getBaseDirectory(null, contentAddressed ? CONTENT_ADDRESSED_BUILD_CACHE_KEY : BUILD_CACHE_KEY, VersionStrategy.SharedCache);
         }
         checkDirectory(target);
 
@@ -76,6 +84,11 @@ public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFacto
             config("location", target.getAbsolutePath()).
             config("targetSize", humanReadableCacheSize);
 
+        if (contentAddressed) {
+            describer.config("layout", "content-addressed");
+            return createContentAddressedBuildCacheService(target, targetSizeInMB);
+        }
+
         PathKeyFileStore fileStore = fileStoreFactory.createFileStore(target);
         PersistentCache persistentCache = cacheRepository
             .cache(target)
@@ -89,6 +102,20 @@ public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFacto
         return new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, FAILED_READ_SUFFIX);
     }
 
+    private BuildCacheService createContentAddressedBuildCacheService(File target, long targetSizeInMB) {
+        ContentAddressedFileStore fileStore = new ContentAddressedFileStore(new File(target, ContentAddressedBuildCacheService.FILES_DIR));
+        PersistentCache persistentCache = cacheRepository
+            .cache(target)
+            .withCleanup(cleanupActionFactory.create(new ContentAddressedBuildCacheCleanup(targetSizeInMB, fileStore)))
+            .withDisplayName("Build cache")
+            .withLockOptions(mode(None))
+            .withCrossVersionCache(CacheBuilder.LockTarget.DefaultTarget)
+            .open();
+        BuildCacheTempFileStore tempFileStore = new DefaultBuildCacheTempFileStore(target);
+
+        return new ContentAddressedBuildCacheService(fileStore, persistentCache, tempFileStore, FAILED_READ_SUFFIX);
+    }
+
     private static void checkDirectory(File directory) {
         if (directory.exists()) {
             if (!directory.isDirectory()) {
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal
+
+import org.gradle.internal.hash.Hashing
+import spock.lang.Specification
+
+class NegativeLookupFilterTest extends Specification {
+
+    def "contains all keys put into it"() {
+        def filter = NegativeLookupFilter.create(1000, 0.01)
+        def keys = keys(0, 1000)
+
+        when:
+        keys.each { filter.put(it) }
+
+        then:
+        keys.every { filter.mightContain(it) }
+    }
+
+    def "false positive rate stays close to the requested probability"() {
+        def filter = NegativeLookupFilter.create(10000, falsePositiveProbability)
+        keys(0, 10000).each { filter.put(it) }
+
+        when:
+        def falsePositives = keys(10000, 20000).count { filter.mightContain(it) }
+
+        then:
+        falsePositives / 10000 < falsePositiveProbability * 1.5
+
+        where:
+        falsePositiveProbability << [0.1, 0.01, 0.001]
+    }
+
+    def "empty filter contains nothing"() {
+        def filter = NegativeLookupFilter.create(100, 0.01)
+
+        expect:
+        keys(0, 100).every { !filter.mightContain(it) }
+    }
+
+    def "can be serialized"() {
+        def filter = NegativeLookupFilter.create(100, 0.01)
+        def keys = keys(0, 100)
+        keys.each { filter.put(it) }
+        def output = new ByteArrayOutputStream()
+
+        when:
+        filter.writeTo(output)
+        def read = NegativeLookupFilter.readFrom(new ByteArrayInputStream(output.toByteArray()))
+
+        then:
+        keys.every { read.mightContain(it) }
+        keys(100, 1000).count { read.mightContain(it) } == keys(100, 1000).count { filter.mightContain(it) }
+    }
+
+    def "rejects unknown format version"() {
+        def output = new ByteArrayOutputStream()
+        new DataOutputStream(output).writeInt(2)
+
+        when:
+        NegativeLookupFilter.readFrom(new ByteArrayInputStream(output.toByteArray()))
+
+        then:
+        def e = thrown(IOException)
+        e.message == "Unsupported negative lookup filter format version 2"
+    }
+
+    private static List<String> keys(int from, int to) {
+        (from..<to).collect { Hashing.md5().hashString("key-$it").toString() }
+    }
+}
@@ -17,17 +17,28 @@
 package org.gradle.caching.internal.controller
 
 import org.gradle.api.Action
+import org.gradle.api.GradleException
 import org.gradle.caching.BuildCacheEntryReader
 import org.gradle.caching.BuildCacheEntryWriter
+import org.gradle.caching.BuildCacheException
 import org.gradle.caching.BuildCacheKey
 import org.gradle.caching.BuildCacheService
+import org.gradle.caching.internal.NegativeLookupBuildCacheService
+import org.gradle.caching.internal.NegativeLookupFilter
+import org.gradle.caching.internal.ProbingBuildCacheService
 import org.gradle.caching.internal.controller.service.BuildCacheServicesConfiguration
+import org.gradle.caching.internal.operations.BuildCacheArchiveUnpackBuildOperationType
+import org.gradle.caching.internal.operations.BuildCacheBackgroundStoreBuildOperationType
 import org.gradle.caching.local.internal.LocalBuildCacheService
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.gradle.testing.internal.util.Specification
 import org.junit.Rule
 
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
 class DefaultBuildCacheControllerTest extends Specification {
 
     def key = Mock(BuildCacheKey) {
@@ -45,6 +56,10 @@ class DefaultBuildCacheControllerTest extends Specification {
     def remotePush = true
 
     BuildCacheService legacyLocal = null
+    def streamingLoad = false
+    def negativeLookup = false
+    def backgroundStore = false
+    def executorFactory = new DefaultExecutorFactory()
 
     def storeCommand = Stub(BuildCacheStoreCommand) {
         getKey() >> key
@@ -84,6 +99,12 @@ class DefaultBuildCacheControllerTest extends Specification {
 
     interface Local extends BuildCacheService, LocalBuildCacheService {}
 
+    interface NegativeLookupRemote extends BuildCacheService, ProbingBuildCacheService, NegativeLookupBuildCacheService {}
+
+    def cleanup() {
+        executorFactory.stop()
+    }
+
     BuildCacheController getController() {
         new DefaultBuildCacheController(
             new BuildCacheServicesConfiguration(
@@ -92,7 +113,11 @@ class DefaultBuildCacheControllerTest extends Specification {
             ),
             operations,
             tmpDir.file("dir"),
-            false
+            false,
+            streamingLoad,
+            negativeLookup,
+            backgroundStore,
+            executorFactory
         )
     }
 
@@ -237,6 +262,28 @@ class DefaultBuildCacheControllerTest extends Specification {
         0 * remote.store(key, _)
     }
 
+    def "can store remotely until remote store fails"() {
+        local = null
+        def controller = getController()
+
+        expect:
+        controller.canStoreRemotely()
+
+        when:
+        controller.store(storeCommand)
+
+        then:
+        1 * remote.store(key, _) >> { throw new RuntimeException() }
+        !controller.canStoreRemotely()
+    }
+
+    def "cannot store remotely when remote push is disabled"() {
+        remotePush = false
+
+        expect:
+        !controller.canStoreRemotely()
+    }
+
     def "close only closes once"() {
         when:
         def controller = getController()
@@ -249,6 +296,49 @@ class DefaultBuildCacheControllerTest extends Specification {
         1 * remote.close()
     }
 
+    def "stores in the background when enabled"() {
+        given:
+        backgroundStore = true
+        def storeReturned = new CountDownLatch(1)
+        def controller = getController()
+
+        when:
+        controller.store(storeCommand)
+        storeReturned.countDown()
+        controller.close()
+
+        then:
+        1 * remote.store(key, _) >> { key, BuildCacheEntryWriter writer ->
+            assert storeReturned.await(10, TimeUnit.SECONDS)
+            writer.writeTo(new ByteArrayOutputStream())
+        }
+        1 * local.storeLocally(key, _)
+
+        and:
+        with(operations.log.mostRecentResult(BuildCacheBackgroundStoreBuildOperationType)) {
+            storedLocally
+            storedRemotely
+        }
+        tmpDir.testDirectory.listFiles().findAll { it.name.endsWith(".part") }.empty
+    }
+
+    def "does not fail when storing in the background fails"() {
+        given:
+        backgroundStore = true
+        def controller = getController()
+
+        when:
+        controller.store(storeCommand)
+        controller.close()
+
+        then:
+        1 * local.storeLocally(key, _) >> { throw new RuntimeException("local") }
+        noExceptionThrown()
+
+        and:
+        operations.log.mostRecentFailure(BuildCacheBackgroundStoreBuildOperationType).message == "local"
+    }
+
     def "does not store to local cache if using legacy local service"() {
         given:
         legacyLocal = Mock(BuildCacheService)
@@ -337,4 +427,157 @@ class DefaultBuildCacheControllerTest extends Specification {
         }
     }
 
+    def "streaming remote load unpacks while downloading and stores to local"() {
+        given:
+        streamingLoad = true
+        def unpacked = null
+        def command = readingLoadCommand { InputStream input -> unpacked = input.text }
+        1 * local.loadLocally(key, _) // miss
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
+            reader.readFrom(new ByteArrayInputStream("foo".bytes))
+            true
+        }
+
+        when:
+        controller.load(command)
+
+        then:
+        unpacked == "foo"
+        1 * local.storeLocally(key, _) >> { BuildCacheKey key, File file ->
+            assert file.text == "foo"
+        }
+        operations.log.mostRecentDetails(BuildCacheArchiveUnpackBuildOperationType).archiveSize == -1
+    }
+
+    def "streaming remote load completes local copy when unpack does not consume whole entry"() {
+        given:
+        streamingLoad = true
+        def command = readingLoadCommand { InputStream input -> input.read() }
+        1 * local.loadLocally(key, _) // miss
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
+            reader.readFrom(new ByteArrayInputStream("foo".bytes))
+            true
+        }
+
+        when:
+        controller.load(command)
+
+        then:
+        1 * local.storeLocally(key, _) >> { BuildCacheKey key, File file ->
+            assert file.text == "foo"
+        }
+    }
+
+    def "streaming remote load treats download failure during unpack as load failure"() {
+        given:
+        streamingLoad = true
+        def command = readingLoadCommand { InputStream input ->
+            try {
+                input.text
+            } catch (IOException e) {
+                throw new RuntimeException("unpack failed", e)
+            }
+        }
+        1 * local.loadLocally(key, _) // miss
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
+            reader.readFrom(new InputStream() {
+                @Override
+                int read() throws IOException {
+                    throw new IOException("connection reset")
+                }
+            })
+            true
+        }
+
+        when:
+        def result = controller.load(command)
+
+        then:
+        noExceptionThrown()
+        result == null
+        0 * local.storeLocally(key, _)
+    }
+
+    def "streaming remote load fails when entry is invalid"() {
+        given:
+        streamingLoad = true
+        def command = readingLoadCommand { InputStream input -> throw new RuntimeException("invalid") }
+        1 * local.loadLocally(key, _) // miss
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
+            reader.readFrom(new ByteArrayInputStream("foo".bytes))
+            true
+        }
+
+        when:
+        controller.load(command)
+
+        then:
+        def e = thrown(GradleException)
+        e.message == "Build cache entry key from remote build cache is invalid"
+        0 * local.storeLocally(key, _)
+    }
+
+    def "skips remote load for keys ruled out by negative lookup filter"() {
+        given:
+        negativeLookup = true
+        remote = Mock(NegativeLookupRemote)
+        def controller = getController()
+
+        when:
+        controller.load(loadCommand)
+        controller.load(loadCommand)
+
+        then:
+        1 * remote.loadNegativeLookupFilter() >> NegativeLookupFilter.create(10, 0.01)
+        0 * remote.load(key, _)
+    }
+
+    def "loads from remote when negative lookup filter might contain key"() {
+        given:
+        negativeLookup = true
+        remote = Mock(NegativeLookupRemote)
+        def filter = NegativeLookupFilter.create(10, 0.01)
+        filter.put(key.hashCode)
+
+        when:
+        controller.load(loadCommand)
+
+        then:
+        1 * remote.loadNegativeLookupFilter() >> filter
+        1 * remote.load(key, _)
+    }
+
+    def "loads from remote when negative lookup filter is not available"() {
+        given:
+        negativeLookup = true
+        remote = Mock(NegativeLookupRemote)
+
+        when:
+        controller.load(loadCommand)
+
+        then:
+        1 * remote.loadNegativeLookupFilter() >> { throw new BuildCacheException("unreachable") }
+        1 * remote.load(key, _)
+    }
+
+    private BuildCacheLoadCommand readingLoadCommand(Closure read) {
+        Stub(BuildCacheLoadCommand) {
+            getKey() >> key
+            load(_) >> { InputStream input ->
+                read(input)
+                new BuildCacheLoadCommand.Result() {
+                    @Override
+                    long getArtifactEntryCount() {
+                        return 0
+                    }
+
+                    @Override
+                    Object getMetadata() {
+                        return null
+                    }
+                }
+            }
+        }
+    }
+
 }
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks
+
+import org.gradle.caching.internal.controller.BuildCacheController
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.zip.Deflater
+import java.util.zip.GZIPOutputStream
+
+class CompressionDetectingTaskOutputPackerTest extends Specification {
+    def readOrigin = Stub(TaskOutputOriginReader)
+    def writeOrigin = Stub(TaskOutputOriginWriter)
+    def buildCacheController = Mock(BuildCacheController)
+    def executorFactory = new DefaultExecutorFactory()
+    String unpacked
+
+    def tarPacker = Stub(TaskOutputPacker) {
+        pack(_, _, _, _) >> { specs, snapshots, OutputStream output, origin ->
+            output << "output"
+            output.close()
+            new TaskOutputPacker.PackResult(1)
+        }
+        unpack(_, _, _) >> { specs, InputStream input, origin ->
+            unpacked = input.text
+            new TaskOutputPacker.UnpackResult(null, 1, null)
+        }
+    }
+
+    def cleanup() {
+        executorFactory.stop()
+    }
+
+    @Unroll
+    def "packs with #expectedCompression when Snappy is #preference and remote store is #remoteStore"() {
+        def packer = createPacker(preferSnappy)
+
+        when:
+        def output = new ByteArrayOutputStream()
+        packer.pack(new TreeSet(), [:], output, writeOrigin)
+
+        then:
+        _ * buildCacheController.canStoreRemotely() >> canStoreRemotely
+        (output.toByteArray()[0] & 0xff) == firstByte
+
+        when:
+        packer.unpack(new TreeSet(), new ByteArrayInputStream(output.toByteArray()), readOrigin)
+
+        then:
+        unpacked == "output"
+
+        where:
+        preferSnappy | canStoreRemotely | expectedCompression | firstByte
+        false        | false            | "gzip"              | 0x1f
+        true         | false            | "Snappy"            | 0xff
+        true         | true             | "gzip"              | 0x1f
+        preference = preferSnappy ? "preferred" : "not preferred"
+        remoteStore = canStoreRemotely ? "enabled" : "disabled"
+    }
+
+    def "unpacks entries compressed with either codec"() {
+        def gzipOutput = new ByteArrayOutputStream()
+        new GZipTaskOutputPacker(tarPacker).pack(new TreeSet(), [:], gzipOutput, writeOrigin)
+        def snappyOutput = new ByteArrayOutputStream()
+        new SnappyTaskOutputPacker(tarPacker).pack(new TreeSet(), [:], snappyOutput, writeOrigin)
+
+        when:
+        createPacker(preferSnappy).unpack(new TreeSet(), new ByteArrayInputStream(gzipOutput.toByteArray()), readOrigin)
+
+        then:
+        unpacked == "output"
+
+        when:
+        unpacked = null
+        createPacker(preferSnappy).unpack(new TreeSet(), new ByteArrayInputStream(snappyOutput.toByteArray()), readOrigin)
+
+        then:
+        unpacked == "output"
+
+        where:
+        preferSnappy << [true, false]
+    }
+
+    def "unpacks uncompressed tar archives"() {
+        def archive = new byte[1024]
+        "ustar".getBytes("US-ASCII").eachWithIndex { byte b, int i -> archive[257 + i] = b }
+
+        when:
+        createPacker(false).unpack(new TreeSet(), new ByteArrayInputStream(archive), readOrigin)
+
+        then:
+        unpacked.length() == 1024
+    }
+
+    def "unpacks gzip compressed entries that contain the tar magic at the offset of the tar header"() {
+        // Without compression, the content follows the 10 byte gzip header and the 5 byte header of the stored block
+        def content = "x" * 242 + "ustar" + "x" * 100
+        def bytes = new ByteArrayOutputStream()
+        def gzipOutput = new GZIPOutputStream(bytes)
+        gzipOutput.@def.level = Deflater.NO_COMPRESSION
+        gzipOutput << content
+        gzipOutput.close()
+        def compressed = bytes.toByteArray()
+
+        expect:
+        new String(compressed, 257, 5, "US-ASCII") == "ustar"
+
+        when:
+        createPacker(false).unpack(new TreeSet(), new ByteArrayInputStream(compressed), readOrigin)
+
+        then:
+        unpacked == content
+    }
+
+    def "parallel gzip compression can be unpacked by serial gzip packer"() {
+        def parallelPacker = new GZipTaskOutputPacker(tarPacker, executorFactory.create("compression", 2), 2)
+        def output = new ByteArrayOutputStream()
+
+        when:
+        parallelPacker.pack(new TreeSet(), [:], output, writeOrigin)
+        new GZipTaskOutputPacker(tarPacker).unpack(new TreeSet(), new ByteArrayInputStream(output.toByteArray()), readOrigin)
+
+        then:
+        unpacked == "output"
+
+        cleanup:
+        parallelPacker.stop()
+    }
+
+    private TaskOutputPacker createPacker(boolean preferSnappy) {
+        new CompressionDetectingTaskOutputPacker(new GZipTaskOutputPacker(tarPacker), new SnappyTaskOutputPacker(tarPacker), tarPacker, preferSnappy, buildCacheController)
+    }
+}
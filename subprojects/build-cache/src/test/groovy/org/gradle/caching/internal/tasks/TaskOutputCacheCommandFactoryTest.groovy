@@ -92,7 +92,8 @@ class TaskOutputCacheCommandFactoryTest extends Specification {
         def result = load.load(input)
 
         then:
-        1 * taskOutputsGenerationListener.beforeTaskOutputsGenerated()
+        1 * taskProperties.getLocalStateFiles() >> localStateFiles
+        1 * taskOutputsGenerationListener.beforeTaskOutputsGenerated([outputDir, outputFile, localStateFile])
         1 * originFactory.createReader(task)
 
         then:
@@ -112,9 +113,6 @@ class TaskOutputCacheCommandFactoryTest extends Specification {
             assert propertySnapshots["outputDir"].elements == [outputDir, outputDirFile]
         }
 
-        then:
-        1 * taskProperties.getLocalStateFiles() >> localStateFiles
-
         then:
         result.artifactEntryCount == 123
         result.metadata == originMetadata
@@ -134,7 +132,8 @@ class TaskOutputCacheCommandFactoryTest extends Specification {
         command.load(input)
 
         then:
-        1 * taskOutputsGenerationListener.beforeTaskOutputsGenerated()
+        1 * taskProperties.getLocalStateFiles() >> localStateFiles
+        1 * taskOutputsGenerationListener.beforeTaskOutputsGenerated([outputFile, localStateFile])
         1 * originFactory.createReader(task)
 
         then:
@@ -146,9 +145,6 @@ class TaskOutputCacheCommandFactoryTest extends Specification {
         then:
         1 * taskArtifactState.afterOutputsRemovedBeforeTask()
 
-        then:
-        1 * taskProperties.getLocalStateFiles() >> localStateFiles
-
         then:
         def ex = thrown Exception
         !(ex instanceof UnrecoverableTaskOutputUnpackingException)
@@ -169,7 +165,9 @@ class TaskOutputCacheCommandFactoryTest extends Specification {
         command.load(input)
 
         then:
-        1 * taskOutputsGenerationListener.beforeTaskOutputsGenerated()
+        1 * taskProperties.getLocalStateFiles() >> localStateFiles
+        1 * outputProperties.iterator() >> [].iterator()
+        1 * taskOutputsGenerationListener.beforeTaskOutputsGenerated([localStateFile])
         1 * originFactory.createReader(task)
 
         then:
@@ -180,9 +178,6 @@ class TaskOutputCacheCommandFactoryTest extends Specification {
         then:
         1 * outputProperties.iterator() >> { throw new RuntimeException("cleanup error") }
 
-        then:
-        1 * taskProperties.getLocalStateFiles() >> localStateFiles
-
         then:
         def ex = thrown UnrecoverableTaskOutputUnpackingException
         ex.cause.message == "unpacking error"
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream
+import org.gradle.api.Action
+import org.gradle.cache.PersistentCache
+import org.gradle.caching.BuildCacheKey
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+
+@CleanupTestDirectory
+class ContentAddressedBuildCacheServiceTest extends Specification {
+    @Rule TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
+    def cacheDir = temporaryFolder.createDir("cache")
+    def filesDir = cacheDir.file(ContentAddressedBuildCacheService.FILES_DIR)
+    def persistentCache = Mock(PersistentCache) {
+        getBaseDir() >> cacheDir
+        getReservedCacheFiles() >> []
+        withFileLock(_) >> { Runnable action -> action.run() }
+    }
+    def fileStore = new ContentAddressedFileStore(filesDir)
+    def service = new ContentAddressedBuildCacheService(fileStore, persistentCache, new DefaultBuildCacheTempFileStore(cacheDir), ".failed")
+
+    def sharedContent = bytes(5000, 1)
+
+    def "stores content shared between entries once"() {
+        def first = entry("first.jar": bytes(4000, 2), "shared.txt": sharedContent)
+        def second = entry("second.jar": bytes(3000, 3), "shared.txt": sharedContent)
+
+        when:
+        service.storeLocally(key("first"), first)
+        service.storeLocally(key("second"), second)
+
+        then:
+        storedFiles().size() == 3
+        storedFiles()*.length().sort() == [3000L, 4000L, 5000L]
+
+        and:
+        loadArchive("first") == uncompressed(first)
+        loadArchive("second") == uncompressed(second)
+    }
+
+    def "keeps small files in the manifest"() {
+        def entry = entry("small.txt": bytes(100, 1))
+
+        when:
+        service.storeLocally(key("entry"), entry)
+
+        then:
+        storedFiles().empty
+        loadArchive("entry") == uncompressed(entry)
+    }
+
+    def "stores entries that are not gzip compressed as they are"() {
+        def entry = temporaryFolder.file("entry.snappy")
+        entry.bytes = [0xff, 0x06, 0x00, 0x00] as byte[]
+
+        when:
+        service.storeLocally(key("entry"), entry)
+
+        then:
+        storedFiles().empty
+        cacheDir.file("entry").bytes == [0xff, 0x06, 0x00, 0x00] as byte[]
+        loadArchive("entry") == [0xff, 0x06, 0x00, 0x00] as byte[]
+    }
+
+    def "moves entry out of the way when stored content is missing"() {
+        service.storeLocally(key("entry"), entry("file.bin": sharedContent))
+        storedFiles()*.delete()
+
+        when:
+        loadArchive("entry")
+
+        then:
+        thrown(Exception)
+        !cacheDir.file("entry").exists()
+        cacheDir.file("entry.failed").exists()
+    }
+
+    def "cleanup removes least recently used entries and content no longer referenced"() {
+        def cleanup = new ContentAddressedBuildCacheCleanup(1, fileStore)
+        def oldContent = bytes(800 * 1024, 2)
+        def newContent = bytes(300 * 1024, 3)
+        service.storeLocally(key("old"), entry("old.bin": oldContent, "shared.bin": sharedContent))
+        service.storeLocally(key("new"), entry("new.bin": newContent, "shared.bin": sharedContent))
+        service.storeLocally(key("newest"), entry("newest.bin": newContent, "shared.bin": sharedContent))
+        cacheDir.file("old").lastModified = 1000
+        cacheDir.file("new").lastModified = 2000
+
+        when:
+        cleanup.clean(persistentCache)
+
+        then:
+        // The two newer entries share all their content, so only count once
+        !cacheDir.file("old").exists()
+        cacheDir.file("new").exists()
+        cacheDir.file("newest").exists()
+        storedFiles()*.length().sort() == [5000L, 300 * 1024L]
+    }
+
+    private List<File> storedFiles() {
+        filesDir.exists() ? filesDir.listFiles().collectMany { it.listFiles() as List<File> } : []
+    }
+
+    private byte[] loadArchive(String hashCode) {
+        byte[] loaded = null
+        service.loadLocally(key(hashCode), { File file -> loaded = file.bytes } as Action<File>)
+        return loaded
+    }
+
+    private TestFile entry(Map<String, byte[]> files) {
+        def file = temporaryFolder.file("entry-${UUID.randomUUID()}.tar.gz")
+        def tarOutput = new TarArchiveOutputStream(new GZIPOutputStream(new FileOutputStream(file)), "utf-8")
+        tarOutput.longFileMode = TarArchiveOutputStream.LONGFILE_POSIX
+        tarOutput.bigNumberMode = TarArchiveOutputStream.BIGNUMBER_POSIX
+        files.each { path, content ->
+            def entry = new TarArchiveEntry("tree-output/" + path)
+            entry.size = content.length
+            tarOutput.putArchiveEntry(entry)
+            tarOutput.write(content)
+            tarOutput.closeArchiveEntry()
+        }
+        tarOutput.close()
+        return file
+    }
+
+    private static byte[] uncompressed(File entry) {
+        new GZIPInputStream(new FileInputStream(entry)).withStream { it.bytes }
+    }
+
+    private static byte[] bytes(int size, long seed) {
+        def bytes = new byte[size]
+        new Random(seed).nextBytes(bytes)
+        return bytes
+    }
+
+    private BuildCacheKey key(String hashCode) {
+        Stub(BuildCacheKey) {
+            getHashCode() >> hashCode
+        }
+    }
+}
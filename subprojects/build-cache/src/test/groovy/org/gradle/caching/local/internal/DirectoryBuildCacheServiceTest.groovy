@@ -68,4 +68,46 @@ class DirectoryBuildCacheServiceTest extends Specification {
         cacheDir.listFiles() as List == []
         1 * key.getHashCode() >> hashCode
     }
+
+    def "stores entry by renaming it into the cache directory"() {
+        given:
+        _ * persistentCache.withFileLock(_) >> { Runnable action -> action.run() }
+        _ * key.getHashCode() >> "1234abcd"
+
+        when:
+        service.store(key, writer("abcd"))
+
+        then:
+        cacheDir.listFiles()*.name == ["1234abcd"]
+        new File(cacheDir, "1234abcd").text == "abcd"
+        0 * fileStore.move(_, _)
+    }
+
+    def "replaces existing entry"() {
+        given:
+        _ * persistentCache.withFileLock(_) >> { Runnable action -> action.run() }
+        _ * key.getHashCode() >> "1234abcd"
+        new File(cacheDir, "1234abcd").text = "old"
+
+        when:
+        service.store(key, writer("new"))
+
+        then:
+        cacheDir.listFiles()*.name == ["1234abcd"]
+        new File(cacheDir, "1234abcd").text == "new"
+    }
+
+    private static BuildCacheEntryWriter writer(String content) {
+        new BuildCacheEntryWriter() {
+            @Override
+            void writeTo(OutputStream output) throws IOException {
+                output << content
+            }
+
+            @Override
+            long getSize() {
+                return content.length()
+            }
+        }
+    }
 }
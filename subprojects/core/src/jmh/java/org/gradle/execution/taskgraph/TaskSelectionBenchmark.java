@@ -0,0 +1,196 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Compares selecting the next task by scanning the whole execution queue with selecting it from a {@link ReadyQueue}.
+ *
+ * <p>Each invocation executes a complete synthetic graph with a fixed number of tasks in flight, completing the oldest running task whenever
+ * all workers are busy or nothing can start.</p>
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class TaskSelectionBenchmark {
+    @Param({"1000", "10000"})
+    int taskCount;
+
+    @Param({"wide", "deep"})
+    String shape;
+
+    @Param({"32"})
+    int workers;
+
+    List<Node> nodes;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        nodes = new ArrayList<Node>(taskCount);
+        if ("wide".equals(shape)) {
+            // Independent tasks followed by a single lifecycle task depending on all of them
+            for (int i = 0; i < taskCount - 1; i++) {
+                nodes.add(new Node(Collections.<Node>emptyList()));
+            }
+            nodes.add(new Node(new ArrayList<Node>(nodes)));
+        } else if ("deep".equals(shape)) {
+            // One chain of dependent tasks per worker, in plan order one chain after another
+            int chainLength = taskCount / workers;
+            for (int chain = 0; chain < workers; chain++) {
+                Node previous = null;
+                for (int i = 0; i < chainLength; i++) {
+                    Node node = new Node(previous == null ? Collections.<Node>emptyList() : Collections.singletonList(previous));
+                    nodes.add(node);
+                    previous = node;
+                }
+            }
+        } else {
+            throw new IllegalArgumentException(shape);
+        }
+    }
+
+    @Benchmark
+    public int scanExecutionQueue() {
+        reset();
+        final List<Node> queue = new LinkedList<Node>(nodes);
+        final Set<Node> dependenciesCompleteCache = new HashSet<Node>();
+        return execute(new Selector() {
+            @Override
+            public Node selectNext() {
+                Iterator<Node> iterator = queue.iterator();
+                while (iterator.hasNext()) {
+                    Node node = iterator.next();
+                    if (dependenciesCompleteCache.contains(node) || node.allPredecessorsComplete()) {
+                        dependenciesCompleteCache.add(node);
+                        iterator.remove();
+                        return node;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public void completed(Node node) {
+            }
+        });
+    }
+
+    @Benchmark
+    public int selectFromReadyQueue() {
+        reset();
+        final ReadyQueue<Node> queue = new ReadyQueue<Node>(nodes, new Function<Node, Iterable<Node>>() {
+            @Override
+            public Iterable<Node> apply(Node node) {
+                return node.predecessors;
+            }
+        }, new Predicate<Node>() {
+            @Override
+            public boolean apply(Node node) {
+                return node.complete;
+            }
+        });
+        for (Node node : nodes) {
+            queue.offer(node);
+        }
+        return execute(new Selector() {
+            @Override
+            public Node selectNext() {
+                Iterator<Node> iterator = queue.iterator();
+                if (!iterator.hasNext()) {
+                    return null;
+                }
+                Node node = iterator.next();
+                iterator.remove();
+                return node;
+            }
+
+            @Override
+            public void completed(Node node) {
+                queue.completed(node);
+            }
+        });
+    }
+
+    private void reset() {
+        for (Node node : nodes) {
+            node.complete = false;
+        }
+    }
+
+    private int execute(Selector selector) {
+        Deque<Node> running = new ArrayDeque<Node>(workers);
+        int executed = 0;
+        while (executed < nodes.size()) {
+            Node next = running.size() < workers ? selector.selectNext() : null;
+            if (next != null) {
+                running.add(next);
+            } else {
+                Node finished = running.remove();
+                finished.complete = true;
+                selector.completed(finished);
+                executed++;
+            }
+        }
+        return executed;
+    }
+
+    private interface Selector {
+        Node selectNext();
+
+        void completed(Node node);
+    }
+
+    private static class Node {
+        private final List<Node> predecessors;
+        private boolean complete;
+
+        private Node(List<Node> predecessors) {
+            this.predecessors = predecessors;
+        }
+
+        private boolean allPredecessorsComplete() {
+            for (Node predecessor : predecessors) {
+                if (!predecessor.complete) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
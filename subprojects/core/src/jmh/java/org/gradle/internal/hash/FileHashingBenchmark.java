@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares hashing files as streams with hashing them through pooled direct buffers and memory mapping.
+ */
+@Fork(1)
+@Threads(4)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class FileHashingBenchmark {
+    @Param({"65536", "1048576", "67108864", "268435456"})
+    int fileSize;
+
+    @Param({"md5", "murmur3"})
+    String hashFunction;
+
+    File tempDir;
+    File file;
+    FileHasher streamHasher;
+    FileHasher bufferedHasher;
+    FileHasher mappedHasher;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        tempDir = File.createTempFile("file-hashing", "benchmark");
+        FileUtils.forceDelete(tempDir);
+        FileUtils.forceMkdir(tempDir);
+        file = new File(tempDir, "input.bin");
+        byte[] content = new byte[fileSize];
+        new Random(1234L).nextBytes(content);
+        FileUtils.writeByteArrayToFile(file, content);
+
+        ContentHasherFactory hasherFactory = "md5".equals(hashFunction) ? new DefaultContentHasherFactory() : new FastContentHasherFactory();
+        DirectBufferPool bufferPool = new DirectBufferPool(64 * 1024, 16);
+        streamHasher = new DefaultFileHasher(new DefaultStreamHasher(hasherFactory));
+        bufferedHasher = new ChannelFileHasher(streamHasher, hasherFactory, bufferPool, 0, Long.MAX_VALUE);
+        mappedHasher = new ChannelFileHasher(streamHasher, hasherFactory, bufferPool, 0, 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(tempDir);
+    }
+
+    @Benchmark
+    public void stream(Blackhole blackhole) {
+        blackhole.consume(streamHasher.hash(file));
+    }
+
+    @Benchmark
+    public void bufferedChannel(Blackhole blackhole) {
+        blackhole.consume(bufferedHasher.hash(file));
+    }
+
+    @Benchmark
+    public void mapped(Blackhole blackhole) {
+        blackhole.consume(mappedHasher.hash(file));
+    }
+}
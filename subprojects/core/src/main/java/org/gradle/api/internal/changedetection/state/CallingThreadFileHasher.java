@@ -0,0 +1,38 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.file.FileTreeElement;
+import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.hash.HashCode;
+
+import java.util.List;
+
+/**
+ * Hashes all files on the calling thread. Used where no worker leases are available to bound additional threads.
+ */
+public class CallingThreadFileHasher implements ParallelFileHasher {
+    @Override
+    public HashCode[] hash(FileHasher hasher, List<? extends FileTreeElement> files) {
+        HashCode[] hashes = new HashCode[files.size()];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = hasher.hash(files.get(i));
+        }
+        return hashes;
+    }
+}
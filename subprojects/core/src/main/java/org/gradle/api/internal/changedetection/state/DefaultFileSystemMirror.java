@@ -16,34 +16,54 @@
 
 package org.gradle.api.internal.changedetection.state;
 
+import com.google.common.base.Predicate;
+import org.gradle.api.file.RelativePath;
 import org.gradle.api.internal.tasks.execution.TaskOutputsGenerationListener;
 import org.gradle.initialization.RootBuildLifecycleListener;
 import org.gradle.internal.classpath.CachedJarFileStore;
+import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.file.DefaultFileHierarchySet;
 import org.gradle.internal.file.FileHierarchySet;
+import org.gradle.internal.file.PathTrie;
 
 import javax.annotation.Nullable;
 import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * See {@link DefaultFileSystemSnapshotter} for some more details
+ *
+ * When a {@link FileSystemMirrorWatcher} is available, the state for locations that have been watched since the start of the build, and that have not changed, is retained at the end of the build.
  */
-public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGenerationListener, RootBuildLifecycleListener {
-    // Maps from interned absolute path for a file to known details for the file.
-    private final Map<String, FileSnapshot> files = new ConcurrentHashMap<String, FileSnapshot>();
-    private final Map<String, FileSnapshot> cacheFiles = new ConcurrentHashMap<String, FileSnapshot>();
-    // Maps from interned absolute path for a directory to known details for the directory.
-    private final Map<String, FileTreeSnapshot> trees = new ConcurrentHashMap<String, FileTreeSnapshot>();
-    private final Map<String, FileTreeSnapshot> cacheTrees = new ConcurrentHashMap<String, FileTreeSnapshot>();
-    // Maps from interned absolute path to a snapshot
-    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<String, Snapshot>();
-    private final Map<String, Snapshot> cacheSnapshots = new ConcurrentHashMap<String, Snapshot>();
+public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGenerationListener, RootBuildLifecycleListener, FileSystemMirrorWatcher.Listener, Stoppable {
+    // Maps from absolute path for a file to known details for the file.
+    private final PathTrie<FileSnapshot> files = new PathTrie<FileSnapshot>();
+    private final PathTrie<FileSnapshot> cacheFiles = new PathTrie<FileSnapshot>();
+    // Maps from absolute path for a directory to known details for the directory.
+    private final PathTrie<FileTreeSnapshot> trees = new PathTrie<FileTreeSnapshot>();
+    private final PathTrie<FileTreeSnapshot> cacheTrees = new PathTrie<FileTreeSnapshot>();
+    // Maps from absolute path to a snapshot
+    private final PathTrie<Snapshot> snapshots = new PathTrie<Snapshot>();
+    private final PathTrie<Snapshot> cacheSnapshots = new PathTrie<Snapshot>();
     private final FileHierarchySet cachedDirectories;
+    @Nullable
+    private final FileSystemMirrorWatcher watcher;
+    // Locations that were watched at the start of the build
+    private volatile FileHierarchySet retainableLocations = DefaultFileHierarchySet.of();
+    // Locations that have changed since the start of the build
+    private final Set<String> changedLocations = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile boolean allChanged;
 
     public DefaultFileSystemMirror(List<CachedJarFileStore> fileStores) {
+        this(fileStores, null);
+    }
+
+    public DefaultFileSystemMirror(List<CachedJarFileStore> fileStores, @Nullable FileSystemMirrorWatcher watcher) {
+        this.watcher = watcher;
         FileHierarchySet cachedDirectories = DefaultFileHierarchySet.of();
         for (CachedJarFileStore fileStore : fileStores) {
             for (File file : fileStore.getFileStoreRoots()) {
@@ -56,12 +76,37 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
     @Nullable
     @Override
     public FileSnapshot getFile(String path) {
-        // Could potentially also look whether we have the details for an ancestor directory tree
         // Could possibly infer that the path refers to a directory, if we have details for a descendant path (and it's not a missing file)
         if (cachedDirectories.contains(path)) {
-            return cacheFiles.get(path);
+            return getFile(path, cacheFiles, cacheTrees);
         } else {
-            return files.get(path);
+            return getFile(path, files, trees);
+        }
+    }
+
+    @Nullable
+    private static FileSnapshot getFile(String path, PathTrie<FileSnapshot> files, PathTrie<FileTreeSnapshot> trees) {
+        FileSnapshot file = files.get(path);
+        if (file != null) {
+            return file;
+        }
+        // A path that is not in the tree of an ancestor directory may still exist, as trees leave out the default excludes, so only existing descendants are used
+        FileTreeSnapshot tree = trees.getClosestAncestorOrSelf(path);
+        if (!(tree instanceof DirectoryTreeDetails) || tree.getPath().equals(path)) {
+            return null;
+        }
+        FileSnapshot descendant = ((DirectoryTreeDetails) tree).getDescendant(path);
+        if (descendant == null) {
+            return null;
+        }
+        String name = new File(path).getName();
+        switch (descendant.getType()) {
+            case Directory:
+                return new DirectoryFileSnapshot(descendant.getPath(), new RelativePath(false, name), true);
+            case RegularFile:
+                return new RegularFileSnapshot(descendant.getPath(), new RelativePath(true, name), true, descendant.getContent());
+            default:
+                return null;
         }
     }
 
@@ -96,7 +141,7 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
     @Nullable
     @Override
     public FileTreeSnapshot getDirectoryTree(String path) {
-        // Could potentially also look whether we have the details for an ancestor directory tree
+        // Could potentially also derive the tree from the details of an ancestor directory tree
         // Could possibly also short-circuit some scanning if we have details for some sub trees
         if (cachedDirectories.contains(path)) {
             return cacheTrees.get(path);
@@ -123,18 +168,101 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
         snapshots.clear();
     }
 
+    @Override
+    public void beforeTaskOutputsGenerated(Iterable<File> affectedFiles) {
+        // Only throw away the state for the locations the task changes
+        for (File file : affectedFiles) {
+            invalidate(file.getAbsolutePath());
+        }
+    }
+
     @Override
     public void afterStart() {
+        if (watcher != null) {
+            allChanged = false;
+            changedLocations.clear();
+            // Wait for the events for changes made since the end of the previous build, so that the state for these locations is discarded before it is used
+            if (!watcher.sync()) {
+                clearRetainableState();
+                retainableLocations = DefaultFileHierarchySet.of();
+                return;
+            }
+            retainableLocations = watcher.getWatchedRoots();
+        }
     }
 
     @Override
     public void beforeComplete() {
-        // We throw away all state between builds
-        files.clear();
         cacheFiles.clear();
-        trees.clear();
         cacheTrees.clear();
-        snapshots.clear();
         cacheSnapshots.clear();
+        if (watcher == null || allChanged) {
+            // We throw away all state between builds
+            clearRetainableState();
+            return;
+        }
+
+        // Discard state that may have been calculated from old content of a location that changed during the build
+        for (String path : changedLocations) {
+            changed(path);
+        }
+        changedLocations.clear();
+
+        // Start watching the locations used by this build, so that their state can be retained at the end of the next build.
+        // State for locations that were not watched at the start of this build cannot be retained, as changes may have been missed.
+        Set<String> locations = new HashSet<String>(files.getPaths());
+        locations.addAll(trees.getPaths());
+        locations.addAll(snapshots.getPaths());
+        if (!watcher.watch(locations, this) || allChanged) {
+            clearRetainableState();
+            return;
+        }
+        final FileHierarchySet retainableLocations = this.retainableLocations;
+        Predicate<String> retainable = new Predicate<String>() {
+            @Override
+            public boolean apply(String path) {
+                return retainableLocations.contains(path);
+            }
+        };
+        files.retainAll(retainable);
+        trees.retainAll(retainable);
+        snapshots.retainAll(retainable);
+    }
+
+    @Override
+    public void changed(String path) {
+        changedLocations.add(path);
+        invalidate(path);
+    }
+
+    private void invalidate(String path) {
+        files.removeSelfAndDescendants(path);
+        // The state of a directory tree changes when the directory or any of its descendants change
+        trees.removeSelfAndDescendants(path);
+        trees.removeAncestors(path);
+        snapshots.removeSelfAndDescendants(path);
+        snapshots.removeAncestors(path);
+    }
+
+    @Override
+    public void allChanged() {
+        allChanged = true;
+        files.clear();
+        trees.clear();
+        snapshots.clear();
+    }
+
+    @Override
+    public void stop() {
+        if (watcher != null) {
+            watcher.stop();
+        }
+    }
+
+    private void clearRetainableState() {
+        files.clear();
+        trees.clear();
+        snapshots.clear();
+        changedLocations.clear();
     }
 }
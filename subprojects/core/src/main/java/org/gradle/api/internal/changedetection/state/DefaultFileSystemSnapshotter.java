@@ -45,6 +45,7 @@ import org.gradle.normalization.internal.InputNormalizationStrategy;
 import java.io.File;
 import java.util.Collection;
 import java.util.List;
+import java.util.ListIterator;
 
 /**
  * Responsible for snapshotting various aspects of the file system.
@@ -63,17 +64,21 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
     private final FileSystem fileSystem;
     private final DirectoryFileTreeFactory directoryFileTreeFactory;
     private final FileSystemMirror fileSystemMirror;
+    private final ParallelFileHasher parallelFileHasher;
+    private final DirectoryTreeJournal directoryTreeJournal;
     private final ProducerGuard<String> producingSelfSnapshots = ProducerGuard.striped();
     private final ProducerGuard<String> producingTrees = ProducerGuard.striped();
     private final ProducerGuard<String> producingAllSnapshots = ProducerGuard.striped();
     private final DefaultGenericFileCollectionSnapshotter snapshotter;
 
-    public DefaultFileSystemSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, FileSystemMirror fileSystemMirror) {
+    public DefaultFileSystemSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, FileSystemMirror fileSystemMirror, ParallelFileHasher parallelFileHasher, DirectoryTreeJournal directoryTreeJournal) {
         this.hasher = hasher;
         this.stringInterner = stringInterner;
         this.fileSystem = fileSystem;
         this.directoryFileTreeFactory = directoryFileTreeFactory;
         this.fileSystemMirror = fileSystemMirror;
+        this.parallelFileHasher = parallelFileHasher;
+        this.directoryTreeJournal = directoryTreeJournal;
         snapshotter = new DefaultGenericFileCollectionSnapshotter(stringInterner, directoryFileTreeFactory, this);
     }
 
@@ -188,10 +193,17 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
 
     private FileTreeSnapshot snapshotAndCache(DirectoryFileTree directoryTree) {
         String path = internPath(directoryTree.getDir());
-        List<FileSnapshot> elements = Lists.newArrayList();
-        directoryTree.visit(new FileVisitorImpl(elements));
-        ImmutableList<FileSnapshot> descendants = ImmutableList.copyOf(elements);
-        DirectoryTreeDetails snapshot = new DirectoryTreeDetails(path, descendants);
+        FileTreeSnapshot snapshot = directoryTreeJournal.load(path);
+        if (snapshot == null) {
+            // Stat the root before walking the tree, so that changes made during the walk invalidate the recorded tree
+            FileMetadataSnapshot rootStat = fileSystem.stat(directoryTree.getDir());
+            DeferredHashingFileVisitor visitor = new DeferredHashingFileVisitor();
+            directoryTree.visit(visitor);
+            snapshot = new DirectoryTreeDetails(path, ImmutableList.copyOf(visitor.getElements()));
+            if (rootStat.getType() == FileType.Directory) {
+                directoryTreeJournal.record(snapshot, rootStat.getLastModified(), visitor.getLastModifiedTimes(), visitor.getLengths());
+            }
+        }
         fileSystemMirror.putDirectory(snapshot);
         return snapshot;
     }
@@ -202,11 +214,20 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
      */
     private FileTreeSnapshot snapshotWithoutCaching(DirectoryFileTree directoryTree) {
         String path = directoryTree.getDir().getAbsolutePath();
-        List<FileSnapshot> elements = Lists.newArrayList();
-        directoryTree.visit(new FileVisitorImpl(elements));
+        List<FileSnapshot> elements = visitDirectoryTree(directoryTree);
         return new DirectoryTreeDetails(path, elements);
     }
 
+    /*
+     * Walks the tree on the calling thread and then hashes the files found in parallel.
+     * The details of the visited files remain valid after the walk for directory trees, which is not necessarily true for other trees.
+     */
+    private List<FileSnapshot> visitDirectoryTree(DirectoryFileTree directoryTree) {
+        DeferredHashingFileVisitor visitor = new DeferredHashingFileVisitor();
+        directoryTree.visit(visitor);
+        return visitor.getElements();
+    }
+
     private FileTreeSnapshot filterSnapshot(FileTreeSnapshot snapshot, PatternSet patterns) {
         if (patterns.isEmpty()) {
             return snapshot;
@@ -297,4 +318,55 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
             fileTreeElements.add(new RegularFileSnapshot(internPath(fileDetails.getFile()), fileDetails.getRelativePath(), false, fileSnapshot(fileDetails)));
         }
     }
+
+    private class DeferredHashingFileVisitor implements FileVisitor {
+        // Files are represented by null until they have been hashed
+        private final List<FileSnapshot> fileTreeElements = Lists.newArrayList();
+        private final List<FileVisitDetails> files = Lists.newArrayList();
+        private final List<FileVisitDetails> details = Lists.newArrayList();
+
+        @Override
+        public void visitDir(FileVisitDetails dirDetails) {
+            fileTreeElements.add(new DirectoryFileSnapshot(internPath(dirDetails.getFile()), dirDetails.getRelativePath(), false));
+            details.add(dirDetails);
+        }
+
+        @Override
+        public void visitFile(FileVisitDetails fileDetails) {
+            fileTreeElements.add(null);
+            files.add(fileDetails);
+            details.add(fileDetails);
+        }
+
+        long[] getLastModifiedTimes() {
+            long[] lastModifiedTimes = new long[details.size()];
+            for (int i = 0; i < lastModifiedTimes.length; i++) {
+                lastModifiedTimes[i] = details.get(i).getLastModified();
+            }
+            return lastModifiedTimes;
+        }
+
+        long[] getLengths() {
+            long[] lengths = new long[details.size()];
+            for (int i = 0; i < lengths.length; i++) {
+                FileVisitDetails element = details.get(i);
+                lengths[i] = element.isDirectory() ? 0 : element.getSize();
+            }
+            return lengths;
+        }
+
+        List<FileSnapshot> getElements() {
+            HashCode[] hashes = parallelFileHasher.hash(hasher, files);
+            int fileIndex = 0;
+            for (ListIterator<FileSnapshot> iterator = fileTreeElements.listIterator(); iterator.hasNext();) {
+                if (iterator.next() == null) {
+                    FileVisitDetails fileDetails = files.get(fileIndex);
+                    FileHashSnapshot content = new FileHashSnapshot(hashes[fileIndex], fileDetails.getLastModified());
+                    iterator.set(new RegularFileSnapshot(internPath(fileDetails.getFile()), fileDetails.getRelativePath(), false, content));
+                    fileIndex++;
+                }
+            }
+            return fileTreeElements;
+        }
+    }
 }
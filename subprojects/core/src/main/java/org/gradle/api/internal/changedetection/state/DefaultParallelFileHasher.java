@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.file.FileTreeElement;
+import org.gradle.concurrent.ParallelismConfiguration;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.ParallelismConfigurationListener;
+import org.gradle.internal.concurrent.ParallelismConfigurationManager;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.operations.BuildOperation;
+import org.gradle.internal.operations.BuildOperationQueue;
+import org.gradle.internal.operations.BuildOperationQueueFactory;
+import org.gradle.internal.progress.BuildOperationDescriptor;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hashes the files of a directory tree in batches on a {@link BuildOperationQueue}.
+ *
+ * <p>Each thread hashing a batch holds a worker lease, so hashing shares the maximum number of workers with the tasks of the build
+ * rather than adding threads on top of them. The calling thread hashes batches as well. Small trees are hashed on the calling thread only.</p>
+ */
+public class DefaultParallelFileHasher implements ParallelFileHasher, ParallelismConfigurationListener, Stoppable {
+    private static final int FILES_PER_BATCH = 32;
+
+    private final BuildOperationQueueFactory buildOperationQueueFactory;
+    private final ParallelismConfigurationManager parallelismConfigurationManager;
+    private final ManagedExecutor executor;
+
+    public DefaultParallelFileHasher(BuildOperationQueueFactory buildOperationQueueFactory, ExecutorFactory executorFactory, ParallelismConfigurationManager parallelismConfigurationManager) {
+        this.buildOperationQueueFactory = buildOperationQueueFactory;
+        this.parallelismConfigurationManager = parallelismConfigurationManager;
+        this.executor = executorFactory.create("File hashing", parallelismConfigurationManager.getParallelismConfiguration().getMaxWorkerCount());
+        parallelismConfigurationManager.addListener(this);
+    }
+
+    @Override
+    public HashCode[] hash(FileHasher hasher, List<? extends FileTreeElement> files) {
+        HashCode[] hashes = new HashCode[files.size()];
+        if (files.size() <= FILES_PER_BATCH) {
+            for (int i = 0; i < hashes.length; i++) {
+                hashes[i] = hasher.hash(files.get(i));
+            }
+            return hashes;
+        }
+        AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+        BuildOperationQueue<HashFilesBatch> queue = buildOperationQueueFactory.create(executor, new HashFilesWorker(hasher, files, hashes, failure));
+        for (int from = 0; from < hashes.length; from += FILES_PER_BATCH) {
+            queue.add(new HashFilesBatch(from, Math.min(hashes.length, from + FILES_PER_BATCH)));
+        }
+        queue.waitForCompletion();
+        if (failure.get() != null) {
+            // Rethrow the original exception rather than a wrapper created by the queue
+            throw failure.get();
+        }
+        return hashes;
+    }
+
+    @Override
+    public void onParallelismConfigurationChange(ParallelismConfiguration parallelismConfiguration) {
+        executor.setFixedPoolSize(parallelismConfiguration.getMaxWorkerCount());
+    }
+
+    @Override
+    public void stop() {
+        parallelismConfigurationManager.removeListener(this);
+        executor.stop();
+    }
+
+    private static class HashFilesBatch implements BuildOperation {
+        private final int from;
+        private final int to;
+
+        HashFilesBatch(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public BuildOperationDescriptor.Builder description() {
+            return BuildOperationDescriptor.displayName("Hash files " + from + " to " + to);
+        }
+    }
+
+    private static class HashFilesWorker implements BuildOperationQueue.QueueWorker<HashFilesBatch> {
+        private final FileHasher hasher;
+        private final List<? extends FileTreeElement> files;
+        private final HashCode[] hashes;
+        private final AtomicReference<RuntimeException> failure;
+
+        HashFilesWorker(FileHasher hasher, List<? extends FileTreeElement> files, HashCode[] hashes, AtomicReference<RuntimeException> failure) {
+            this.hasher = hasher;
+            this.files = files;
+            this.hashes = hashes;
+            this.failure = failure;
+        }
+
+        @Override
+        public void execute(HashFilesBatch batch) {
+            for (int i = batch.from; i < batch.to && failure.get() == null; i++) {
+                try {
+                    hashes[i] = hasher.hash(files.get(i));
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "file hashing";
+        }
+    }
+}
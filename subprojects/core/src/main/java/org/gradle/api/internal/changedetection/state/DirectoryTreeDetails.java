@@ -16,16 +16,28 @@
 
 package org.gradle.api.internal.changedetection.state;
 
+import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 
 /**
  * Represents the state of a directory tree.
  */
 public class DirectoryTreeDetails implements FileTreeSnapshot {
+    private static final Comparator<FileSnapshot> BY_PATH = new Comparator<FileSnapshot>() {
+        @Override
+        public int compare(FileSnapshot o1, FileSnapshot o2) {
+            return o1.getPath().compareTo(o2.getPath());
+        }
+    };
+
     // Interned path
     private final String path;
     // All elements, not just direct children
     private final Collection<FileSnapshot> descendants;
+    // The descendants sorted by absolute path, created when a descendant is first looked up
+    private volatile FileSnapshot[] descendantsByPath;
 
     public DirectoryTreeDetails(String path, Collection<FileSnapshot> descendants) {
         this.path = path;
@@ -42,6 +54,33 @@ public class DirectoryTreeDetails implements FileTreeSnapshot {
         return descendants;
     }
 
+    /**
+     * Returns the snapshot of the descendant with the given absolute path, or null when this tree does not contain the path.
+     */
+    @Nullable
+    public FileSnapshot getDescendant(String path) {
+        FileSnapshot[] descendantsByPath = this.descendantsByPath;
+        if (descendantsByPath == null) {
+            descendantsByPath = descendants.toArray(new FileSnapshot[0]);
+            Arrays.sort(descendantsByPath, BY_PATH);
+            this.descendantsByPath = descendantsByPath;
+        }
+        int low = 0;
+        int high = descendantsByPath.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int comparison = descendantsByPath[mid].getPath().compareTo(path);
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return descendantsByPath[mid];
+            }
+        }
+        return null;
+    }
+
     @Override
     public String toString() {
         return path + " (" + descendants.size() + " descendants)";
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import javax.annotation.Nullable;
+
+/**
+ * Retains snapshots of directory trees across builds, so that an unchanged tree does not need to be walked and hashed again.
+ */
+public interface DirectoryTreeJournal {
+    /**
+     * Returns the recorded snapshot for the directory tree at the given path, when the files of the tree still have the recorded state.
+     */
+    @Nullable
+    FileTreeSnapshot load(String path);
+
+    /**
+     * Records the given snapshot of a directory tree.
+     *
+     * @param tree the snapshot of the tree, without filters applied.
+     * @param rootLastModified the timestamp of the root directory, taken before the tree was walked.
+     * @param lastModified the timestamps of the descendants of the tree, in the order of the descendants.
+     * @param lengths the lengths of the descendants of the tree, in the order of the descendants. Not used for directories.
+     */
+    void record(FileTreeSnapshot tree, long rootLastModified, long[] lastModified, long[] lengths);
+}
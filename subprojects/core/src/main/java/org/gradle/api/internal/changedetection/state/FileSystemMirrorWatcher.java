@@ -0,0 +1,219 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.Action;
+import org.gradle.api.internal.file.FileSystemSubset;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.file.DefaultFileHierarchySet;
+import org.gradle.internal.file.FileHierarchySet;
+import org.gradle.internal.filewatch.FileWatcher;
+import org.gradle.internal.filewatch.FileWatcherEvent;
+import org.gradle.internal.filewatch.FileWatcherFactory;
+import org.gradle.internal.filewatch.FileWatcherListener;
+import org.gradle.internal.os.OperatingSystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the locations of the state that a {@link DefaultFileSystemMirror} retains between builds, and notifies the mirror of changes to these locations.
+ *
+ * Events are delivered asynchronously, so a change made immediately before a build starts may not have been received yet when the build starts.
+ * {@link #sync()} waits for these events, by writing a cookie file to a watched directory and waiting for the event for the cookie file.
+ * Watching is only used when requested, and not on macOS, where the JDK watch service polls the file system rather than receiving events from it, so that waiting for the cookie file takes seconds.
+ */
+public class FileSystemMirrorWatcher implements FileWatcherListener, Stoppable {
+    public static final String ENABLED_PROPERTY = "org.gradle.internal.mirror.watch";
+
+    private static final Logger LOGGER = Logging.getLogger(FileSystemMirrorWatcher.class);
+    private static final long SYNC_TIMEOUT_MILLIS = 2000;
+
+    private final FileWatcherFactory fileWatcherFactory;
+    private final File cookieDir;
+    // Maps from the name of a cookie file to the latch released by its event
+    private final Map<String, CountDownLatch> pendingCookies = new ConcurrentHashMap<String, CountDownLatch>();
+    private final Object lock = new Object();
+    private volatile Listener listener;
+    private volatile boolean failed;
+
+    // All fields below are guarded by lock
+    private FileWatcher fileWatcher;
+    private FileHierarchySet watchedRoots = DefaultFileHierarchySet.of();
+
+    public FileSystemMirrorWatcher(FileWatcherFactory fileWatcherFactory, File cookieDir) {
+        this.fileWatcherFactory = fileWatcherFactory;
+        this.cookieDir = cookieDir.getAbsoluteFile();
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(ENABLED_PROPERTY) && !OperatingSystem.current().isMacOsX();
+    }
+
+    /**
+     * Returns the locations that are currently watched. Every change to these locations will be reported to the listener.
+     */
+    public FileHierarchySet getWatchedRoots() {
+        synchronized (lock) {
+            if (failed || (fileWatcher != null && !fileWatcher.isRunning())) {
+                return DefaultFileHierarchySet.of();
+            }
+            return watchedRoots;
+        }
+    }
+
+    /**
+     * Starts watching the given files and directory trees, in addition to those already watched.
+     *
+     * @return true when the given locations are watched, false when watching has failed.
+     */
+    public boolean watch(Iterable<String> paths, Listener listener) {
+        synchronized (lock) {
+            this.listener = listener;
+            if (failed) {
+                return false;
+            }
+            FileSystemSubset.Builder builder = FileSystemSubset.builder();
+            FileHierarchySet roots = watchedRoots;
+            boolean added = false;
+            for (String path : paths) {
+                if (!roots.contains(path)) {
+                    File file = new File(path);
+                    builder.add(file);
+                    roots = roots.plus(file);
+                    added = true;
+                }
+            }
+            if (!added) {
+                return true;
+            }
+            try {
+                if (fileWatcher == null) {
+                    fileWatcher = fileWatcherFactory.watch(new Action<Throwable>() {
+                        @Override
+                        public void execute(Throwable failure) {
+                            failed(failure);
+                        }
+                    }, this);
+                    if (!cookieDir.isDirectory() && !cookieDir.mkdirs()) {
+                        throw new IOException(String.format("Could not create directory '%s'.", cookieDir));
+                    }
+                    builder.add(cookieDir);
+                }
+                fileWatcher.watch(builder.build());
+            } catch (Exception e) {
+                failed(e);
+                return false;
+            }
+            watchedRoots = roots;
+            return true;
+        }
+    }
+
+    /**
+     * Waits until the events for all changes made before this method was called have been delivered to the listener.
+     * The watch service delivers events in order, so once the event for a new cookie file has been received, the events for earlier changes have been received as well.
+     *
+     * @return true when the earlier events have been delivered, false when this could not be determined in time or watching has failed.
+     */
+    public boolean sync() {
+        synchronized (lock) {
+            if (fileWatcher == null) {
+                // Nothing is watched yet
+                return !failed;
+            }
+        }
+        String cookieName = "cookie-" + UUID.randomUUID();
+        File cookie = new File(cookieDir, cookieName);
+        CountDownLatch received = new CountDownLatch(1);
+        pendingCookies.put(cookieName, received);
+        try {
+            if (!cookie.createNewFile()) {
+                return false;
+            }
+            return received.await(SYNC_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS) && !failed;
+        } catch (IOException e) {
+            LOGGER.debug("Could not write file system watch cookie.", e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            pendingCookies.remove(cookieName);
+            cookie.delete();
+        }
+    }
+
+    @Override
+    public void onChange(FileWatcher watcher, FileWatcherEvent event) {
+        File file = event.getFile();
+        if (file != null && cookieDir.equals(file.getParentFile())) {
+            CountDownLatch received = pendingCookies.get(file.getName());
+            if (received != null) {
+                received.countDown();
+            }
+            return;
+        }
+        Listener listener = this.listener;
+        if (listener == null) {
+            return;
+        }
+        if (event.getType() == FileWatcherEvent.Type.UNDEFINED || file == null) {
+            listener.allChanged();
+        } else {
+            listener.changed(file.getAbsolutePath());
+        }
+    }
+
+    private void failed(Throwable failure) {
+        LOGGER.debug("Watching the file system failed, no longer retaining file system state between builds.", failure);
+        failed = true;
+        Listener listener = this.listener;
+        if (listener != null) {
+            listener.allChanged();
+        }
+    }
+
+    @Override
+    public void stop() {
+        synchronized (lock) {
+            if (fileWatcher != null) {
+                fileWatcher.stop();
+                fileWatcher = null;
+            }
+        }
+    }
+
+    public interface Listener {
+        /**
+         * Called when the given file or directory has been created, modified or deleted.
+         */
+        void changed(String path);
+
+        /**
+         * Called when changes may have been missed, for example because the events overflowed.
+         */
+        void allChanged();
+    }
+}
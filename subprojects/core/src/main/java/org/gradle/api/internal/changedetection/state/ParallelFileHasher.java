@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.file.FileTreeElement;
+import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.hash.HashCode;
+
+import java.util.List;
+
+/**
+ * Hashes the files of a directory tree, possibly using several threads.
+ *
+ * <p>Results are returned in the order of the given files, so the snapshots built from them keep the order in which the tree was visited.</p>
+ */
+public interface ParallelFileHasher {
+    /**
+     * Hashes the given files, returning the hashes in the same order as the files.
+     */
+    HashCode[] hash(FileHasher hasher, List<? extends FileTreeElement> files);
+}
@@ -0,0 +1,372 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import com.google.common.collect.ImmutableList;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.file.RelativePath;
+import org.gradle.api.internal.cache.StringInterner;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.cache.PersistentCache;
+import org.gradle.initialization.RootBuildLifecycleListener;
+import org.gradle.internal.file.FileMetadataSnapshot;
+import org.gradle.internal.file.FileType;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.nativeintegration.filesystem.FileSystem;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.HashCodeSerializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link DirectoryTreeJournal} that keeps the recorded directory trees in an append-only journal file in the Gradle user home, so that the trees survive the daemon.
+ *
+ * The journal is read lazily, the first time a tree is requested or recorded. Changes are appended to the journal at the end of each build.
+ * The journal is rewritten when it contains more stale entries than live ones, or when it cannot be read completely.
+ *
+ * A recorded tree is only used when the type, timestamp and length of each of its files and directories, as well as the timestamp of its root directory, are unchanged.
+ * A new or removed child of a directory changes the timestamp of the directory. File timestamps are subject to the same checks as those used by {@link CachingFileHasher}.
+ */
+public class PersistentDirectoryTreeJournal implements DirectoryTreeJournal, RootBuildLifecycleListener, Closeable {
+    public static final String ENABLED_PROPERTY = "org.gradle.internal.snapshot.journal";
+
+    private static final Logger LOGGER = Logging.getLogger(PersistentDirectoryTreeJournal.class);
+    private static final int VERSION = 1;
+    private static final byte TREE = 1;
+    private static final byte REMOVED = 2;
+    private static final long UNSTABLE_TIMESTAMP_WINDOW = 2000;
+    private static final int MIN_ENTRIES_TO_COMPACT = 100;
+    private static final HashCodeSerializer HASH_CODE_SERIALIZER = new HashCodeSerializer();
+
+    private final PersistentCache cache;
+    private final File journalFile;
+    private final FileSystem fileSystem;
+    private final StringInterner stringInterner;
+    private final FileTimeStampInspector timeStampInspector;
+    private final Object lock = new Object();
+
+    // All fields below are guarded by lock
+    private Map<String, TreeRecord> trees;
+    // Trees to append to the journal, where a null value marks a removed tree
+    private final Map<String, TreeRecord> pendingChanges = new LinkedHashMap<String, TreeRecord>();
+    private int journalEntries;
+    private boolean rewriteRequired;
+
+    public PersistentDirectoryTreeJournal(PersistentCache cache, FileSystem fileSystem, StringInterner stringInterner, FileTimeStampInspector timeStampInspector) {
+        this.cache = cache;
+        this.journalFile = new File(cache.getBaseDir(), "trees.bin");
+        this.fileSystem = fileSystem;
+        this.stringInterner = stringInterner;
+        this.timeStampInspector = timeStampInspector;
+    }
+
+    @Nullable
+    @Override
+    public FileTreeSnapshot load(String path) {
+        TreeRecord record;
+        synchronized (lock) {
+            ensureLoaded();
+            record = trees.get(path);
+        }
+        if (record == null) {
+            return null;
+        }
+        FileTreeSnapshot snapshot = validate(record);
+        if (snapshot == null) {
+            synchronized (lock) {
+                if (trees.get(path) == record) {
+                    trees.remove(path);
+                    pendingChanges.put(path, null);
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    @Override
+    public void record(FileTreeSnapshot tree, long rootLastModified, long[] lastModified, long[] lengths) {
+        // Don't record trees that may still be changing within the resolution of the file system timestamps
+        long unstableSince = System.currentTimeMillis() - UNSTABLE_TIMESTAMP_WINDOW;
+        if (rootLastModified >= unstableSince) {
+            return;
+        }
+        int count = tree.getDescendants().size();
+        String[] relativePaths = new String[count];
+        HashCode[] hashes = new HashCode[count];
+        int index = 0;
+        for (FileSnapshot descendant : tree.getDescendants()) {
+            if (lastModified[index] >= unstableSince) {
+                return;
+            }
+            switch (descendant.getType()) {
+                case Directory:
+                    break;
+                case RegularFile:
+                    hashes[index] = descendant.getContent().getContentMd5();
+                    break;
+                default:
+                    return;
+            }
+            relativePaths[index] = descendant.getRelativePath().getPathString();
+            index++;
+        }
+        TreeRecord record = new TreeRecord(tree.getPath(), rootLastModified, relativePaths, lastModified, lengths, hashes);
+        synchronized (lock) {
+            ensureLoaded();
+            trees.put(record.path, record);
+            pendingChanges.put(record.path, record);
+        }
+    }
+
+    @Override
+    public void afterStart() {
+    }
+
+    @Override
+    public void beforeComplete() {
+        flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            cache.close();
+        }
+    }
+
+    private void flush() {
+        synchronized (lock) {
+            if (trees == null || (pendingChanges.isEmpty() && !rewriteRequired)) {
+                return;
+            }
+            final boolean rewrite = rewriteRequired
+                || (journalEntries + pendingChanges.size() > MIN_ENTRIES_TO_COMPACT && journalEntries + pendingChanges.size() > 2 * trees.size());
+            cache.withFileLock(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (rewrite) {
+                            rewriteJournal();
+                        } else {
+                            appendToJournal();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Could not write file tree journal " + journalFile, e);
+                    }
+                }
+            });
+            pendingChanges.clear();
+            rewriteRequired = false;
+        }
+    }
+
+    private void ensureLoaded() {
+        if (trees != null) {
+            return;
+        }
+        trees = new HashMap<String, TreeRecord>();
+        cache.withFileLock(new Runnable() {
+            @Override
+            public void run() {
+                readJournal();
+            }
+        });
+    }
+
+    private void readJournal() {
+        if (!journalFile.isFile()) {
+            return;
+        }
+        try {
+            KryoBackedDecoder decoder = new KryoBackedDecoder(new BufferedInputStream(new FileInputStream(journalFile)));
+            try {
+                if (decoder.readSmallInt() != VERSION) {
+                    rewriteRequired = true;
+                    return;
+                }
+                while (true) {
+                    byte tag;
+                    try {
+                        tag = decoder.readByte();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    String path = decoder.readString();
+                    if (tag == TREE) {
+                        trees.put(path, readTree(path, decoder));
+                    } else if (tag == REMOVED) {
+                        trees.remove(path);
+                    } else {
+                        throw new IOException("Unexpected entry in file tree journal.");
+                    }
+                    journalEntries++;
+                }
+            } finally {
+                decoder.close();
+            }
+        } catch (Exception e) {
+            // Keep the entries read so far, and discard the rest
+            LOGGER.debug("Could not read file tree journal {}.", journalFile, e);
+            rewriteRequired = true;
+        }
+    }
+
+    private void appendToJournal() throws IOException {
+        boolean exists = journalFile.isFile();
+        KryoBackedEncoder encoder = new KryoBackedEncoder(new FileOutputStream(journalFile, true));
+        try {
+            if (!exists) {
+                encoder.writeSmallInt(VERSION);
+            }
+            for (Map.Entry<String, TreeRecord> entry : pendingChanges.entrySet()) {
+                writeEntry(entry.getKey(), entry.getValue(), encoder);
+            }
+        } finally {
+            encoder.close();
+        }
+        journalEntries += pendingChanges.size();
+    }
+
+    private void rewriteJournal() throws IOException {
+        File tempFile = new File(journalFile.getParentFile(), journalFile.getName() + ".tmp");
+        KryoBackedEncoder encoder = new KryoBackedEncoder(new FileOutputStream(tempFile));
+        try {
+            encoder.writeSmallInt(VERSION);
+            for (TreeRecord record : trees.values()) {
+                writeEntry(record.path, record, encoder);
+            }
+        } finally {
+            encoder.close();
+        }
+        Files.move(tempFile.toPath(), journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        journalEntries = trees.size();
+    }
+
+    private static void writeEntry(String path, @Nullable TreeRecord record, Encoder encoder) throws IOException {
+        if (record == null) {
+            encoder.writeByte(REMOVED);
+            encoder.writeString(path);
+            return;
+        }
+        encoder.writeByte(TREE);
+        encoder.writeString(path);
+        encoder.writeLong(record.lastModified);
+        int count = record.relativePaths.length;
+        encoder.writeSmallInt(count);
+        for (int i = 0; i < count; i++) {
+            encoder.writeString(record.relativePaths[i]);
+            encoder.writeLong(record.lastModifiedTimes[i]);
+            HashCode hash = record.hashes[i];
+            encoder.writeBoolean(hash != null);
+            if (hash != null) {
+                encoder.writeSmallLong(record.lengths[i]);
+                HASH_CODE_SERIALIZER.write(encoder, hash);
+            }
+        }
+    }
+
+    private static TreeRecord readTree(String path, Decoder decoder) throws IOException {
+        long lastModified = decoder.readLong();
+        int count = decoder.readSmallInt();
+        String[] relativePaths = new String[count];
+        long[] lastModifiedTimes = new long[count];
+        long[] lengths = new long[count];
+        HashCode[] hashes = new HashCode[count];
+        for (int i = 0; i < count; i++) {
+            relativePaths[i] = decoder.readString();
+            lastModifiedTimes[i] = decoder.readLong();
+            if (decoder.readBoolean()) {
+                lengths[i] = decoder.readSmallLong();
+                hashes[i] = HASH_CODE_SERIALIZER.read(decoder);
+            }
+        }
+        return new TreeRecord(path, lastModified, relativePaths, lastModifiedTimes, lengths, hashes);
+    }
+
+    @Nullable
+    private FileTreeSnapshot validate(TreeRecord record) {
+        File root = new File(record.path);
+        FileMetadataSnapshot rootStat = fileSystem.stat(root);
+        if (rootStat.getType() != FileType.Directory || rootStat.getLastModified() != record.lastModified) {
+            return null;
+        }
+        int count = record.relativePaths.length;
+        List<FileSnapshot> descendants = new ArrayList<FileSnapshot>(count);
+        for (int i = 0; i < count; i++) {
+            String relativePath = record.relativePaths[i];
+            File file = new File(root, relativePath);
+            FileMetadataSnapshot stat = fileSystem.stat(file);
+            long lastModified = record.lastModifiedTimes[i];
+            String path = stringInterner.intern(file.getAbsolutePath());
+            HashCode hash = record.hashes[i];
+            if (hash == null) {
+                if (stat.getType() != FileType.Directory || stat.getLastModified() != lastModified) {
+                    return null;
+                }
+                descendants.add(new DirectoryFileSnapshot(path, RelativePath.parse(false, relativePath), false));
+            } else {
+                if (stat.getType() != FileType.RegularFile
+                    || stat.getLastModified() != lastModified
+                    || stat.getLength() != record.lengths[i]
+                    || !timeStampInspector.timestampCanBeUsedToDetectFileChange(path, lastModified)) {
+                    return null;
+                }
+                descendants.add(new RegularFileSnapshot(path, RelativePath.parse(true, relativePath), false, new FileHashSnapshot(hash, lastModified)));
+            }
+        }
+        return new DirectoryTreeDetails(stringInterner.intern(record.path), ImmutableList.copyOf(descendants));
+    }
+
+    private static class TreeRecord {
+        final String path;
+        final long lastModified;
+        final String[] relativePaths;
+        final long[] lastModifiedTimes;
+        final long[] lengths;
+        // Null for directories
+        final HashCode[] hashes;
+
+        TreeRecord(String path, long lastModified, String[] relativePaths, long[] lastModifiedTimes, long[] lengths, HashCode[] hashes) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.relativePaths = relativePaths;
+            this.lastModifiedTimes = lastModifiedTimes;
+            this.lengths = lengths;
+            this.hashes = hashes;
+        }
+    }
+}
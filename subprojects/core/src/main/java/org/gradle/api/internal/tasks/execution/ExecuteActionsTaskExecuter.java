@@ -66,7 +66,12 @@ public class ExecuteActionsTaskExecuter implements TaskExecuter {
     public void execute(TaskInternal task, TaskStateInternal state, TaskExecutionContext context) {
         listener.beforeActions(task);
         if (!task.getTaskActions().isEmpty()) {
-            outputsGenerationListener.beforeTaskOutputsGenerated();
+            TaskProperties taskProperties = context.getTaskProperties();
+            if (taskProperties.hasDeclaredOutputs()) {
+                outputsGenerationListener.beforeTaskOutputsGenerated(taskProperties.getOutputFiles().plus(taskProperties.getLocalStateFiles()).plus(taskProperties.getDestroyableFiles()));
+            } else {
+                outputsGenerationListener.beforeTaskOutputsGenerated();
+            }
         }
         state.setExecuting(true);
         try {
@@ -16,10 +16,18 @@
 
 package org.gradle.api.internal.tasks.execution;
 
+import java.io.File;
+
 public interface TaskOutputsGenerationListener {
     /**
      * Invoked when the outputs for a task are about to be generated.
      * This is for example just before the task actions are executed or the outputs are loaded from the cache.
+     * Any file may change, for example because the task does not declare its outputs.
      */
     void beforeTaskOutputsGenerated();
+
+    /**
+     * Invoked when the outputs for a task are about to be generated, and only the given files and directories, and their descendants, are expected to change.
+     */
+    void beforeTaskOutputsGenerated(Iterable<File> affectedFiles);
 }
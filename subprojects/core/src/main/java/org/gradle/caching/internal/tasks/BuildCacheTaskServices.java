@@ -33,6 +33,7 @@ import org.gradle.caching.internal.controller.RootBuildCacheControllerRef;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginFactory;
 import org.gradle.initialization.buildsrc.BuildSourceBuilder;
 import org.gradle.internal.SystemProperties;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.nativeplatform.filesystem.FileSystem;
 import org.gradle.internal.operations.BuildOperationExecutor;
@@ -56,8 +57,29 @@ public class BuildCacheTaskServices {
 
     private static final Path ROOT_BUILD_SRC_PATH = Path.path(":" + BuildSourceBuilder.BUILD_SRC);
 
-    TaskOutputPacker createTaskResultPacker(FileSystem fileSystem, StreamHasher fileHasher, StringInterner stringInterner) {
-        return new GZipTaskOutputPacker(new TarTaskOutputPacker(fileSystem, fileHasher, stringInterner));
+    /**
+     * Selects how cache entries are compressed:
+     * <ul>
+     *     <li>{@code gzip}: on a single thread, the default.</li>
+     *     <li>{@code parallel-gzip}: on as many threads as there are processors, producing a standard gzip stream all the same.</li>
+     *     <li>{@code snappy}: with the faster Snappy codec, unless entries are pushed to a remote cache.</li>
+     * </ul>
+     * Entries compressed with either codec can be loaded regardless of this setting,
+     * but older versions of Gradle sharing the local cache cannot load Snappy compressed entries.
+     */
+    public static final String COMPRESSION_PROPERTY = "org.gradle.caching.internal.compression";
+
+    TaskOutputPacker createTaskResultPacker(FileSystem fileSystem, StreamHasher fileHasher, StringInterner stringInterner, BuildCacheController buildCacheController, ExecutorFactory executorFactory) {
+        TaskOutputPacker tarPacker = new TarTaskOutputPacker(fileSystem, fileHasher, stringInterner);
+        String compression = System.getProperty(COMPRESSION_PROPERTY, "gzip");
+        TaskOutputPacker gzipPacker;
+        if (compression.equals("parallel-gzip")) {
+            int parallelism = Runtime.getRuntime().availableProcessors();
+            gzipPacker = new GZipTaskOutputPacker(tarPacker, executorFactory.create("Build cache compression", parallelism), parallelism);
+        } else {
+            gzipPacker = new GZipTaskOutputPacker(tarPacker);
+        }
+        return new CompressionDetectingTaskOutputPacker(gzipPacker, new SnappyTaskOutputPacker(tarPacker), tarPacker, compression.equals("snappy"), buildCacheController);
     }
 
     TaskOutputOriginFactory createTaskOutputOriginFactory(
@@ -85,10 +107,11 @@ public class BuildCacheTaskServices {
         BuildOperationExecutor buildOperationExecutor,
         InstantiatorFactory instantiatorFactory,
         GradleInternal gradle,
-        RootBuildCacheControllerRef rootControllerRef
+        RootBuildCacheControllerRef rootControllerRef,
+        ExecutorFactory executorFactory
     ) {
         if (isRoot(gradle) || isRootBuildSrc(gradle) || isGradleBuildTaskRoot(rootControllerRef)) {
-            return doCreateBuildCacheController(serviceRegistry, buildCacheConfiguration, buildOperationExecutor, instantiatorFactory, gradle);
+            return doCreateBuildCacheController(serviceRegistry, buildCacheConfiguration, buildOperationExecutor, instantiatorFactory, gradle, executorFactory);
         } else {
             // must be an included build
             return rootControllerRef.getForNonRootBuild();
@@ -112,7 +135,7 @@ public class BuildCacheTaskServices {
         return gradle.getParent() == null;
     }
 
-    private BuildCacheController doCreateBuildCacheController(ServiceRegistry serviceRegistry, BuildCacheConfigurationInternal buildCacheConfiguration, BuildOperationExecutor buildOperationExecutor, InstantiatorFactory instantiatorFactory, GradleInternal gradle) {
+    private BuildCacheController doCreateBuildCacheController(ServiceRegistry serviceRegistry, BuildCacheConfigurationInternal buildCacheConfiguration, BuildOperationExecutor buildOperationExecutor, InstantiatorFactory instantiatorFactory, GradleInternal gradle, ExecutorFactory executorFactory) {
         StartParameter startParameter = gradle.getStartParameter();
         Path buildIdentityPath = gradle.getIdentityPath();
         File gradleUserHomeDir = gradle.getGradleUserHomeDir();
@@ -132,10 +155,12 @@ public class BuildCacheTaskServices {
             buildCacheMode,
             remoteAccessMode,
             logStackTraces,
-            instantiatorFactory.inject(serviceRegistry)
+            instantiatorFactory.inject(serviceRegistry),
+            executorFactory
         );
 
-        // Stop the controller early so that any logging emitted during stopping is visible.
+        // Stop the controller early so that any logging emitted during stopping is visible,
+        // and so that entries still being stored in the background are stored before the build completes.
         gradle.buildFinished(new Action<BuildResult>() {
             @Override
             public void execute(BuildResult result) {
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import org.gradle.api.internal.changedetection.state.FileContentSnapshot;
+import org.gradle.api.internal.tasks.ResolvedTaskOutputFilePropertySpec;
+import org.gradle.caching.internal.controller.BuildCacheController;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.Stoppable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedSet;
+
+/**
+ * Packs task output compressed with gzip or Snappy, and unpacks entries compressed with either.
+ * <p>
+ * The compression of an entry is identified by the start of the compressed stream,
+ * which is {@code 0x1f 0x8b} for gzip and {@code 0xff} for the stream identifier of the Snappy framing format.
+ * This keeps entries of the same {@link TaskOutputPacker#CACHE_ENTRY_FORMAT} unambiguous.
+ * Only entries that are not compressed are checked for the magic of their first tar header, as uncompressed archives are reassembled by a content-addressed local cache.
+ * Anything else is unpacked as gzip.
+ * <p>
+ * Other versions of Gradle only read gzip compressed entries, so Snappy is only used for builds that do not store entries in a remote cache.
+ */
+public class CompressionDetectingTaskOutputPacker implements TaskOutputPacker, Stoppable {
+    private static final int GZIP_MAGIC_1 = 0x1f;
+    private static final int GZIP_MAGIC_2 = 0x8b;
+    private static final int SNAPPY_STREAM_IDENTIFIER = 0xff;
+    private static final byte[] TAR_MAGIC = "ustar".getBytes(Charsets.US_ASCII);
+    private static final int TAR_MAGIC_OFFSET = 257;
+
+    private final TaskOutputPacker gzipPacker;
+    private final TaskOutputPacker snappyPacker;
+    private final TaskOutputPacker uncompressedPacker;
+    private final boolean preferSnappy;
+    private final BuildCacheController buildCacheController;
+
+    public CompressionDetectingTaskOutputPacker(TaskOutputPacker gzipPacker, TaskOutputPacker snappyPacker, TaskOutputPacker uncompressedPacker, boolean preferSnappy, BuildCacheController buildCacheController) {
+        this.gzipPacker = gzipPacker;
+        this.snappyPacker = snappyPacker;
+        this.uncompressedPacker = uncompressedPacker;
+        this.preferSnappy = preferSnappy;
+        this.buildCacheController = buildCacheController;
+    }
+
+    @Override
+    public PackResult pack(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, Map<String, Map<String, FileContentSnapshot>> outputSnapshots, OutputStream output, TaskOutputOriginWriter writeOrigin) throws IOException {
+        TaskOutputPacker packer = preferSnappy && !buildCacheController.canStoreRemotely() ? snappyPacker : gzipPacker;
+        return packer.pack(propertySpecs, outputSnapshots, output, writeOrigin);
+    }
+
+    @Override
+    public UnpackResult unpack(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, InputStream input, TaskOutputOriginReader readOrigin) throws IOException {
+        byte[] head = new byte[TAR_MAGIC_OFFSET + TAR_MAGIC.length];
+        PushbackInputStream pushbackInput = new PushbackInputStream(input, head.length);
+        int length = ByteStreams.read(pushbackInput, head, 0, head.length);
+        pushbackInput.unread(head, 0, length);
+        return selectPacker(head, length).unpack(propertySpecs, pushbackInput, readOrigin);
+    }
+
+    private TaskOutputPacker selectPacker(byte[] head, int length) {
+        if (length >= 2 && (head[0] & 0xff) == GZIP_MAGIC_1 && (head[1] & 0xff) == GZIP_MAGIC_2) {
+            return gzipPacker;
+        }
+        if (length > 0 && (head[0] & 0xff) == SNAPPY_STREAM_IDENTIFIER) {
+            return snappyPacker;
+        }
+        if (length == head.length && Arrays.equals(Arrays.copyOfRange(head, TAR_MAGIC_OFFSET, head.length), TAR_MAGIC)) {
+            return uncompressedPacker;
+        }
+        return gzipPacker;
+    }
+
+    @Override
+    public void stop() {
+        CompositeStoppable.stoppable(gzipPacker, snappyPacker).stop();
+    }
+}
@@ -22,7 +22,11 @@ import org.gradle.api.internal.changedetection.state.FileContentSnapshot;
 import org.gradle.api.internal.tasks.ResolvedTaskOutputFilePropertySpec;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.io.ParallelGZipOutputStream;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -33,17 +37,27 @@ import java.util.zip.GZIPOutputStream;
 
 /**
  * Adds compression and CRC32 checks to the packed task output.
+ * <p>
+ * When given an executor, the output is compressed on several threads. The result is a standard gzip stream either way.
  */
-public class GZipTaskOutputPacker implements TaskOutputPacker {
+public class GZipTaskOutputPacker implements TaskOutputPacker, Stoppable {
     private final TaskOutputPacker delegate;
+    private final ManagedExecutor compressionExecutor;
+    private final int parallelism;
 
     public GZipTaskOutputPacker(TaskOutputPacker delegate) {
+        this(delegate, null, 1);
+    }
+
+    public GZipTaskOutputPacker(TaskOutputPacker delegate, @Nullable ManagedExecutor compressionExecutor, int parallelism) {
         this.delegate = delegate;
+        this.compressionExecutor = compressionExecutor;
+        this.parallelism = parallelism;
     }
 
     @Override
     public PackResult pack(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, Map<String, Map<String, FileContentSnapshot>> outputFiles, OutputStream output, TaskOutputOriginWriter writeOrigin) throws IOException {
-        GZIPOutputStream gzipOutput = createGzipOutputStream(output);
+        OutputStream gzipOutput = createGzipOutputStream(output);
         try {
             return delegate.pack(propertySpecs, outputFiles, gzipOutput, writeOrigin);
         } finally {
@@ -51,9 +65,11 @@ public class GZipTaskOutputPacker implements TaskOutputPacker {
         }
     }
 
-    private GZIPOutputStream createGzipOutputStream(OutputStream output) {
+    private OutputStream createGzipOutputStream(OutputStream output) {
         try {
-            return new GZIPOutputStream(output);
+            return compressionExecutor == null
+                ? new GZIPOutputStream(output)
+                : new ParallelGZipOutputStream(output, compressionExecutor, parallelism);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -76,4 +92,11 @@ public class GZipTaskOutputPacker implements TaskOutputPacker {
             throw new UncheckedIOException(e);
         }
     }
+
+    @Override
+    public void stop() {
+        if (compressionExecutor != null) {
+            compressionExecutor.stop();
+        }
+    }
 }
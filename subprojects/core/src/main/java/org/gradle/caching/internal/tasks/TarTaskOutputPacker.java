@@ -110,6 +110,8 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
             tarOutput.setAddPaxHeadersForNonAsciiNames(true);
             packMetadata(writeOrigin, tarOutput);
             long entryCount = pack(propertySpecs, outputSnapshots, tarOutput);
+            // Compressing streams may only finish their work when closed, so make sure to report any failure to do so
+            tarOutput.close();
             return new PackResult(entryCount + 1);
         } finally {
             IOUtils.closeQuietly(tarOutput);
@@ -21,9 +21,11 @@ import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import org.apache.commons.io.FileUtils;
 import org.gradle.api.GradleException;
 import org.gradle.api.UncheckedIOException;
+import org.gradle.api.file.FileCollection;
 import org.gradle.api.file.RelativePath;
 import org.gradle.api.internal.TaskInternal;
 import org.gradle.api.internal.cache.StringInterner;
@@ -114,7 +116,8 @@ public class TaskOutputCacheCommandFactory {
 
         @Override
         public BuildCacheLoadCommand.Result<OriginTaskExecutionMetadata> load(InputStream input) {
-            taskOutputsGenerationListener.beforeTaskOutputsGenerated();
+            FileCollection localStateFiles = taskProperties.getLocalStateFiles();
+            taskOutputsGenerationListener.beforeTaskOutputsGenerated(getAffectedFiles(localStateFiles));
             final TaskOutputPacker.UnpackResult unpackResult;
             try {
                 unpackResult = packer.unpack(outputProperties, input, taskOutputOriginFactory.createReader(task));
@@ -130,7 +133,7 @@ public class TaskOutputCacheCommandFactory {
                 }
                 throw new GradleException(String.format("Failed to unpack outputs for %s", task), e);
             } finally {
-                cleanLocalState();
+                cleanLocalState(localStateFiles);
             }
             LOGGER.info("Unpacked output for {} from cache.", task);
 
@@ -187,8 +190,20 @@ public class TaskOutputCacheCommandFactory {
             taskArtifactState.snapshotAfterLoadedFromCache(propertySnapshotsBuilder.build(), originMetadata);
         }
 
-        private void cleanLocalState() {
-            for (File localStateFile : taskProperties.getLocalStateFiles()) {
+        private List<File> getAffectedFiles(FileCollection localStateFiles) {
+            List<File> affectedFiles = Lists.newArrayList();
+            for (ResolvedTaskOutputFilePropertySpec outputProperty : outputProperties) {
+                File outputFile = outputProperty.getOutputFile();
+                if (outputFile != null) {
+                    affectedFiles.add(outputFile);
+                }
+            }
+            Iterables.addAll(affectedFiles, localStateFiles);
+            return affectedFiles;
+        }
+
+        private void cleanLocalState(FileCollection localStateFiles) {
+            for (File localStateFile : localStateFiles) {
                 try {
                     remove(localStateFile);
                 } catch (IOException ex) {
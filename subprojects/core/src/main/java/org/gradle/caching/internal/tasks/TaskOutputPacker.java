@@ -37,6 +37,8 @@ public interface TaskOutputPacker {
     // - adding/removing properties to the origin metadata
     // - using a different format for the origin metadata
     // - any major changes of the layout of a cache entry
+    // Entries can also be compressed with Snappy, which is told apart from gzip by the first byte
+    // of the entry, see CompressionDetectingTaskOutputPacker. Such entries are never stored remotely.
     int CACHE_ENTRY_FORMAT = 1;
 
     PackResult pack(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, Map<String, Map<String, FileContentSnapshot>> outputSnapshots, OutputStream output, TaskOutputOriginWriter writeOrigin) throws IOException;
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+
+/**
+ * Calculates, for each node of an execution plan, the estimated time from the start of the node until all nodes that have to wait for it are finished.
+ * Executing the nodes with the longest such remaining time first keeps the critical path of the build busy.
+ *
+ * <p>Every node is counted with an execution time of at least one millisecond, so a node always has a strictly longer remaining time than the nodes
+ * ordered after it. Sorting by remaining time therefore never moves a node in front of a node it is ordered after.</p>
+ */
+public class CriticalPathCalculator {
+    private CriticalPathCalculator() {
+    }
+
+    /**
+     * Calculates the remaining time for each node.
+     *
+     * @param nodes The nodes in execution order, that is, each node comes after all the nodes it has to wait for.
+     * @param executionTimes The estimated execution time of each node in milliseconds.
+     * @param predecessors The nodes that a node has to wait for. Nodes that are not part of {@code nodes} or come later in the execution order are ignored.
+     */
+    public static <T> Map<T, Long> calculateRemainingTimes(List<T> nodes, Function<? super T, Long> executionTimes, Function<? super T, ? extends Iterable<? extends T>> predecessors) {
+        ListMultimap<T, T> successors = ArrayListMultimap.create();
+        for (T node : nodes) {
+            for (T predecessor : predecessors.apply(node)) {
+                successors.put(predecessor, node);
+            }
+        }
+
+        Map<T, Long> remainingTimes = Maps.newHashMapWithExpectedSize(nodes.size());
+        ListIterator<T> iterator = nodes.listIterator(nodes.size());
+        while (iterator.hasPrevious()) {
+            T node = iterator.previous();
+            long longestSuccessor = 0;
+            for (T successor : successors.get(node)) {
+                Long successorTime = remainingTimes.get(successor);
+                if (successorTime != null && successorTime > longestSuccessor) {
+                    longestSuccessor = successorTime;
+                }
+            }
+            remainingTimes.put(node, Math.max(1, executionTimes.apply(node)) + longestSuccessor);
+        }
+        return remainingTimes;
+    }
+
+    /**
+     * Sorts the given nodes so that the nodes with the longest remaining time come first. Nodes with the same remaining time keep their relative order.
+     */
+    public static <T> void sortByRemainingTime(List<T> nodes, final Map<T, Long> remainingTimes) {
+        Collections.sort(nodes, new Comparator<T>() {
+            @Override
+            public int compare(T left, T right) {
+                long leftTime = remainingTimes.get(left);
+                long rightTime = remainingTimes.get(right);
+                return leftTime < rightTime ? 1 : leftTime == rightTime ? 0 : -1;
+            }
+        });
+    }
+}
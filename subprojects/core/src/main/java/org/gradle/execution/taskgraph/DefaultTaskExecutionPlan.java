@@ -34,6 +34,7 @@ import org.gradle.api.internal.GradleInternal;
 import org.gradle.api.internal.TaskInternal;
 import org.gradle.api.internal.project.ProjectInternal;
 import org.gradle.api.internal.tasks.CachingTaskDependencyResolveContext;
+import org.gradle.api.internal.tasks.TaskExecutionOutcome;
 import org.gradle.api.internal.tasks.TaskContainerInternal;
 import org.gradle.api.specs.Spec;
 import org.gradle.api.specs.Specs;
@@ -51,6 +52,8 @@ import org.gradle.internal.resources.ResourceDeadlockException;
 import org.gradle.internal.resources.ResourceLock;
 import org.gradle.internal.resources.ResourceLockCoordinationService;
 import org.gradle.internal.resources.ResourceLockState;
+import org.gradle.internal.time.Time;
+import org.gradle.internal.time.Timer;
 import org.gradle.internal.work.WorkerLeaseRegistry.WorkerLease;
 import org.gradle.internal.work.WorkerLeaseService;
 import org.gradle.util.CollectionUtils;
@@ -70,7 +73,6 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -86,11 +88,20 @@ import static org.gradle.internal.resources.ResourceLockState.Disposition.*;
  * methods.
  */
 public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
+    /**
+     * When set to true, tasks on the longest remaining path, as estimated from the execution times of previous builds, are started first.
+     */
+    public static final String CRITICAL_PATH_SCHEDULING_PROPERTY = "org.gradle.internal.tasks.criticalpath";
+
     private final Set<TaskInfo> tasksInUnknownState = new LinkedHashSet<TaskInfo>();
     private final Set<TaskInfo> entryTasks = new LinkedHashSet<TaskInfo>();
+    // The index of the call to addToTaskGraph() that added each entry task, which is the order requested for the entry tasks
+    private final Map<TaskInfo, Integer> entryTaskGroups = Maps.newIdentityHashMap();
+    private int entryTaskGroupCount;
     private final TaskInfoFactory nodeFactory = new TaskInfoFactory();
     private final LinkedHashMap<Task, TaskInfo> executionPlan = new LinkedHashMap<Task, TaskInfo>();
-    private final List<TaskInfo> executionQueue = new LinkedList<TaskInfo>();
+    private final List<TaskInfo> executionQueue = new ArrayList<TaskInfo>();
+    private ReadyQueue<TaskInfo> readyQueue = ReadyQueue.empty();
     private final Map<Project, ResourceLock> projectLocks = Maps.newHashMap();
     private final List<Throwable> failures = new ArrayList<Throwable>();
     private Spec<? super Task> filter = Specs.satisfyAll();
@@ -103,18 +114,23 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     private final Map<TaskInfo, TaskMutationInfo> taskMutations = Maps.newIdentityHashMap();
     private final Map<File, String> canonicalizedFileCache = Maps.newIdentityHashMap();
     private final Map<Pair<TaskInfo, TaskInfo>, Boolean> reachableCache = Maps.newHashMap();
-    private final Set<TaskInfo> dependenciesCompleteCache = Sets.newHashSet();
     private final ResourceLockCoordinationService coordinationService;
     private final WorkerLeaseService workerLeaseService;
     private final GradleInternal gradle;
+    private final TaskExecutionTimeHistory executionTimeHistory;
+    private final boolean criticalPathScheduling;
+    private final Map<TaskInfo, Timer> runningTaskTimers = Maps.newIdentityHashMap();
+    private final Map<TaskInfo, Long> executionTimes = Maps.newIdentityHashMap();
 
     private boolean tasksCancelled;
 
-    public DefaultTaskExecutionPlan(BuildCancellationToken cancellationToken, ResourceLockCoordinationService coordinationService, WorkerLeaseService workerLeaseService, GradleInternal gradle) {
+    public DefaultTaskExecutionPlan(BuildCancellationToken cancellationToken, ResourceLockCoordinationService coordinationService, WorkerLeaseService workerLeaseService, GradleInternal gradle, TaskExecutionTimeHistory executionTimeHistory, boolean criticalPathScheduling) {
         this.cancellationToken = cancellationToken;
         this.coordinationService = coordinationService;
         this.workerLeaseService = workerLeaseService;
         this.gradle = gradle;
+        this.executionTimeHistory = executionTimeHistory;
+        this.criticalPathScheduling = criticalPathScheduling;
     }
 
     @Override
@@ -128,6 +144,7 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
 
     public void addToTaskGraph(Collection<? extends Task> tasks) {
         List<TaskInfo> queue = new ArrayList<TaskInfo>();
+        int entryTaskGroup = entryTaskGroupCount++;
 
         List<Task> sortedTasks = new ArrayList<Task>(tasks);
         Collections.sort(sortedTasks);
@@ -138,7 +155,9 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             } else if (filter.isSatisfiedBy(task)) {
                 node.require();
             }
-            entryTasks.add(node);
+            if (entryTasks.add(node)) {
+                entryTaskGroups.put(node, entryTaskGroup);
+            }
             queue.add(node);
         }
 
@@ -352,7 +371,94 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         }
         executionQueue.clear();
         executionQueue.addAll(executionPlan.values());
+        if (criticalPathScheduling) {
+            sortExecutionQueueByCriticalPath();
+        }
+        createReadyQueue();
+    }
+
+    private void createReadyQueue() {
+        readyQueue = new ReadyQueue<TaskInfo>(executionQueue, new Function<TaskInfo, Iterable<TaskInfo>>() {
+            @Override
+            public Iterable<TaskInfo> apply(TaskInfo taskInfo) {
+                return Iterables.concat(taskInfo.getDependencySuccessors(), taskInfo.getMustSuccessors());
+            }
+        }, new Predicate<TaskInfo>() {
+            @Override
+            public boolean apply(TaskInfo taskInfo) {
+                return taskInfo.isComplete();
+            }
+        });
+        for (TaskInfo taskInfo : executionQueue) {
+            if (taskInfo.isReady()) {
+                readyQueue.offer(taskInfo);
+            }
+        }
+    }
+
+    /**
+     * Moves the tasks with the longest estimated remaining path to the front of the execution queue. Tasks without history are assumed to take
+     * the average time of the tasks with history. When there is no history at all, the queue is left in plan order.
+     *
+     * <p>Tasks are only moved within the part of the queue planned for the entry tasks of the same {@link #addToTaskGraph(Collection)} call.
+     * There may be no edges between the entry tasks of different calls, but their order is still kept, so that for example {@code clean build}
+     * does not run tasks of {@code build} before {@code clean}.</p>
+     */
+    private void sortExecutionQueueByCriticalPath() {
+        final Map<TaskInfo, Long> estimatedExecutionTimes = Maps.newIdentityHashMap();
+        long totalExecutionTime = 0;
+        for (TaskInfo taskInfo : executionQueue) {
+            long estimatedExecutionTime = executionTimeHistory.getEstimatedExecutionTime(taskInfo.getTask());
+            if (estimatedExecutionTime != TaskExecutionTimeHistory.UNKNOWN) {
+                estimatedExecutionTimes.put(taskInfo, estimatedExecutionTime);
+                totalExecutionTime += estimatedExecutionTime;
+            }
+        }
+        if (estimatedExecutionTimes.isEmpty()) {
+            return;
+        }
 
+        final long defaultExecutionTime = totalExecutionTime / estimatedExecutionTimes.size();
+        Map<TaskInfo, Long> remainingTimes = CriticalPathCalculator.calculateRemainingTimes(new ArrayList<TaskInfo>(executionQueue), new Function<TaskInfo, Long>() {
+            @Override
+            public Long apply(TaskInfo taskInfo) {
+                Long estimatedExecutionTime = estimatedExecutionTimes.get(taskInfo);
+                return estimatedExecutionTime == null ? defaultExecutionTime : estimatedExecutionTime;
+            }
+        }, new Function<TaskInfo, Iterable<TaskInfo>>() {
+            @Override
+            public Iterable<TaskInfo> apply(TaskInfo taskInfo) {
+                return Iterables.concat(taskInfo.getDependencySuccessors(), taskInfo.getMustSuccessors(), taskInfo.getShouldSuccessors());
+            }
+        });
+        int segmentStart = 0;
+        List<Integer> segmentEnds = getEntryTaskSegmentEnds();
+        for (int segmentEnd : segmentEnds) {
+            CriticalPathCalculator.sortByRemainingTime(executionQueue.subList(segmentStart, segmentEnd), remainingTimes);
+            segmentStart = segmentEnd;
+        }
+    }
+
+    /**
+     * Splits the execution queue into segments, one for each group of entry tasks, and returns the end index of each segment.
+     * A task belongs to the group of the first entry task that comes at or after it in the queue. Tasks after the last entry task, such as finalizers,
+     * belong to the last segment.
+     */
+    private List<Integer> getEntryTaskSegmentEnds() {
+        List<Integer> segmentEnds = Lists.newArrayList();
+        int currentGroup = Integer.MAX_VALUE;
+        for (int i = executionQueue.size() - 1; i >= 0; i--) {
+            Integer group = entryTaskGroups.get(executionQueue.get(i));
+            if (group != null && group < currentGroup) {
+                if (currentGroup != Integer.MAX_VALUE) {
+                    segmentEnds.add(i + 1);
+                }
+                currentGroup = group;
+            }
+        }
+        Collections.reverse(segmentEnds);
+        segmentEnds.add(executionQueue.size());
+        return segmentEnds;
     }
 
     private TaskMutationInfo getOrCreateMutationsOf(TaskInfo taskInfo) {
@@ -504,15 +610,19 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             public ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
                 nodeFactory.clear();
                 entryTasks.clear();
+                entryTaskGroups.clear();
+                entryTaskGroupCount = 0;
                 executionPlan.clear();
                 executionQueue.clear();
+                readyQueue = ReadyQueue.empty();
                 projectLocks.clear();
                 failures.clear();
                 taskMutations.clear();
                 canonicalizedFileCache.clear();
                 reachableCache.clear();
-                dependenciesCompleteCache.clear();
                 runningTasks.clear();
+                runningTaskTimers.clear();
+                executionTimes.clear();
                 return FINISHED;
             }
         });
@@ -580,34 +690,39 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
 
     private TaskInfo selectNextTask(final WorkerLease workerLease) {
         final AtomicReference<TaskInfo> selected = new AtomicReference<TaskInfo>();
-        final Iterator<TaskInfo> iterator = executionQueue.iterator();
+        final Iterator<TaskInfo> iterator = readyQueue.iterator();
         while (iterator.hasNext()) {
             final TaskInfo taskInfo = iterator.next();
-            if (taskInfo.isReady() && allDependenciesComplete(taskInfo)) {
-                coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
-                    @Override
-                    public ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
-                        ResourceLock projectLock = getProjectLock(taskInfo);
-                        // TODO: convert output file checks to a resource lock
-                        if (!projectLock.tryLock() || !workerLease.tryLock() || !canRunWithCurrentlyExecutedTasks(taskInfo)) {
-                            return FAILED;
-                        }
-
-                        selected.set(taskInfo);
-                        if (taskInfo.allDependenciesSuccessful()) {
-                            recordTaskStarted(taskInfo);
-                            taskInfo.startExecution();
-                        } else {
-                            taskInfo.skipExecution();
-                        }
-                        iterator.remove();
-                        return FINISHED;
+            if (!taskInfo.isReady()) {
+                // Skipped or aborted since it was offered
+                iterator.remove();
+                continue;
+            }
+            coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
+                @Override
+                public ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
+                    ResourceLock projectLock = getProjectLock(taskInfo);
+                    // TODO: convert output file checks to a resource lock
+                    if (!projectLock.tryLock() || !workerLease.tryLock() || !canRunWithCurrentlyExecutedTasks(taskInfo)) {
+                        return FAILED;
                     }
-                });
 
-                if (selected.get() != null) {
-                    break;
+                    selected.set(taskInfo);
+                    // Remove before changing any state, as completing the task can make other tasks ready
+                    iterator.remove();
+                    if (taskInfo.allDependenciesSuccessful()) {
+                        recordTaskStarted(taskInfo);
+                        taskInfo.startExecution();
+                    } else {
+                        taskInfo.skipExecution();
+                        readyQueue.completed(taskInfo);
+                    }
+                    return FINISHED;
                 }
+            });
+
+            if (selected.get() != null) {
+                break;
             }
         }
         return selected.get();
@@ -626,19 +741,6 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         }
     }
 
-    private boolean allDependenciesComplete(TaskInfo taskInfo) {
-        if (dependenciesCompleteCache.contains(taskInfo)) {
-            return true;
-        }
-
-        boolean dependenciesComplete = taskInfo.allDependenciesComplete();
-        if (dependenciesComplete) {
-            dependenciesCompleteCache.add(taskInfo);
-        }
-
-        return dependenciesComplete;
-    }
-
     private boolean allProjectsLocked() {
         for (ResourceLock lock : projectLocks.values()) {
             if (!lock.isLocked()) {
@@ -819,6 +921,7 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
 
     private void recordTaskStarted(TaskInfo taskInfo) {
         runningTasks.add(taskInfo);
+        runningTaskTimers.put(taskInfo, Time.startTimer());
         TaskMutationInfo taskMutationInfo = taskMutations.get(taskInfo);
         taskMutationInfo.outputPaths.addAll(getOutputPaths(taskInfo));
         taskMutationInfo.destroyablePaths.addAll(getDestroyablePaths(taskInfo));
@@ -844,6 +947,7 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     }
 
     public void taskComplete(final TaskInfo taskInfo) {
+        final AtomicReference<Long> executionTime = new AtomicReference<Long>();
         coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
             @Override
             public ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
@@ -853,10 +957,47 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 }
 
                 taskInfo.finishExecution();
+                readyQueue.completed(taskInfo);
                 recordTaskCompleted(taskInfo);
+
+                Timer timer = runningTaskTimers.remove(taskInfo);
+                if (timer != null && taskInfo.isSuccessful()) {
+                    executionTimes.put(taskInfo, timer.getElapsedMillis());
+                    // Only the time of running the task actions is a useful estimate, up-to-date checks and loading from the cache take much less
+                    if (criticalPathScheduling && taskInfo.getTask().getState().getOutcome() == TaskExecutionOutcome.EXECUTED) {
+                        executionTime.set(executionTimes.get(taskInfo));
+                    }
+                }
                 return FINISHED;
             }
         });
+
+        // Record outside of the state lock, as this may need to lock the task history
+        if (executionTime.get() != null) {
+            executionTimeHistory.recordExecutionTime(taskInfo.getTask(), executionTime.get());
+        }
+    }
+
+    /**
+     * Writes the execution plan along with the measured execution times of its tasks, so that the build can be replayed by {@link TaskSchedulingSimulator}.
+     */
+    public void writeExecutionTrace(File traceFile) {
+        Map<TaskInfo, TaskSchedulingSimulator.Node> nodes = Maps.newIdentityHashMap();
+        List<TaskSchedulingSimulator.Node> trace = Lists.newArrayListWithCapacity(executionPlan.size());
+        for (TaskInfo taskInfo : executionPlan.values()) {
+            List<TaskSchedulingSimulator.Node> predecessors = Lists.newArrayList();
+            for (TaskInfo predecessor : Iterables.concat(taskInfo.getDependencySuccessors(), taskInfo.getMustSuccessors(), taskInfo.getShouldSuccessors())) {
+                TaskSchedulingSimulator.Node predecessorNode = nodes.get(predecessor);
+                if (predecessorNode != null) {
+                    predecessors.add(predecessorNode);
+                }
+            }
+            Long executionTime = executionTimes.get(taskInfo);
+            TaskSchedulingSimulator.Node node = new TaskSchedulingSimulator.Node(taskInfo.getTask().getIdentityPath().getPath(), executionTime == null ? 0 : executionTime, predecessors);
+            nodes.put(taskInfo, node);
+            trace.add(node);
+        }
+        new TaskSchedulingSimulator(trace).writeTrace(traceFile);
     }
 
     private void enforceFinalizerTasks(TaskInfo taskInfo) {
@@ -879,7 +1020,12 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 candidateNodes.addAll(node.getDependencySuccessors());
 
                 if (node.isMustNotRun() || node.isRequired()) {
+                    boolean wasComplete = node.isComplete();
                     node.enforceRun();
+                    if (wasComplete) {
+                        readyQueue.reopened(node);
+                    }
+                    readyQueue.offer(node);
                 }
             }
         }
@@ -920,12 +1066,14 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             // Allow currently executing and enforced tasks to complete, but skip everything else.
             if (taskInfo.isRequired()) {
                 taskInfo.skipExecution();
+                readyQueue.completed(taskInfo);
                 aborted = true;
             }
 
             // If abortAll is set, also stop enforced tasks.
             if (abortAll && taskInfo.isReady()) {
                 taskInfo.abortExecution();
+                readyQueue.completed(taskInfo);
                 aborted = true;
             }
         }
@@ -962,21 +1110,12 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     }
 
     private boolean allTasksComplete() {
-        for (TaskInfo taskInfo : executionPlan.values()) {
-            if (!taskInfo.isComplete()) {
-                return false;
-            }
-        }
-        return true;
+        return readyQueue.getIncompleteCount() == 0;
     }
 
     private boolean workRemaining() {
-        for (TaskInfo taskInfo : executionQueue) {
-            if (!taskInfo.isComplete()) {
-                return true;
-            }
-        }
-        return false;
+        // Every incomplete task that is not running is still waiting to be selected
+        return readyQueue.getIncompleteCount() > runningTasks.size();
     }
 
     private static class GraphEdge {
@@ -20,6 +20,7 @@ import com.google.common.collect.Sets;
 import groovy.lang.Closure;
 import org.gradle.api.Action;
 import org.gradle.api.Task;
+import org.gradle.api.UncheckedIOException;
 import org.gradle.api.execution.TaskExecutionAdapter;
 import org.gradle.api.execution.TaskExecutionGraph;
 import org.gradle.api.execution.TaskExecutionGraphListener;
@@ -55,6 +56,7 @@ import org.gradle.listener.ClosureBackedMethodInvocationDispatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
@@ -62,6 +64,11 @@ import java.util.Set;
 public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultTaskGraphExecuter.class);
 
+    /**
+     * When set to a file path, the executed task graph and the execution times of its tasks are written to that file for {@link TaskSchedulingSimulator}.
+     */
+    public static final String EXECUTION_TRACE_PROPERTY = "org.gradle.internal.tasks.trace";
+
     private enum TaskGraphState {
         EMPTY, DIRTY, POPULATED
     }
@@ -78,13 +85,13 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
     private final Set<Task> requestedTasks = Sets.newTreeSet();
     private Spec<? super Task> filter = Specs.SATISFIES_ALL;
 
-    public DefaultTaskGraphExecuter(ListenerManager listenerManager, TaskPlanExecutor taskPlanExecutor, Factory<? extends TaskExecuter> taskExecuter, BuildCancellationToken cancellationToken, BuildOperationExecutor buildOperationExecutor, WorkerLeaseService workerLeaseService, ResourceLockCoordinationService coordinationService, GradleInternal gradleInternal) {
+    public DefaultTaskGraphExecuter(ListenerManager listenerManager, TaskPlanExecutor taskPlanExecutor, Factory<? extends TaskExecuter> taskExecuter, BuildCancellationToken cancellationToken, BuildOperationExecutor buildOperationExecutor, WorkerLeaseService workerLeaseService, ResourceLockCoordinationService coordinationService, GradleInternal gradleInternal, TaskExecutionTimeHistory executionTimeHistory) {
         this.taskPlanExecutor = taskPlanExecutor;
         this.taskExecuter = taskExecuter;
         this.buildOperationExecutor = buildOperationExecutor;
         graphListeners = listenerManager.createAnonymousBroadcaster(TaskExecutionGraphListener.class);
         taskListeners = listenerManager.createAnonymousBroadcaster(TaskExecutionListener.class);
-        taskExecutionPlan = new DefaultTaskExecutionPlan(cancellationToken, coordinationService, workerLeaseService, gradleInternal);
+        taskExecutionPlan = new DefaultTaskExecutionPlan(cancellationToken, coordinationService, workerLeaseService, gradleInternal, executionTimeHistory, Boolean.getBoolean(DefaultTaskExecutionPlan.CRITICAL_PATH_SCHEDULING_PROPERTY));
     }
 
     public void useFailureHandler(TaskFailureHandler handler) {
@@ -128,10 +135,23 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
             taskPlanExecutor.process(taskExecutionPlan, new EventFiringTaskWorker(taskExecuter.create(), buildOperationExecutor.getCurrentOperation()));
             LOGGER.debug("Timing: Executing the DAG took " + clock.getElapsed());
         } finally {
+            writeExecutionTraceIfRequested();
             taskExecutionPlan.clear();
         }
     }
 
+    private void writeExecutionTraceIfRequested() {
+        String traceFile = System.getProperty(EXECUTION_TRACE_PROPERTY);
+        if (traceFile == null) {
+            return;
+        }
+        try {
+            taskExecutionPlan.writeExecutionTrace(new File(traceFile));
+        } catch (UncheckedIOException e) {
+            LOGGER.warn("Could not write task execution trace.", e);
+        }
+    }
+
     public void addTaskExecutionGraphListener(TaskExecutionGraphListener listener) {
         graphListeners.add(listener);
     }
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.changedetection.state.TaskHistoryStore;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.internal.Factory;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+
+/**
+ * Stores task execution times in the task history store, keyed by the identity path of the task.
+ *
+ * <p>The estimate is a moving average that gives the most recent execution the same weight as all earlier executions combined, so it follows
+ * the task when it becomes faster or slower without jumping around on a single outlier.</p>
+ *
+ * <p>The task history store is only opened on first use, as it is not available yet when the task graph is created.</p>
+ */
+public class PersistentTaskExecutionTimeHistory implements TaskExecutionTimeHistory {
+    private final Factory<? extends TaskHistoryStore> cacheAccess;
+    private PersistentIndexedCache<String, Long> executionTimes;
+
+    public PersistentTaskExecutionTimeHistory(Factory<? extends TaskHistoryStore> cacheAccess) {
+        this.cacheAccess = cacheAccess;
+    }
+
+    @Override
+    public long getEstimatedExecutionTime(TaskInternal task) {
+        Long executionTime = getExecutionTimes().get(task.getIdentityPath().getPath());
+        return executionTime == null ? UNKNOWN : executionTime;
+    }
+
+    @Override
+    public void recordExecutionTime(TaskInternal task, long executionTimeMillis) {
+        PersistentIndexedCache<String, Long> executionTimes = getExecutionTimes();
+        String key = task.getIdentityPath().getPath();
+        Long previous = executionTimes.get(key);
+        executionTimes.put(key, previous == null ? executionTimeMillis : (previous + executionTimeMillis) / 2);
+    }
+
+    private synchronized PersistentIndexedCache<String, Long> getExecutionTimes() {
+        if (executionTimes == null) {
+            executionTimes = cacheAccess.create().createCache("taskExecutionTimes", String.class, BaseSerializerFactory.LONG_SERIALIZER, 10000, false);
+        }
+        return executionTimes;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.Maps;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Tracks, for each node of an execution plan, how many of the nodes it has to wait for are not complete yet. Nodes that have been offered
+ * for execution become available from {@link #iterator()} as soon as this count drops to zero, in the order of the plan.
+ *
+ * <p>This means finding the next node to execute only has to look at the nodes that can actually start, and each completed node only
+ * touches the nodes waiting for it. The ready nodes are kept as a bit set over plan positions, so adding and removing them is constant time.
+ * The queue is not thread-safe; the execution plan only uses it while holding its state lock.</p>
+ */
+public class ReadyQueue<T> implements Iterable<T> {
+    private final Map<T, Entry<T>> entries;
+    private final List<Entry<T>> entriesByPosition;
+    private final BitSet readyPositions;
+    private int incompleteCount;
+
+    /**
+     * Creates a queue for the given nodes, none of which is offered yet.
+     *
+     * @param nodes The nodes in the order in which they should be executed when more than one can start.
+     * @param predecessors The nodes a node has to wait for.
+     * @param isComplete Whether a node is complete at the time the queue is created.
+     */
+    public ReadyQueue(List<T> nodes, Function<? super T, ? extends Iterable<? extends T>> predecessors, Predicate<? super T> isComplete) {
+        entries = Maps.newIdentityHashMap();
+        entriesByPosition = new ArrayList<Entry<T>>(nodes.size());
+        readyPositions = new BitSet(nodes.size());
+        for (T node : nodes) {
+            Entry<T> entry = new Entry<T>(node, entriesByPosition.size());
+            entries.put(node, entry);
+            entriesByPosition.add(entry);
+        }
+        for (Entry<T> entry : entriesByPosition) {
+            if (!isComplete.apply(entry.node)) {
+                incompleteCount++;
+            }
+            for (T predecessor : predecessors.apply(entry.node)) {
+                Entry<T> predecessorEntry = entries.get(predecessor);
+                if (predecessorEntry != null) {
+                    predecessorEntry.addDependent(entry);
+                }
+                if (!isComplete.apply(predecessor)) {
+                    entry.incompletePredecessors++;
+                }
+            }
+        }
+    }
+
+    public static <T> ReadyQueue<T> empty() {
+        return new ReadyQueue<T>(Collections.<T>emptyList(), Functions.constant(Collections.<T>emptyList()), Predicates.alwaysTrue());
+    }
+
+    /**
+     * Marks the given node as waiting to be executed. Does nothing when the node has already been offered and not yet been removed from the queue.
+     */
+    public void offer(T node) {
+        Entry<T> entry = entries.get(node);
+        if (entry == null || entry.offered) {
+            return;
+        }
+        entry.offered = true;
+        if (entry.incompletePredecessors == 0) {
+            readyPositions.set(entry.position);
+        }
+    }
+
+    /**
+     * Notifies the queue that the given node became complete.
+     */
+    public void completed(T node) {
+        Entry<T> entry = entries.get(node);
+        if (entry == null) {
+            return;
+        }
+        incompleteCount--;
+        for (Entry<T> dependent : entry.dependents) {
+            dependent.incompletePredecessors--;
+            if (dependent.incompletePredecessors == 0 && dependent.offered) {
+                readyPositions.set(dependent.position);
+            }
+        }
+    }
+
+    /**
+     * Notifies the queue that the given node, which was complete, has to be executed after all.
+     */
+    public void reopened(T node) {
+        Entry<T> entry = entries.get(node);
+        if (entry == null) {
+            return;
+        }
+        incompleteCount++;
+        for (Entry<T> dependent : entry.dependents) {
+            dependent.incompletePredecessors++;
+            readyPositions.clear(dependent.position);
+        }
+    }
+
+    /**
+     * Returns the number of nodes that are not complete.
+     */
+    public int getIncompleteCount() {
+        return incompleteCount;
+    }
+
+    /**
+     * Iterates over the offered nodes that do not wait for any incomplete node, in plan order. Removing a node from the iterator withdraws its offer.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int current = -1;
+            private int next = readyPositions.nextSetBit(0);
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public T next() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                current = next;
+                next = readyPositions.nextSetBit(current + 1);
+                return entriesByPosition.get(current).node;
+            }
+
+            @Override
+            public void remove() {
+                if (current < 0 || !readyPositions.get(current)) {
+                    throw new IllegalStateException();
+                }
+                readyPositions.clear(current);
+                entriesByPosition.get(current).offered = false;
+            }
+        };
+    }
+
+    private static class Entry<T> {
+        private final T node;
+        private final int position;
+        private List<Entry<T>> dependents = Collections.emptyList();
+        private int incompletePredecessors;
+        private boolean offered;
+
+        private Entry(T node, int position) {
+            this.node = node;
+            this.position = position;
+        }
+
+        private void addDependent(Entry<T> dependent) {
+            if (dependents.isEmpty()) {
+                dependents = new ArrayList<Entry<T>>();
+            }
+            dependents.add(dependent);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import org.gradle.api.internal.TaskInternal;
+
+/**
+ * Keeps track of how long tasks took to execute in previous builds.
+ */
+public interface TaskExecutionTimeHistory {
+    /**
+     * Returned by {@link #getEstimatedExecutionTime(TaskInternal)} when nothing is known about the task.
+     */
+    long UNKNOWN = -1;
+
+    /**
+     * Returns the estimated execution time of the given task in milliseconds, or {@link #UNKNOWN} when the task has not been executed before.
+     */
+    long getEstimatedExecutionTime(TaskInternal task);
+
+    /**
+     * Records the time in milliseconds it took to execute the given task.
+     */
+    void recordExecutionTime(TaskInternal task, long executionTimeMillis);
+}
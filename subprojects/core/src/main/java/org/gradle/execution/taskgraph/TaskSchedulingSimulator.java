@@ -0,0 +1,255 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import com.google.common.base.Function;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.gradle.api.UncheckedIOException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Replays a recorded execution trace of a build against a given number of workers, to estimate the wall-clock time of the build
+ * with and without critical path scheduling.
+ *
+ * <p>A trace contains one line per task, in execution plan order. Each line holds the task path, the execution time in milliseconds and the
+ * paths of the tasks that have to complete before the task can start, separated by tabs:</p>
+ *
+ * <pre>
+ * :compileJava    1200
+ * :test    5300    :compileJava,:processResources
+ * </pre>
+ *
+ * <p>The simulation ignores everything but the ordering constraints between tasks: workers pick the first task in the queue whose predecessors
+ * are complete, exactly like {@link DefaultTaskExecutionPlan} does.</p>
+ */
+public class TaskSchedulingSimulator {
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    private static final char SEPARATOR = '\t';
+    private static final char PREDECESSOR_SEPARATOR = ',';
+
+    private final List<Node> nodes;
+
+    public TaskSchedulingSimulator(List<Node> nodes) {
+        this.nodes = nodes;
+    }
+
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Simulates executing the trace in execution plan order.
+     *
+     * @return the wall-clock time of the simulated build in milliseconds.
+     */
+    public long simulateInPlanOrder(int maxWorkers) {
+        return simulate(new ArrayList<Node>(nodes), maxWorkers);
+    }
+
+    /**
+     * Simulates executing the trace with the tasks on the longest remaining path first.
+     *
+     * @return the wall-clock time of the simulated build in milliseconds.
+     */
+    public long simulateCriticalPathFirst(int maxWorkers) {
+        List<Node> queue = new ArrayList<Node>(nodes);
+        Map<Node, Long> remainingTimes = CriticalPathCalculator.calculateRemainingTimes(nodes, new Function<Node, Long>() {
+            @Override
+            public Long apply(Node node) {
+                return node.getExecutionTime();
+            }
+        }, new Function<Node, List<Node>>() {
+            @Override
+            public List<Node> apply(Node node) {
+                return node.getPredecessors();
+            }
+        });
+        CriticalPathCalculator.sortByRemainingTime(queue, remainingTimes);
+        return simulate(queue, maxWorkers);
+    }
+
+    private static long simulate(List<Node> queue, int maxWorkers) {
+        if (maxWorkers < 1) {
+            throw new IllegalArgumentException("At least one worker is required.");
+        }
+        Set<Node> complete = Sets.newHashSet();
+        PriorityQueue<RunningNode> running = new PriorityQueue<RunningNode>();
+        long currentTime = 0;
+        while (!queue.isEmpty() || !running.isEmpty()) {
+            Iterator<Node> iterator = queue.iterator();
+            while (running.size() < maxWorkers && iterator.hasNext()) {
+                Node node = iterator.next();
+                if (complete.containsAll(node.getPredecessors())) {
+                    iterator.remove();
+                    running.add(new RunningNode(node, currentTime + node.getExecutionTime()));
+                }
+            }
+            if (running.isEmpty()) {
+                throw new IllegalStateException("Cannot schedule " + queue.get(0).getPath() + " as some of its predecessors are not part of the trace or are ordered after it.");
+            }
+            currentTime = running.peek().finishTime;
+            while (!running.isEmpty() && running.peek().finishTime == currentTime) {
+                complete.add(running.poll().node);
+            }
+        }
+        return currentTime;
+    }
+
+    public static TaskSchedulingSimulator readTrace(File traceFile) {
+        try {
+            Reader reader = new InputStreamReader(new FileInputStream(traceFile), CHARSET);
+            try {
+                return readTrace(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read task execution trace from " + traceFile, e);
+        }
+    }
+
+    public static TaskSchedulingSimulator readTrace(Reader reader) throws IOException {
+        BufferedReader lineReader = new BufferedReader(reader);
+        Map<String, Node> nodesByPath = Maps.newHashMap();
+        List<Node> nodes = Lists.newArrayList();
+        String line;
+        while ((line = lineReader.readLine()) != null) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            List<String> fields = Splitter.on(SEPARATOR).splitToList(line);
+            if (fields.size() < 2) {
+                throw new IllegalArgumentException("Invalid task execution trace entry: " + line);
+            }
+            List<Node> predecessors = new ArrayList<Node>();
+            if (fields.size() > 2) {
+                for (String predecessorPath : Splitter.on(PREDECESSOR_SEPARATOR).omitEmptyStrings().split(fields.get(2))) {
+                    Node predecessor = nodesByPath.get(predecessorPath);
+                    if (predecessor == null) {
+                        throw new IllegalArgumentException("Task " + fields.get(0) + " is ordered after " + predecessorPath + " which is not listed before it.");
+                    }
+                    predecessors.add(predecessor);
+                }
+            }
+            Node node = new Node(fields.get(0), Long.parseLong(fields.get(1)), predecessors);
+            nodesByPath.put(node.getPath(), node);
+            nodes.add(node);
+        }
+        return new TaskSchedulingSimulator(nodes);
+    }
+
+    public void writeTrace(File traceFile) {
+        try {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(traceFile), CHARSET);
+            try {
+                writeTrace(writer);
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write task execution trace to " + traceFile, e);
+        }
+    }
+
+    public void writeTrace(Writer writer) {
+        PrintWriter printWriter = new PrintWriter(writer);
+        for (Node node : nodes) {
+            printWriter.print(node.getPath());
+            printWriter.print(SEPARATOR);
+            printWriter.print(node.getExecutionTime());
+            if (!node.getPredecessors().isEmpty()) {
+                printWriter.print(SEPARATOR);
+                List<String> predecessorPaths = Lists.newArrayListWithCapacity(node.getPredecessors().size());
+                for (Node predecessor : node.getPredecessors()) {
+                    predecessorPaths.add(predecessor.getPath());
+                }
+                printWriter.print(Joiner.on(PREDECESSOR_SEPARATOR).join(predecessorPaths));
+            }
+            printWriter.println();
+        }
+        printWriter.flush();
+    }
+
+    /**
+     * A task in an execution trace.
+     */
+    public static class Node {
+        private final String path;
+        private final long executionTime;
+        private final List<Node> predecessors;
+
+        public Node(String path, long executionTime, List<Node> predecessors) {
+            this.path = path;
+            this.executionTime = executionTime;
+            this.predecessors = Collections.unmodifiableList(predecessors);
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getExecutionTime() {
+            return executionTime;
+        }
+
+        public List<Node> getPredecessors() {
+            return predecessors;
+        }
+
+        @Override
+        public String toString() {
+            return path;
+        }
+    }
+
+    private static class RunningNode implements Comparable<RunningNode> {
+        private final Node node;
+        private final long finishTime;
+
+        private RunningNode(Node node, long finishTime) {
+            this.node = node;
+            this.finishTime = finishTime;
+        }
+
+        @Override
+        public int compareTo(RunningNode other) {
+            return finishTime < other.finishTime ? -1 : finishTime == other.finishTime ? 0 : 1;
+        }
+    }
+}
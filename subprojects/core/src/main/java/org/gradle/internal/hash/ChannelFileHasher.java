@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash;
+
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.file.FileTreeElement;
+import org.gradle.internal.file.FileMetadataSnapshot;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Hashes large files through a {@link FileChannel} instead of a stream, avoiding the copy into a heap buffer.
+ * Files above the mapping threshold are memory mapped region by region, other large files are read into pooled direct buffers.
+ * Files below the channel threshold are hashed by the delegate.
+ *
+ * <p>The hashes produced are the same as the ones produced by hashing the file content as a stream with the same {@link ContentHasherFactory}.</p>
+ *
+ * <p>Enabled by setting the {@value #ENABLED_PROPERTY} system property to {@code true}. Note that on Windows a mapped file cannot be deleted until the mapping has been garbage collected.</p>
+ */
+public class ChannelFileHasher implements FileHasher {
+    public static final String ENABLED_PROPERTY = "org.gradle.internal.hash.channel";
+    public static final long DEFAULT_CHANNEL_THRESHOLD = 256 * 1024;
+    public static final long DEFAULT_MAP_THRESHOLD = 16 * 1024 * 1024;
+    private static final long MAX_MAPPED_REGION_SIZE = 64 * 1024 * 1024;
+
+    private final FileHasher delegate;
+    private final ContentHasherFactory hasherFactory;
+    private final DirectBufferPool bufferPool;
+    private final long channelThreshold;
+    private final long mapThreshold;
+
+    public ChannelFileHasher(FileHasher delegate, ContentHasherFactory hasherFactory, DirectBufferPool bufferPool, long channelThreshold, long mapThreshold) {
+        this.delegate = delegate;
+        this.hasherFactory = hasherFactory;
+        this.bufferPool = bufferPool;
+        this.channelThreshold = channelThreshold;
+        this.mapThreshold = mapThreshold;
+    }
+
+    /**
+     * Decorates the given hasher with a {@link ChannelFileHasher} when channel hashing has been enabled.
+     */
+    public static FileHasher decorateIfEnabled(FileHasher delegate, ContentHasherFactory hasherFactory, DirectBufferPool bufferPool) {
+        if (Boolean.getBoolean(ENABLED_PROPERTY)) {
+            return new ChannelFileHasher(delegate, hasherFactory, bufferPool, DEFAULT_CHANNEL_THRESHOLD, DEFAULT_MAP_THRESHOLD);
+        }
+        return delegate;
+    }
+
+    @Override
+    public HashCode hash(File file) {
+        return hash(file, file.length());
+    }
+
+    @Override
+    public HashCode hash(FileTreeElement fileDetails) {
+        return hash(fileDetails.getFile(), fileDetails.getSize());
+    }
+
+    @Override
+    public HashCode hash(File file, FileMetadataSnapshot fileDetails) {
+        return hash(file, fileDetails.getLength());
+    }
+
+    private HashCode hash(File file, long length) {
+        if (length < channelThreshold) {
+            return delegate.hash(file);
+        }
+        try {
+            FileInputStream inputStream = new FileInputStream(file);
+            try {
+                FileChannel channel = inputStream.getChannel();
+                Hasher hasher = hasherFactory.create();
+                if (length >= mapThreshold) {
+                    hashMapped(channel, hasher);
+                } else {
+                    hashBuffered(channel, hasher);
+                }
+                return hasher.hash();
+            } finally {
+                IOUtils.closeQuietly(inputStream);
+            }
+        } catch (FileNotFoundException e) {
+            throw new UncheckedIOException(String.format("Failed to create hash for file '%s' as it does not exist.", file), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Failed to create hash for file '%s'.", file), e);
+        }
+    }
+
+    private static void hashMapped(FileChannel channel, Hasher hasher) throws IOException {
+        // Use the current size rather than the expected length, the file may have changed since it was inspected
+        long size = channel.size();
+        for (long position = 0; position < size; position += MAX_MAPPED_REGION_SIZE) {
+            long regionSize = Math.min(MAX_MAPPED_REGION_SIZE, size - position);
+            hasher.putBytes(channel.map(FileChannel.MapMode.READ_ONLY, position, regionSize));
+        }
+    }
+
+    private void hashBuffered(FileChannel channel, Hasher hasher) throws IOException {
+        ByteBuffer buffer = bufferPool.take();
+        try {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                hasher.putBytes(buffer);
+                buffer.clear();
+            }
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package org.gradle.internal.hash;
 
 public class DefaultContentHasherFactory implements ContentHasherFactory {
+    public static final String ID = "md5";
     private static final byte[] SIGNATURE = Hashing.md5().hashString(DefaultContentHasherFactory.class.getName()).toByteArray();
 
     @Override
@@ -25,4 +26,18 @@ public class DefaultContentHasherFactory implements ContentHasherFactory {
         hasher.putBytes(SIGNATURE);
         return hasher;
     }
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    /**
+     * Returns the name to use for a persistent cache that stores hashes created by the given factory.
+     * Caches for the default hash function keep their original name, so existing caches remain usable.
+     */
+    public static String versionedCacheName(String cacheName, ContentHasherFactory hasherFactory) {
+        String id = hasherFactory.getId();
+        return ID.equals(id) ? cacheName : cacheName + "-" + id;
+    }
 }
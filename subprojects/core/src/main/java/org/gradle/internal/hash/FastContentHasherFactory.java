@@ -0,0 +1,40 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash;
+
+/**
+ * Hashes content using the non-cryptographic {@link Hashing#murmur3_128()} function, which is considerably cheaper than MD5 for large files.
+ *
+ * <p>Enabled by setting the {@value #ENABLED_PROPERTY} system property to {@code true}.</p>
+ */
+public class FastContentHasherFactory implements ContentHasherFactory {
+    public static final String ENABLED_PROPERTY = "org.gradle.internal.hash.fast";
+    public static final String ID = "murmur3";
+    private static final byte[] SIGNATURE = Hashing.md5().hashString(FastContentHasherFactory.class.getName()).toByteArray();
+
+    @Override
+    public Hasher create() {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        hasher.putBytes(SIGNATURE);
+        return hasher;
+    }
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+}
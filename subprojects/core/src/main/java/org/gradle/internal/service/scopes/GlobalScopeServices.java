@@ -79,6 +79,8 @@ import org.gradle.internal.filewatch.FileWatcherFactory;
 import org.gradle.internal.hash.ContentHasherFactory;
 import org.gradle.internal.hash.DefaultContentHasherFactory;
 import org.gradle.internal.hash.DefaultStreamHasher;
+import org.gradle.internal.hash.DirectBufferPool;
+import org.gradle.internal.hash.FastContentHasherFactory;
 import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.installation.CurrentGradleInstallation;
 import org.gradle.internal.installation.GradleRuntimeShadedJarDetector;
@@ -353,6 +355,9 @@ public class GlobalScopeServices extends BasicGlobalScopeServices {
     }
 
     ContentHasherFactory createHasherFactory() {
+        if (Boolean.getBoolean(FastContentHasherFactory.ENABLED_PROPERTY)) {
+            return new FastContentHasherFactory();
+        }
         return new DefaultContentHasherFactory();
     }
 
@@ -360,6 +365,10 @@ public class GlobalScopeServices extends BasicGlobalScopeServices {
         return new DefaultStreamHasher(hasherFactory);
     }
 
+    DirectBufferPool createDirectBufferPool() {
+        return new DirectBufferPool(64 * 1024, 16);
+    }
+
     Clock createClock() {
         return Time.clock();
     }
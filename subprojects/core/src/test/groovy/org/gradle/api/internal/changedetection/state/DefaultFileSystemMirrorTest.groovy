@@ -17,8 +17,12 @@
 package org.gradle.api.internal.changedetection.state
 
 import org.gradle.BuildResult
+import org.gradle.api.file.RelativePath
 import org.gradle.api.internal.GradleInternal
 import org.gradle.internal.classpath.CachedJarFileStore
+import org.gradle.internal.file.DefaultFileHierarchySet
+import org.gradle.internal.file.FileType
+import org.gradle.internal.hash.HashCode
 import org.gradle.test.fixtures.file.TestFile
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.junit.Rule
@@ -141,4 +145,215 @@ class DefaultFileSystemMirrorTest extends Specification {
         mirror.getDirectoryTree(file.path) == null
         mirror.getContent(file.path) == null
     }
+
+    def "retains state about unchanged watched locations between builds"() {
+        def watcher = Mock(FileSystemMirrorWatcher)
+        def watchingMirror = new DefaultFileSystemMirror([], watcher)
+        def dir = tmpDir.file("dir")
+        def file = dir.file("a")
+        def fileSnapshot = Stub(FileSnapshot) { getPath() >> file.path }
+        def fileTreeSnapshot = Stub(FileTreeSnapshot) { getPath() >> dir.path }
+        def snapshot = Stub(Snapshot)
+
+        when:
+        watchingMirror.afterStart()
+        watchingMirror.putFile(fileSnapshot)
+        watchingMirror.putDirectory(fileTreeSnapshot)
+        watchingMirror.putContent(dir.path, snapshot)
+        watchingMirror.beforeComplete()
+
+        then:
+        1 * watcher.sync() >> true
+        1 * watcher.getWatchedRoots() >> DefaultFileHierarchySet.of(dir)
+        1 * watcher.watch({ it as Set == [file.path, dir.path] as Set }, watchingMirror) >> true
+
+        and:
+        watchingMirror.getFile(file.path) == fileSnapshot
+        watchingMirror.getDirectoryTree(dir.path) == fileTreeSnapshot
+        watchingMirror.getContent(dir.path) == snapshot
+    }
+
+    def "discards state about changed locations"() {
+        def watcher = Stub(FileSystemMirrorWatcher) {
+            sync() >> true
+            getWatchedRoots() >> DefaultFileHierarchySet.of(tmpDir.testDirectory)
+            watch(_, _) >> true
+        }
+        def watchingMirror = new DefaultFileSystemMirror([], watcher)
+        def dir = tmpDir.file("dir")
+        def file = dir.file("a")
+        def other = tmpDir.file("other")
+        def fileSnapshot = Stub(FileSnapshot) { getPath() >> file.path }
+        def otherSnapshot = Stub(FileSnapshot) { getPath() >> other.path }
+        def fileTreeSnapshot = Stub(FileTreeSnapshot) { getPath() >> dir.path }
+
+        given:
+        watchingMirror.afterStart()
+        watchingMirror.putFile(fileSnapshot)
+        watchingMirror.putFile(otherSnapshot)
+        watchingMirror.putDirectory(fileTreeSnapshot)
+        watchingMirror.putContent(dir.path, Stub(Snapshot))
+        watchingMirror.beforeComplete()
+
+        when:
+        watchingMirror.changed(file.path)
+
+        then:
+        watchingMirror.getFile(file.path) == null
+        watchingMirror.getDirectoryTree(dir.path) == null
+        watchingMirror.getContent(dir.path) == null
+        watchingMirror.getFile(other.path) == otherSnapshot
+
+        when:
+        watchingMirror.allChanged()
+
+        then:
+        watchingMirror.getFile(other.path) == null
+    }
+
+    def "does not retain state about locations that were not watched at the start of the build"() {
+        def watcher = Mock(FileSystemMirrorWatcher)
+        def watchingMirror = new DefaultFileSystemMirror([], watcher)
+        def file = tmpDir.file("a")
+        def fileSnapshot = Stub(FileSnapshot) { getPath() >> file.path }
+
+        when:
+        watchingMirror.afterStart()
+        watchingMirror.putFile(fileSnapshot)
+        watchingMirror.beforeComplete()
+
+        then:
+        1 * watcher.sync() >> true
+        1 * watcher.getWatchedRoots() >> DefaultFileHierarchySet.of()
+        1 * watcher.watch([file.path] as Set, watchingMirror) >> true
+
+        and:
+        watchingMirror.getFile(file.path) == null
+    }
+
+    def "discards state about locations that changed during the build"() {
+        def watcher = Stub(FileSystemMirrorWatcher) {
+            sync() >> true
+            getWatchedRoots() >> DefaultFileHierarchySet.of(tmpDir.testDirectory)
+            watch(_, _) >> true
+        }
+        def watchingMirror = new DefaultFileSystemMirror([], watcher)
+        def file = tmpDir.file("a")
+        def fileSnapshot = Stub(FileSnapshot) { getPath() >> file.path }
+
+        when:
+        watchingMirror.afterStart()
+        watchingMirror.changed(file.path)
+        watchingMirror.putFile(fileSnapshot)
+        watchingMirror.beforeComplete()
+
+        then:
+        watchingMirror.getFile(file.path) == null
+    }
+
+    def "only discards state about the affected locations when task outputs are generated"() {
+        def dir = tmpDir.file("dir")
+        def output = dir.file("output")
+        def outputChild = output.file("child")
+        def other = tmpDir.file("other")
+        def outputSnapshot = Stub(FileSnapshot) { getPath() >> output.path }
+        def outputChildSnapshot = Stub(FileSnapshot) { getPath() >> outputChild.path }
+        def otherSnapshot = Stub(FileSnapshot) { getPath() >> other.path }
+        def dirTreeSnapshot = Stub(FileTreeSnapshot) { getPath() >> dir.path }
+        def otherTreeSnapshot = Stub(FileTreeSnapshot) { getPath() >> other.path }
+
+        given:
+        mirror.putFile(outputSnapshot)
+        mirror.putFile(outputChildSnapshot)
+        mirror.putFile(otherSnapshot)
+        mirror.putDirectory(dirTreeSnapshot)
+        mirror.putDirectory(otherTreeSnapshot)
+        mirror.putContent(dir.path, Stub(Snapshot))
+        mirror.putContent(other.path, Stub(Snapshot))
+
+        when:
+        mirror.beforeTaskOutputsGenerated([output])
+
+        then:
+        mirror.getFile(output.path) == null
+        mirror.getFile(outputChild.path) == null
+        mirror.getDirectoryTree(dir.path) == null
+        mirror.getContent(dir.path) == null
+
+        and:
+        mirror.getFile(other.path) == otherSnapshot
+        mirror.getDirectoryTree(other.path) == otherTreeSnapshot
+        mirror.getContent(other.path) != null
+    }
+
+    def "discards retained state when pending changes cannot be received at the start of the build"() {
+        def watcher = Mock(FileSystemMirrorWatcher)
+        def watchingMirror = new DefaultFileSystemMirror([], watcher)
+        def file = tmpDir.file("a")
+        def fileSnapshot = Stub(FileSnapshot) { getPath() >> file.path }
+
+        given:
+        watcher.getWatchedRoots() >> DefaultFileHierarchySet.of(tmpDir.testDirectory)
+        watcher.watch(_, _) >> true
+        watcher.sync() >> true
+        watchingMirror.afterStart()
+        watchingMirror.putFile(fileSnapshot)
+        watchingMirror.beforeComplete()
+
+        when:
+        watchingMirror.afterStart()
+
+        then:
+        1 * watcher.sync() >> false
+
+        and:
+        watchingMirror.getFile(file.path) == null
+
+        when:
+        watchingMirror.putFile(fileSnapshot)
+        watchingMirror.beforeComplete()
+
+        then:
+        watchingMirror.getFile(file.path) == null
+    }
+
+    def "derives state about a file from the tree of an ancestor directory"() {
+        def dir = tmpDir.file("dir")
+        def subDir = dir.file("sub")
+        def file = subDir.file("a")
+        def content = new FileHashSnapshot(HashCode.fromInt(123), 456)
+        def tree = new DirectoryTreeDetails(dir.path, [
+            new DirectoryFileSnapshot(subDir.path, RelativePath.parse(false, "sub"), false),
+            new RegularFileSnapshot(file.path, RelativePath.parse(true, "sub/a"), false, content)
+        ])
+
+        when:
+        mirror.putDirectory(tree)
+
+        then:
+        def fileSnapshot = mirror.getFile(file.path)
+        fileSnapshot.type == FileType.RegularFile
+        fileSnapshot.path == file.path
+        fileSnapshot.root
+        fileSnapshot.relativePath == new RelativePath(true, "a")
+        fileSnapshot.content == content
+
+        def dirSnapshot = mirror.getFile(subDir.path)
+        dirSnapshot.type == FileType.Directory
+        dirSnapshot.root
+        dirSnapshot.relativePath == new RelativePath(false, "sub")
+
+        // Files left out of the tree, such as default excludes, are not known to be missing
+        mirror.getFile(subDir.file("missing").path) == null
+        mirror.getFile(dir.file(".gitignore").path) == null
+
+        mirror.getFile(dir.path) == null
+        mirror.getFile(tmpDir.file("other").path) == null
+
+        when:
+        mirror.beforeTaskOutputsGenerated()
+
+        then:
+        mirror.getFile(file.path) == null
+    }
 }
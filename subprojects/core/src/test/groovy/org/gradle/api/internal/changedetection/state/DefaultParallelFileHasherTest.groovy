@@ -0,0 +1,175 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.api.UncheckedIOException
+import org.gradle.api.file.FileTreeElement
+import org.gradle.initialization.DefaultParallelismConfigurationManager
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.concurrent.DefaultParallelismConfiguration
+import org.gradle.internal.event.DefaultListenerManager
+import org.gradle.internal.file.FileMetadataSnapshot
+import org.gradle.internal.hash.FileHasher
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.operations.DefaultBuildOperationQueueFactory
+import org.gradle.internal.resources.DefaultResourceLockCoordinationService
+import org.gradle.internal.work.DefaultWorkerLeaseService
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicInteger
+
+class DefaultParallelFileHasherTest extends Specification {
+    def parallelismConfigurationManager = new DefaultParallelismConfigurationManager(new DefaultListenerManager())
+    def executorFactory = new DefaultExecutorFactory()
+    // Use plain implementations rather than Spock stubs, as these are called from several threads
+    def hasher = [hash: { FileTreeElement element -> HashCode.fromInt(element.file.name as int) }] as FileHasher
+    DefaultWorkerLeaseService workerLeaseService
+    DefaultParallelFileHasher parallelFileHasher
+
+    def setup() {
+        parallelismConfigurationManager.parallelismConfiguration = new DefaultParallelismConfiguration(true, 4)
+        workerLeaseService = new DefaultWorkerLeaseService(new DefaultResourceLockCoordinationService(), parallelismConfigurationManager)
+        parallelFileHasher = new DefaultParallelFileHasher(new DefaultBuildOperationQueueFactory(workerLeaseService), executorFactory, parallelismConfigurationManager)
+    }
+
+    def cleanup() {
+        parallelFileHasher.stop()
+        workerLeaseService.stop()
+        executorFactory.stop()
+    }
+
+    def "returns hashes in the order of the files"() {
+        def files = (0..<count).collect { element(it) }
+
+        when:
+        def hashes = hashWithWorkerLease(hasher, files)
+
+        then:
+        hashes.toList() == (0..<count).collect { HashCode.fromInt(it) }
+
+        where:
+        count << [0, 1, 32, 33, 1000]
+    }
+
+    def "rethrows the original failure"() {
+        def failure = new UncheckedIOException("broken")
+        def failingHasher = [hash: { FileTreeElement element ->
+            if (element.file.name == "500") {
+                throw failure
+            }
+            HashCode.fromInt(1)
+        }] as FileHasher
+
+        when:
+        hashWithWorkerLease(failingHasher, (0..<1000).collect { element(it) })
+
+        then:
+        UncheckedIOException e = thrown()
+        e.is(failure)
+    }
+
+    def "hashes on no more threads than the maximum number of workers"() {
+        def files = (0..<1000).collect { element(it) }
+        def trackingHasher = new ConcurrencyTrackingHasher(hasher)
+
+        when:
+        parallelismConfigurationManager.parallelismConfiguration = new DefaultParallelismConfiguration(true, maxWorkers)
+        def hashes = hashWithWorkerLease(trackingHasher, files)
+
+        then:
+        hashes.toList() == (0..<1000).collect { HashCode.fromInt(it) }
+        trackingHasher.maxConcurrent.get() <= maxWorkers
+
+        where:
+        maxWorkers << [1, 2, 4]
+    }
+
+    def "shares the maximum number of workers with other work of the build"() {
+        def files = (0..<1000).collect { element(it) }
+        def trackingHasher = new ConcurrencyTrackingHasher(hasher)
+        def otherWorkStarted = new CountDownLatch(1)
+        def hashingFinished = new CountDownLatch(1)
+        parallelismConfigurationManager.parallelismConfiguration = new DefaultParallelismConfiguration(true, 2)
+
+        when:
+        def otherWork = Thread.start {
+            def lease = workerLeaseService.workerLease.start()
+            otherWorkStarted.countDown()
+            hashingFinished.await()
+            lease.leaseFinish()
+        }
+        otherWorkStarted.await()
+        def hashes = hashWithWorkerLease(trackingHasher, files)
+        hashingFinished.countDown()
+        otherWork.join()
+
+        then:
+        hashes.toList() == (0..<1000).collect { HashCode.fromInt(it) }
+        trackingHasher.maxConcurrent.get() == 1
+    }
+
+    private HashCode[] hashWithWorkerLease(FileHasher hasher, List<FileTreeElement> files) {
+        def lease = workerLeaseService.workerLease.start()
+        try {
+            return parallelFileHasher.hash(hasher, files)
+        } finally {
+            lease.leaseFinish()
+        }
+    }
+
+    private FileTreeElement element(int index) {
+        def file = new File(String.valueOf(index))
+        return [getFile: { file }] as FileTreeElement
+    }
+
+    private static class ConcurrencyTrackingHasher implements FileHasher {
+        private final FileHasher delegate
+        private final AtomicInteger concurrent = new AtomicInteger()
+        final AtomicInteger maxConcurrent = new AtomicInteger()
+
+        ConcurrencyTrackingHasher(FileHasher delegate) {
+            this.delegate = delegate
+        }
+
+        @Override
+        HashCode hash(File file) {
+            throw new UnsupportedOperationException()
+        }
+
+        @Override
+        HashCode hash(FileTreeElement fileDetails) {
+            def current = concurrent.incrementAndGet()
+            try {
+                def max = maxConcurrent.get()
+                while (current > max && !maxConcurrent.compareAndSet(max, current)) {
+                    max = maxConcurrent.get()
+                }
+                Thread.sleep(1)
+                return delegate.hash(fileDetails)
+            } finally {
+                concurrent.decrementAndGet()
+            }
+        }
+
+        @Override
+        HashCode hash(File file, FileMetadataSnapshot fileDetails) {
+            throw new UnsupportedOperationException()
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.internal.filewatch.FileWatcher
+import org.gradle.internal.filewatch.FileWatcherEvent
+import org.gradle.internal.filewatch.FileWatcherFactory
+import org.gradle.test.fixtures.concurrent.ConcurrentSpec
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+
+class FileSystemMirrorWatcherTest extends ConcurrentSpec {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+
+    def fileWatcher = Mock(FileWatcher) {
+        isRunning() >> true
+    }
+    def fileWatcherFactory = Stub(FileWatcherFactory) {
+        watch(_, _) >> fileWatcher
+    }
+    def listener = Mock(FileSystemMirrorWatcher.Listener)
+    def cookieDir = tmpDir.file("cookies")
+    def watcher = new FileSystemMirrorWatcher(fileWatcherFactory, cookieDir)
+
+    def "watches the cookie directory together with the first locations"() {
+        def file = tmpDir.file("a")
+
+        when:
+        watcher.watch([file.path], listener)
+
+        then:
+        1 * fileWatcher.watch({ it.contains(file) && it.contains(cookieDir) })
+        cookieDir.directory
+    }
+
+    def "sync returns once the event for the cookie file has been received"() {
+        def file = tmpDir.file("a")
+
+        given:
+        watcher.watch([file.path], listener)
+
+        when:
+        async {
+            start {
+                def cookie = null
+                while (cookie == null) {
+                    cookie = cookieDir.listFiles().find()
+                    Thread.sleep(10)
+                }
+                watcher.onChange(fileWatcher, FileWatcherEvent.create(cookie))
+            }
+            assert watcher.sync()
+        }
+
+        then:
+        0 * listener._
+        cookieDir.list().length == 0
+    }
+
+    def "sync fails when the event for the cookie file is not received"() {
+        given:
+        watcher.watch([tmpDir.file("a").path], listener)
+
+        expect:
+        !watcher.sync()
+        cookieDir.list().length == 0
+    }
+
+    def "sync does not wait when nothing is watched"() {
+        expect:
+        watcher.sync()
+        !cookieDir.exists()
+    }
+
+    def "forwards events for watched locations"() {
+        def file = tmpDir.file("a")
+
+        given:
+        watcher.watch([file.path], listener)
+
+        when:
+        watcher.onChange(fileWatcher, FileWatcherEvent.modify(file))
+        watcher.onChange(fileWatcher, FileWatcherEvent.undefined())
+
+        then:
+        1 * listener.changed(file.absolutePath)
+        1 * listener.allChanged()
+    }
+}
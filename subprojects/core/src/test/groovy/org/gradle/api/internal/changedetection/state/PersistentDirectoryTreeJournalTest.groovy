@@ -0,0 +1,150 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.api.file.RelativePath
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.cache.PersistentCache
+import org.gradle.internal.file.FileType
+import org.gradle.internal.hash.HashCode
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class PersistentDirectoryTreeJournalTest extends Specification {
+    @Rule TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def cacheDir = tmpDir.createDir("cache")
+    def timeStampInspector = Stub(FileTimeStampInspector) {
+        timestampCanBeUsedToDetectFileChange(_, _) >> true
+    }
+    def root = tmpDir.createDir("root")
+    def sub = root.createDir("sub")
+    def file = sub.createFile("a.txt")
+    def hash = HashCode.fromInt(123)
+    def timestamp = System.currentTimeMillis() - 60000
+
+    def setup() {
+        file.text = "content"
+        [file, sub, root].each { it.setLastModified(timestamp) }
+    }
+
+    def "loads recorded tree in later build"() {
+        def journal = journal()
+        journal.record(snapshot(), root.lastModified(), [sub.lastModified(), file.lastModified()] as long[], [0, file.length()] as long[])
+        journal.beforeComplete()
+
+        when:
+        def tree = journal().load(root.absolutePath)
+
+        then:
+        tree.path == root.absolutePath
+        tree.descendants.size() == 2
+        tree.descendants[0].type == FileType.Directory
+        tree.descendants[0].path == sub.absolutePath
+        tree.descendants[0].relativePath == RelativePath.parse(false, "sub")
+        tree.descendants[1].type == FileType.RegularFile
+        tree.descendants[1].path == file.absolutePath
+        tree.descendants[1].relativePath == RelativePath.parse(true, "sub/a.txt")
+        tree.descendants[1].content == new FileHashSnapshot(hash, file.lastModified())
+    }
+
+    @Unroll
+    def "does not load tree when #description"() {
+        def journal = journal()
+        journal.record(snapshot(), root.lastModified(), [sub.lastModified(), file.lastModified()] as long[], [0, file.length()] as long[])
+        journal.beforeComplete()
+
+        when:
+        change.call(this)
+
+        then:
+        journal().load(root.absolutePath) == null
+
+        where:
+        description                   | change
+        "file content changes"        | { it.file.text = "changed"; it.file.setLastModified(it.timestamp) }
+        "file timestamp changes"      | { it.file.setLastModified(it.timestamp + 10000) }
+        "file is added to directory"  | { it.sub.createFile("b.txt"); it.sub.setLastModified(it.timestamp + 10000) }
+        "file is replaced by dir"     | { it.file.delete(); it.file.createDir(); it.file.setLastModified(it.timestamp) }
+        "root is deleted"             | { it.root.deleteDir() }
+    }
+
+    def "does not load tree when timestamp cannot be used to detect changes"() {
+        def journal = journal()
+        journal.record(snapshot(), root.lastModified(), [sub.lastModified(), file.lastModified()] as long[], [0, file.length()] as long[])
+        journal.beforeComplete()
+
+        def inspector = Stub(FileTimeStampInspector) {
+            timestampCanBeUsedToDetectFileChange(_, _) >> false
+        }
+
+        expect:
+        new PersistentDirectoryTreeJournal(cache(), TestFiles.fileSystem(), new StringInterner(), inspector).load(root.absolutePath) == null
+    }
+
+    def "does not record tree with recent timestamps"() {
+        file.setLastModified(System.currentTimeMillis())
+        def journal = journal()
+
+        when:
+        journal.record(snapshot(), root.lastModified(), [sub.lastModified(), file.lastModified()] as long[], [0, file.length()] as long[])
+
+        then:
+        journal.load(root.absolutePath) == null
+    }
+
+    def "discards unreadable journal content"() {
+        def journal = journal()
+        journal.record(snapshot(), root.lastModified(), [sub.lastModified(), file.lastModified()] as long[], [0, file.length()] as long[])
+        journal.beforeComplete()
+        def journalFile = cacheDir.file("trees.bin")
+        journalFile.bytes = journalFile.bytes[0..-3] as byte[]
+
+        when:
+        def reopened = journal()
+
+        then:
+        reopened.load(root.absolutePath) == null
+
+        when:
+        reopened.record(snapshot(), root.lastModified(), [sub.lastModified(), file.lastModified()] as long[], [0, file.length()] as long[])
+        reopened.beforeComplete()
+
+        then:
+        journal().load(root.absolutePath) != null
+    }
+
+    private PersistentDirectoryTreeJournal journal() {
+        return new PersistentDirectoryTreeJournal(cache(), TestFiles.fileSystem(), new StringInterner(), timeStampInspector)
+    }
+
+    private PersistentCache cache() {
+        return Stub(PersistentCache) {
+            getBaseDir() >> cacheDir
+            withFileLock(_ as Runnable) >> { Runnable action -> action.run() }
+        }
+    }
+
+    private FileTreeSnapshot snapshot() {
+        return new DirectoryTreeDetails(root.absolutePath, [
+            new DirectoryFileSnapshot(sub.absolutePath, RelativePath.parse(false, "sub"), false),
+            new RegularFileSnapshot(file.absolutePath, RelativePath.parse(true, "sub/a.txt"), false, new FileHashSnapshot(hash, file.lastModified()))
+        ])
+    }
+}
@@ -18,6 +18,7 @@ package org.gradle.api.internal.tasks.execution
 import org.gradle.api.execution.TaskActionListener
 import org.gradle.api.internal.TaskInternal
 import org.gradle.api.internal.changedetection.TaskArtifactState
+import org.gradle.api.internal.file.collections.SimpleFileCollection
 import org.gradle.api.internal.project.ProjectInternal
 import org.gradle.api.internal.tasks.ContextAwareTaskAction
 import org.gradle.api.internal.tasks.OriginTaskExecutionMetadata
@@ -47,6 +48,7 @@ class ExecuteActionsTaskExecutorTest extends Specification {
     def action2 = Mock(ContextAwareTaskAction)
     def state = new TaskStateInternal()
     def taskArtifactState = Mock(TaskArtifactState)
+    def taskProperties = Mock(TaskProperties)
     def executionContext = Mock(TaskExecutionContext)
     def scriptSource = Mock(ScriptSource)
     def standardOutputCapture = Mock(StandardOutputCapture)
@@ -67,6 +69,7 @@ class ExecuteActionsTaskExecutorTest extends Specification {
         project.getBuildScriptSource() >> scriptSource
         task.getStandardOutputCapture() >> standardOutputCapture
         executionContext.taskArtifactState >> taskArtifactState
+        executionContext.taskProperties >> taskProperties
     }
 
     void noMoreInteractions() {
@@ -196,6 +199,26 @@ class ExecuteActionsTaskExecutorTest extends Specification {
         noMoreInteractions()
     }
 
+    def "only invalidates the state of the declared outputs of a task"() {
+        def outputFile = new File("output")
+        def localStateFile = new File("local-state")
+        def destroyableFile = new File("destroyable")
+
+        given:
+        task.getTaskActions() >> [action1]
+        taskProperties.hasDeclaredOutputs() >> true
+        taskProperties.outputFiles >> new SimpleFileCollection(outputFile)
+        taskProperties.localStateFiles >> new SimpleFileCollection(localStateFile)
+        taskProperties.destroyableFiles >> new SimpleFileCollection(destroyableFile)
+
+        when:
+        executer.execute(task, state, executionContext)
+
+        then:
+        1 * internalListener.beforeTaskOutputsGenerated({ it as List == [outputFile, localStateFile, destroyableFile] })
+        0 * internalListener.beforeTaskOutputsGenerated()
+    }
+
     def stopsAtFirstActionWhichThrowsException() {
         given:
         task.getTaskActions() >> [action1, action2]
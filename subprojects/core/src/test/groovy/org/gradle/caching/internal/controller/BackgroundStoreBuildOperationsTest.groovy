@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.caching.internal.controller
+
+import org.gradle.caching.BuildCacheEntryWriter
+import org.gradle.caching.BuildCacheKey
+import org.gradle.caching.BuildCacheService
+import org.gradle.caching.internal.controller.service.BuildCacheServicesConfiguration
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.concurrent.ParallelismConfigurationManagerFixture
+import org.gradle.internal.logging.ConfigureLogging
+import org.gradle.internal.logging.TestOutputEventListener
+import org.gradle.internal.operations.BuildOperationContext
+import org.gradle.internal.operations.BuildOperationQueueFactory
+import org.gradle.internal.operations.DefaultBuildOperationIdFactory
+import org.gradle.internal.operations.RunnableBuildOperation
+import org.gradle.internal.progress.BuildOperationDescriptor
+import org.gradle.internal.progress.BuildOperationListener
+import org.gradle.internal.progress.DefaultBuildOperationExecutor
+import org.gradle.internal.progress.NoOpProgressLoggerFactory
+import org.gradle.internal.resources.ResourceLockCoordinationService
+import org.gradle.internal.time.Clock
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class BackgroundStoreBuildOperationsTest extends Specification {
+    @Rule
+    final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def outputEventListener = new TestOutputEventListener()
+    @Rule
+    ConfigureLogging logging = new ConfigureLogging(outputEventListener)
+
+    def executorFactory = new DefaultExecutorFactory()
+    def buildOperationExecutor = new DefaultBuildOperationExecutor(Mock(BuildOperationListener), Mock(Clock), new NoOpProgressLoggerFactory(), Mock(BuildOperationQueueFactory),
+        executorFactory, Mock(ResourceLockCoordinationService), new ParallelismConfigurationManagerFixture(true, 1), new DefaultBuildOperationIdFactory())
+    def key = Stub(BuildCacheKey) {
+        getHashCode() >> "1234"
+        getDisplayName() >> "1234"
+    }
+    def storeCommand = Stub(BuildCacheStoreCommand) {
+        getKey() >> key
+        store(_) >> { OutputStream output ->
+            output.close()
+            new BuildCacheStoreCommand.Result() {
+                @Override
+                long getArtifactEntryCount() {
+                    return 0
+                }
+            }
+        }
+    }
+    def remote = Mock(BuildCacheService)
+
+    def cleanup() {
+        executorFactory.stop()
+    }
+
+    def "stores entries in the background after the operation that queued them has completed"() {
+        given:
+        buildOperationExecutor.createRunningRootOperation("Run build")
+        def controller = new DefaultBuildCacheController(
+            new BuildCacheServicesConfiguration(null, false, remote, true),
+            buildOperationExecutor,
+            tmpDir.file("user-home"),
+            false,
+            false,
+            false,
+            true,
+            executorFactory
+        )
+        def taskCompleted = new CountDownLatch(1)
+
+        when:
+        buildOperationExecutor.run(new RunnableBuildOperation() {
+            @Override
+            void run(BuildOperationContext context) {
+                controller.store(storeCommand)
+            }
+
+            @Override
+            BuildOperationDescriptor.Builder description() {
+                BuildOperationDescriptor.displayName("Execute task")
+            }
+        })
+        taskCompleted.countDown()
+        controller.close()
+
+        then:
+        1 * remote.store(key, _) >> { BuildCacheKey key, BuildCacheEntryWriter writer ->
+            assert taskCompleted.await(10, TimeUnit.SECONDS)
+            writer.writeTo(new ByteArrayOutputStream())
+        }
+        !outputEventListener.toString().contains("Could not store entry")
+    }
+}
@@ -26,6 +26,7 @@ import org.gradle.api.internal.TaskInternal
 import org.gradle.api.internal.TaskOutputsInternal
 import org.gradle.api.internal.project.ProjectInternal
 import org.gradle.api.internal.tasks.TaskDestroyablesInternal
+import org.gradle.api.internal.tasks.TaskExecutionOutcome
 import org.gradle.api.internal.tasks.TaskLocalStateInternal
 import org.gradle.api.internal.tasks.TaskStateInternal
 import org.gradle.api.specs.Spec
@@ -57,10 +58,11 @@ class DefaultTaskExecutionPlanTest extends AbstractProjectBuilderSpec {
     def coordinationService = Mock(ResourceLockCoordinationService)
     def workerLease = Mock(WorkerLeaseRegistry.WorkerLease)
     def gradle = Mock(GradleInternal)
+    def executionTimeHistory = Mock(TaskExecutionTimeHistory)
 
     def setup() {
         root = createRootProject(temporaryFolder.testDirectory)
-        executionPlan = new DefaultTaskExecutionPlan(cancellationHandler, coordinationService, workerLeaseService, Mock(GradleInternal))
+        executionPlan = new DefaultTaskExecutionPlan(cancellationHandler, coordinationService, workerLeaseService, Mock(GradleInternal), executionTimeHistory, false)
         _ * workerLeaseService.getProjectLock(_, _) >> Mock(ResourceLock) {
             _ * isLocked() >> false
             _ * tryLock() >> true
@@ -872,6 +874,170 @@ class DefaultTaskExecutionPlanTest extends AbstractProjectBuilderSpec {
         filtered(b)
     }
 
+    def "records execution time of successful tasks whose actions were executed"() {
+        given:
+        useCriticalPathScheduling()
+        Task a = task("a")
+        Task b = task("b", failure: new RuntimeException("failure"))
+        Task c = task("c")
+        Task d = task("d")
+        a.state.outcome >> TaskExecutionOutcome.EXECUTED
+        c.state.outcome >> TaskExecutionOutcome.UP_TO_DATE
+        d.state.outcome >> TaskExecutionOutcome.FROM_CACHE
+        executionPlan.useFailureHandler(createIgnoreTaskFailureHandler(b))
+
+        when:
+        addToGraphAndPopulate([a, b, c, d])
+        executedTasks
+
+        then:
+        1 * executionTimeHistory.recordExecutionTime(a, { it >= 0 })
+        0 * executionTimeHistory.recordExecutionTime(_, _)
+    }
+
+    def "does not record execution times unless critical path scheduling is enabled"() {
+        given:
+        Task a = task("a")
+        a.state.outcome >> TaskExecutionOutcome.EXECUTED
+
+        when:
+        addToGraphAndPopulate([a])
+        executedTasks
+
+        then:
+        0 * executionTimeHistory.recordExecutionTime(_, _)
+    }
+
+    def "does not reorder tasks by critical path unless enabled"() {
+        given:
+        Task a = task("a")
+        Task b = task("b")
+        _ * executionTimeHistory.getEstimatedExecutionTime(a) >> 10
+        _ * executionTimeHistory.getEstimatedExecutionTime(b) >> 1000
+
+        when:
+        addToGraphAndPopulate([a, b])
+
+        then:
+        executedTasks == [a, b]
+    }
+
+    def "starts tasks on the longest remaining path first"() {
+        given:
+        useCriticalPathScheduling()
+        Task a = task("a")
+        Task b = task("b")
+        Task c = task("c", dependsOn: [a])
+        Task d = task("d")
+        _ * executionTimeHistory.getEstimatedExecutionTime(a) >> 10
+        _ * executionTimeHistory.getEstimatedExecutionTime(b) >> 100
+        _ * executionTimeHistory.getEstimatedExecutionTime(c) >> 500
+        _ * executionTimeHistory.getEstimatedExecutionTime(d) >> 200
+
+        when:
+        addToGraphAndPopulate([b, c, d])
+
+        then:
+        executes(b, a, c, d)
+        executedTasks == [a, c, d, b]
+    }
+
+    def "critical path scheduling keeps ordering constraints"() {
+        given:
+        useCriticalPathScheduling()
+        Task a = task("a")
+        Task b = task("b", mustRunAfter: [a])
+        Task c = task("c", shouldRunAfter: [b])
+        Task d = task("d", finalizedBy: [b])
+        Task e = task("e")
+        _ * executionTimeHistory.getEstimatedExecutionTime(a) >> 0
+        _ * executionTimeHistory.getEstimatedExecutionTime(b) >> 0
+        _ * executionTimeHistory.getEstimatedExecutionTime(c) >> 0
+        _ * executionTimeHistory.getEstimatedExecutionTime(d) >> 0
+        _ * executionTimeHistory.getEstimatedExecutionTime(e) >> 1000
+
+        when:
+        addToGraphAndPopulate([a, b, c, d, e])
+
+        then:
+        executedTasks == [e, a, d, b, c]
+    }
+
+    def "critical path scheduling keeps the order of the requested entry tasks"() {
+        given:
+        useCriticalPathScheduling()
+        Task a = task("a")
+        Task b = task("b")
+        Task c = task("c", dependsOn: [b])
+        Task d = task("d")
+        _ * executionTimeHistory.getEstimatedExecutionTime(a) >> 10
+        _ * executionTimeHistory.getEstimatedExecutionTime(b) >> 100
+        _ * executionTimeHistory.getEstimatedExecutionTime(c) >> 500
+        _ * executionTimeHistory.getEstimatedExecutionTime(d) >> 1000
+
+        when:
+        executionPlan.addToTaskGraph([a])
+        executionPlan.addToTaskGraph([c, d])
+        executionPlan.determineExecutionPlan()
+
+        then:
+        executedTasks == [a, d, b, c]
+    }
+
+    def "uses average execution time for tasks without history"() {
+        given:
+        useCriticalPathScheduling()
+        Task a = task("a")
+        Task b = task("b")
+        Task c = task("c")
+        _ * executionTimeHistory.getEstimatedExecutionTime(a) >> 10
+        _ * executionTimeHistory.getEstimatedExecutionTime(b) >> TaskExecutionTimeHistory.UNKNOWN
+        _ * executionTimeHistory.getEstimatedExecutionTime(c) >> 50
+
+        when:
+        addToGraphAndPopulate([a, b, c])
+
+        then:
+        executedTasks == [c, b, a]
+    }
+
+    def "keeps plan order when there is no execution time history"() {
+        given:
+        useCriticalPathScheduling()
+        Task a = task("a")
+        Task b = task("b", dependsOn: [a])
+        Task c = task("c")
+        _ * executionTimeHistory.getEstimatedExecutionTime(_) >> TaskExecutionTimeHistory.UNKNOWN
+
+        when:
+        addToGraphAndPopulate([b, c])
+
+        then:
+        executedTasks == [a, b, c]
+    }
+
+    def "writes execution trace that can be replayed"() {
+        given:
+        Task a = task("a")
+        Task b = task("b", dependsOn: [a])
+        Task c = task("c", mustRunAfter: [a])
+        def traceFile = temporaryFolder.file("trace.txt")
+
+        when:
+        addToGraphAndPopulate([b, c])
+        executedTasks
+        executionPlan.writeExecutionTrace(traceFile)
+        def nodes = TaskSchedulingSimulator.readTrace(traceFile).nodes
+
+        then:
+        nodes*.path == [":a", ":b", ":c"]
+        nodes*.predecessors*.path == [[], [":a"], [":a"]]
+    }
+
+    private void useCriticalPathScheduling() {
+        executionPlan = new DefaultTaskExecutionPlan(cancellationHandler, coordinationService, workerLeaseService, Mock(GradleInternal), executionTimeHistory, true)
+    }
+
     private void addToGraphAndPopulate(List tasks) {
         executionPlan.addToTaskGraph(tasks)
         executionPlan.determineExecutionPlan()
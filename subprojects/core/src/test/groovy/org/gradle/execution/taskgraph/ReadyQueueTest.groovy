@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph
+package org.gradle.execution.taskgraph
+
+import com.google.common.base.Function
+import com.google.common.base.Predicate
+import spock.lang.Specification
+
+class ReadyQueueTest extends Specification {
+    def predecessors = [a: [], b: ["a"], c: [], d: ["b", "c"]]
+    def complete = [] as Set
+    ReadyQueue<String> queue
+
+    def setup() {
+        queue = new ReadyQueue<String>(["a", "b", "c", "d"], { predecessors[it] } as Function, { complete.contains(it) } as Predicate)
+    }
+
+    def "offered nodes become ready in plan order once their predecessors are complete"() {
+        when:
+        ["d", "c", "b", "a"].each { queue.offer(it) }
+
+        then:
+        ready() == ["a", "c"]
+        queue.incompleteCount == 4
+
+        when:
+        take("a")
+        queue.completed("a")
+
+        then:
+        ready() == ["b", "c"]
+
+        when:
+        take("c")
+        queue.completed("c")
+        take("b")
+        queue.completed("b")
+
+        then:
+        ready() == ["d"]
+        queue.incompleteCount == 1
+    }
+
+    def "nodes that are not offered are never ready"() {
+        when:
+        queue.offer("b")
+        queue.completed("a")
+
+        then:
+        ready() == ["b"]
+    }
+
+    def "does not count predecessors that are complete when the queue is created"() {
+        given:
+        complete.add("a")
+        queue = new ReadyQueue<String>(["a", "b"], { predecessors[it] } as Function, { complete.contains(it) } as Predicate)
+
+        when:
+        queue.offer("b")
+
+        then:
+        ready() == ["b"]
+        queue.incompleteCount == 1
+    }
+
+    def "reopened node blocks its dependents again"() {
+        given:
+        ["b", "c", "d"].each { queue.offer(it) }
+        queue.completed("a")
+        take("b")
+        queue.completed("b")
+
+        when:
+        queue.reopened("b")
+
+        then:
+        ready() == ["c"]
+        queue.incompleteCount == 3
+
+        when:
+        queue.offer("b")
+
+        then:
+        ready() == ["b", "c"]
+    }
+
+    def "removing a node withdraws its offer"() {
+        given:
+        queue.offer("a")
+        take("a")
+
+        when:
+        queue.offer("a")
+
+        then:
+        ready() == ["a"]
+    }
+
+    private List<String> ready() {
+        queue.collect()
+    }
+
+    private void take(String node) {
+        def iterator = queue.iterator()
+        while (iterator.hasNext()) {
+            if (iterator.next() == node) {
+                iterator.remove()
+                return
+            }
+        }
+        throw new AssertionError("$node is not ready")
+    }
+}
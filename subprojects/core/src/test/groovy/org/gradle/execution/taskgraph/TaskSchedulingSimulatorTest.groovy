@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph
+
+import spock.lang.Specification
+
+class TaskSchedulingSimulatorTest extends Specification {
+    def "replays trace in plan order and critical path order"() {
+        given:
+        def simulator = trace """
+:a\t100
+:b\t100
+:c\t100
+:d\t10
+:e\t300\t:d
+"""
+
+        expect:
+        simulator.simulateInPlanOrder(1) == 610
+        simulator.simulateCriticalPathFirst(1) == 610
+        simulator.simulateInPlanOrder(2) == 410
+        simulator.simulateCriticalPathFirst(2) == 310
+        simulator.simulateInPlanOrder(5) == 310
+        simulator.simulateCriticalPathFirst(5) == 310
+    }
+
+    def "waits for all predecessors"() {
+        given:
+        def simulator = trace """
+:a\t100
+:b\t50
+:c\t10\t:a,:b
+"""
+
+        expect:
+        simulator.simulateInPlanOrder(2) == 110
+        simulator.simulateCriticalPathFirst(2) == 110
+    }
+
+    def "writes trace that can be read back"() {
+        given:
+        def text = ":a\t100\n:b\t50\t:a\n:c\t10\t:a,:b\n"
+        def writer = new StringWriter()
+
+        when:
+        trace(text).writeTrace(writer)
+
+        then:
+        writer.toString() == String.format(":a\t100%n:b\t50\t:a%n:c\t10\t:a,:b%n")
+    }
+
+    def "rejects predecessors that are not listed before a task"() {
+        when:
+        trace ":a\t100\t:b\n:b\t10\n"
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Task :a is ordered after :b which is not listed before it."
+    }
+
+    private static TaskSchedulingSimulator trace(String text) {
+        TaskSchedulingSimulator.readTrace(new StringReader(text))
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash
+
+import org.gradle.api.UncheckedIOException
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class ChannelFileHasherTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def hasherFactory = new DefaultContentHasherFactory()
+    def streamHasher = new DefaultFileHasher(new DefaultStreamHasher(hasherFactory))
+    def bufferPool = new DirectBufferPool(1024, 2)
+    def hasher = new ChannelFileHasher(streamHasher, hasherFactory, bufferPool, 100, 5000)
+
+    @Unroll
+    def "produces the same hash as stream hashing for a file of #length bytes"() {
+        def file = tmpDir.file("file")
+        def content = new byte[length]
+        new Random(length).nextBytes(content)
+        file.bytes = content
+
+        expect:
+        hasher.hash(file) == streamHasher.hash(file)
+
+        where:
+        length << [0, 99, 100, 1023, 1024, 4999, 5000, 100000]
+    }
+
+    def "delegates small files"() {
+        def delegate = Mock(FileHasher)
+        def hasher = new ChannelFileHasher(delegate, hasherFactory, bufferPool, 100, 5000)
+        def file = tmpDir.file("file") << "content"
+        def hash = HashCode.fromInt(123)
+
+        when:
+        def result = hasher.hash(file)
+
+        then:
+        result == hash
+        1 * delegate.hash(file) >> hash
+        0 * _
+    }
+
+    def "fails when file does not exist"() {
+        def file = tmpDir.file("missing")
+        def hasher = new ChannelFileHasher(streamHasher, hasherFactory, bufferPool, 0, 5000)
+
+        when:
+        hasher.hash(file)
+
+        then:
+        UncheckedIOException e = thrown()
+        e.message == "Failed to create hash for file '$file' as it does not exist."
+    }
+}
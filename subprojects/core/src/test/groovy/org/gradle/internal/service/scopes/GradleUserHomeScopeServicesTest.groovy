@@ -24,6 +24,7 @@ import org.gradle.api.internal.changedetection.state.FileSystemMirror
 import org.gradle.api.internal.changedetection.state.FileSystemSnapshotter
 import org.gradle.api.internal.changedetection.state.GlobalScopeFileTimeStampInspector
 import org.gradle.api.internal.changedetection.state.InMemoryCacheDecoratorFactory
+import org.gradle.api.internal.changedetection.state.ParallelFileHasher
 import org.gradle.api.internal.changedetection.state.ValueSnapshotter
 import org.gradle.api.internal.classpath.ModuleRegistry
 import org.gradle.api.internal.file.TemporaryFileProvider
@@ -43,7 +44,9 @@ import org.gradle.internal.classpath.CachedClasspathTransformer
 import org.gradle.internal.concurrent.ExecutorFactory
 import org.gradle.internal.concurrent.ParallelismConfigurationManager
 import org.gradle.internal.event.ListenerManager
+import org.gradle.internal.filewatch.FileWatcherFactory
 import org.gradle.internal.hash.ContentHasherFactory
+import org.gradle.internal.hash.DirectBufferPool
 import org.gradle.internal.hash.FileHasher
 import org.gradle.internal.hash.StreamHasher
 import org.gradle.internal.jvm.inspection.JvmVersionDetector
@@ -113,11 +116,13 @@ class GradleUserHomeScopeServicesTest extends Specification {
         expectParentServiceLocated(OutputEventListener)
         expectParentServiceLocated(StringInterner)
         expectParentServiceLocated(FileSystem)
+        expectParentServiceLocated(FileWatcherFactory)
         expectParentServiceLocated(CrossBuildInMemoryCacheFactory)
         expectParentServiceLocated(ClassLoaderRegistry)
         expectParentServiceLocated(DirectoryFileTreeFactory)
         expectParentServiceLocated(ContentHasherFactory)
         expectParentServiceLocated(StreamHasher)
+        expectParentServiceLocated(DirectBufferPool)
 
         expect:
         findsAndCachesService(serviceType)
@@ -132,6 +137,7 @@ class GradleUserHomeScopeServicesTest extends Specification {
             ValueSnapshotter,
             ClassLoaderHierarchyHasher,
             FileSystemMirror,
+            ParallelFileHasher,
             FileSystemSnapshotter,
             HashingClassLoaderFactory,
             ClassLoaderCache,
@@ -15,6 +15,8 @@
  */
 package org.gradle.api.internal.file;
 
+import org.gradle.api.internal.changedetection.state.CallingThreadFileHasher;
+import org.gradle.api.internal.changedetection.state.ParallelFileHasher;
 import org.gradle.api.internal.file.collections.DefaultDirectoryFileTreeFactory;
 import org.gradle.api.internal.file.collections.DirectoryFileTreeFactory;
 import org.gradle.api.tasks.util.PatternSet;
@@ -83,6 +85,10 @@ public class TestFiles {
         return new DefaultFileHasher(streamHasher());
     }
 
+    public static ParallelFileHasher parallelFileHasher() {
+        return new CallingThreadFileHasher();
+    }
+
     public static FileCollectionFactory fileCollectionFactory() {
         return new DefaultFileCollectionFactory();
     }
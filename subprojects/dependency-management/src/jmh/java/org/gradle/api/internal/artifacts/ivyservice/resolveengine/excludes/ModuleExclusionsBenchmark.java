@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.internal.artifacts.DefaultImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.internal.component.external.descriptor.DefaultExclude;
+import org.gradle.internal.component.model.ExcludeMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Propagates exclusions through a generated dependency graph, the way the graph builder does. The graph resembles Hadoop and Spark
+ * builds, where most dependencies declare long lists of excludes drawn from the same set of logging, servlet and XML modules.
+ */
+@Fork(1)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+public class ModuleExclusionsBenchmark {
+    private static final int MODULES = 1000;
+    private static final int DEPENDENCIES_PER_MODULE = 8;
+    private static final int EXCLUDED_MODULES = 300;
+
+    @Param({"5", "50"})
+    int excludesPerDependency;
+
+    private final ImmutableModuleIdentifierFactory moduleIdentifierFactory = new DefaultImmutableModuleIdentifierFactory();
+    private List<ModuleIdentifier> modules;
+    private int[][] dependencies;
+    private List<List<ImmutableList<ExcludeMetadata>>> excludes;
+    private ModuleExclusions warmModuleExclusions;
+
+    @Setup(Level.Trial)
+    public void createGraph() {
+        Random random = new Random(42);
+        modules = Lists.newArrayListWithCapacity(MODULES);
+        for (int i = 0; i < MODULES; i++) {
+            modules.add(moduleIdentifierFactory.module("org.group" + (i % 20), "module" + i));
+        }
+        List<ExcludeMetadata> candidates = Lists.newArrayListWithCapacity(EXCLUDED_MODULES);
+        for (int i = 0; i < EXCLUDED_MODULES; i++) {
+            if (i % 30 == 0) {
+                // A few group excludes, like org.mortbay.jetty:*
+                candidates.add(new DefaultExclude(moduleIdentifierFactory.module("org.excluded" + i, "*")));
+            } else {
+                candidates.add(new DefaultExclude(moduleIdentifierFactory.module("org.excluded" + (i % 10), "excluded" + i)));
+            }
+        }
+
+        dependencies = new int[MODULES][];
+        excludes = Lists.newArrayListWithCapacity(MODULES);
+        for (int from = 0; from < MODULES; from++) {
+            int count = Math.min(DEPENDENCIES_PER_MODULE, MODULES - from - 1);
+            dependencies[from] = new int[count];
+            List<ImmutableList<ExcludeMetadata>> moduleExcludes = Lists.newArrayListWithCapacity(count);
+            for (int i = 0; i < count; i++) {
+                dependencies[from][i] = from + 1 + random.nextInt(MODULES - from - 1);
+                moduleExcludes.add(randomExcludes(random, candidates));
+            }
+            excludes.add(moduleExcludes);
+        }
+
+        warmModuleExclusions = new ModuleExclusions(moduleIdentifierFactory);
+        traverse(warmModuleExclusions);
+    }
+
+    private ImmutableList<ExcludeMetadata> randomExcludes(Random random, List<ExcludeMetadata> candidates) {
+        // Most dependencies share one of a few exclude lists, the rest have their own
+        List<ExcludeMetadata> shuffled = Lists.newArrayList(candidates);
+        Collections.shuffle(shuffled, new Random(random.nextInt(4) == 0 ? random.nextInt() : random.nextInt(8)));
+        return ImmutableList.copyOf(shuffled.subList(0, excludesPerDependency));
+    }
+
+    /**
+     * Resolves the graph with a new instance, as each build does.
+     */
+    @Benchmark
+    public void traverseGraph(Blackhole blackhole) {
+        blackhole.consume(traverse(new ModuleExclusions(moduleIdentifierFactory)));
+    }
+
+    /**
+     * Resolves the graph again with the same instance, as resolving further configurations in the same build does.
+     */
+    @Benchmark
+    public void traverseGraphAgain(Blackhole blackhole) {
+        blackhole.consume(traverse(warmModuleExclusions));
+    }
+
+    private ModuleExclusion[] traverse(ModuleExclusions moduleExclusions) {
+        // Modules only depend on modules with a higher index, so visiting them in order sees every incoming edge of a module before the module
+        ModuleExclusion[] nodeExclusions = new ModuleExclusion[MODULES];
+        nodeExclusions[0] = ModuleExclusions.excludeNone();
+        for (int from = 0; from < MODULES; from++) {
+            ModuleExclusion fromExclusions = nodeExclusions[from];
+            if (fromExclusions == null) {
+                continue;
+            }
+            for (int i = 0; i < dependencies[from].length; i++) {
+                int to = dependencies[from][i];
+                ModuleExclusion edgeExclusions = moduleExclusions.intersect(fromExclusions, moduleExclusions.excludeAny(excludes.get(from).get(i)));
+                if (edgeExclusions.excludeModule(modules.get(to))) {
+                    continue;
+                }
+                ModuleExclusion toExclusions = nodeExclusions[to];
+                nodeExclusions[to] = toExclusions == null ? edgeExclusions : moduleExclusions.union(toExclusions, edgeExclusions);
+            }
+        }
+        return nodeExclusions;
+    }
+}
@@ -23,6 +23,7 @@ import org.gradle.api.internal.ExperimentalFeatures;
 import org.gradle.api.internal.artifacts.component.ComponentIdentifierFactory;
 import org.gradle.api.internal.artifacts.component.DefaultBuildIdentifier;
 import org.gradle.api.internal.artifacts.component.DefaultComponentIdentifierFactory;
+import org.gradle.api.internal.artifacts.configurations.ConcurrentConfigurationResolver;
 import org.gradle.api.internal.artifacts.dsl.dependencies.DependencyFactory;
 import org.gradle.api.internal.artifacts.ivyservice.ArtifactCacheMetaData;
 import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager;
@@ -34,7 +35,9 @@ import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.RepositoryBlackli
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ResolveIvyFactory;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ResolverProviderFactory;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.StartParameterResolutionOverride;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.memcache.CrossBuildModuleMetadataCache;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.memcache.InMemoryCachedRepositoryFactory;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.ParsedPomCache;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionComparator;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
 import org.gradle.api.internal.artifacts.ivyservice.modulecache.DefaultModuleArtifactsCache;
@@ -53,6 +56,7 @@ import org.gradle.api.internal.artifacts.ivyservice.projectmodule.ProjectLocalCo
 import org.gradle.api.internal.artifacts.ivyservice.projectmodule.ProjectPublicationRegistry;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.DefaultArtifactDependencyResolver;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.cache.ResolvedGraphCache;
 import org.gradle.api.internal.artifacts.mvnsettings.DefaultLocalMavenRepositoryLocator;
 import org.gradle.api.internal.artifacts.mvnsettings.DefaultMavenFileLocations;
 import org.gradle.api.internal.artifacts.mvnsettings.DefaultMavenSettingsProvider;
@@ -86,6 +90,8 @@ import org.gradle.initialization.BuildIdentity;
 import org.gradle.initialization.DefaultBuildIdentity;
 import org.gradle.initialization.ProjectAccessListener;
 import org.gradle.internal.component.external.model.ModuleComponentArtifactMetadata;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.installation.CurrentGradleInstallation;
 import org.gradle.internal.logging.progress.ProgressLoggerFactory;
 import org.gradle.internal.operations.BuildOperationExecutor;
@@ -100,7 +106,9 @@ import org.gradle.internal.resource.local.FileResourceRepository;
 import org.gradle.internal.resource.local.LocallyAvailableResourceFinder;
 import org.gradle.internal.resource.local.ivy.LocallyAvailableResourceFinderFactory;
 import org.gradle.internal.resource.transfer.DefaultUriTextResourceLoader;
+import org.gradle.internal.service.ServiceRegistration;
 import org.gradle.internal.service.ServiceRegistry;
+import org.gradle.internal.work.WorkerLeaseService;
 import org.gradle.util.BuildCommencedTimeProvider;
 import org.gradle.vcs.internal.VcsMappingFactory;
 import org.gradle.vcs.internal.VcsMappingsStore;
@@ -115,8 +123,14 @@ import java.util.List;
  * The set of dependency management services that are created per build.
  */
 class DependencyManagementBuildScopeServices {
-    InMemoryCachedRepositoryFactory createInMemoryDependencyMetadataCache() {
-        return new InMemoryCachedRepositoryFactory();
+    void configure(ServiceRegistration registration, ListenerManager listenerManager, BuildOperationExecutor buildOperationExecutor, WorkerLeaseService workerLeaseService, ExecutorFactory executorFactory) {
+        if (ConcurrentConfigurationResolver.isEnabled()) {
+            listenerManager.addListener(new ConcurrentConfigurationResolver(buildOperationExecutor, workerLeaseService, executorFactory));
+        }
+    }
+
+    InMemoryCachedRepositoryFactory createInMemoryDependencyMetadataCache(CrossBuildModuleMetadataCache crossBuildModuleMetadataCache) {
+        return new InMemoryCachedRepositoryFactory(crossBuildModuleMetadataCache);
     }
 
     DependencyManagementServices createDependencyManagementServices(ServiceRegistry parent) {
@@ -171,11 +185,13 @@ class DependencyManagementBuildScopeServices {
         return new ModuleExclusions(moduleIdentifierFactory);
     }
 
-    ModuleVersionsCache createModuleVersionsCache(BuildCommencedTimeProvider timeProvider, CacheLockingManager cacheLockingManager, ImmutableModuleIdentifierFactory moduleIdentifierFactory) {
+    ModuleVersionsCache createModuleVersionsCache(BuildCommencedTimeProvider timeProvider, CacheLockingManager cacheLockingManager, ImmutableModuleIdentifierFactory moduleIdentifierFactory,
+                                                  CrossBuildModuleMetadataCache crossBuildModuleMetadataCache) {
         return new SingleFileBackedModuleVersionsCache(
             timeProvider,
             cacheLockingManager,
-            moduleIdentifierFactory);
+            moduleIdentifierFactory,
+            CrossBuildModuleMetadataCache.isEnabled() ? crossBuildModuleMetadataCache : null);
     }
 
     ModuleArtifactsCache createModuleArtifactsCache(BuildCommencedTimeProvider timeProvider, CacheLockingManager cacheLockingManager) {
@@ -201,7 +217,9 @@ class DependencyManagementBuildScopeServices {
                                                     ImmutableModuleIdentifierFactory moduleIdentifierFactory,
                                                     ImmutableAttributesFactory attributesFactory,
                                                     MavenMutableModuleMetadataFactory mavenMetadataFactory,
-                                                    IvyMutableModuleMetadataFactory ivyMetadataFactory) {
+                                                    IvyMutableModuleMetadataFactory ivyMetadataFactory,
+                                                    CrossBuildModuleMetadataCache crossBuildModuleMetadataCache,
+                                                    ExperimentalFeatures experimentalFeatures) {
         return new DefaultModuleMetaDataCache(
             timeProvider,
             cacheLockingManager,
@@ -210,7 +228,13 @@ class DependencyManagementBuildScopeServices {
             attributesFactory,
             NamedObjectInstantiator.INSTANCE,
             mavenMetadataFactory,
-            ivyMetadataFactory);
+            ivyMetadataFactory,
+            CrossBuildModuleMetadataCache.isEnabled() ? crossBuildModuleMetadataCache : null,
+            experimentalFeatures);
+    }
+
+    ParsedPomCache createParsedPomCache(CacheLockingManager cacheLockingManager) {
+        return new ParsedPomCache(cacheLockingManager);
     }
 
     ArtifactAtRepositoryCachedArtifactIndex createArtifactAtRepositoryCachedResolutionIndex(BuildCommencedTimeProvider timeProvider, CacheLockingManager cacheLockingManager) {
@@ -317,7 +341,14 @@ class DependencyManagementBuildScopeServices {
                                                                 BuildOperationExecutor buildOperationExecutor,
                                                                 ComponentSelectorConverter componentSelectorConverter,
                                                                 ExperimentalFeatures experimentalFeatures,
-                                                                ImmutableAttributesFactory attributesFactory) {
+                                                                ImmutableAttributesFactory attributesFactory,
+                                                                CacheLockingManager cacheLockingManager,
+                                                                ImmutableModuleIdentifierFactory moduleIdentifierFactory,
+                                                                VersionSelectorScheme versionSelectorScheme) {
+        ResolvedGraphCache resolvedGraphCache = null;
+        if (ResolvedGraphCache.isEnabled()) {
+            resolvedGraphCache = new ResolvedGraphCache(cacheLockingManager, moduleIdentifierFactory, componentSelectorConverter, moduleExclusions, versionSelectorScheme, experimentalFeatures);
+        }
         return new DefaultArtifactDependencyResolver(
             buildOperationExecutor,
             resolverFactories,
@@ -327,7 +358,8 @@ class DependencyManagementBuildScopeServices {
             moduleExclusions,
             componentSelectorConverter,
             experimentalFeatures,
-            attributesFactory);
+            attributesFactory,
+            resolvedGraphCache);
     }
 
     ProjectPublicationRegistry createProjectPublicationRegistry() {
@@ -17,10 +17,15 @@
 package org.gradle.api.internal.artifacts;
 
 import org.gradle.api.internal.artifacts.ivyservice.DefaultArtifactCacheMetaData;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.memcache.CrossBuildModuleMetadataCache;
 import org.gradle.cache.internal.CacheScopeMapping;
 
 public class DependencyManagementGradleUserHomeScopeServices {
     DefaultArtifactCacheMetaData createArtifactCacheMetaData(CacheScopeMapping cacheScopeMapping) {
         return new DefaultArtifactCacheMetaData(cacheScopeMapping);
     }
+
+    CrossBuildModuleMetadataCache createCrossBuildModuleMetadataCache() {
+        return new CrossBuildModuleMetadataCache();
+    }
 }
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.configurations;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.gradle.BuildAdapter;
+import org.gradle.BuildResult;
+import org.gradle.api.Project;
+import org.gradle.api.Task;
+import org.gradle.api.execution.TaskExecutionGraph;
+import org.gradle.api.execution.TaskExecutionGraphListener;
+import org.gradle.api.execution.TaskExecutionListener;
+import org.gradle.api.internal.GradleInternal;
+import org.gradle.api.internal.file.FileCollectionInternal;
+import org.gradle.api.internal.file.FileCollectionVisitor;
+import org.gradle.api.internal.file.FileTreeInternal;
+import org.gradle.api.internal.file.collections.DirectoryFileTree;
+import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.api.tasks.TaskState;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.progress.BuildOperationDescriptor;
+import org.gradle.internal.resources.ResourceLock;
+import org.gradle.internal.work.WorkerLeaseService;
+import org.gradle.util.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Resolves the configurations used as inputs by the tasks of the build concurrently in the background, instead of one at a time when each task
+ * first uses them.
+ *
+ * <p>Resolution starts when the first task is about to execute, so that task graph listeners can still change the dependencies of configurations.
+ * The first task does not wait for it. Each configuration is resolved by a worker while holding the lock of the project that owns it, the same lock
+ * its tasks hold. A task of that project that starts meanwhile waits for the lock, and so for the resolution to finish. A task that is already
+ * running when a configuration is scheduled resolves it itself, if it uses it, and the background resolution then finds it resolved.</p>
+ *
+ * <p>Only the dependency graph and the artifacts to use are resolved, the artifact files are still downloaded when a task first uses them.</p>
+ */
+public class ConcurrentConfigurationResolver extends BuildAdapter implements TaskExecutionGraphListener, TaskExecutionListener {
+
+    /**
+     * Set this system property to "true" to resolve the configurations used by tasks in the background, once the first task executes.
+     *
+     * <p>A configuration can no longer be changed once it has been resolved. A task action that adds dependencies to a configuration used by a
+     * later task fails when that configuration has been resolved ahead of use. For this reason, a configuration is only resolved ahead of use
+     * when no task of the project that owns it runs before the first task that uses it. Task actions that change the configurations of other
+     * projects are not detected, and builds that do so should not set this property.</p>
+     */
+    public static final String TOGGLE_PROPERTY = "org.gradle.resolution.concurrent";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrentConfigurationResolver.class);
+
+    private final BuildOperationExecutor buildOperationExecutor;
+    private final WorkerLeaseService workerLeaseService;
+    private final ExecutorFactory executorFactory;
+    private final AtomicReference<TaskExecutionGraph> pendingGraph = new AtomicReference<TaskExecutionGraph>();
+    private final AtomicReference<ManagedExecutor> executor = new AtomicReference<ManagedExecutor>();
+    private volatile boolean stopped;
+
+    public ConcurrentConfigurationResolver(BuildOperationExecutor buildOperationExecutor, WorkerLeaseService workerLeaseService, ExecutorFactory executorFactory) {
+        this.buildOperationExecutor = buildOperationExecutor;
+        this.workerLeaseService = workerLeaseService;
+        this.executorFactory = executorFactory;
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(TOGGLE_PROPERTY);
+    }
+
+    @Override
+    public void graphPopulated(TaskExecutionGraph graph) {
+        pendingGraph.set(graph);
+    }
+
+    @Override
+    public void beforeExecute(Task task) {
+        // Only the first task to start looks for the configurations to resolve
+        TaskExecutionGraph graph = pendingGraph.getAndSet(null);
+        if (graph != null) {
+            startResolving(graph.getAllTasks());
+        }
+    }
+
+    @Override
+    public void afterExecute(Task task, TaskState state) {
+    }
+
+    @Override
+    public void buildFinished(BuildResult result) {
+        // Skip the resolutions that have not started yet, and wait for the others to release their locks
+        stopped = true;
+        ManagedExecutor executor = this.executor.getAndSet(null);
+        if (executor != null) {
+            executor.stop();
+        }
+    }
+
+    private void startResolving(List<Task> tasks) {
+        Map<ConfigurationInternal, ProjectInternal> configurations = findConfigurations(tasks);
+        if (configurations.isEmpty()) {
+            return;
+        }
+        LOGGER.debug("Resolving {} configurations ahead of use.", configurations.size());
+        ManagedExecutor executor = executorFactory.create("Resolve configurations ahead of use", workerLeaseService.getMaxWorkerCount());
+        this.executor.set(executor);
+        for (Map.Entry<ConfigurationInternal, ProjectInternal> entry : configurations.entrySet()) {
+            final ResolveConfigurationOperation operation = new ResolveConfigurationOperation(entry.getKey(), getProjectLock(entry.getValue()));
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!stopped) {
+                        buildOperationExecutor.run(operation);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Finds the unresolved configurations that the given tasks take as input files, along with the projects that own them.
+     *
+     * A configuration is left out when a task of the project that owns it comes before the first task that uses it, as the actions of that task
+     * may still change the configuration.
+     */
+    private static Map<ConfigurationInternal, ProjectInternal> findConfigurations(List<Task> tasks) {
+        final Map<ConfigurationInternal, ProjectInternal> configurations = Maps.newLinkedHashMap();
+        final Set<ConfigurationInternal> skipped = Sets.newHashSet();
+        final Set<Project> startedProjects = Sets.newHashSet();
+        for (final Task task : tasks) {
+            final Project rootProject = task.getProject().getRootProject();
+            try {
+                ((FileCollectionInternal) task.getInputs().getFiles()).visitRootElements(new FileCollectionVisitor() {
+                    @Override
+                    public void visitCollection(FileCollectionInternal fileCollection) {
+                        if (!(fileCollection instanceof DefaultConfiguration) || configurations.containsKey(fileCollection) || skipped.contains(fileCollection)) {
+                            return;
+                        }
+                        DefaultConfiguration configuration = (DefaultConfiguration) fileCollection;
+                        if (!configuration.isCanBeResolved() || configuration.getResolvedState() != ConfigurationInternal.InternalState.UNRESOLVED) {
+                            return;
+                        }
+                        // Configurations not owned by a project, such as build script classpaths, are left alone
+                        Path ownerPath = Path.path(configuration.getPath()).getParent();
+                        Project owner = ownerPath == null ? null : rootProject.findProject(ownerPath.getPath());
+                        if (owner == null || !owner.getConfigurations().contains(configuration)) {
+                            return;
+                        }
+                        if (startedProjects.contains(owner)) {
+                            skipped.add(configuration);
+                        } else {
+                            configurations.put(configuration, (ProjectInternal) owner);
+                        }
+                    }
+
+                    @Override
+                    public void visitTree(FileTreeInternal fileTree) {
+                    }
+
+                    @Override
+                    public void visitDirectoryTree(DirectoryFileTree directoryTree) {
+                    }
+                });
+            } catch (RuntimeException e) {
+                // The inputs of the task cannot be determined yet, leave its configurations to be resolved when it executes
+                LOGGER.debug("Could not determine the configurations used by {}.", task, e);
+            }
+            startedProjects.add(task.getProject());
+        }
+        return configurations;
+    }
+
+    private ResourceLock getProjectLock(ProjectInternal project) {
+        String gradlePath = ((GradleInternal) project.getGradle()).getIdentityPath().toString();
+        String projectPath = project.getIdentityPath().toString();
+        return workerLeaseService.getProjectLock(gradlePath, projectPath);
+    }
+
+    private class ResolveConfigurationOperation implements RunnableBuildOperation {
+        private final ConfigurationInternal configuration;
+        private final ResourceLock projectLock;
+
+        ResolveConfigurationOperation(ConfigurationInternal configuration, ResourceLock projectLock) {
+            this.configuration = configuration;
+            this.projectLock = projectLock;
+        }
+
+        @Override
+        public void run(BuildOperationContext context) {
+            // Hold a worker lease as well, so that the background resolutions and the tasks together stay within the maximum number of workers
+            workerLeaseService.withLocks(ImmutableList.of(workerLeaseService.getWorkerLease(), projectLock), new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        configuration.getResolvedConfiguration();
+                    } catch (RuntimeException e) {
+                        // The failure is reported again when a task uses the configuration
+                        LOGGER.debug("Could not resolve {} ahead of use.", configuration, e);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public BuildOperationDescriptor.Builder description() {
+            return BuildOperationDescriptor.displayName("Resolve " + configuration + " ahead of use");
+        }
+    }
+}
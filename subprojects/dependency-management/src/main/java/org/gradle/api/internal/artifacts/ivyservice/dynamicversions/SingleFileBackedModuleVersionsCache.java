@@ -19,6 +19,7 @@ import org.gradle.api.artifacts.ModuleIdentifier;
 import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
 import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ModuleComponentRepository;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.memcache.CrossBuildModuleMetadataCache;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.internal.serialize.AbstractSerializer;
 import org.gradle.internal.serialize.Decoder;
@@ -27,6 +28,7 @@ import org.gradle.util.BuildCommencedTimeProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
@@ -36,12 +38,15 @@ public class SingleFileBackedModuleVersionsCache implements ModuleVersionsCache
     private final BuildCommencedTimeProvider timeProvider;
     private final CacheLockingManager cacheLockingManager;
     private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
+    private final CrossBuildModuleMetadataCache crossBuildCache;
     private PersistentIndexedCache<ModuleKey, ModuleVersionsCacheEntry> cache;
 
-    public SingleFileBackedModuleVersionsCache(BuildCommencedTimeProvider timeProvider, CacheLockingManager cacheLockingManager, ImmutableModuleIdentifierFactory moduleIdentifierFactory) {
+    public SingleFileBackedModuleVersionsCache(BuildCommencedTimeProvider timeProvider, CacheLockingManager cacheLockingManager, ImmutableModuleIdentifierFactory moduleIdentifierFactory,
+                                               @Nullable CrossBuildModuleMetadataCache crossBuildCache) {
         this.timeProvider = timeProvider;
         this.cacheLockingManager = cacheLockingManager;
         this.moduleIdentifierFactory = moduleIdentifierFactory;
+        this.crossBuildCache = crossBuildCache;
     }
 
     private PersistentIndexedCache<ModuleKey, ModuleVersionsCacheEntry> getCache() {
@@ -57,14 +62,27 @@ public class SingleFileBackedModuleVersionsCache implements ModuleVersionsCache
 
     public void cacheModuleVersionList(ModuleComponentRepository repository, ModuleIdentifier moduleId, Set<String> listedVersions) {
         LOGGER.debug("Caching version list in module versions cache: Using '{}' for '{}'", listedVersions, moduleId);
-        getCache().put(createKey(repository, moduleId), createEntry(listedVersions));
+        ModuleVersionsCacheEntry entry = createEntry(listedVersions);
+        getCache().put(createKey(repository, moduleId), entry);
+        if (crossBuildCache != null) {
+            crossBuildCache.putVersionListing(repository.getId(), moduleId, entry.moduleVersionListing, entry.createTimestamp);
+        }
     }
 
     public CachedModuleVersionList getCachedModuleResolution(ModuleComponentRepository repository, ModuleIdentifier moduleId) {
+        if (crossBuildCache != null) {
+            CrossBuildModuleMetadataCache.VersionListing versionListing = crossBuildCache.getVersionListing(repository.getId(), moduleId);
+            if (versionListing != null) {
+                return new DefaultCachedModuleVersionList(new ModuleVersionsCacheEntry(versionListing.getVersions(), versionListing.getCreateTimestamp()), timeProvider);
+            }
+        }
         ModuleVersionsCacheEntry moduleVersionsCacheEntry = getCache().get(createKey(repository, moduleId));
         if (moduleVersionsCacheEntry == null) {
             return null;
         }
+        if (crossBuildCache != null) {
+            crossBuildCache.putVersionListing(repository.getId(), moduleId, moduleVersionsCacheEntry.moduleVersionListing, moduleVersionsCacheEntry.createTimestamp);
+        }
         return new DefaultCachedModuleVersionList(moduleVersionsCacheEntry, timeProvider);
     }
 
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.memcache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableSet;
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.internal.ExperimentalFeatures;
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.ModuleComponentAtRepositoryKey;
+import org.gradle.cache.internal.HeapProportionalCacheSizer;
+import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.Set;
+
+/**
+ * Keeps module metadata and version listings read from the persistent module cache in memory, across the builds run by the same daemon,
+ * so that repeated builds do not read and deserialize them again.
+ *
+ * <p>Each entry remembers when it was written to the persistent cache. Module metadata is only used while the persistent cache still holds
+ * the entry written at that time, and the age of both kinds of entry is calculated from that time, so the cache policy expires changing
+ * modules and dynamic versions exactly as it does for entries read from disk. Version listings are used without reading the persistent cache,
+ * a listing that another process has refreshed only means that the older listing held here expires sooner. Both caches are bounded and evict
+ * the least recently used entries first.</p>
+ *
+ * <p>Metadata derives some of its variants using the experimental features of the build that created it, so it is only shared between builds
+ * that do not enable them.</p>
+ */
+public class CrossBuildModuleMetadataCache {
+
+    /**
+     * Set this system property to "true" to keep module metadata in memory across builds.
+     */
+    public static final String TOGGLE_PROPERTY = "org.gradle.resolution.crossbuildcache";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CrossBuildModuleMetadataCache.class);
+    private static final int MAX_METADATA_ENTRIES = 10000;
+    private static final int MAX_VERSION_LISTING_ENTRIES = 2000;
+
+    private final Cache<ModuleComponentAtRepositoryKey, MetadataEntry> metadata;
+    private final Cache<ModuleAtRepositoryKey, VersionListing> versionListings;
+
+    public CrossBuildModuleMetadataCache() {
+        this(new HeapProportionalCacheSizer());
+    }
+
+    private CrossBuildModuleMetadataCache(HeapProportionalCacheSizer cacheSizer) {
+        this(cacheSizer.scaleCacheSize(MAX_METADATA_ENTRIES), cacheSizer.scaleCacheSize(MAX_VERSION_LISTING_ENTRIES));
+    }
+
+    CrossBuildModuleMetadataCache(int maxMetadataEntries, int maxVersionListingEntries) {
+        metadata = CacheBuilder.newBuilder().maximumSize(maxMetadataEntries).recordStats().build();
+        versionListings = CacheBuilder.newBuilder().maximumSize(maxVersionListingEntries).recordStats().build();
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(TOGGLE_PROPERTY);
+    }
+
+    /**
+     * Returns the metadata stored for the given component, when it was stored from the persistent cache entry created at the given time.
+     */
+    @Nullable
+    public ModuleComponentResolveMetadata getMetadata(ModuleComponentAtRepositoryKey key, long createTimestamp, ExperimentalFeatures experimentalFeatures) {
+        if (experimentalFeatures.isEnabled()) {
+            return null;
+        }
+        MetadataEntry cached = metadata.getIfPresent(key);
+        if (cached == null) {
+            return null;
+        }
+        if (cached.createTimestamp != createTimestamp || cached.experimentalFeatures.isEnabled()) {
+            // The persistent cache entry has been replaced, or the build that created the metadata has since enabled experimental features
+            metadata.invalidate(key);
+            return null;
+        }
+        return cached.value;
+    }
+
+    public void putMetadata(ModuleComponentAtRepositoryKey key, long createTimestamp, ModuleComponentResolveMetadata value, ExperimentalFeatures experimentalFeatures) {
+        if (!experimentalFeatures.isEnabled()) {
+            metadata.put(key, new MetadataEntry(value, createTimestamp, experimentalFeatures));
+        }
+    }
+
+    /**
+     * Returns the versions of the given module listed by the given repository, or null when they are not known.
+     */
+    @Nullable
+    public VersionListing getVersionListing(String repositoryId, ModuleIdentifier moduleId) {
+        return versionListings.getIfPresent(new ModuleAtRepositoryKey(repositoryId, moduleId));
+    }
+
+    public void putVersionListing(String repositoryId, ModuleIdentifier moduleId, Set<String> versions, long createTimestamp) {
+        versionListings.put(new ModuleAtRepositoryKey(repositoryId, moduleId), new VersionListing(ImmutableSet.copyOf(versions), createTimestamp));
+    }
+
+    public CacheStats getMetadataStats() {
+        return metadata.stats();
+    }
+
+    public CacheStats getVersionListingStats() {
+        return versionListings.stats();
+    }
+
+    void logStats() {
+        CacheStats metadataStats = getMetadataStats();
+        CacheStats versionListingStats = getVersionListingStats();
+        LOGGER.debug("Cross-build module metadata cache: {} hits, {} misses, {} evictions. Cross-build version listing cache: {} hits, {} misses, {} evictions.",
+            metadataStats.hitCount(), metadataStats.missCount(), metadataStats.evictionCount(),
+            versionListingStats.hitCount(), versionListingStats.missCount(), versionListingStats.evictionCount());
+    }
+
+    public static class VersionListing {
+        private final Set<String> versions;
+        private final long createTimestamp;
+
+        VersionListing(Set<String> versions, long createTimestamp) {
+            this.versions = versions;
+            this.createTimestamp = createTimestamp;
+        }
+
+        public Set<String> getVersions() {
+            return versions;
+        }
+
+        public long getCreateTimestamp() {
+            return createTimestamp;
+        }
+    }
+
+    private static class MetadataEntry {
+        private final ModuleComponentResolveMetadata value;
+        private final long createTimestamp;
+        private final ExperimentalFeatures experimentalFeatures;
+
+        MetadataEntry(ModuleComponentResolveMetadata value, long createTimestamp, ExperimentalFeatures experimentalFeatures) {
+            this.value = value;
+            this.createTimestamp = createTimestamp;
+            this.experimentalFeatures = experimentalFeatures;
+        }
+    }
+
+    private static class ModuleAtRepositoryKey {
+        private final String repositoryId;
+        private final ModuleIdentifier moduleId;
+
+        ModuleAtRepositoryKey(String repositoryId, ModuleIdentifier moduleId) {
+            this.repositoryId = repositoryId;
+            this.moduleId = moduleId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == null || !(o instanceof ModuleAtRepositoryKey)) {
+                return false;
+            }
+            ModuleAtRepositoryKey other = (ModuleAtRepositoryKey) o;
+            return repositoryId.equals(other.repositoryId) && moduleId.equals(other.moduleId);
+        }
+
+        @Override
+        public int hashCode() {
+            return repositoryId.hashCode() ^ moduleId.hashCode();
+        }
+    }
+}
@@ -25,7 +25,9 @@ import org.gradle.internal.concurrent.Stoppable;
 import java.util.Map;
 
 /**
- * Caches the dependency metadata (descriptors, artifact files) in memory.
+ * Caches the dependency metadata (descriptors, artifact files) in memory, for the duration of a build.
+ *
+ * @see CrossBuildModuleMetadataCache for the metadata kept across builds
  */
 public class InMemoryCachedRepositoryFactory implements Stoppable {
 
@@ -34,6 +36,11 @@ public class InMemoryCachedRepositoryFactory implements Stoppable {
     private final static Logger LOG = Logging.getLogger(InMemoryCachedRepositoryFactory.class);
 
     private final Map<String, InMemoryModuleComponentRepositoryCaches> cachePerRepo = new MapMaker().makeMap();
+    private final CrossBuildModuleMetadataCache crossBuildCache;
+
+    public InMemoryCachedRepositoryFactory(CrossBuildModuleMetadataCache crossBuildCache) {
+        this.crossBuildCache = crossBuildCache;
+    }
 
     public ModuleComponentRepository cached(ModuleComponentRepository input) {
         if ("false".equalsIgnoreCase(System.getProperty(TOGGLE_PROPERTY))) {
@@ -53,5 +60,8 @@ public class InMemoryCachedRepositoryFactory implements Stoppable {
 
     public void stop() {
         cachePerRepo.clear();
+        if (CrossBuildModuleMetadataCache.isEnabled()) {
+            crossBuildCache.logStats();
+        }
     }
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
+
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.Transformer;
+import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.resource.local.LocallyAvailableExternalResource;
+import org.gradle.internal.serialize.HashCodeSerializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps parsed POMs by the hash of their content, so that parent POMs and imported BOMs are parsed once rather than once for each POM that refers to them.
+ *
+ * <p>Parsed POMs are kept in memory for the build, and in the metadata cache for later builds. Entries in the metadata cache are keyed by the hash of the POM content,
+ * in a cache named after the version of the parsed form.</p>
+ */
+public class ParsedPomCache {
+    /**
+     * The version of the parsed form of a POM. Increase it when the parser or the serialized form of {@link PomElement} changes,
+     * so that POMs parsed by another version are parsed again rather than read back in the wrong form.
+     */
+    static final int PARSED_FORMAT_VERSION = 1;
+
+    private final CacheLockingManager cacheLockingManager;
+    private final Map<HashCode, PomElement> inMemoryCache = new ConcurrentHashMap<HashCode, PomElement>();
+    private PersistentIndexedCache<HashCode, PomElement> persistentCache;
+
+    public ParsedPomCache(CacheLockingManager cacheLockingManager) {
+        this.cacheLockingManager = cacheLockingManager;
+    }
+
+    private synchronized PersistentIndexedCache<HashCode, PomElement> getPersistentCache() {
+        if (persistentCache == null) {
+            persistentCache = cacheLockingManager.createCache("parsed-poms-v" + PARSED_FORMAT_VERSION, new HashCodeSerializer(), new PomElementSerializer());
+        }
+        return persistentCache;
+    }
+
+    /**
+     * Returns the root element of the given POM, parsing it only when a POM with the same content has not been parsed before.
+     */
+    public PomElement parse(final LocallyAvailableExternalResource resource) {
+        byte[] content = resource.withContent(new Transformer<byte[], InputStream>() {
+            public byte[] transform(InputStream inputStream) {
+                try {
+                    return IOUtils.toByteArray(inputStream);
+                } catch (IOException e) {
+                    throw new MetaDataParseException("POM", resource, e);
+                }
+            }
+        }).getResult();
+
+        HashCode hash = Hashing.md5().hashBytes(content);
+        PomElement project = inMemoryCache.get(hash);
+        if (project != null) {
+            return project;
+        }
+        project = getPersistentCache().get(hash);
+        if (project == null) {
+            try {
+                project = PomStreamParser.parse(new ByteArrayInputStream(content), resource.getFile().toURI().toASCIIString());
+            } catch (Exception e) {
+                throw new MetaDataParseException("POM", resource, e);
+            }
+            getPersistentCache().put(hash, project);
+        }
+        inMemoryCache.put(hash, project);
+        return project;
+    }
+}
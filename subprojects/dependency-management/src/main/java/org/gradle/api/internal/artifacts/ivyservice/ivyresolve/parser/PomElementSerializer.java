@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.gradle.internal.serialize.AbstractSerializer;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serializes a parsed POM. Element names repeat a lot, so each name is written once per POM and referred to by index after that.
+ */
+public class PomElementSerializer extends AbstractSerializer<PomElement> {
+    @Override
+    public PomElement read(Decoder decoder) throws Exception {
+        return readElement(decoder, Lists.<String>newArrayList());
+    }
+
+    private PomElement readElement(Decoder decoder, List<String> names) throws IOException {
+        int nameIndex = decoder.readSmallInt();
+        String name;
+        if (nameIndex == 0) {
+            name = decoder.readString();
+            names.add(name);
+        } else {
+            name = names.get(nameIndex - 1);
+        }
+        String textContent = decoder.readString();
+        int childCount = decoder.readSmallInt();
+        List<PomElement> children = Collections.emptyList();
+        if (childCount > 0) {
+            children = Lists.newArrayListWithCapacity(childCount);
+            for (int i = 0; i < childCount; i++) {
+                children.add(readElement(decoder, names));
+            }
+        }
+        return new PomElement(name, textContent, children);
+    }
+
+    @Override
+    public void write(Encoder encoder, PomElement value) throws Exception {
+        writeElement(encoder, value, Maps.<String, Integer>newHashMap());
+    }
+
+    private void writeElement(Encoder encoder, PomElement element, Map<String, Integer> names) throws IOException {
+        Integer nameIndex = names.get(element.getName());
+        if (nameIndex == null) {
+            encoder.writeSmallInt(0);
+            encoder.writeString(element.getName());
+            names.put(element.getName(), names.size() + 1);
+        } else {
+            encoder.writeSmallInt(nameIndex);
+        }
+        encoder.writeString(element.getTextContent());
+        List<PomElement> children = element.getChildren();
+        encoder.writeSmallInt(children.size());
+        for (PomElement child : children) {
+            writeElement(encoder, child, names);
+        }
+    }
+}
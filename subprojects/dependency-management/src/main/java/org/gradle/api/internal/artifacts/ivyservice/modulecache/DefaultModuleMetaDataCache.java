@@ -17,10 +17,12 @@ package org.gradle.api.internal.artifacts.ivyservice.modulecache;
 
 import com.google.common.base.Objects;
 import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.internal.ExperimentalFeatures;
 import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
 import org.gradle.api.internal.artifacts.ivyservice.ArtifactCacheMetaData;
 import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ModuleComponentRepository;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.memcache.CrossBuildModuleMetadataCache;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentIdentifierSerializer;
 import org.gradle.api.internal.artifacts.repositories.metadata.IvyMutableModuleMetadataFactory;
 import org.gradle.api.internal.artifacts.repositories.metadata.MavenMutableModuleMetadataFactory;
@@ -38,6 +40,8 @@ import org.gradle.util.BuildCommencedTimeProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+
 public class DefaultModuleMetaDataCache implements ModuleMetaDataCache {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultModuleMetaDataCache.class);
 
@@ -45,6 +49,8 @@ public class DefaultModuleMetaDataCache implements ModuleMetaDataCache {
     private final CacheLockingManager cacheLockingManager;
 
     private final ModuleMetadataStore moduleMetadataStore;
+    private final CrossBuildModuleMetadataCache crossBuildCache;
+    private final ExperimentalFeatures experimentalFeatures;
 
     private PersistentIndexedCache<ModuleComponentAtRepositoryKey, ModuleMetadataCacheEntry> cache;
 
@@ -55,9 +61,13 @@ public class DefaultModuleMetaDataCache implements ModuleMetaDataCache {
                                       ImmutableAttributesFactory attributesFactory,
                                       NamedObjectInstantiator instantiator,
                                       MavenMutableModuleMetadataFactory mavenMetadataFactory,
-                                      IvyMutableModuleMetadataFactory ivyMetadataFactory) {
+                                      IvyMutableModuleMetadataFactory ivyMetadataFactory,
+                                      @Nullable CrossBuildModuleMetadataCache crossBuildCache,
+                                      ExperimentalFeatures experimentalFeatures) {
         this.timeProvider = timeProvider;
         this.cacheLockingManager = cacheLockingManager;
+        this.crossBuildCache = crossBuildCache;
+        this.experimentalFeatures = experimentalFeatures;
         moduleMetadataStore = new ModuleMetadataStore(new DefaultPathKeyFileStore(artifactCacheMetaData.getMetaDataStoreDirectory()), new ModuleMetadataSerializer(attributesFactory, instantiator, mavenMetadataFactory, ivyMetadataFactory), moduleIdentifierFactory);
     }
 
@@ -85,13 +95,23 @@ public class DefaultModuleMetaDataCache implements ModuleMetaDataCache {
                 if (entry.isMissing()) {
                     return new DefaultCachedMetaData(entry, null, timeProvider);
                 }
+                if (crossBuildCache != null) {
+                    ModuleComponentResolveMetadata metadata = crossBuildCache.getMetadata(key, entry.createTimestamp, experimentalFeatures);
+                    if (metadata != null) {
+                        return new DefaultCachedMetaData(entry, metadata, timeProvider);
+                    }
+                }
                 MutableModuleComponentResolveMetadata metadata = moduleMetadataStore.getModuleDescriptor(key);
                 if (metadata == null) {
                     // Descriptor file has been deleted - ignore the entry
                     cache.remove(key);
                     return null;
                 }
-                return new DefaultCachedMetaData(entry, entry.configure(metadata), timeProvider);
+                ModuleComponentResolveMetadata configured = entry.configure(metadata);
+                if (crossBuildCache != null) {
+                    crossBuildCache.putMetadata(key, entry.createTimestamp, configured, experimentalFeatures);
+                }
+                return new DefaultCachedMetaData(entry, configured, timeProvider);
             }
         });
     }
@@ -112,6 +132,9 @@ public class DefaultModuleMetaDataCache implements ModuleMetaDataCache {
                 moduleMetadataStore.putModuleDescriptor(key, metadata);
                 ModuleMetadataCacheEntry entry = createEntry(metadata);
                 getCache().put(key, entry);
+                if (crossBuildCache != null) {
+                    crossBuildCache.putMetadata(key, entry.createTimestamp, metadata, experimentalFeatures);
+                }
                 return new DefaultCachedMetaData(entry, metadata, timeProvider);
             }
         });
@@ -105,6 +105,14 @@ final class ImmutableModuleExclusionSet implements Set<AbstractModuleExclusion>
         return false;
     }
 
+    /**
+     * Returns true if this set only contains module id excludes.
+     */
+    boolean excludesModuleIdsOnly() {
+        precomputeCaches();
+        return otherExcludes.isEmpty();
+    }
+
     boolean excludesArtifact(ModuleIdentifier module, IvyArtifactName artifact) {
         precomputeCaches();
         for (AbstractModuleExclusion excludeSpec : artifactExcludes) {
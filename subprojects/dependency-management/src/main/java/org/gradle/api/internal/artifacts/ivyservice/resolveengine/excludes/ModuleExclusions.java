@@ -50,6 +50,9 @@ import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.exclude
  * <ul> <li>When a module dependency has multiple exclusions, then the resulting exclusion is the _intersection_ of those exclusions (module is excluded if excluded by _any_).</li> <li>When a module
  * is depended on via a transitive path, then the resulting exclusion is the _intersection_ of the exclusions on each leg of the path (module is excluded if excluded by _any_).</li> <li>When a module
  * is depended on via multiple paths in the graph, then the resulting exclusion is the _union_ of the exclusions on each of those paths (module is excluded if excluded by _all_).</li> </ul>
+ *
+ * <p>Specs are interned, so that equal specs are usually the same instance. This allows the results of {@link #union(ModuleExclusion, ModuleExclusion)} and
+ * {@link #intersect(ModuleExclusion, ModuleExclusion)} to be remembered by the identity of their arguments, as the same specs are combined again and again while traversing the graph.</p>
  */
 public class ModuleExclusions {
     private static final ExcludeNone EXCLUDE_NONE = new ExcludeNone();
@@ -64,6 +67,10 @@ public class ModuleExclusions {
     private final Map<ModuleIdentifier, ModuleIdExcludeSpec> moduleIdSpecs = Maps.newConcurrentMap();
     private final Map<String, ModuleNameExcludeSpec> moduleNameSpecs = Maps.newConcurrentMap();
     private final Map<String, GroupNameExcludeSpec> groupNameSpecs = Maps.newConcurrentMap();
+    private final Map<ArtifactExcludeSpec, ArtifactExcludeSpec> artifactSpecs = Maps.newConcurrentMap();
+    private final Map<ImmutableList<AbstractModuleExclusion>, UnionExclusion> unionCache = Maps.newConcurrentMap();
+    private final Map<ExclusionPair, ModuleExclusion> intersectResults = Maps.newConcurrentMap();
+    private final Map<ExclusionPair, ModuleExclusion> unionResults = Maps.newConcurrentMap();
 
     private final Object mergeOperationLock = new Object();
 
@@ -131,7 +138,7 @@ public class ModuleExclusions {
                 return EXCLUDE_ALL_MODULES_SPEC;
             }
         } else {
-            return new ArtifactExcludeSpec(moduleId, artifact);
+            return artifactExcludeSpec(new ArtifactExcludeSpec(moduleId, artifact));
         }
     }
 
@@ -144,6 +151,15 @@ public class ModuleExclusions {
         return spec;
     }
 
+    private ArtifactExcludeSpec artifactExcludeSpec(ArtifactExcludeSpec candidate) {
+        ArtifactExcludeSpec spec = artifactSpecs.get(candidate);
+        if (spec == null) {
+            spec = candidate;
+            artifactSpecs.put(spec, spec);
+        }
+        return spec;
+    }
+
     private ModuleNameExcludeSpec moduleNameExcludeSpec(String id) {
         ModuleNameExcludeSpec spec = moduleNameSpecs.get(id);
         if (spec == null) {
@@ -175,6 +191,17 @@ public class ModuleExclusions {
         if (two == EXCLUDE_NONE) {
             return one;
         }
+
+        ExclusionPair operation = new ExclusionPair(one, two);
+        ModuleExclusion result = intersectResults.get(operation);
+        if (result == null) {
+            result = doIntersect(one, two);
+            intersectResults.put(operation, result);
+        }
+        return result;
+    }
+
+    private ModuleExclusion doIntersect(ModuleExclusion one, ModuleExclusion two) {
         if (one.equals(two)) {
             return one;
         }
@@ -213,6 +240,17 @@ public class ModuleExclusions {
         if (one == EXCLUDE_NONE || two == EXCLUDE_NONE) {
             return EXCLUDE_NONE;
         }
+
+        ExclusionPair operation = new ExclusionPair(one, two);
+        ModuleExclusion result = unionResults.get(operation);
+        if (result == null) {
+            result = doUnion(one, two);
+            unionResults.put(operation, result);
+        }
+        return result;
+    }
+
+    private ModuleExclusion doUnion(ModuleExclusion one, ModuleExclusion two) {
         if (one.equals(two)) {
             return one;
         }
@@ -241,7 +279,7 @@ public class ModuleExclusions {
         if (specs.size() == 1) {
             return specs.get(0);
         }
-        return new UnionExclusion(specs);
+        return asUnion(ImmutableList.copyOf(specs));
     }
 
     /**
@@ -274,7 +312,7 @@ public class ModuleExclusions {
             if (exclusion != null) {
                 return exclusion;
             }
-            return mergeAndCacheResult(merge, oneFilters, otherFilters);
+            return mergeAndCacheResult(merge, one.getFilters(), other.getFilters());
         }
         return null;
     }
@@ -297,8 +335,39 @@ public class ModuleExclusions {
         }
     }
 
-    private AbstractModuleExclusion mergeAndCacheResult(MergeOperation merge, AbstractModuleExclusion[] oneFilters, AbstractModuleExclusion[] otherFilters) {
-        AbstractModuleExclusion exclusion; // Merge the exclude rules from both specs into a single union spec.
+    private AbstractModuleExclusion mergeAndCacheResult(MergeOperation merge, ImmutableModuleExclusionSet one, ImmutableModuleExclusionSet other) {
+        AbstractModuleExclusion exclusion;
+        if (one.excludesModuleIdsOnly() && other.excludesModuleIdsOnly()) {
+            exclusion = mergeModuleIds(one, other);
+        } else {
+            exclusion = mergeExcludeRules(one.elements, other.elements);
+        }
+        mergeCache.put(merge, exclusion);
+        return exclusion;
+    }
+
+    /**
+     * Merges two sets of module id excludes, which only exclude the modules excluded by both. This is the common case, and a set lookup
+     * is much cheaper than comparing every spec of one set with every spec of the other.
+     */
+    private AbstractModuleExclusion mergeModuleIds(ImmutableModuleExclusionSet one, ImmutableModuleExclusionSet other) {
+        ImmutableModuleExclusionSet smaller = one.size() <= other.size() ? one : other;
+        ImmutableModuleExclusionSet larger = smaller == one ? other : one;
+        ImmutableSet.Builder<AbstractModuleExclusion> merged = ImmutableSet.builder();
+        for (AbstractModuleExclusion spec : smaller.elements) {
+            if (larger.excludesModule(((ModuleIdExcludeSpec) spec).moduleId)) {
+                merged.add(spec);
+            }
+        }
+        ImmutableSet<AbstractModuleExclusion> excludes = merged.build();
+        if (excludes.isEmpty()) {
+            return ModuleExclusions.EXCLUDE_NONE;
+        }
+        return asIntersection(excludes);
+    }
+
+    private AbstractModuleExclusion mergeExcludeRules(AbstractModuleExclusion[] oneFilters, AbstractModuleExclusion[] otherFilters) {
+        // Merge the exclude rules from both specs into a single union spec.
         final BitSet remaining = new BitSet(otherFilters.length);
         remaining.set(0, otherFilters.length, true);
         MergeSet merged = new MergeSet(remaining, oneFilters.length + otherFilters.length);
@@ -313,12 +382,9 @@ public class ModuleExclusions {
             }
         }
         if (merged.isEmpty()) {
-            exclusion = ModuleExclusions.EXCLUDE_NONE;
-        } else {
-            exclusion = asIntersection(ImmutableSet.copyOf(merged));
+            return ModuleExclusions.EXCLUDE_NONE;
         }
-        mergeCache.put(merge, exclusion);
-        return exclusion;
+        return asIntersection(ImmutableSet.copyOf(merged));
     }
 
     private IntersectionExclusion asIntersection(ImmutableSet<AbstractModuleExclusion> excludes) {
@@ -330,6 +396,15 @@ public class ModuleExclusions {
         return cached;
     }
 
+    private UnionExclusion asUnion(ImmutableList<AbstractModuleExclusion> excludes) {
+        UnionExclusion cached = unionCache.get(excludes);
+        if (cached == null) {
+            cached = new UnionExclusion(excludes);
+            unionCache.put(excludes, cached);
+        }
+        return cached;
+    }
+
     // Add exclusions to the list that will exclude modules/artifacts that are excluded by _both_ of the candidate rules.
     private void mergeExcludeRules(AbstractModuleExclusion spec1, AbstractModuleExclusion spec2, Set<AbstractModuleExclusion> merged) {
         if (spec1 == spec2) {
@@ -444,6 +519,39 @@ public class ModuleExclusions {
         }
     }
 
+    /**
+     * A pair of specs, compared by identity. Specs are interned, so comparing by identity is cheap and usually finds an earlier result.
+     */
+    private static final class ExclusionPair {
+        private final ModuleExclusion one;
+        private final ModuleExclusion two;
+        private final int hashCode;
+
+        private ExclusionPair(ModuleExclusion one, ModuleExclusion two) {
+            this.one = one;
+            this.two = two;
+            this.hashCode = 31 * System.identityHashCode(one) + System.identityHashCode(two);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            ExclusionPair that = (ExclusionPair) o;
+            return one == that.one && two == that.two;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
     private static final class MergeSet extends HashSet<AbstractModuleExclusion> {
         private final BitSet remaining;
         private int idx;
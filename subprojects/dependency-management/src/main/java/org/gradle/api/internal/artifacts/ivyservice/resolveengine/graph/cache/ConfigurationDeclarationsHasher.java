@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.cache;
+
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.artifacts.component.ProjectComponentSelector;
+import org.gradle.internal.component.model.ConfigurationMetadata;
+import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.component.model.ExcludeMetadata;
+import org.gradle.internal.component.model.IvyArtifactName;
+import org.gradle.internal.component.model.LocalOriginDependencyMetadata;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Hashes everything a configuration declares that the traversal of the dependency graph depends on: its dependencies, its excludes and
+ * its attributes. The configurations a dependency selects in its target are not included, as they are selected again when replaying.
+ */
+class ConfigurationDeclarationsHasher {
+
+    private ConfigurationDeclarationsHasher() {
+    }
+
+    public static HashCode hash(ConfigurationMetadata configuration) {
+        Hasher hasher = Hashing.md5().newHasher();
+        putString(hasher, configuration.getName());
+        hasher.putBoolean(configuration.isTransitive());
+        putString(hasher, configuration.getAttributes().toString());
+        putExcludes(hasher, configuration.getExcludes());
+        List<? extends DependencyMetadata> dependencies = configuration.getDependencies();
+        hasher.putInt(dependencies.size());
+        for (DependencyMetadata dependency : dependencies) {
+            putSelector(hasher, dependency.getSelector());
+            hasher.putBoolean(dependency.isTransitive());
+            hasher.putBoolean(dependency.isChanging());
+            hasher.putBoolean(dependency.isPending());
+            putExcludes(hasher, dependency.getExcludes());
+            List<IvyArtifactName> artifacts = dependency.getArtifacts();
+            hasher.putInt(artifacts.size());
+            for (IvyArtifactName artifact : artifacts) {
+                putArtifact(hasher, artifact);
+            }
+            if (dependency instanceof LocalOriginDependencyMetadata) {
+                LocalOriginDependencyMetadata localDependency = (LocalOriginDependencyMetadata) dependency;
+                putString(hasher, localDependency.getModuleConfiguration());
+                putString(hasher, localDependency.getDependencyConfiguration());
+                hasher.putBoolean(localDependency.isForce());
+            }
+        }
+        return hasher.hash();
+    }
+
+    private static void putSelector(Hasher hasher, ComponentSelector selector) {
+        if (selector instanceof ModuleComponentSelector) {
+            ModuleComponentSelector moduleSelector = (ModuleComponentSelector) selector;
+            hasher.putByte((byte) 1);
+            putString(hasher, moduleSelector.getGroup());
+            putString(hasher, moduleSelector.getModule());
+            putString(hasher, moduleSelector.getVersionConstraint().getPreferredVersion());
+            List<String> rejectedVersions = moduleSelector.getVersionConstraint().getRejectedVersions();
+            hasher.putInt(rejectedVersions.size());
+            for (String rejectedVersion : rejectedVersions) {
+                putString(hasher, rejectedVersion);
+            }
+        } else if (selector instanceof ProjectComponentSelector) {
+            ProjectComponentSelector projectSelector = (ProjectComponentSelector) selector;
+            hasher.putByte((byte) 2);
+            putString(hasher, projectSelector.getBuildName());
+            putString(hasher, projectSelector.getProjectPath());
+        } else {
+            hasher.putByte((byte) 3);
+            putString(hasher, selector.getDisplayName());
+        }
+    }
+
+    private static void putExcludes(Hasher hasher, List<ExcludeMetadata> excludes) {
+        hasher.putInt(excludes.size());
+        for (ExcludeMetadata exclude : excludes) {
+            putString(hasher, exclude.getModuleId().getGroup());
+            putString(hasher, exclude.getModuleId().getName());
+            IvyArtifactName artifact = exclude.getArtifact();
+            hasher.putBoolean(artifact != null);
+            if (artifact != null) {
+                putArtifact(hasher, artifact);
+            }
+            putString(hasher, exclude.getMatcher());
+        }
+    }
+
+    private static void putArtifact(Hasher hasher, IvyArtifactName artifact) {
+        putString(hasher, artifact.getName());
+        putString(hasher, artifact.getType());
+        putString(hasher, artifact.getExtension());
+        putString(hasher, artifact.getClassifier());
+    }
+
+    private static void putString(Hasher hasher, @Nullable String value) {
+        // Include the length, so that adjacent values cannot run into each other
+        if (value == null) {
+            hasher.putInt(-1);
+        } else {
+            hasher.putInt(value.length());
+            hasher.putString(value);
+        }
+    }
+}
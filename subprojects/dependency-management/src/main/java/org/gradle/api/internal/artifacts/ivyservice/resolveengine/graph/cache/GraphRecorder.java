@@ -0,0 +1,221 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.cache;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
+import org.gradle.api.artifacts.ClientModule;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.artifacts.component.ProjectComponentSelector;
+import org.gradle.api.internal.artifacts.dsl.ModuleReplacementsData;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphComponent;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphEdge;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphNode;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphSelector;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
+import org.gradle.internal.component.model.DependencyMetadata;
+
+import javax.annotation.Nullable;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the graph visited by the {@link org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder.DependencyGraphBuilder}.
+ *
+ * <p>Only graphs that resolve the same way as long as the declarations of their nodes do not change are recorded. Graphs with failures,
+ * dynamic or changing versions, client modules, artifact dependencies or module replacements are not.</p>
+ */
+class GraphRecorder implements DependencyGraphVisitor {
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final ModuleReplacementsData moduleReplacements;
+    private final List<DependencyGraphNode> nodes = Lists.newArrayList();
+    private final Map<Long, Integer> selectorIndexes = Maps.newHashMap();
+    private final List<ComponentSelector> selectors = Lists.newArrayList();
+    private final List<DependencyGraphNode> edgeVisitOrder = Lists.newArrayList();
+    private DependencyGraphNode root;
+    private boolean recordable = true;
+    private RecordedGraph graph;
+
+    GraphRecorder(VersionSelectorScheme versionSelectorScheme, ModuleReplacementsData moduleReplacements) {
+        this.versionSelectorScheme = versionSelectorScheme;
+        this.moduleReplacements = moduleReplacements;
+    }
+
+    /**
+     * Returns the recorded graph, or null when the graph cannot be replayed.
+     */
+    @Nullable
+    public RecordedGraph getGraph() {
+        return graph;
+    }
+
+    @Override
+    public void start(DependencyGraphNode root) {
+        this.root = root;
+    }
+
+    @Override
+    public void visitNode(DependencyGraphNode node) {
+        if (nodes.isEmpty() && node != root) {
+            recordable = false;
+        }
+        nodes.add(node);
+    }
+
+    @Override
+    public void visitSelector(DependencyGraphSelector selector) {
+        ComponentSelector requested = selector.getRequested();
+        if (requested instanceof ModuleComponentSelector) {
+            String version = ((ModuleComponentSelector) requested).getVersionConstraint().getPreferredVersion();
+            if (versionSelectorScheme.parseSelector(version).isDynamic()) {
+                recordable = false;
+            }
+        } else if (!(requested instanceof ProjectComponentSelector)) {
+            recordable = false;
+        }
+        selectorIndexes.put(selector.getResultId(), selectors.size());
+        selectors.add(requested);
+    }
+
+    @Override
+    public void visitEdges(DependencyGraphNode node) {
+        // Only the order is recorded, the edges themselves are collected once the graph is complete
+        edgeVisitOrder.add(node);
+    }
+
+    @Override
+    public void finish(DependencyGraphNode root) {
+        if (recordable) {
+            graph = record();
+        }
+        nodes.clear();
+        edgeVisitOrder.clear();
+    }
+
+    @Nullable
+    private RecordedGraph record() {
+        int nodeCount = nodes.size();
+        if (nodeCount == 0 || !nodes.get(0).getIncomingEdges().isEmpty()) {
+            return null;
+        }
+        Map<DependencyGraphNode, Integer> nodeIndexes = new IdentityHashMap<DependencyGraphNode, Integer>();
+        Map<Long, Integer> componentIndexes = Maps.newHashMap();
+        List<RecordedGraph.Component> components = Lists.newArrayList();
+        for (int i = 0; i < nodeCount; i++) {
+            DependencyGraphNode node = nodes.get(i);
+            nodeIndexes.put(node, i);
+            DependencyGraphComponent component = node.getOwner();
+            if (!componentIndexes.containsKey(component.getResultId())) {
+                if (component.getMetadata().isChanging() || moduleReplacements.participatesInReplacements(component.getModuleVersion().getModule())) {
+                    return null;
+                }
+                componentIndexes.put(component.getResultId(), components.size());
+                components.add(new RecordedGraph.Component(component.getComponentId(), component.getModuleVersion(), component.getSelectionReason()));
+            }
+        }
+
+        int[] visitOrder = new int[edgeVisitOrder.size()];
+        for (int i = 0; i < visitOrder.length; i++) {
+            Integer index = nodeIndexes.get(edgeVisitOrder.get(i));
+            if (index == null) {
+                return null;
+            }
+            visitOrder[i] = index;
+        }
+
+        Map<DependencyGraphEdge, Integer> edgeIndexes = new IdentityHashMap<DependencyGraphEdge, Integer>();
+        List<RecordedGraph.Edge> edges = Lists.newArrayList();
+        List<int[]> outgoingEdges = Lists.newArrayList();
+        for (int i = 0; i < nodeCount; i++) {
+            DependencyGraphNode node = nodes.get(i);
+            List<Integer> outgoing = Lists.newArrayList();
+            for (DependencyGraphEdge edge : node.getOutgoingEdges()) {
+                RecordedGraph.Edge recorded = recordEdge(i, node, edge, nodeIndexes, componentIndexes);
+                if (recorded == null) {
+                    return null;
+                }
+                edgeIndexes.put(edge, edges.size());
+                outgoing.add(edges.size());
+                edges.add(recorded);
+            }
+            outgoingEdges.add(Ints.toArray(outgoing));
+        }
+
+        List<RecordedGraph.Node> recordedNodes = Lists.newArrayListWithCapacity(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            DependencyGraphNode node = nodes.get(i);
+            List<Integer> incoming = Lists.newArrayList();
+            for (DependencyGraphEdge edge : node.getIncomingEdges()) {
+                Integer index = edgeIndexes.get(edge);
+                if (index == null) {
+                    return null;
+                }
+                incoming.add(index);
+            }
+            int component = componentIndexes.get(node.getOwner().getResultId());
+            String configuration = node.getResolvedConfigurationId().getConfiguration();
+            recordedNodes.add(new RecordedGraph.Node(component, configuration, ConfigurationDeclarationsHasher.hash(node.getMetadata()), outgoingEdges.get(i), Ints.toArray(incoming)));
+        }
+
+        return new RecordedGraph(components, recordedNodes, Lists.newArrayList(selectors), edges, visitOrder);
+    }
+
+    @Nullable
+    private RecordedGraph.Edge recordEdge(int from, DependencyGraphNode node, DependencyGraphEdge edge, Map<DependencyGraphNode, Integer> nodeIndexes, Map<Long, Integer> componentIndexes) {
+        if (edge.getFailure() != null || edge.getOriginalDependency() instanceof ClientModule) {
+            return null;
+        }
+
+        // Find the declaration of the edge by the identity of its selector
+        List<? extends DependencyMetadata> dependencies = node.getMetadata().getDependencies();
+        int dependency = -1;
+        for (int i = 0; i < dependencies.size(); i++) {
+            if (dependencies.get(i).getSelector() == edge.getRequested()) {
+                if (dependency >= 0) {
+                    return null;
+                }
+                dependency = i;
+            }
+        }
+        if (dependency < 0) {
+            return null;
+        }
+        DependencyMetadata dependencyMetadata = dependencies.get(dependency);
+        if (dependencyMetadata.isChanging() || !dependencyMetadata.getArtifacts().isEmpty()) {
+            return null;
+        }
+
+        Integer selector = selectorIndexes.get(edge.getSelector().getResultId());
+        Integer selected = componentIndexes.get(edge.getSelected());
+        if (selector == null || selected == null) {
+            return null;
+        }
+        List<Integer> targets = Lists.newArrayList();
+        for (DependencyGraphNode target : edge.getTargets()) {
+            Integer index = nodeIndexes.get(target);
+            if (index == null) {
+                return null;
+            }
+            targets.add(index);
+        }
+        return new RecordedGraph.Edge(from, dependency, selector, selected, Ints.toArray(targets));
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.cache;
+
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.result.ComponentSelectionReason;
+import org.gradle.internal.hash.HashCode;
+
+import java.util.List;
+
+/**
+ * The shape of a resolved dependency graph, as seen by a {@link org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor}.
+ *
+ * <p>Components, nodes, selectors and edges refer to each other by their index. Nodes are listed in the order they were visited,
+ * and {@link #getEdgeVisitOrder()} lists the nodes in the order their edges were visited. Edges refer to the dependency declared by
+ * the configuration of their source node by its position, so that the graph can be replayed against the current metadata.</p>
+ */
+class RecordedGraph {
+    private final List<Component> components;
+    private final List<Node> nodes;
+    private final List<ComponentSelector> selectors;
+    private final List<Edge> edges;
+    private final int[] edgeVisitOrder;
+
+    RecordedGraph(List<Component> components, List<Node> nodes, List<ComponentSelector> selectors, List<Edge> edges, int[] edgeVisitOrder) {
+        this.components = components;
+        this.nodes = nodes;
+        this.selectors = selectors;
+        this.edges = edges;
+        this.edgeVisitOrder = edgeVisitOrder;
+    }
+
+    public List<Component> getComponents() {
+        return components;
+    }
+
+    /**
+     * The nodes of the graph. The first node is the root.
+     */
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    public List<ComponentSelector> getSelectors() {
+        return selectors;
+    }
+
+    public List<Edge> getEdges() {
+        return edges;
+    }
+
+    public int[] getEdgeVisitOrder() {
+        return edgeVisitOrder;
+    }
+
+    static class Component {
+        private final ComponentIdentifier componentId;
+        private final ModuleVersionIdentifier moduleVersion;
+        private final ComponentSelectionReason selectionReason;
+
+        Component(ComponentIdentifier componentId, ModuleVersionIdentifier moduleVersion, ComponentSelectionReason selectionReason) {
+            this.componentId = componentId;
+            this.moduleVersion = moduleVersion;
+            this.selectionReason = selectionReason;
+        }
+
+        public ComponentIdentifier getComponentId() {
+            return componentId;
+        }
+
+        public ModuleVersionIdentifier getModuleVersion() {
+            return moduleVersion;
+        }
+
+        public ComponentSelectionReason getSelectionReason() {
+            return selectionReason;
+        }
+    }
+
+    static class Node {
+        private final int component;
+        private final String configuration;
+        private final HashCode declarations;
+        private final int[] outgoingEdges;
+        private final int[] incomingEdges;
+
+        Node(int component, String configuration, HashCode declarations, int[] outgoingEdges, int[] incomingEdges) {
+            this.component = component;
+            this.configuration = configuration;
+            this.declarations = declarations;
+            this.outgoingEdges = outgoingEdges;
+            this.incomingEdges = incomingEdges;
+        }
+
+        public int getComponent() {
+            return component;
+        }
+
+        public String getConfiguration() {
+            return configuration;
+        }
+
+        /**
+         * The hash of the declarations of the configuration, see {@link ConfigurationDeclarationsHasher}.
+         */
+        public HashCode getDeclarations() {
+            return declarations;
+        }
+
+        public int[] getOutgoingEdges() {
+            return outgoingEdges;
+        }
+
+        public int[] getIncomingEdges() {
+            return incomingEdges;
+        }
+    }
+
+    static class Edge {
+        private final int from;
+        private final int dependency;
+        private final int selector;
+        private final int selected;
+        private final int[] targets;
+
+        Edge(int from, int dependency, int selector, int selected, int[] targets) {
+            this.from = from;
+            this.dependency = dependency;
+            this.selector = selector;
+            this.selected = selected;
+            this.targets = targets;
+        }
+
+        public int getFrom() {
+            return from;
+        }
+
+        /**
+         * The position of the dependency in the dependencies of the configuration of the source node.
+         */
+        public int getDependency() {
+            return dependency;
+        }
+
+        public int getSelector() {
+            return selector;
+        }
+
+        public int getSelected() {
+            return selected;
+        }
+
+        public int[] getTargets() {
+            return targets;
+        }
+    }
+}
@@ -0,0 +1,515 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.cache;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.gradle.api.Transformer;
+import org.gradle.api.artifacts.Dependency;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.result.ComponentSelectionReason;
+import org.gradle.api.internal.artifacts.ComponentSelectorConverter;
+import org.gradle.api.internal.artifacts.ResolvedConfigurationIdentifier;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusion;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphComponent;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphEdge;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphNode;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphSelector;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
+import org.gradle.api.internal.attributes.AttributesSchemaInternal;
+import org.gradle.api.internal.attributes.ImmutableAttributes;
+import org.gradle.internal.component.local.model.DslOriginDependencyMetadata;
+import org.gradle.internal.component.local.model.LocalConfigurationMetadata;
+import org.gradle.internal.component.local.model.LocalFileDependencyMetadata;
+import org.gradle.internal.component.model.ComponentArtifactMetadata;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
+import org.gradle.internal.component.model.ConfigurationMetadata;
+import org.gradle.internal.component.model.DefaultComponentOverrideMetadata;
+import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.component.model.ExcludeMetadata;
+import org.gradle.internal.component.model.IvyArtifactName;
+import org.gradle.internal.resolve.ModuleVersionResolveException;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+import org.gradle.internal.resolve.result.BuildableComponentResolveResult;
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult;
+import org.gradle.util.CollectionUtils;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Replays a {@link RecordedGraph} against the current metadata of its components.
+ *
+ * <p>The recorded graph is only replayed when the graph builder would resolve the same graph: the declarations of every node must be
+ * unchanged, every dependency that is not excluded must have its edge, and every edge must still select the same target configurations.
+ * Exclusions are calculated again from the replayed graph, as are artifacts and files.</p>
+ */
+class RecordedGraphReplayer {
+    private final ComponentMetaDataResolver componentResolver;
+    private final ComponentSelectorConverter componentSelectorConverter;
+    private final ModuleExclusions moduleExclusions;
+    private final AttributesSchemaInternal attributesSchema;
+
+    RecordedGraphReplayer(ComponentMetaDataResolver componentResolver, ComponentSelectorConverter componentSelectorConverter, ModuleExclusions moduleExclusions, AttributesSchemaInternal attributesSchema) {
+        this.componentResolver = componentResolver;
+        this.componentSelectorConverter = componentSelectorConverter;
+        this.moduleExclusions = moduleExclusions;
+        this.attributesSchema = attributesSchema;
+    }
+
+    /**
+     * Visits the recorded graph, when it is still up to date.
+     *
+     * @return false when the recorded graph is out of date. Nothing has been visited in that case.
+     */
+    public boolean replay(RecordedGraph graph, ComponentResolveMetadata rootMetadata, DependencyGraphVisitor visitor) {
+        ReplayedNode[] nodes = rebuild(graph, rootMetadata);
+        if (nodes == null) {
+            return false;
+        }
+
+        ReplayedNode root = nodes[0];
+        visitor.start(root);
+        for (int i = 0; i < graph.getSelectors().size(); i++) {
+            visitor.visitSelector(new ReplayedSelector((long) i, graph.getSelectors().get(i)));
+        }
+        for (ReplayedNode node : nodes) {
+            visitor.visitNode(node);
+        }
+        for (int node : graph.getEdgeVisitOrder()) {
+            visitor.visitEdges(nodes[node]);
+        }
+        visitor.finish(root);
+        return true;
+    }
+
+    @Nullable
+    private ReplayedNode[] rebuild(RecordedGraph graph, ComponentResolveMetadata rootMetadata) {
+        List<RecordedGraph.Component> recordedComponents = graph.getComponents();
+        int rootComponent = graph.getNodes().get(0).getComponent();
+        ReplayedComponent[] components = new ReplayedComponent[recordedComponents.size()];
+        for (int i = 0; i < components.length; i++) {
+            RecordedGraph.Component component = recordedComponents.get(i);
+            ComponentResolveMetadata metadata = i == rootComponent ? rootMetadata : resolve(component.getComponentId());
+            if (metadata == null || metadata.isMissing() || !metadata.getComponentId().equals(component.getComponentId())) {
+                return null;
+            }
+            components[i] = new ReplayedComponent((long) i, component, metadata);
+        }
+
+        List<RecordedGraph.Node> recordedNodes = graph.getNodes();
+        ReplayedNode[] nodes = new ReplayedNode[recordedNodes.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            RecordedGraph.Node node = recordedNodes.get(i);
+            ReplayedComponent component = components[node.getComponent()];
+            ConfigurationMetadata configuration = component.metadata.getConfiguration(node.getConfiguration());
+            if (configuration == null || !ConfigurationDeclarationsHasher.hash(configuration).equals(node.getDeclarations())) {
+                return null;
+            }
+            nodes[i] = new ReplayedNode((long) i, i == 0, component, configuration);
+        }
+
+        List<RecordedGraph.Edge> recordedEdges = graph.getEdges();
+        ReplayedEdge[] edges = new ReplayedEdge[recordedEdges.size()];
+        for (int i = 0; i < edges.length; i++) {
+            RecordedGraph.Edge edge = recordedEdges.get(i);
+            ReplayedNode from = nodes[edge.getFrom()];
+            List<? extends DependencyMetadata> dependencies = from.metadata.getDependencies();
+            if (edge.getDependency() >= dependencies.size()) {
+                return null;
+            }
+            ReplayedComponent selected = components[edge.getSelected()];
+            List<ReplayedNode> targets = Lists.newArrayListWithCapacity(edge.getTargets().length);
+            for (int target : edge.getTargets()) {
+                if (nodes[target].component != selected) {
+                    return null;
+                }
+                targets.add(nodes[target]);
+            }
+            edges[i] = new ReplayedEdge(from, dependencies.get(edge.getDependency()), new ReplayedSelector((long) edge.getSelector(), graph.getSelectors().get(edge.getSelector())), selected, targets);
+        }
+
+        for (int i = 0; i < nodes.length; i++) {
+            RecordedGraph.Node node = recordedNodes.get(i);
+            for (int edge : node.getOutgoingEdges()) {
+                if (edges[edge].from != nodes[i]) {
+                    return null;
+                }
+                nodes[i].outgoingEdges.add(edges[edge]);
+            }
+            for (int edge : node.getIncomingEdges()) {
+                if (!edges[edge].targets.contains(nodes[i])) {
+                    return null;
+                }
+                nodes[i].incomingEdges.add(edges[edge]);
+            }
+        }
+
+        if (!calculateResolutionFilters(nodes) || !hasSameEdges(nodes) || !selectsSameTargets(nodes[0].metadata.getAttributes(), edges)) {
+            return null;
+        }
+        return nodes;
+    }
+
+    @Nullable
+    private ComponentResolveMetadata resolve(ComponentIdentifier componentId) {
+        BuildableComponentResolveResult result = new DefaultBuildableComponentResolveResult();
+        componentResolver.resolve(componentId, new DefaultComponentOverrideMetadata(), result);
+        if (!result.hasResult() || result.getFailure() != null) {
+            return null;
+        }
+        return result.getMetaData();
+    }
+
+    /**
+     * Calculates the exclusions that apply to the outgoing edges of each node, the way the graph builder does once the graph is complete.
+     * Nodes without transitive incoming edges are not traversed and have no resolution filter.
+     *
+     * @return false when the calculation does not settle, which can happen for graphs with cycles.
+     */
+    private boolean calculateResolutionFilters(ReplayedNode[] nodes) {
+        ReplayedNode root = nodes[0];
+        root.resolutionFilter = moduleExclusions.excludeAny(root.metadata.getExcludes());
+        for (int round = 0; round <= nodes.length; round++) {
+            boolean changed = false;
+            for (int i = 1; i < nodes.length; i++) {
+                ModuleExclusion resolutionFilter = calculateResolutionFilter(nodes[i]);
+                if (!Objects.equal(resolutionFilter, nodes[i].resolutionFilter)) {
+                    nodes[i].resolutionFilter = resolutionFilter;
+                    changed = true;
+                }
+            }
+            if (!changed) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    private ModuleExclusion calculateResolutionFilter(ReplayedNode node) {
+        ModuleExclusion edgeExclusions = null;
+        for (ReplayedEdge edge : node.incomingEdges) {
+            if (edge.isTransitive() && edge.from.resolutionFilter != null) {
+                ModuleExclusion exclusions = edge.getExclusions();
+                edgeExclusions = edgeExclusions == null ? exclusions : moduleExclusions.union(edgeExclusions, exclusions);
+            }
+        }
+        if (edgeExclusions == null) {
+            return null;
+        }
+        return moduleExclusions.intersect(edgeExclusions, moduleExclusions.excludeAny(node.metadata.getExcludes()));
+    }
+
+    /**
+     * Checks that each node has an edge for exactly those of its dependencies that the graph builder would traverse.
+     */
+    private boolean hasSameEdges(ReplayedNode[] nodes) {
+        for (ReplayedNode node : nodes) {
+            if (node.resolutionFilter == null) {
+                if (!node.outgoingEdges.isEmpty()) {
+                    return false;
+                }
+                continue;
+            }
+            Set<DependencyMetadata> withEdges = Sets.newIdentityHashSet();
+            for (ReplayedEdge edge : node.outgoingEdges) {
+                if (!withEdges.add(edge.dependency)) {
+                    return false;
+                }
+            }
+            for (DependencyMetadata dependency : node.metadata.getDependencies()) {
+                if (isExcluded(node.resolutionFilter, dependency) == withEdges.contains(dependency)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean isExcluded(ModuleExclusion resolutionFilter, DependencyMetadata dependency) {
+        if (resolutionFilter == ModuleExclusions.excludeNone()) {
+            return false;
+        }
+        return resolutionFilter.excludeModule(componentSelectorConverter.getModule(dependency.getSelector()));
+    }
+
+    private boolean selectsSameTargets(ImmutableAttributes consumerAttributes, ReplayedEdge[] edges) {
+        for (ReplayedEdge edge : edges) {
+            List<ConfigurationMetadata> targetConfigurations;
+            try {
+                targetConfigurations = edge.dependency.selectConfigurations(consumerAttributes, edge.selected.metadata, attributesSchema);
+            } catch (RuntimeException e) {
+                return false;
+            }
+            if (targetConfigurations.size() != edge.targets.size()) {
+                return false;
+            }
+            for (int i = 0; i < targetConfigurations.size(); i++) {
+                if (!targetConfigurations.get(i).getName().equals(edge.targets.get(i).metadata.getName())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static class ReplayedComponent implements DependencyGraphComponent {
+        private final Long resultId;
+        private final RecordedGraph.Component recorded;
+        private final ComponentResolveMetadata metadata;
+        private final List<ReplayedNode> nodes = Lists.newArrayList();
+
+        ReplayedComponent(Long resultId, RecordedGraph.Component recorded, ComponentResolveMetadata metadata) {
+            this.resultId = resultId;
+            this.recorded = recorded;
+            this.metadata = metadata;
+        }
+
+        @Override
+        public Long getResultId() {
+            return resultId;
+        }
+
+        @Override
+        public ModuleVersionIdentifier getModuleVersion() {
+            return recorded.getModuleVersion();
+        }
+
+        @Override
+        public ComponentSelectionReason getSelectionReason() {
+            return recorded.getSelectionReason();
+        }
+
+        @Override
+        public ComponentIdentifier getComponentId() {
+            return recorded.getComponentId();
+        }
+
+        @Override
+        public ComponentResolveMetadata getMetadata() {
+            return metadata;
+        }
+
+        @Override
+        public Collection<? extends DependencyGraphComponent> getDependents() {
+            Set<DependencyGraphComponent> dependents = Sets.newLinkedHashSet();
+            for (ReplayedNode node : nodes) {
+                for (ReplayedEdge edge : node.incomingEdges) {
+                    dependents.add(edge.from.component);
+                }
+            }
+            return dependents;
+        }
+
+        @Override
+        public String toString() {
+            return recorded.getComponentId().getDisplayName();
+        }
+    }
+
+    private static class ReplayedNode implements DependencyGraphNode {
+        private final Long nodeId;
+        private final boolean root;
+        private final ReplayedComponent component;
+        private final ConfigurationMetadata metadata;
+        private final List<ReplayedEdge> incomingEdges = Lists.newArrayList();
+        private final List<ReplayedEdge> outgoingEdges = Lists.newArrayList();
+        private ModuleExclusion resolutionFilter;
+
+        ReplayedNode(Long nodeId, boolean root, ReplayedComponent component, ConfigurationMetadata metadata) {
+            this.nodeId = nodeId;
+            this.root = root;
+            this.component = component;
+            this.metadata = metadata;
+            component.nodes.add(this);
+        }
+
+        @Override
+        public Long getNodeId() {
+            return nodeId;
+        }
+
+        @Override
+        public boolean isRoot() {
+            return root;
+        }
+
+        @Override
+        public ResolvedConfigurationIdentifier getResolvedConfigurationId() {
+            return new ResolvedConfigurationIdentifier(component.getModuleVersion(), metadata.getName());
+        }
+
+        @Override
+        public ReplayedComponent getOwner() {
+            return component;
+        }
+
+        @Override
+        public List<ReplayedEdge> getIncomingEdges() {
+            return incomingEdges;
+        }
+
+        @Override
+        public List<ReplayedEdge> getOutgoingEdges() {
+            return outgoingEdges;
+        }
+
+        @Override
+        public Set<? extends LocalFileDependencyMetadata> getOutgoingFileEdges() {
+            // Same as the graph builder: files of the root, or of nodes with a transitive incoming edge
+            if (metadata instanceof LocalConfigurationMetadata) {
+                if (root) {
+                    return ((LocalConfigurationMetadata) metadata).getFiles();
+                }
+                for (ReplayedEdge incomingEdge : incomingEdges) {
+                    if (incomingEdge.isTransitive()) {
+                        return ((LocalConfigurationMetadata) metadata).getFiles();
+                    }
+                }
+            }
+            return Collections.emptySet();
+        }
+
+        @Override
+        public ConfigurationMetadata getMetadata() {
+            return metadata;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s(%s)", component, metadata.getName());
+        }
+    }
+
+    private class ReplayedEdge implements DependencyGraphEdge {
+        private final ReplayedNode from;
+        private final DependencyMetadata dependency;
+        private final ReplayedSelector selector;
+        private final ReplayedComponent selected;
+        private final List<ReplayedNode> targets;
+
+        ReplayedEdge(ReplayedNode from, DependencyMetadata dependency, ReplayedSelector selector, ReplayedComponent selected, List<ReplayedNode> targets) {
+            this.from = from;
+            this.dependency = dependency;
+            this.selector = selector;
+            this.selected = selected;
+            this.targets = targets;
+        }
+
+        boolean isTransitive() {
+            return from.metadata.isTransitive() && dependency.isTransitive();
+        }
+
+        @Override
+        public DependencyGraphNode getFrom() {
+            return from;
+        }
+
+        @Override
+        public DependencyGraphSelector getSelector() {
+            return selector;
+        }
+
+        @Override
+        public ModuleExclusion getExclusions() {
+            List<ExcludeMetadata> excludes = dependency.getExcludes();
+            if (excludes.isEmpty()) {
+                return from.resolutionFilter;
+            }
+            return moduleExclusions.intersect(moduleExclusions.excludeAny(ImmutableList.copyOf(excludes)), from.resolutionFilter);
+        }
+
+        @Override
+        public List<ComponentArtifactMetadata> getArtifacts(final ConfigurationMetadata targetConfiguration) {
+            return CollectionUtils.collect(dependency.getArtifacts(), new Transformer<ComponentArtifactMetadata, IvyArtifactName>() {
+                @Override
+                public ComponentArtifactMetadata transform(IvyArtifactName ivyArtifactName) {
+                    return targetConfiguration.artifact(ivyArtifactName);
+                }
+            });
+        }
+
+        @Override
+        public Iterable<? extends DependencyGraphNode> getTargets() {
+            return targets;
+        }
+
+        @Nullable
+        @Override
+        public Dependency getOriginalDependency() {
+            if (dependency instanceof DslOriginDependencyMetadata) {
+                return ((DslOriginDependencyMetadata) dependency).getSource();
+            }
+            return null;
+        }
+
+        @Override
+        public ComponentSelector getRequested() {
+            return dependency.getSelector();
+        }
+
+        @Nullable
+        @Override
+        public ModuleVersionResolveException getFailure() {
+            return null;
+        }
+
+        @Override
+        public Long getSelected() {
+            return selected.getResultId();
+        }
+
+        @Override
+        public ComponentSelectionReason getReason() {
+            return selected.getSelectionReason();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s -> %s", from, dependency);
+        }
+    }
+
+    private static class ReplayedSelector implements DependencyGraphSelector {
+        private final Long resultId;
+        private final ComponentSelector requested;
+
+        ReplayedSelector(Long resultId, ComponentSelector requested) {
+            this.resultId = resultId;
+            this.requested = requested;
+        }
+
+        @Override
+        public Long getResultId() {
+            return resultId;
+        }
+
+        @Override
+        public ComponentSelector getRequested() {
+            return requested;
+        }
+    }
+}
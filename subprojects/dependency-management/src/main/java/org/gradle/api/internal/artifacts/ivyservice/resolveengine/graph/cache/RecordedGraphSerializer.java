@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.cache;
+
+import com.google.common.collect.ImmutableList;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.ModuleVersionIdentifierSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentIdentifierSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentSelectionReasonSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentSelectorSerializer;
+import org.gradle.internal.serialize.AbstractSerializer;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.HashCodeSerializer;
+
+import java.io.IOException;
+import java.util.List;
+
+class RecordedGraphSerializer extends AbstractSerializer<RecordedGraph> {
+    private final ComponentIdentifierSerializer componentIdSerializer = new ComponentIdentifierSerializer();
+    private final ComponentSelectorSerializer selectorSerializer = new ComponentSelectorSerializer();
+    private final HashCodeSerializer hashCodeSerializer = new HashCodeSerializer();
+    private final ModuleVersionIdentifierSerializer moduleVersionSerializer;
+
+    RecordedGraphSerializer(ImmutableModuleIdentifierFactory moduleIdentifierFactory) {
+        this.moduleVersionSerializer = new ModuleVersionIdentifierSerializer(moduleIdentifierFactory);
+    }
+
+    @Override
+    public RecordedGraph read(Decoder decoder) throws IOException {
+        // The reason serializer remembers custom reasons, so is only used for a single graph
+        ComponentSelectionReasonSerializer reasonSerializer = new ComponentSelectionReasonSerializer();
+        int componentCount = decoder.readSmallInt();
+        ImmutableList.Builder<RecordedGraph.Component> components = ImmutableList.builder();
+        for (int i = 0; i < componentCount; i++) {
+            components.add(new RecordedGraph.Component(componentIdSerializer.read(decoder), moduleVersionSerializer.read(decoder), reasonSerializer.read(decoder)));
+        }
+
+        int nodeCount = decoder.readSmallInt();
+        ImmutableList.Builder<RecordedGraph.Node> nodes = ImmutableList.builder();
+        for (int i = 0; i < nodeCount; i++) {
+            int component = decoder.readSmallInt();
+            String configuration = decoder.readString();
+            nodes.add(new RecordedGraph.Node(component, configuration, hashCodeSerializer.read(decoder), readIndexes(decoder), readIndexes(decoder)));
+        }
+
+        int selectorCount = decoder.readSmallInt();
+        ImmutableList.Builder<ComponentSelector> selectors = ImmutableList.builder();
+        for (int i = 0; i < selectorCount; i++) {
+            selectors.add(selectorSerializer.read(decoder));
+        }
+
+        int edgeCount = decoder.readSmallInt();
+        ImmutableList.Builder<RecordedGraph.Edge> edges = ImmutableList.builder();
+        for (int i = 0; i < edgeCount; i++) {
+            int from = decoder.readSmallInt();
+            int dependency = decoder.readSmallInt();
+            int selector = decoder.readSmallInt();
+            int selected = decoder.readSmallInt();
+            edges.add(new RecordedGraph.Edge(from, dependency, selector, selected, readIndexes(decoder)));
+        }
+
+        return new RecordedGraph(components.build(), nodes.build(), selectors.build(), edges.build(), readIndexes(decoder));
+    }
+
+    @Override
+    public void write(Encoder encoder, RecordedGraph value) throws IOException {
+        ComponentSelectionReasonSerializer reasonSerializer = new ComponentSelectionReasonSerializer();
+        List<RecordedGraph.Component> components = value.getComponents();
+        encoder.writeSmallInt(components.size());
+        for (RecordedGraph.Component component : components) {
+            componentIdSerializer.write(encoder, component.getComponentId());
+            moduleVersionSerializer.write(encoder, component.getModuleVersion());
+            reasonSerializer.write(encoder, component.getSelectionReason());
+        }
+
+        List<RecordedGraph.Node> nodes = value.getNodes();
+        encoder.writeSmallInt(nodes.size());
+        for (RecordedGraph.Node node : nodes) {
+            encoder.writeSmallInt(node.getComponent());
+            encoder.writeString(node.getConfiguration());
+            hashCodeSerializer.write(encoder, node.getDeclarations());
+            writeIndexes(encoder, node.getOutgoingEdges());
+            writeIndexes(encoder, node.getIncomingEdges());
+        }
+
+        List<ComponentSelector> selectors = value.getSelectors();
+        encoder.writeSmallInt(selectors.size());
+        for (ComponentSelector selector : selectors) {
+            selectorSerializer.write(encoder, selector);
+        }
+
+        List<RecordedGraph.Edge> edges = value.getEdges();
+        encoder.writeSmallInt(edges.size());
+        for (RecordedGraph.Edge edge : edges) {
+            encoder.writeSmallInt(edge.getFrom());
+            encoder.writeSmallInt(edge.getDependency());
+            encoder.writeSmallInt(edge.getSelector());
+            encoder.writeSmallInt(edge.getSelected());
+            writeIndexes(encoder, edge.getTargets());
+        }
+
+        writeIndexes(encoder, value.getEdgeVisitOrder());
+    }
+
+    private static int[] readIndexes(Decoder decoder) throws IOException {
+        int[] indexes = new int[decoder.readSmallInt()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = decoder.readSmallInt();
+        }
+        return indexes;
+    }
+
+    private static void writeIndexes(Encoder encoder, int[] indexes) throws IOException {
+        encoder.writeSmallInt(indexes.length);
+        for (int index : indexes) {
+            encoder.writeSmallInt(index);
+        }
+    }
+}
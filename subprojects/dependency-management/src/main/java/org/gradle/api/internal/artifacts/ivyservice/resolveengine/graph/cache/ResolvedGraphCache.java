@@ -0,0 +1,174 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.cache;
+
+import com.google.common.collect.Lists;
+import org.gradle.api.artifacts.ModuleVersionSelector;
+import org.gradle.api.internal.ExperimentalFeatures;
+import org.gradle.api.internal.artifacts.ComponentSelectorConverter;
+import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.ResolveContext;
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.CompositeDependencyGraphVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder.DependencyGraphBuilder;
+import org.gradle.api.internal.attributes.AttributesSchemaInternal;
+import org.gradle.api.specs.Spec;
+import org.gradle.api.specs.Specs;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
+import org.gradle.internal.component.model.ConfigurationMetadata;
+import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.gradle.util.GradleVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stores resolved dependency graphs across builds, and replays them instead of running the {@link DependencyGraphBuilder} again.
+ *
+ * <p>Graphs are stored by the configuration being resolved, its declarations and the resolution strategy. Everything else the graph depends on
+ * is checked when replaying, against the current metadata of the components in the graph. Graphs whose resolution depends on more than that,
+ * such as graphs with dynamic versions, component selection rules or dependency substitution rules other than forced modules,
+ * are always resolved by the graph builder. This includes {@code eachDependency} rules and the substitutions of an included build.</p>
+ */
+public class ResolvedGraphCache {
+
+    /**
+     * Set this system property to "true" to store and replay resolved dependency graphs.
+     */
+    public static final String TOGGLE_PROPERTY = "org.gradle.resolution.graphcache";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResolvedGraphCache.class);
+    private static final int FORMAT_VERSION = 1;
+
+    private final CacheLockingManager cacheLockingManager;
+    private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
+    private final ComponentSelectorConverter componentSelectorConverter;
+    private final ModuleExclusions moduleExclusions;
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final ExperimentalFeatures experimentalFeatures;
+    private PersistentIndexedCache<String, RecordedGraph> cache;
+
+    public ResolvedGraphCache(CacheLockingManager cacheLockingManager, ImmutableModuleIdentifierFactory moduleIdentifierFactory, ComponentSelectorConverter componentSelectorConverter,
+                              ModuleExclusions moduleExclusions, VersionSelectorScheme versionSelectorScheme, ExperimentalFeatures experimentalFeatures) {
+        this.cacheLockingManager = cacheLockingManager;
+        this.moduleIdentifierFactory = moduleIdentifierFactory;
+        this.componentSelectorConverter = componentSelectorConverter;
+        this.moduleExclusions = moduleExclusions;
+        this.versionSelectorScheme = versionSelectorScheme;
+        this.experimentalFeatures = experimentalFeatures;
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(TOGGLE_PROPERTY);
+    }
+
+    private synchronized PersistentIndexedCache<String, RecordedGraph> getCache() {
+        if (cache == null) {
+            cache = cacheLockingManager.createCache("resolved-graphs", BaseSerializerFactory.STRING_SERIALIZER, new RecordedGraphSerializer(moduleIdentifierFactory));
+        }
+        return cache;
+    }
+
+    /**
+     * Visits the dependency graph of the given context, replaying the stored graph when it is up to date and running the given builder otherwise.
+     */
+    public void resolve(ResolveContext resolveContext, GlobalDependencyResolutionRules globalRules, Spec<? super DependencyMetadata> edgeFilter,
+                        ComponentMetaDataResolver componentResolver, AttributesSchemaInternal attributesSchema, DependencyGraphBuilder builder, DependencyGraphVisitor visitor) {
+        if (!canStore(resolveContext, globalRules, edgeFilter)) {
+            builder.resolve(resolveContext, visitor);
+            return;
+        }
+        ComponentResolveMetadata rootMetadata = resolveContext.toRootComponentMetaData();
+        ConfigurationMetadata rootConfiguration = rootMetadata.getConfiguration(resolveContext.getName());
+        if (rootConfiguration == null) {
+            builder.resolve(resolveContext, visitor);
+            return;
+        }
+
+        String key = createKey(resolveContext, rootMetadata, rootConfiguration);
+        RecordedGraph storedGraph = getCache().get(key);
+        if (storedGraph != null) {
+            RecordedGraphReplayer replayer = new RecordedGraphReplayer(componentResolver, componentSelectorConverter, moduleExclusions, attributesSchema);
+            if (replayer.replay(storedGraph, rootMetadata, visitor)) {
+                LOGGER.debug("Replayed stored dependency graph for {}.", resolveContext.getDisplayName());
+                return;
+            }
+            LOGGER.debug("Stored dependency graph for {} is out of date.", resolveContext.getDisplayName());
+        }
+
+        GraphRecorder recorder = new GraphRecorder(versionSelectorScheme, globalRules.getModuleMetadataProcessor().getModuleReplacements());
+        builder.resolve(resolveContext, new CompositeDependencyGraphVisitor(visitor, recorder));
+        RecordedGraph graph = recorder.getGraph();
+        if (graph != null) {
+            try {
+                getCache().put(key, graph);
+            } catch (RuntimeException e) {
+                // Only a lost opportunity, the graph has been resolved
+                LOGGER.debug("Could not store dependency graph for {}.", resolveContext.getDisplayName(), e);
+            }
+        }
+    }
+
+    private boolean canStore(ResolveContext resolveContext, GlobalDependencyResolutionRules globalRules, Spec<? super DependencyMetadata> edgeFilter) {
+        ResolutionStrategyInternal resolutionStrategy = resolveContext.getResolutionStrategy();
+        // Only forced modules are part of the key, other substitution rules are arbitrary code
+        return edgeFilter == Specs.satisfyAll()
+            && !experimentalFeatures.isEnabled()
+            && !resolutionStrategy.resolveGraphToDetermineTaskDependencies()
+            && !resolutionStrategy.getDependencySubstitution().hasAnyRules()
+            && !globalRules.getDependencySubstitutionRules().hasRules()
+            && resolutionStrategy.getComponentSelection().getRules().isEmpty();
+    }
+
+    private static String createKey(ResolveContext resolveContext, ComponentResolveMetadata rootMetadata, ConfigurationMetadata rootConfiguration) {
+        ResolutionStrategyInternal resolutionStrategy = resolveContext.getResolutionStrategy();
+        Hasher hasher = Hashing.md5().newHasher();
+        hasher.putInt(FORMAT_VERSION);
+        hasher.putString(GradleVersion.current().getVersion());
+        hasher.putByte((byte) 0);
+        hasher.putString(rootMetadata.getComponentId().getDisplayName());
+        hasher.putByte((byte) 0);
+        hasher.putString(rootMetadata.getId().toString());
+        hasher.putByte((byte) 0);
+        hasher.putHash(ConfigurationDeclarationsHasher.hash(rootConfiguration));
+        hasher.putString(resolutionStrategy.getConflictResolution().name());
+        hasher.putByte((byte) 0);
+        List<String> forcedModules = Lists.newArrayList();
+        for (ModuleVersionSelector forcedModule : resolutionStrategy.getForcedModules()) {
+            forcedModules.add(forcedModule.getGroup() + ":" + forcedModule.getName() + ":" + forcedModule.getVersion());
+        }
+        Collections.sort(forcedModules);
+        hasher.putInt(forcedModules.size());
+        for (String forcedModule : forcedModules) {
+            hasher.putString(forcedModule);
+            hasher.putByte((byte) 0);
+        }
+        return hasher.hash().toString();
+    }
+}
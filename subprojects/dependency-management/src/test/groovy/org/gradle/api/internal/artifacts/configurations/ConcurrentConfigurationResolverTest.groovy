@@ -0,0 +1,249 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.configurations
+
+import org.gradle.BuildResult
+import org.gradle.api.Project
+import org.gradle.api.artifacts.ConfigurationContainer
+import org.gradle.api.execution.TaskExecutionGraph
+import org.gradle.api.internal.GradleInternal
+import org.gradle.api.internal.TaskInputsInternal
+import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.file.FileCollectionInternal
+import org.gradle.api.internal.file.FileCollectionVisitor
+import org.gradle.api.internal.project.ProjectInternal
+import org.gradle.internal.concurrent.ExecutorFactory
+import org.gradle.internal.concurrent.ManagedExecutor
+import org.gradle.internal.operations.BuildOperationContext
+import org.gradle.internal.operations.BuildOperationExecutor
+import org.gradle.internal.operations.RunnableBuildOperation
+import org.gradle.internal.resources.ResourceLock
+import org.gradle.internal.work.WorkerLeaseRegistry
+import org.gradle.internal.work.WorkerLeaseService
+import org.gradle.util.Path
+import spock.lang.Specification
+
+class ConcurrentConfigurationResolverTest extends Specification {
+    def buildOperationExecutor = Mock(BuildOperationExecutor)
+    def workerLeaseService = Mock(WorkerLeaseService)
+    def executorFactory = Mock(ExecutorFactory)
+    def managedExecutor = Mock(ManagedExecutor)
+    def resolver = new ConcurrentConfigurationResolver(buildOperationExecutor, workerLeaseService, executorFactory)
+
+    def gradle = Stub(GradleInternal) {
+        getIdentityPath() >> Path.ROOT
+    }
+    def rootProject = Stub(ProjectInternal)
+    def projectA = project(":a")
+    def projectB = project(":b")
+
+    def setup() {
+        rootProject.getRootProject() >> rootProject
+        rootProject.findProject(":a") >> projectA
+        rootProject.findProject(":b") >> projectB
+    }
+
+    def "does nothing before the task graph is populated"() {
+        when:
+        resolver.beforeExecute(Stub(TaskInternal))
+
+        then:
+        0 * _
+    }
+
+    def "looks for configurations only when the first task executes"() {
+        def files = Mock(FileCollectionInternal)
+        def task = task(files, rootProject)
+        def graph = Stub(TaskExecutionGraph) {
+            getAllTasks() >> [task]
+        }
+
+        when:
+        resolver.graphPopulated(graph)
+
+        then:
+        0 * files._
+
+        when:
+        resolver.beforeExecute(task)
+        resolver.beforeExecute(task)
+
+        then:
+        1 * files.visitRootElements(_)
+        0 * workerLeaseService._
+        0 * buildOperationExecutor._
+        0 * executorFactory._
+    }
+
+    def "ignores tasks whose inputs cannot be determined"() {
+        def files = Mock(FileCollectionInternal)
+        def task = task(files, rootProject)
+        def graph = Stub(TaskExecutionGraph) {
+            getAllTasks() >> [task]
+        }
+        resolver.graphPopulated(graph)
+
+        when:
+        resolver.beforeExecute(task)
+
+        then:
+        1 * files.visitRootElements(_) >> { throw new RuntimeException("broken") }
+        0 * workerLeaseService._
+        0 * buildOperationExecutor._
+        0 * executorFactory._
+    }
+
+    def "resolves each configuration used by the tasks in the background under the lock of its project"() {
+        def lockA = Stub(ResourceLock)
+        def lockB = Stub(ResourceLock)
+        def workerLease = Stub(WorkerLeaseRegistry.WorkerLease)
+        def compileA = configuration(projectA, ":a:compile")
+        def compileB = configuration(projectB, ":b:compile")
+        def task = task(inputs(compileA, compileB), rootProject)
+        def graph = Stub(TaskExecutionGraph) {
+            getAllTasks() >> [task]
+        }
+        def actions = []
+        def heldLocks = null
+        resolver.graphPopulated(graph)
+
+        when:
+        resolver.beforeExecute(task)
+
+        then:
+        _ * workerLeaseService.getMaxWorkerCount() >> 4
+        1 * executorFactory.create(_, 4) >> managedExecutor
+        2 * managedExecutor.execute(_) >> { Runnable action -> actions << action }
+        _ * workerLeaseService.getProjectLock(":", ":a") >> lockA
+        _ * workerLeaseService.getProjectLock(":", ":b") >> lockB
+        0 * buildOperationExecutor._
+        0 * compileA.getResolvedConfiguration()
+        0 * compileB.getResolvedConfiguration()
+
+        when:
+        actions*.run()
+
+        then:
+        2 * buildOperationExecutor.run(_) >> { RunnableBuildOperation operation -> operation.run(Stub(BuildOperationContext)) }
+        2 * workerLeaseService.getWorkerLease() >> workerLease
+        2 * workerLeaseService.withLocks(_, _ as Runnable) >> { Iterable locks, Runnable action ->
+            heldLocks = locks as List
+            action.run()
+            heldLocks = null
+        }
+        1 * compileA.getResolvedConfiguration() >> {
+            assert heldLocks == [workerLease, lockA]
+            null
+        }
+        1 * compileB.getResolvedConfiguration() >> {
+            assert heldLocks == [workerLease, lockB]
+            throw new RuntimeException("broken")
+        }
+        noExceptionThrown()
+    }
+
+    def "does not resolve a configuration ahead of use when an earlier task of its project may still change it"() {
+        def compileA = configuration(projectA, ":a:compile")
+        def compileB = configuration(projectB, ":b:compile")
+        def prepareA = task(inputs(), projectA)
+        def compileTaskA = task(inputs(compileA), projectA)
+        def compileTaskB = task(inputs(compileA, compileB), projectB)
+        def graph = Stub(TaskExecutionGraph) {
+            getAllTasks() >> [prepareA, compileTaskA, compileTaskB]
+        }
+        def actions = []
+        resolver.graphPopulated(graph)
+
+        when:
+        resolver.beforeExecute(prepareA)
+        actions*.run()
+
+        then:
+        1 * executorFactory.create(_, _) >> managedExecutor
+        1 * managedExecutor.execute(_) >> { Runnable action -> actions << action }
+        _ * workerLeaseService.getProjectLock(":", ":b") >> Stub(ResourceLock)
+        _ * workerLeaseService.getWorkerLease() >> Stub(WorkerLeaseRegistry.WorkerLease)
+        1 * buildOperationExecutor.run(_) >> { RunnableBuildOperation operation -> operation.run(Stub(BuildOperationContext)) }
+        1 * workerLeaseService.withLocks(_, _ as Runnable) >> { Iterable locks, Runnable action -> action.run() }
+        1 * compileB.getResolvedConfiguration()
+        0 * compileA.getResolvedConfiguration()
+    }
+
+    def "skips the resolutions that have not started when the build finishes"() {
+        def compileA = configuration(projectA, ":a:compile")
+        def task = task(inputs(compileA), rootProject)
+        def graph = Stub(TaskExecutionGraph) {
+            getAllTasks() >> [task]
+        }
+        def actions = []
+
+        given:
+        resolver.graphPopulated(graph)
+        executorFactory.create(_, _) >> managedExecutor
+        managedExecutor.execute(_) >> { Runnable action -> actions << action }
+        resolver.beforeExecute(task)
+
+        when:
+        resolver.buildFinished(Stub(BuildResult))
+        actions*.run()
+
+        then:
+        1 * managedExecutor.stop()
+        0 * buildOperationExecutor._
+        0 * compileA.getResolvedConfiguration()
+    }
+
+    private ProjectInternal project(String path) {
+        def configurations = Stub(ConfigurationContainer)
+        def project = Stub(ProjectInternal) {
+            getGradle() >> gradle
+            getIdentityPath() >> Path.path(path)
+            getConfigurations() >> configurations
+            getRootProject() >> rootProject
+        }
+        return project
+    }
+
+    private DefaultConfiguration configuration(ProjectInternal owner, String path) {
+        def configuration = Mock(DefaultConfiguration) {
+            isCanBeResolved() >> true
+            getResolvedState() >> ConfigurationInternal.InternalState.UNRESOLVED
+            getPath() >> path
+        }
+        owner.getConfigurations().contains(configuration) >> true
+        return configuration
+    }
+
+    private FileCollectionInternal inputs(FileCollectionInternal... configurations) {
+        return Stub(FileCollectionInternal) {
+            visitRootElements(_) >> { FileCollectionVisitor visitor ->
+                configurations.each { visitor.visitCollection(it) }
+            }
+        }
+    }
+
+    private TaskInternal task(FileCollectionInternal files, Project project) {
+        def inputs = Stub(TaskInputsInternal) {
+            getFiles() >> files
+        }
+        return Stub(TaskInternal) {
+            getProject() >> project
+            getInputs() >> inputs
+        }
+    }
+}
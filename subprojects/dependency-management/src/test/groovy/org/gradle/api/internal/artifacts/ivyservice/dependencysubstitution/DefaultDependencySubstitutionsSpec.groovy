@@ -121,6 +121,26 @@ class DefaultDependencySubstitutionsSpec extends Specification {
         0 * _
     }
 
+    def "reports rules added in legacy format only as any rules"() {
+        expect:
+        !substitutions.hasRules()
+        !substitutions.hasAnyRules()
+
+        when:
+        substitutions.allWithDependencyResolveDetails(Mock(Action), Mock(ComponentSelectorConverter))
+
+        then:
+        !substitutions.hasRules()
+        substitutions.hasAnyRules()
+
+        when:
+        substitutions.all(Mock(Action))
+
+        then:
+        substitutions.hasRules()
+        substitutions.hasAnyRules()
+    }
+
     @Unroll
     def "substitute module() matches only given module: #matchingModule"() {
         given:
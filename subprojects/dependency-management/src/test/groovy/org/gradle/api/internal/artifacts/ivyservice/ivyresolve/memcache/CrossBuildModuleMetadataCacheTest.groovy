@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.memcache
+
+import org.gradle.api.internal.ExperimentalFeatures
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.ModuleComponentAtRepositoryKey
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata
+import spock.lang.Specification
+
+class CrossBuildModuleMetadataCacheTest extends Specification {
+    def cache = new CrossBuildModuleMetadataCache(2, 2)
+    def experimentalFeatures = new ExperimentalFeatures()
+
+    static key(String repositoryId, String module) {
+        return new ModuleComponentAtRepositoryKey(repositoryId, DefaultModuleComponentIdentifier.newId("org", module, "1.0"))
+    }
+
+    def "supplies metadata stored from the same persistent cache entry"() {
+        def metadata = Stub(ModuleComponentResolveMetadata)
+
+        when:
+        cache.putMetadata(key("repo", "lib"), 100, metadata, experimentalFeatures)
+
+        then:
+        cache.getMetadata(key("repo", "lib"), 100, experimentalFeatures).is(metadata)
+        cache.getMetadata(key("other", "lib"), 100, experimentalFeatures) == null
+        cache.getMetadata(key("repo", "other"), 100, experimentalFeatures) == null
+    }
+
+    def "discards metadata when the persistent cache entry has been replaced"() {
+        cache.putMetadata(key("repo", "lib"), 100, Stub(ModuleComponentResolveMetadata), experimentalFeatures)
+
+        expect:
+        cache.getMetadata(key("repo", "lib"), 200, experimentalFeatures) == null
+        cache.getMetadata(key("repo", "lib"), 100, experimentalFeatures) == null
+    }
+
+    def "does not share metadata with or from builds that enable experimental features"() {
+        def otherBuildFeatures = new ExperimentalFeatures()
+        cache.putMetadata(key("repo", "lib"), 100, Stub(ModuleComponentResolveMetadata), experimentalFeatures)
+
+        when:
+        otherBuildFeatures.enable()
+        cache.putMetadata(key("repo", "other"), 100, Stub(ModuleComponentResolveMetadata), otherBuildFeatures)
+
+        then:
+        cache.getMetadata(key("repo", "lib"), 100, otherBuildFeatures) == null
+        cache.getMetadata(key("repo", "other"), 100, experimentalFeatures) == null
+
+        when:
+        experimentalFeatures.enable()
+
+        then:
+        cache.getMetadata(key("repo", "lib"), 100, new ExperimentalFeatures()) == null
+    }
+
+    def "supplies version listings with the time they were created"() {
+        def moduleId = DefaultModuleIdentifier.newId("org", "lib")
+
+        when:
+        cache.putVersionListing("repo", moduleId, ['1.0', '1.1'] as Set, 100)
+        def listing = cache.getVersionListing("repo", DefaultModuleIdentifier.newId("org", "lib"))
+
+        then:
+        listing.versions == ['1.0', '1.1'] as Set
+        listing.createTimestamp == 100
+        cache.getVersionListing("other", moduleId) == null
+    }
+
+    def "evicts least recently used entries and records hits and misses"() {
+        def metadata = Stub(ModuleComponentResolveMetadata)
+
+        when:
+        cache.putMetadata(key("repo", "a"), 100, metadata, experimentalFeatures)
+        cache.putMetadata(key("repo", "b"), 100, metadata, experimentalFeatures)
+        cache.getMetadata(key("repo", "a"), 100, experimentalFeatures)
+        cache.putMetadata(key("repo", "c"), 100, metadata, experimentalFeatures)
+
+        then:
+        cache.getMetadata(key("repo", "a"), 100, experimentalFeatures) != null
+        cache.getMetadata(key("repo", "b"), 100, experimentalFeatures) == null
+        cache.getMetadata(key("repo", "c"), 100, experimentalFeatures) != null
+
+        and:
+        cache.metadataStats.hitCount() == 3
+        cache.metadataStats.missCount() == 1
+        cache.metadataStats.evictionCount() == 1
+    }
+}
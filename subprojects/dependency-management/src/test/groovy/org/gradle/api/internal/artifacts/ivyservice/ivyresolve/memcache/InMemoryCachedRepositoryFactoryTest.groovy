@@ -24,7 +24,7 @@ import spock.lang.Specification
 class InMemoryCachedRepositoryFactoryTest extends Specification {
 
     @Rule SetSystemProperties sysProp = new SetSystemProperties()
-    def cache = new InMemoryCachedRepositoryFactory()
+    def cache = new InMemoryCachedRepositoryFactory(new CrossBuildModuleMetadataCache())
 
     def "can be turned off via system property"() {
         System.properties.setProperty(InMemoryCachedRepositoryFactory.TOGGLE_PROPERTY, "false")
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser
+
+import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.cache.PersistentIndexedCache
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.resource.local.LocalFileStandInExternalResource
+import org.gradle.internal.serialize.SerializerSpec
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+
+class ParsedPomCacheTest extends SerializerSpec {
+    @Rule
+    public final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def persistentCache = Mock(PersistentIndexedCache)
+    def cacheLockingManager = Stub(CacheLockingManager) {
+        createCache(_, _, _) >> persistentCache
+    }
+    def cache = new ParsedPomCache(cacheLockingManager)
+
+    def "parses POMs with the same content once"() {
+        given:
+        def first = pom('first.xml', '<project><groupId>group</groupId></project>')
+        def second = pom('second.xml', '<project><groupId>group</groupId></project>')
+
+        when:
+        def firstProject = cache.parse(first)
+        def secondProject = cache.parse(second)
+
+        then:
+        secondProject.is(firstProject)
+        firstProject.name == 'project'
+        PomElement.getFirstChildText(firstProject, 'groupId') == 'group'
+
+        and:
+        1 * persistentCache.get(_ as HashCode) >> null
+        1 * persistentCache.put(_ as HashCode, _ as PomElement)
+    }
+
+    def "keeps parsed POMs in a cache named after the version of the parsed form"() {
+        def cacheLockingManager = Mock(CacheLockingManager)
+        def cache = new ParsedPomCache(cacheLockingManager)
+
+        when:
+        cache.parse(pom('pom.xml', '<project/>'))
+
+        then:
+        1 * cacheLockingManager.createCache("parsed-poms-v" + ParsedPomCache.PARSED_FORMAT_VERSION, _, _) >> persistentCache
+    }
+
+    def "uses POMs parsed by an earlier build"() {
+        given:
+        def stored = new PomElement('project', '', [])
+
+        expect:
+        cache.parse(pom('pom.xml', 'not parsed')).is(stored)
+
+        and:
+        1 * persistentCache.get(_ as HashCode) >> stored
+        0 * persistentCache.put(_, _)
+    }
+
+    def "keeps only the parts of the POM that are used"() {
+        given:
+        def resource = pom('pom.xml', """<?xml version="1.0" encoding="UTF-8"?>
+<project xmlns="http://maven.apache.org/POM/4.0.0">
+    <artifactId>a&nbsp;b</artifactId>
+    <description>unused</description>
+    <build><plugins><plugin><artifactId>plugin</artifactId></plugin></plugins></build>
+    <properties><prop><![CDATA[x<y]]></prop></properties>
+    <profiles>
+        <profile>
+            <id>profile</id>
+            <build><plugins/></build>
+            <dependencies><dependency><groupId>group</groupId></dependency></dependencies>
+        </profile>
+    </profiles>
+</project>""")
+
+        when:
+        def project = cache.parse(resource)
+
+        then:
+        project.children*.name == ['artifactId', 'properties', 'profiles']
+        PomElement.getFirstChildText(project, 'artifactId') == 'a\u00a0b'
+        PomElement.getFirstChildText(PomElement.getFirstChildElement(project, 'properties'), 'prop') == 'x<y'
+        def profile = PomElement.getFirstChildElement(PomElement.getFirstChildElement(project, 'profiles'), 'profile')
+        profile.children*.name == ['id', 'dependencies']
+    }
+
+    def "fails when POM cannot be parsed"() {
+        when:
+        cache.parse(pom('pom.xml', '<project>'))
+
+        then:
+        thrown(MetaDataParseException)
+        0 * persistentCache.put(_, _)
+    }
+
+    def "serializes parsed POMs"() {
+        given:
+        def project = cache.parse(pom('pom.xml', '<project><groupId>group</groupId><dependencies><dependency><groupId>other</groupId><optional>true</optional></dependency></dependencies></project>'))
+
+        when:
+        def result = serialize(project, new PomElementSerializer())
+
+        then:
+        describe(result) == describe(project)
+        describe(result) == 'project[groupId(group), dependencies[dependency[groupId(other), optional(true)]]]'
+    }
+
+    private LocalFileStandInExternalResource pom(String name, String content) {
+        def file = tmpDir.file(name)
+        file.text = content
+        return new LocalFileStandInExternalResource(file, TestFiles.fileSystem())
+    }
+
+    private static String describe(PomElement element) {
+        if (element.children.empty) {
+            return "${element.name}(${element.textContent})"
+        }
+        return "${element.name}${element.children.collect { describe(it) }}"
+    }
+}
@@ -703,6 +703,33 @@ class DefaultModuleExclusionTest extends Specification {
         intersection == excludeAny(rule1, rule2)
     }
 
+    def "union of specs with module id exclude rules excludes the modules excluded by both"() {
+        def rule1 = excludeRule("org", "module")
+        def rule2 = excludeRule("org", "module2")
+        def rule3 = excludeRule("org", "module3")
+        def rule4 = excludeRule("org", "module4")
+
+        expect:
+        union(excludeAny(rule1, rule2, rule3), excludeAny(rule3, rule4, rule1)) == excludeAny(rule1, rule3)
+        union(excludeAny(rule1, rule2), excludeAny(rule3, rule4)).is(excludeNone())
+    }
+
+    def "combining the same specs again returns the same instance"() {
+        def rule1 = excludeRule("org", "module")
+        def rule2 = regexpExcludeRule("org", "module2")
+        def rule3 = excludeRule("org", "module3", "artifact")
+        def spec1 = excludeAny(rule1)
+        def spec2 = excludeAny(rule2)
+        def spec3 = excludeAny(rule3)
+
+        expect:
+        union(spec1, spec2).is(union(spec1, spec2))
+        union(spec1, spec2).is(union(excludeAny(rule1), excludeAny(rule2)))
+        intersect(spec1, spec2).is(intersect(spec1, spec2))
+        intersect(union(spec1, spec2), spec3).is(intersect(union(spec1, spec2), spec3))
+        excludeAny(rule3).is(excludeAny(excludeRule("org", "module3", "artifact")))
+    }
+
     def "intersections accepts same modules when original specs accept same modules"() {
         def rule1 = regexpExcludeRule("org", "module")
         def rule2 = regexpExcludeRule("org", "module2")
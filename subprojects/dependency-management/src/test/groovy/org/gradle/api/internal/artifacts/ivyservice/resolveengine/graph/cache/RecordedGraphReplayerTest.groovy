@@ -0,0 +1,265 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.cache
+
+import org.gradle.api.Action
+import org.gradle.api.artifacts.ModuleDependency
+import org.gradle.api.artifacts.component.ComponentIdentifier
+import org.gradle.api.artifacts.component.ComponentSelector
+import org.gradle.api.internal.ExperimentalFeatures
+import org.gradle.api.internal.artifacts.ComponentSelectorConverter
+import org.gradle.api.internal.artifacts.DefaultImmutableModuleIdentifierFactory
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal
+import org.gradle.api.internal.artifacts.dependencies.DefaultMutableVersionConstraint
+import org.gradle.api.internal.artifacts.dsl.ModuleReplacementsData
+import org.gradle.api.internal.artifacts.ivyservice.dependencysubstitution.DefaultDependencySubstitutionApplicator
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionComparator
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionSelectorScheme
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.ModuleConflictResolver
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.CompositeDependencyGraphVisitor
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphNode
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphSelector
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder.DependencyGraphBuilder
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.DefaultConflictHandler
+import org.gradle.api.internal.attributes.AttributesSchemaInternal
+import org.gradle.api.internal.attributes.ImmutableAttributes
+import org.gradle.api.specs.Specs
+import org.gradle.internal.component.external.descriptor.DefaultExclude
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.local.model.DefaultLocalComponentMetadata
+import org.gradle.internal.component.local.model.DslOriginDependencyMetadataWrapper
+import org.gradle.internal.component.model.ComponentOverrideMetadata
+import org.gradle.internal.component.model.ComponentResolveMetadata
+import org.gradle.internal.component.model.DependencyMetadata
+import org.gradle.internal.component.model.ExcludeMetadata
+import org.gradle.internal.component.model.IvyArtifactName
+import org.gradle.internal.component.model.LocalComponentDependencyMetadata
+import org.gradle.internal.operations.BuildOperationExecutor
+import org.gradle.internal.operations.BuildOperationQueue
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver
+import org.gradle.internal.resolve.resolver.DependencyToComponentIdResolver
+import org.gradle.internal.resolve.resolver.ResolveContextToComponentResolver
+import org.gradle.internal.resolve.result.BuildableComponentIdResolveResult
+import org.gradle.internal.resolve.result.BuildableComponentResolveResult
+import org.gradle.internal.serialize.SerializerSpec
+import org.gradle.util.TestUtil
+
+import static org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier.newId
+import static org.gradle.internal.component.external.model.DefaultModuleComponentSelector.newSelector
+import static org.gradle.internal.component.local.model.TestComponentIdentifiers.newProjectId
+
+class RecordedGraphReplayerTest extends SerializerSpec {
+    def configuration = Stub(ConfigurationInternal) {
+        getName() >> 'root'
+        getPath() >> 'root'
+    }
+    def attributesSchema = Mock(AttributesSchemaInternal)
+    def moduleIdentifierFactory = new DefaultImmutableModuleIdentifierFactory()
+    def moduleExclusions = new ModuleExclusions(moduleIdentifierFactory)
+    def moduleReplacements = Mock(ModuleReplacementsData)
+    def buildOperationExecutor = Mock(BuildOperationExecutor) {
+        def queue = Mock(BuildOperationQueue) {
+            add(_) >> { args ->
+                args[0].run()
+            }
+        }
+        runAll(_) >> { args ->
+            args[0].execute(queue)
+        }
+    }
+    def componentSelectorConverter = Mock(ComponentSelectorConverter) {
+        getModule(_) >> { ComponentSelector selector ->
+            DefaultModuleIdentifier.newId(selector.group, selector.module)
+        }
+    }
+    def components = [:]
+    def root = project('root')
+    def idResolver = Stub(DependencyToComponentIdResolver) {
+        resolve(_, _) >> { DependencyMetadata dependency, BuildableComponentIdResolveResult result ->
+            ComponentResolveMetadata component = components[dependency.selector.module]
+            result.resolved(component.componentId, component.id)
+        }
+    }
+    def metaDataResolver = Stub(ComponentMetaDataResolver) {
+        resolve(_, _, _) >> { ComponentIdentifier id, ComponentOverrideMetadata override, BuildableComponentResolveResult result ->
+            ComponentResolveMetadata component = components.values().find { it.componentId == id }
+            if (component == null) {
+                result.notFound(id)
+            } else {
+                result.resolved(component)
+            }
+        }
+    }
+    def moduleResolver = Stub(ResolveContextToComponentResolver) {
+        resolve(_, _) >> { it[1].resolved(root) }
+    }
+    def builder = new DependencyGraphBuilder(idResolver, metaDataResolver, moduleResolver, new DefaultConflictHandler(Mock(ModuleConflictResolver), moduleReplacements),
+        Specs.satisfyAll(), attributesSchema, moduleExclusions, buildOperationExecutor, moduleReplacements, new DefaultDependencySubstitutionApplicator(Mock(Action)),
+        componentSelectorConverter, new ExperimentalFeatures(), TestUtil.attributesFactory())
+    def replayer = new RecordedGraphReplayer(metaDataResolver, componentSelectorConverter, moduleExclusions, attributesSchema)
+
+    def "replays the graph visited by the graph builder"() {
+        given:
+        def a = revision('a')
+        def b = revision('b')
+        def c = revision('c')
+        def d = revision('d')
+        dependsOn root, a
+        dependsOn root, b
+        dependsOn a, c
+        dependsOn b, c
+        dependsOn c, d, exclude: 'a'
+
+        when:
+        def recorded = record()
+        def replayed = new TraceVisitor()
+        def replays = replayer.replay(recorded.graph, root, replayed)
+
+        then:
+        recorded.graph != null
+        replays
+        replayed.events == recorded.trace.events
+    }
+
+    def "replays a graph read back from its serialized form"() {
+        given:
+        def a = revision('a')
+        def b = revision('b')
+        dependsOn root, a
+        dependsOn a, b, transitive: false
+
+        when:
+        def recorded = record()
+        def graph = serialize(recorded.graph, new RecordedGraphSerializer(moduleIdentifierFactory))
+        def replayed = new TraceVisitor()
+        def replays = replayer.replay(graph, root, replayed)
+
+        then:
+        replays
+        replayed.events == recorded.trace.events
+    }
+
+    def "does not replay a graph when the dependencies of a node have changed"() {
+        given:
+        def a = revision('a')
+        def b = revision('b')
+        dependsOn root, a
+        dependsOn a, b
+        def recorded = record()
+
+        and:
+        def changed = revision('a')
+        dependsOn changed, revision('c')
+
+        expect:
+        !replayer.replay(recorded.graph, root, new TraceVisitor())
+    }
+
+    def "does not replay a graph when a component can no longer be found"() {
+        given:
+        def a = revision('a')
+        def b = revision('b')
+        dependsOn root, a
+        dependsOn a, b
+        def recorded = record()
+
+        when:
+        components.remove('b')
+
+        then:
+        !replayer.replay(recorded.graph, root, new TraceVisitor())
+    }
+
+    def "does not record a graph with dynamic versions"() {
+        given:
+        def a = revision('a')
+        dependsOn root, a, version: '1.+'
+
+        expect:
+        record().graph == null
+    }
+
+    private Map record() {
+        def trace = new TraceVisitor()
+        def recorder = new GraphRecorder(new DefaultVersionSelectorScheme(new DefaultVersionComparator()), moduleReplacements)
+        builder.resolve(configuration, new CompositeDependencyGraphVisitor(trace, recorder))
+        return [trace: trace, graph: recorder.graph]
+    }
+
+    def revision(String name, String revision = '1.0') {
+        def id = newId("group", name, revision)
+        def metaData = new DefaultLocalComponentMetadata(id, DefaultModuleComponentIdentifier.newId(id), "release", attributesSchema)
+        metaData.addConfiguration("default", "defaultConfig", [] as Set<String>, ["default"] as Set<String>, true, true, ImmutableAttributes.EMPTY, true, true)
+        components[name] = metaData
+        return metaData
+    }
+
+    def project(String name) {
+        def metaData = new DefaultLocalComponentMetadata(newId("group", name, '1.0'), newProjectId(":${name}"), "release", attributesSchema)
+        metaData.addConfiguration("default", "defaultConfig", [] as Set<String>, ["default"] as Set<String>, true, true, ImmutableAttributes.EMPTY, true, true)
+        metaData.addConfiguration("root", "rootConfig", ["default"] as Set<String>, ["default", "root"] as Set<String>, true, true, ImmutableAttributes.EMPTY, true, true)
+        return metaData
+    }
+
+    def dependsOn(Map<String, ?> args = [:], ComponentResolveMetadata from, ComponentResolveMetadata to) {
+        boolean transitive = args.transitive == null || args.transitive
+        ComponentSelector componentSelector = newSelector(to.id.group, to.id.name, new DefaultMutableVersionConstraint(args.version ?: to.id.version))
+        List<ExcludeMetadata> excludeRules = []
+        if (args.exclude) {
+            excludeRules << new DefaultExclude(moduleIdentifierFactory.module("group", args.exclude))
+        }
+        def dependencyMetaData = new LocalComponentDependencyMetadata(from.componentId, componentSelector,
+            "default", null, "default", [] as List<IvyArtifactName>,
+            excludeRules, false, false, transitive, false)
+        from.getDependencies().add(new DslOriginDependencyMetadataWrapper(dependencyMetaData, Stub(ModuleDependency)))
+    }
+
+    static class TraceVisitor implements DependencyGraphVisitor {
+        final List<String> events = []
+
+        @Override
+        void start(DependencyGraphNode root) {
+            events << "start ${root.resolvedConfigurationId}".toString()
+        }
+
+        @Override
+        void visitNode(DependencyGraphNode node) {
+            events << "node ${node.resolvedConfigurationId} ${node.owner.selectionReason}".toString()
+        }
+
+        @Override
+        void visitSelector(DependencyGraphSelector selector) {
+            events << "selector ${selector.requested}".toString()
+        }
+
+        @Override
+        void visitEdges(DependencyGraphNode node) {
+            def edges = node.outgoingEdges.collect { edge ->
+                "${edge.requested} -> ${edge.targets*.resolvedConfigurationId} ${edge.exclusions}"
+            }
+            events << "edges ${node.resolvedConfigurationId} ${edges}".toString()
+        }
+
+        @Override
+        void finish(DependencyGraphNode root) {
+            events << "finish ${root.resolvedConfigurationId}".toString()
+        }
+    }
+}
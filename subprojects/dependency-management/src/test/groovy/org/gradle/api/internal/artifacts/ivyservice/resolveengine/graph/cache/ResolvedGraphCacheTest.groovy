@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.cache
+
+import org.gradle.api.internal.ExperimentalFeatures
+import org.gradle.api.internal.artifacts.ComponentSelectorConverter
+import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory
+import org.gradle.api.internal.artifacts.ResolveContext
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal
+import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager
+import org.gradle.api.internal.artifacts.ivyservice.dependencysubstitution.DependencySubstitutionRules
+import org.gradle.api.internal.artifacts.ivyservice.dependencysubstitution.DependencySubstitutionsInternal
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder.DependencyGraphBuilder
+import org.gradle.api.internal.attributes.AttributesSchemaInternal
+import org.gradle.api.specs.Specs
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver
+import spock.lang.Specification
+
+class ResolvedGraphCacheTest extends Specification {
+    def cacheLockingManager = Mock(CacheLockingManager)
+    def graphCache = new ResolvedGraphCache(cacheLockingManager, Stub(ImmutableModuleIdentifierFactory), Stub(ComponentSelectorConverter), Stub(ModuleExclusions), Stub(VersionSelectorScheme), new ExperimentalFeatures())
+    def substitutions = Stub(DependencySubstitutionsInternal)
+    def resolutionStrategy = Stub(ResolutionStrategyInternal) {
+        getDependencySubstitution() >> substitutions
+    }
+    def resolveContext = Stub(ResolveContext) {
+        getResolutionStrategy() >> resolutionStrategy
+    }
+    def globalSubstitutions = Stub(DependencySubstitutionRules)
+    def globalRules = Stub(GlobalDependencyResolutionRules) {
+        getDependencySubstitutionRules() >> globalSubstitutions
+    }
+    def builder = Mock(DependencyGraphBuilder)
+    def visitor = Stub(DependencyGraphVisitor)
+
+    def "does not store or replay graphs of a resolution strategy with substitution rules"() {
+        given:
+        substitutions.hasAnyRules() >> true
+
+        when:
+        resolve()
+
+        then:
+        1 * builder.resolve(resolveContext, visitor)
+        0 * cacheLockingManager._
+    }
+
+    def "does not store or replay graphs when global substitution rules exist"() {
+        given:
+        globalSubstitutions.hasRules() >> true
+
+        when:
+        resolve()
+
+        then:
+        1 * builder.resolve(resolveContext, visitor)
+        0 * cacheLockingManager._
+    }
+
+    private void resolve() {
+        graphCache.resolve(resolveContext, globalRules, Specs.satisfyAll(), Stub(ComponentMetaDataResolver), Stub(AttributesSchemaInternal), builder, visitor)
+    }
+}
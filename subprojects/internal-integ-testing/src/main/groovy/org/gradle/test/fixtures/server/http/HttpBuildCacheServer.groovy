@@ -17,6 +17,7 @@
 package org.gradle.test.fixtures.server.http
 
 import com.google.common.base.Preconditions
+import org.gradle.caching.internal.NegativeLookupFilter
 import org.gradle.test.fixtures.file.TestDirectoryProvider
 import org.gradle.test.fixtures.file.TestFile
 import org.junit.rules.ExternalResource
@@ -26,11 +27,14 @@ import org.mortbay.jetty.webapp.WebAppContext
 import org.mortbay.servlet.RestFilter
 
 class HttpBuildCacheServer extends ExternalResource implements HttpServerFixture {
+    private static final String NEGATIVE_LOOKUP_FILTER_PATH = "negative-lookup-filter"
+
     private final TestDirectoryProvider provider
     private final WebAppContext webapp
     private TestFile cacheDir
     private long dropConnectionForPutBytes = -1
     private int blockIncomingConnectionsForSeconds = 0
+    private final RequestCountingFilter requestCounter = new RequestCountingFilter()
 
     HttpBuildCacheServer(TestDirectoryProvider provider) {
         this.provider = provider
@@ -47,6 +51,7 @@ class HttpBuildCacheServer extends ExternalResource implements HttpServerFixture
     }
 
     private void addFilters() {
+        this.webapp.addFilter(new FilterHolder(requestCounter), "/*", 1)
         if (dropConnectionForPutBytes > -1) {
             this.webapp.addFilter(new FilterHolder(new DropConnectionFilter(dropConnectionForPutBytes, this)), "/*", 1)
         }
@@ -60,6 +65,24 @@ class HttpBuildCacheServer extends ExternalResource implements HttpServerFixture
         this.dropConnectionForPutBytes = numBytes
     }
 
+    /**
+     * Publishes a negative lookup filter for the entries currently in the cache, like a cache node supporting it would.
+     */
+    void publishNegativeLookupFilter(double falsePositiveProbability) {
+        def entries = cacheDir.listFiles().findAll { it.file && it.name != NEGATIVE_LOOKUP_FILTER_PATH }
+        def filter = NegativeLookupFilter.create(entries.size(), falsePositiveProbability)
+        entries.each { filter.put(it.name) }
+        cacheDir.file(NEGATIVE_LOOKUP_FILTER_PATH).withOutputStream { filter.writeTo(it) }
+    }
+
+    int getRequestCount(String method) {
+        requestCounter.getCount(method)
+    }
+
+    void resetRequestCounts() {
+        requestCounter.reset()
+    }
+
     @Override
     void start() {
         cacheDir = provider.testDirectory.createDir('http-cache-dir')
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.tasks.testing.junit.result;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import static org.gradle.api.tasks.testing.TestOutputEvent.Destination.StdErr;
+import static org.gradle.api.tasks.testing.TestOutputEvent.Destination.StdOut;
+
+/**
+ * Reads back the output of a synthetic suite of 100k tests, as the XML and HTML reports do.
+ *
+ * <p>The output of the test classes is interleaved, as it is when several forks run the tests.</p>
+ */
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class TestOutputStoreBenchmark {
+    private static final int TEST_COUNT = 100000;
+
+    @Param({"10", "100"})
+    int testsPerClass;
+
+    @Param({"1", "4", "16"})
+    int forks;
+
+    File resultsDir;
+    TestOutputStore store;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        resultsDir = File.createTempFile("test-output-store", "benchmark");
+        FileUtils.forceDelete(resultsDir);
+        FileUtils.forceMkdir(resultsDir);
+        store = new TestOutputStore(resultsDir);
+
+        int classCount = TEST_COUNT / testsPerClass;
+        TestOutputStore.Writer writer = store.writer();
+        try {
+            for (int firstClass = 1; firstClass <= classCount; firstClass += forks) {
+                int lastClass = Math.min(firstClass + forks - 1, classCount);
+                for (int classId = firstClass; classId <= lastClass; classId++) {
+                    writer.onOutput(classId, new DefaultTestOutputEvent(StdOut, "Starting test class " + classId + "\n"));
+                }
+                for (int testId = 1; testId <= testsPerClass; testId++) {
+                    for (int classId = firstClass; classId <= lastClass; classId++) {
+                        writer.onOutput(classId, testId, new DefaultTestOutputEvent(StdOut, "Running test " + testId + " of class " + classId + "\n"));
+                        writer.onOutput(classId, testId, new DefaultTestOutputEvent(StdOut, "Some more output of test " + testId + "\n"));
+                        if (testId % 10 == 0) {
+                            writer.onOutput(classId, testId, new DefaultTestOutputEvent(StdErr, "Warning from test " + testId + "\n"));
+                        }
+                    }
+                }
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(resultsDir);
+    }
+
+    @Benchmark
+    public void readOutputPerTest(Blackhole blackhole) throws IOException {
+        CountingWriter output = new CountingWriter();
+        TestOutputStore.Reader reader = store.reader();
+        try {
+            int classCount = TEST_COUNT / testsPerClass;
+            for (int classId = 1; classId <= classCount; classId++) {
+                reader.writeNonTestOutput(classId, StdOut, output);
+                for (int testId = 1; testId <= testsPerClass; testId++) {
+                    reader.writeTestOutput(classId, testId, StdOut, output);
+                    reader.writeTestOutput(classId, testId, StdErr, output);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        blackhole.consume(output.count);
+    }
+
+    @Benchmark
+    public void readOutputPerClass(Blackhole blackhole) throws IOException {
+        CountingWriter output = new CountingWriter();
+        TestOutputStore.Reader reader = store.reader();
+        try {
+            int classCount = TEST_COUNT / testsPerClass;
+            for (int classId = 1; classId <= classCount; classId++) {
+                reader.writeAllOutput(classId, StdOut, output);
+                reader.writeAllOutput(classId, StdErr, output);
+            }
+        } finally {
+            reader.close();
+        }
+        blackhole.consume(output.count);
+    }
+
+    private static class CountingWriter extends Writer {
+        long count;
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            count += length;
+        }
+
+        @Override
+        public void write(String string) {
+            count += string.length();
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
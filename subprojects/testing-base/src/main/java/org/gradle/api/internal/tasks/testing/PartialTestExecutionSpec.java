@@ -0,0 +1,30 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.tasks.testing;
+
+import org.gradle.api.internal.tasks.testing.junit.result.TestReportDataCollector;
+
+/**
+ * A {@link TestExecutionSpec} for a run that may not execute some of the tests, keeping their results from the previous run instead.
+ */
+public interface PartialTestExecutionSpec extends TestExecutionSpec {
+    /**
+     * Adds the previous results of the tests that were not executed to the results of this run.
+     */
+    void addPreviousResults(TestReportDataCollector collector);
+}
@@ -21,18 +21,38 @@ import com.esotericsoftware.kryo.io.Output;
 import com.google.common.collect.ImmutableMap;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.api.tasks.testing.TestOutputEvent;
-import org.gradle.internal.io.RandomAccessFileInputStream;
-import org.gradle.internal.UncheckedException;
-import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
-import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
 
-import java.io.*;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+/**
+ * Stores the output of tests in a data file, with an index file that locates the output of each test class and test.
+ *
+ * <p>Each record in the data file holds the position of the previous record for the same class, test and destination, so that the output
+ * of a test is read without going through the output of the other tests that ran at the same time. The index holds the position of the
+ * first and last record of each.</p>
+ *
+ * <p>A {@link Reader} can be used by several threads at once.</p>
+ */
 public class TestOutputStore {
 
+    // The position of the previous record, and the length of the message
+    private static final int RECORD_HEADER_SIZE = 12;
+
     private final File resultsDir;
     private final Charset messageStorageCharset;
 
@@ -70,13 +90,14 @@ public class TestOutputStore {
     }
 
     public class Writer implements Closeable {
-        private final KryoBackedEncoder output;
+        private final DataOutputStream output;
+        private long position;
 
         private final Map<Long, Map<Long, TestCaseRegion>> index = new LinkedHashMap<Long, Map<Long, TestCaseRegion>>();
 
         public Writer() {
             try {
-                output = new KryoBackedEncoder(new FileOutputStream(getOutputsFile()));
+                output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(getOutputsFile())));
             } catch (FileNotFoundException e) {
                 throw new UncheckedIOException(e);
             }
@@ -84,7 +105,11 @@ public class TestOutputStore {
 
         @Override
         public void close() {
-            output.close();
+            try {
+                output.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
             writeIndex();
         }
 
@@ -94,23 +119,25 @@ public class TestOutputStore {
 
         public void onOutput(long classId, long testId, TestOutputEvent outputEvent) {
             boolean stdout = outputEvent.getDestination() == TestOutputEvent.Destination.StdOut;
-            mark(classId, testId, stdout);
-
-            output.writeBoolean(stdout);
-            output.writeSmallLong(classId);
-            output.writeSmallLong(testId);
+            byte[] bytes = outputEvent.getMessage().getBytes(messageStorageCharset);
+            Region streamRegion = region(classId, testId, stdout);
 
-            byte[] bytes;
             try {
-                bytes = outputEvent.getMessage().getBytes(messageStorageCharset.name());
-            } catch (UnsupportedEncodingException e) {
-                throw UncheckedException.throwAsUncheckedException(e);
+                output.writeLong(streamRegion.stop);
+                output.writeInt(bytes.length);
+                output.write(bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            if (streamRegion.start < 0) {
+                streamRegion.start = position;
             }
-            output.writeSmallInt(bytes.length);
-            output.writeBytes(bytes, 0, bytes.length);
+            streamRegion.stop = position;
+            position += RECORD_HEADER_SIZE + bytes.length;
         }
 
-        private void mark(long classId, long testId, boolean isStdout) {
+        private Region region(long classId, long testId, boolean isStdout) {
             if (!index.containsKey(classId)) {
                 index.put(classId, new LinkedHashMap<Long, TestCaseRegion>());
             }
@@ -123,13 +150,7 @@ public class TestOutputStore {
 
             TestCaseRegion region = testCaseRegions.get(testId);
 
-            Region streamRegion = isStdout ? region.stdOutRegion : region.stdErrRegion;
-
-            int total = output.getWritePosition();
-            if (streamRegion.start < 0) {
-                streamRegion.start = total;
-            }
-            streamRegion.stop = total;
+            return isStdout ? region.stdOutRegion : region.stdErrRegion;
         }
 
         private void writeIndex() {
@@ -220,6 +241,7 @@ public class TestOutputStore {
     public class Reader implements Closeable {
         private final Index index;
         private final RandomAccessFile dataFile;
+        private final FileChannel dataChannel;
 
         public Reader() {
             File indexFile = getIndexFile();
@@ -267,6 +289,7 @@ public class TestOutputStore {
                 } catch (FileNotFoundException e) {
                     throw new UncheckedIOException(e);
                 }
+                dataChannel = dataFile.getChannel();
             } else { // no outputs file
                 if (indexFile.exists()) {
                     throw new IllegalStateException(String.format("Test outputs data file '%s' does not exist but the index file '%s' does", outputsFile, indexFile));
@@ -274,6 +297,7 @@ public class TestOutputStore {
 
                 index = null;
                 dataFile = null;
+                dataChannel = null;
             }
         }
 
@@ -315,71 +339,86 @@ public class TestOutputStore {
                 return;
             }
 
-            Index targetIndex = index.children.get(classId);
-            if (targetIndex != null && testId != 0) {
-                targetIndex = targetIndex.children.get(testId);
-            }
-
-            if (targetIndex == null) {
+            Index classIndex = index.children.get(classId);
+            if (classIndex == null) {
                 return;
             }
 
             boolean stdout = destination == TestOutputEvent.Destination.StdOut;
-            Region region = stdout ? targetIndex.stdOut : targetIndex.stdErr;
-
-            if (region.start < 0) {
-                return;
-            }
-
-            boolean ignoreClassLevel = !allClassOutput && testId != 0;
-            boolean ignoreTestLevel = !allClassOutput && testId == 0;
 
             try {
-                dataFile.seek(region.start);
-                long maxPos = region.stop - region.start;
-                KryoBackedDecoder decoder = new KryoBackedDecoder(new RandomAccessFileInputStream(dataFile));
-                while (decoder.getReadPosition() <= maxPos) {
-                    boolean readStdout = decoder.readBoolean();
-                    long readClassId = decoder.readSmallLong();
-                    long readTestId = decoder.readSmallLong();
-                    int readLength = decoder.readSmallInt();
-
-                    boolean isClassLevel = readTestId == 0;
-
-                    if (stdout != readStdout || classId != readClassId) {
-                        decoder.skipBytes(readLength);
-                        continue;
+                RecordPositions records = new RecordPositions();
+                if (allClassOutput) {
+                    for (Index testIndex : classIndex.children.values()) {
+                        collectRecords(stdout ? testIndex.stdOut : testIndex.stdErr, records);
                     }
-
-                    if (ignoreClassLevel && isClassLevel) {
-                        decoder.skipBytes(readLength);
-                        continue;
+                } else {
+                    Index testIndex = classIndex.children.get(testId);
+                    if (testIndex == null) {
+                        return;
                     }
+                    collectRecords(stdout ? testIndex.stdOut : testIndex.stdErr, records);
+                }
 
-                    if (ignoreTestLevel && !isClassLevel) {
-                        decoder.skipBytes(readLength);
-                        continue;
-                    }
+                ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+                for (long record : records.sorted()) {
+                    int length = readHeader(record, header).getInt();
+                    ByteBuffer message = ByteBuffer.allocate(length);
+                    readFully(message, record + RECORD_HEADER_SIZE);
+                    writer.write(new String(message.array(), messageStorageCharset));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
 
-                    if (testId == 0 || testId == readTestId) {
-                        byte[] stringBytes = new byte[readLength];
-                        decoder.readBytes(stringBytes);
-                        String message;
-                        try {
-                            message = new String(stringBytes, messageStorageCharset.name());
-                        } catch (UnsupportedEncodingException e) {
-                            // shouldn't happen
-                            throw UncheckedException.throwAsUncheckedException(e);
-                        }
+        /**
+         * Follows the records of a region back from the last one, collecting their positions.
+         */
+        private void collectRecords(Region region, RecordPositions records) throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+            long record = region.stop;
+            while (record >= 0) {
+                records.add(record);
+                record = readHeader(record, header).getLong();
+            }
+        }
 
-                        writer.write(message);
-                    } else {
-                        decoder.skipBytes(readLength);
-                    }
+        private ByteBuffer readHeader(long record, ByteBuffer header) throws IOException {
+            header.clear();
+            readFully(header, record);
+            return header;
+        }
+
+        private void readFully(ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                // Positional reads leave the channel's own position alone, so threads do not get in each other's way
+                if (dataChannel.read(buffer, position + buffer.position()) < 0) {
+                    throw new EOFException(String.format("Unexpected end of test outputs data file '%s'", getOutputsFile()));
                 }
-            } catch (IOException e1) {
-                throw new UncheckedIOException(e1);
             }
+            buffer.flip();
+        }
+    }
+
+    private static class RecordPositions {
+        private long[] positions = new long[16];
+        private int count;
+
+        void add(long position) {
+            if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+            }
+            positions[count++] = position;
+        }
+
+        /**
+         * Returns the positions in the order the records were written.
+         */
+        long[] sorted() {
+            long[] sorted = Arrays.copyOf(positions, count);
+            Arrays.sort(sorted);
+            return sorted;
         }
     }
 
@@ -16,11 +16,13 @@
 
 package org.gradle.api.internal.tasks.testing.junit.result;
 
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent;
 import org.gradle.api.tasks.testing.*;
 import org.gradle.internal.serialize.PlaceholderException;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -83,6 +85,35 @@ public class TestReportDataCollector implements TestListener, TestOutputListener
         classResult.add(methodResult);
     }
 
+    /**
+     * Adds the result of a test class from a previous run, which was not executed again, along with its output.
+     * Does nothing when this run already has a result for the class.
+     *
+     * @param previousResult the result of the test class in the previous run
+     * @param previousOutput the output of the previous run
+     */
+    public void addPreviousResult(TestClassResult previousResult, TestOutputStore.Reader previousOutput) {
+        String className = previousResult.getClassName();
+        if (results.containsKey(className)) {
+            return;
+        }
+        TestClassResult classResult = new TestClassResult(internalIdCounter++, className, previousResult.getStartTime());
+        for (TestOutputEvent.Destination destination : TestOutputEvent.Destination.values()) {
+            previousOutput.writeNonTestOutput(previousResult.getId(), destination, new OutputEventWriter(classResult.getId(), 0, destination));
+        }
+        for (TestMethodResult previousMethodResult : previousResult.getResults()) {
+            TestMethodResult methodResult = new TestMethodResult(internalIdCounter++, previousMethodResult.getName(), previousMethodResult.getResultType(), previousMethodResult.getDuration(), previousMethodResult.getEndTime());
+            for (TestFailure failure : previousMethodResult.getFailures()) {
+                methodResult.addFailure(failure.getMessage(), failure.getStackTrace(), failure.getExceptionType());
+            }
+            for (TestOutputEvent.Destination destination : TestOutputEvent.Destination.values()) {
+                previousOutput.writeTestOutput(previousResult.getId(), previousMethodResult.getId(), destination, new OutputEventWriter(classResult.getId(), methodResult.getId(), destination));
+            }
+            classResult.add(methodResult);
+        }
+        results.put(className, classResult);
+    }
+
     private String failureMessage(Throwable throwable) {
         try {
             return throwable.toString();
@@ -141,4 +172,40 @@ public class TestReportDataCollector implements TestListener, TestOutputListener
             outputWriter.onOutput(classResult.getId(), methodResult.getId(), outputEvent);
         }
     }
+
+    /**
+     * Spools output read from a previous run to the output of this run, one event per write.
+     */
+    private class OutputEventWriter extends Writer {
+        private final long classId;
+        private final long testId;
+        private final TestOutputEvent.Destination destination;
+
+        OutputEventWriter(long classId, long testId, TestOutputEvent.Destination destination) {
+            this.classId = classId;
+            this.testId = testId;
+            this.destination = destination;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            if (len == 0) {
+                return;
+            }
+            DefaultTestOutputEvent outputEvent = new DefaultTestOutputEvent(destination, new String(cbuf, off, len));
+            if (testId == 0) {
+                outputWriter.onOutput(classId, outputEvent);
+            } else {
+                outputWriter.onOutput(classId, testId, outputEvent);
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 }
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.processors;
+
+import org.gradle.api.internal.tasks.testing.TestClassProcessor;
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
+import org.gradle.api.internal.tasks.testing.worker.WorkerTestClassProcessor;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.internal.Factory;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.actor.Actor;
+import org.gradle.internal.actor.ActorFactory;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.dispatch.DispatchException;
+import org.gradle.internal.dispatch.StreamCompletion;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Manages a set of parallel TestClassProcessors. Test classes are queued longest first, by their duration in a previous run,
+ * and a processor is handed the next queued class whenever it completes one.
+ *
+ * <p>Relies on the processors reporting the start and completion of each test class, as JUnit does. A processor whose worker stops
+ * unexpectedly is handed no more classes.</p>
+ */
+public class DurationAwareParallelTestClassProcessor implements TestClassProcessor {
+    // A processor gets its next class while still running one, so that it does not sit idle waiting for it
+    private static final int MAX_CLASSES_PER_PROCESSOR = 2;
+
+    private final int maxProcessors;
+    private final Factory<TestClassProcessor> factory;
+    private final ActorFactory actorFactory;
+    private final Map<String, Long> previousDurations;
+    private final Object lock = new Object();
+    private final PriorityQueue<QueuedTestClass> queue = new PriorityQueue<QueuedTestClass>();
+    private final List<Slot> slots = new ArrayList<Slot>();
+    private final List<Actor> actors = new ArrayList<Actor>();
+    private TestResultProcessor resultProcessor;
+    private Actor resultProcessorActor;
+    private long queuedCount;
+
+    public DurationAwareParallelTestClassProcessor(int maxProcessors, Factory<TestClassProcessor> factory, ActorFactory actorFactory, Map<String, Long> previousDurations) {
+        this.maxProcessors = maxProcessors;
+        this.factory = factory;
+        this.actorFactory = actorFactory;
+        this.previousDurations = previousDurations;
+    }
+
+    @Override
+    public void startProcessing(TestResultProcessor resultProcessor) {
+        // Create a processor that processes events in its own thread
+        resultProcessorActor = actorFactory.createActor(resultProcessor);
+        this.resultProcessor = resultProcessorActor.getProxy(TestResultProcessor.class);
+    }
+
+    @Override
+    public void processTestClass(TestClassRunInfo testClass) {
+        Long duration = previousDurations.get(testClass.getTestClassName());
+        synchronized (lock) {
+            queue.add(new QueuedTestClass(testClass, duration, queuedCount++));
+            dispatch();
+        }
+    }
+
+    /**
+     * Hands out queued test classes to processors that have room for them. Called whenever a class is queued or a processor's state changes.
+     */
+    private void dispatch() {
+        while (!queue.isEmpty()) {
+            Slot slot = nextFreeSlot();
+            if (slot == null) {
+                break;
+            }
+            slot.assign(queue.poll().testClass);
+        }
+        lock.notifyAll();
+    }
+
+    private Slot nextFreeSlot() {
+        Slot leastBusy = null;
+        for (Slot slot : slots) {
+            if (!slot.failed && slot.assignedClasses.size() < MAX_CLASSES_PER_PROCESSOR
+                && (leastBusy == null || slot.assignedClasses.size() < leastBusy.assignedClasses.size())) {
+                leastBusy = slot;
+            }
+        }
+        if ((leastBusy == null || !leastBusy.assignedClasses.isEmpty()) && slots.size() < maxProcessors) {
+            return startSlot();
+        }
+        return leastBusy;
+    }
+
+    private Slot startSlot() {
+        Slot slot = new Slot();
+        Actor actor = actorFactory.createActor(new FailureTrackingTestClassProcessor(factory.create(), slot));
+        slot.processor = actor.getProxy(TestClassProcessor.class);
+        actors.add(actor);
+        slots.add(slot);
+        slot.processor.startProcessing(slot);
+        return slot;
+    }
+
+    private boolean canMakeProgress() {
+        if (slots.size() < maxProcessors) {
+            return true;
+        }
+        for (Slot slot : slots) {
+            if (!slot.failed) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void stop() {
+        List<TestClassProcessor> processors = new ArrayList<TestClassProcessor>();
+        synchronized (lock) {
+            while (!queue.isEmpty() && canMakeProgress()) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+            // All processors have failed. Hand out the remaining classes regardless, so that the failures are reported as usual.
+            int pos = 0;
+            while (!queue.isEmpty()) {
+                slots.get(pos).processor.processTestClass(queue.poll().testClass);
+                pos = (pos + 1) % slots.size();
+            }
+            for (Slot slot : slots) {
+                processors.add(slot.processor);
+            }
+        }
+        try {
+            CompositeStoppable.stoppable(processors).add(actors).add(resultProcessorActor).stop();
+        } catch (DispatchException e) {
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        }
+    }
+
+    private static class QueuedTestClass implements Comparable<QueuedTestClass> {
+        private final TestClassRunInfo testClass;
+        private final long duration;
+        private final long sequence;
+
+        private QueuedTestClass(TestClassRunInfo testClass, Long previousDuration, long sequence) {
+            this.testClass = testClass;
+            // Classes without a previous duration are new or renamed, and go first so that a slow one does not end up running last
+            this.duration = previousDuration == null ? Long.MAX_VALUE : previousDuration;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(QueuedTestClass other) {
+            if (duration != other.duration) {
+                return duration > other.duration ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : sequence == other.sequence ? 0 : 1;
+        }
+    }
+
+    /**
+     * A processor, and the results it reports. Tracks which of the classes handed to the processor are still running.
+     */
+    private class Slot implements TestResultProcessor, StreamCompletion {
+        private TestClassProcessor processor;
+        private final List<String> assignedClasses = new ArrayList<String>();
+        private final Map<Object, String> runningClasses = new HashMap<Object, String>();
+        private final Set<Object> runningWorkers = new HashSet<Object>();
+        private boolean failed;
+
+        void assign(TestClassRunInfo testClass) {
+            assignedClasses.add(testClass.getTestClassName());
+            processor.processTestClass(testClass);
+        }
+
+        @Override
+        public void started(TestDescriptorInternal test, TestStartEvent event) {
+            synchronized (lock) {
+                if (test instanceof WorkerTestClassProcessor.WorkerTestSuiteDescriptor) {
+                    runningWorkers.add(test.getId());
+                } else if (test.isComposite() && assignedClasses.contains(test.getClassName()) && !runningClasses.containsValue(test.getClassName())) {
+                    runningClasses.put(test.getId(), test.getClassName());
+                }
+            }
+            resultProcessor.started(test, event);
+        }
+
+        @Override
+        public void completed(Object testId, TestCompleteEvent event) {
+            resultProcessor.completed(testId, event);
+            synchronized (lock) {
+                runningWorkers.remove(testId);
+                String className = runningClasses.remove(testId);
+                if (className != null) {
+                    assignedClasses.remove(className);
+                    dispatch();
+                }
+            }
+        }
+
+        @Override
+        public void output(Object testId, TestOutputEvent event) {
+            resultProcessor.output(testId, event);
+        }
+
+        @Override
+        public void failure(Object testId, Throwable result) {
+            resultProcessor.failure(testId, result);
+        }
+
+        /**
+         * Called when a worker will report no further results. When it has not completed, or not even started, it has stopped unexpectedly.
+         */
+        @Override
+        public void endStream() {
+            synchronized (lock) {
+                if (!runningWorkers.isEmpty() || !assignedClasses.isEmpty()) {
+                    markFailed();
+                }
+            }
+        }
+
+        void markFailed() {
+            synchronized (lock) {
+                failed = true;
+                dispatch();
+            }
+        }
+    }
+
+    private static class FailureTrackingTestClassProcessor implements TestClassProcessor {
+        private final TestClassProcessor delegate;
+        private final Slot slot;
+
+        FailureTrackingTestClassProcessor(TestClassProcessor delegate, Slot slot) {
+            this.delegate = delegate;
+            this.slot = slot;
+        }
+
+        @Override
+        public void startProcessing(TestResultProcessor resultProcessor) {
+            delegate.startProcessing(resultProcessor);
+        }
+
+        @Override
+        public void processTestClass(TestClassRunInfo testClass) {
+            try {
+                delegate.processTestClass(testClass);
+            } catch (Throwable t) {
+                slot.markFailed();
+                throw UncheckedException.throwAsUncheckedException(t);
+            }
+        }
+
+        @Override
+        public void stop() {
+            delegate.stop();
+        }
+    }
+}
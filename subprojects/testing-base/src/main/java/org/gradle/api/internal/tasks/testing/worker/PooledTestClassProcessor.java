@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.classpath.ModuleRegistry;
+import org.gradle.api.internal.tasks.testing.TestClassProcessor;
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
+import org.gradle.internal.work.WorkerLeaseRegistry;
+import org.gradle.process.JavaForkOptions;
+
+import java.io.File;
+
+/**
+ * Like {@link ForkingTestClassProcessor}, but runs the tests in a worker reserved from a {@link TestWorkerPool}, which is handed back to the pool afterwards.
+ */
+public class PooledTestClassProcessor implements TestClassProcessor {
+    private final WorkerLeaseRegistry.WorkerLease currentWorkerLease;
+    private final TestWorkerPool workerPool;
+    private final WorkerTestClassProcessorFactory processorFactory;
+    private final JavaForkOptions options;
+    private final Iterable<File> classPath;
+    private final ModuleRegistry moduleRegistry;
+    private PooledTestWorkerClient worker;
+    private TestResultProcessor resultProcessor;
+    private WorkerLeaseRegistry.WorkerLeaseCompletion completion;
+
+    public PooledTestClassProcessor(WorkerLeaseRegistry.WorkerLease parentWorkerLease, TestWorkerPool workerPool, WorkerTestClassProcessorFactory processorFactory, JavaForkOptions options, Iterable<File> classPath, ModuleRegistry moduleRegistry) {
+        this.currentWorkerLease = parentWorkerLease;
+        this.workerPool = workerPool;
+        this.processorFactory = processorFactory;
+        this.options = options;
+        this.classPath = classPath;
+        this.moduleRegistry = moduleRegistry;
+    }
+
+    @Override
+    public void startProcessing(TestResultProcessor resultProcessor) {
+        this.resultProcessor = resultProcessor;
+    }
+
+    @Override
+    public void processTestClass(TestClassRunInfo testClass) {
+        if (worker == null) {
+            completion = currentWorkerLease.startChild();
+            worker = workerPool.reserve(options, ForkingTestClassProcessor.getTestWorkerImplementationClasspath(moduleRegistry));
+            worker.startSession(new TestWorkerSessionSpec(processorFactory, classPath), resultProcessor);
+        }
+
+        worker.processTestClass(testClass);
+    }
+
+    @Override
+    public void stop() {
+        if (worker != null) {
+            try {
+                worker.stopSession();
+            } finally {
+                workerPool.release(worker);
+                completion.leaseFinish();
+            }
+        }
+    }
+}
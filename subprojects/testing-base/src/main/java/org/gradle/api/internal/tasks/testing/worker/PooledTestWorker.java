@@ -0,0 +1,198 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.Action;
+import org.gradle.api.internal.tasks.testing.TestClassProcessor;
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.actor.ActorFactory;
+import org.gradle.internal.actor.internal.DefaultActorFactory;
+import org.gradle.internal.classloader.CachingClassLoader;
+import org.gradle.internal.classloader.ClassLoaderUtils;
+import org.gradle.internal.classloader.FilteringClassLoader;
+import org.gradle.internal.classloader.MultiParentClassLoader;
+import org.gradle.internal.classloader.VisitableURLClassLoader;
+import org.gradle.internal.concurrent.DefaultExecutorFactory;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.dispatch.ContextClassLoaderProxy;
+import org.gradle.internal.id.IdGenerator;
+import org.gradle.internal.remote.ObjectConnection;
+import org.gradle.internal.service.DefaultServiceRegistry;
+import org.gradle.internal.service.ServiceRegistry;
+import org.gradle.internal.time.Clock;
+import org.gradle.process.internal.worker.WorkerProcessContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A test worker that stays alive after running the tests of a task, so that it can run the tests of the next one. See {@link TestWorkerPool}.
+ *
+ * <p>The worker process is started without the test runtime classpath. Each session loads it in a fresh ClassLoader, along with the test framework
+ * adapter, which sees the Gradle classes of the worker and everything else from the test runtime classpath.</p>
+ */
+public class PooledTestWorker implements Action<WorkerProcessContext>, RemotePooledTestWorker, Serializable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PooledTestWorker.class);
+    private transient CountDownLatch stopped;
+    private transient WorkerProcessContext workerProcessContext;
+    private transient DefaultServiceRegistry workerServices;
+    private transient DefaultServiceRegistry testServices;
+    private transient PooledTestResultProcessor resultProcessor;
+    private transient TestClassProcessor processor;
+    private transient ClassLoader applicationClassLoader;
+    private transient ClassLoader frameworkAdapterClassLoader;
+
+    @Override
+    public void execute(WorkerProcessContext workerProcessContext) {
+        LOGGER.info("{} started.", workerProcessContext.getDisplayName());
+
+        this.workerProcessContext = workerProcessContext;
+        stopped = new CountDownLatch(1);
+
+        System.setProperty(TestWorker.WORKER_ID_SYS_PROPERTY, workerProcessContext.getWorkerId().toString());
+
+        // Shared by all sessions, so that test ids stay unique when a task uses the same worker more than once
+        workerServices = new TestWorker.TestFrameworkServiceRegistry(workerProcessContext);
+
+        ObjectConnection serverConnection = workerProcessContext.getServerConnection();
+        serverConnection.useParameterSerializers(TestEventSerializer.create());
+        resultProcessor = serverConnection.addOutgoing(PooledTestResultProcessor.class);
+        serverConnection.addIncoming(RemotePooledTestWorker.class, this);
+        serverConnection.connect();
+
+        try {
+            try {
+                stopped.await();
+            } catch (InterruptedException e) {
+                throw new UncheckedException(e);
+            }
+        } finally {
+            LOGGER.info("{} stopped.", workerProcessContext.getDisplayName());
+            workerServices.close();
+        }
+    }
+
+    @Override
+    public void startSession(TestWorkerSessionSpec spec) {
+        Thread.currentThread().setName("Test worker");
+        try {
+            applicationClassLoader = new VisitableURLClassLoader(ClassLoader.getSystemClassLoader(), spec.getApplicationClasspath());
+            frameworkAdapterClassLoader = createFrameworkAdapterClassLoader(spec);
+            testServices = new SessionServiceRegistry(workerServices);
+
+            TestClassProcessor targetProcessor = spec.getProcessorFactory(frameworkAdapterClassLoader).create(testServices);
+            IdGenerator<Object> idGenerator = testServices.get(IdGenerator.class);
+            targetProcessor = new WorkerTestClassProcessor(targetProcessor, idGenerator.generateId(),
+                    workerProcessContext.getDisplayName(), testServices.get(Clock.class));
+            ContextClassLoaderProxy<TestClassProcessor> proxy = new ContextClassLoaderProxy<TestClassProcessor>(
+                    TestClassProcessor.class, targetProcessor, applicationClassLoader);
+            processor = proxy.getSource();
+            processor.startProcessing(resultProcessor);
+        } catch (Throwable failure) {
+            // No further messages are handled after a failure, so exit rather than leave the session hanging
+            failSession(failure);
+        }
+    }
+
+    private ClassLoader createFrameworkAdapterClassLoader(TestWorkerSessionSpec spec) {
+        FilteringClassLoader.Spec gradleFilterSpec = new FilteringClassLoader.Spec();
+        gradleFilterSpec.allowPackage("org.gradle");
+        gradleFilterSpec.allowPackage("org.slf4j");
+        gradleFilterSpec.allowPackage("org.apache.commons.lang");
+        gradleFilterSpec.disallowPackage(spec.getFrameworkAdapterPackage());
+        ClassLoader gradleLoader = new FilteringClassLoader(getClass().getClassLoader(), gradleFilterSpec);
+
+        ClassLoader gradleAndApplicationLoader = new CachingClassLoader(new MultiParentClassLoader(gradleLoader, applicationClassLoader));
+        return new VisitableURLClassLoader(gradleAndApplicationLoader, spec.getFrameworkAdapterClasspath());
+    }
+
+    @Override
+    public void processTestClass(TestClassRunInfo testClass) {
+        Thread.currentThread().setName("Test worker");
+        boolean processed = false;
+        try {
+            processor.processTestClass(testClass);
+            processed = true;
+        } finally {
+            // Clean the interrupted status
+            Thread.interrupted();
+            if (!processed) {
+                stopped.countDown();
+            }
+        }
+    }
+
+    @Override
+    public void stopSession() {
+        Thread.currentThread().setName("Test worker");
+        try {
+            processor.stop();
+        } catch (Throwable failure) {
+            // Exit rather than report completion, so that the pool does not hand out a worker in an unknown state
+            failSession(failure);
+            return;
+        }
+        closeSession();
+        resultProcessor.sessionCompleted();
+    }
+
+    private void failSession(Throwable failure) {
+        closeSession();
+        resultProcessor.sessionFailed(failure);
+        stopped.countDown();
+    }
+
+    private void closeSession() {
+        // Clean out any security manager the tests might have installed
+        System.setSecurityManager(null);
+        if (testServices != null) {
+            testServices.close();
+        }
+        ClassLoaderUtils.tryClose(frameworkAdapterClassLoader);
+        ClassLoaderUtils.tryClose(applicationClassLoader);
+        processor = null;
+        testServices = null;
+        frameworkAdapterClassLoader = null;
+        applicationClassLoader = null;
+    }
+
+    @Override
+    public void stop() {
+        stopped.countDown();
+    }
+
+    /**
+     * Stops the executors and actors of a session when it completes, even if the test framework leaves some behind.
+     */
+    private static class SessionServiceRegistry extends DefaultServiceRegistry {
+        SessionServiceRegistry(ServiceRegistry workerServices) {
+            super(workerServices);
+        }
+
+        protected ExecutorFactory createExecutorFactory() {
+            return new DefaultExecutorFactory();
+        }
+
+        protected ActorFactory createActorFactory(ExecutorFactory executorFactory) {
+            return new DefaultActorFactory(executorFactory);
+        }
+    }
+}
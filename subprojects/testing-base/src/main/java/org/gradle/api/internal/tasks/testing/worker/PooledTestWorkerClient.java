@@ -0,0 +1,212 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
+import org.gradle.api.logging.LogLevel;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.dispatch.StreamCompletion;
+import org.gradle.internal.remote.ObjectConnection;
+import org.gradle.process.internal.ExecException;
+import org.gradle.process.internal.worker.WorkerProcess;
+
+/**
+ * The build side of a {@link PooledTestWorker}, which runs the tests of one task at a time.
+ */
+class PooledTestWorkerClient implements Stoppable {
+    private static final Logger LOGGER = Logging.getLogger(PooledTestWorkerClient.class);
+    private final Object lock = new Object();
+    private final WorkerProcess workerProcess;
+    private final Object forkOptionsKey;
+    private final LogLevel logLevel;
+    private final RemotePooledTestWorker remoteWorker;
+    private TestResultProcessor resultProcessor;
+    private boolean sessionRunning;
+    private Throwable sessionFailure;
+    private boolean ended;
+    private boolean stopped;
+
+    PooledTestWorkerClient(WorkerProcess workerProcess, Object forkOptionsKey, LogLevel logLevel) {
+        this.workerProcess = workerProcess;
+        this.forkOptionsKey = forkOptionsKey;
+        this.logLevel = logLevel;
+        ObjectConnection connection = workerProcess.getConnection();
+        connection.useParameterSerializers(TestEventSerializer.create());
+        connection.addIncoming(PooledTestResultProcessor.class, new Receiver());
+        remoteWorker = connection.addOutgoing(RemotePooledTestWorker.class);
+        connection.connect();
+    }
+
+    public boolean isCompatibleWith(Object forkOptionsKey, LogLevel logLevel) {
+        return this.forkOptionsKey.equals(forkOptionsKey) && this.logLevel == logLevel;
+    }
+
+    /**
+     * Returns true when the worker is alive and not running a session, so that it can be handed to another task.
+     */
+    public boolean isIdle() {
+        synchronized (lock) {
+            return !ended && !stopped && !sessionRunning;
+        }
+    }
+
+    public void startSession(TestWorkerSessionSpec spec, TestResultProcessor resultProcessor) {
+        synchronized (lock) {
+            if (ended || stopped || sessionRunning) {
+                throw new IllegalStateException("Test worker is not idle.");
+            }
+            this.resultProcessor = resultProcessor;
+            sessionRunning = true;
+        }
+        remoteWorker.startSession(spec);
+    }
+
+    public void processTestClass(TestClassRunInfo testClass) {
+        remoteWorker.processTestClass(testClass);
+    }
+
+    /**
+     * Waits for the worker to finish the tests of the current session, and to report all their results. Fails when the worker
+     * could not start or stop the session.
+     */
+    public void stopSession() {
+        remoteWorker.stopSession();
+        Throwable failure;
+        synchronized (lock) {
+            while (sessionRunning && !ended) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+            if (!ended) {
+                return;
+            }
+            failure = sessionFailure;
+        }
+        if (failure != null) {
+            throw new GradleException("Could not run tests in a pooled test worker.", failure);
+        }
+        // The worker went away before completing the session. This fails when it exited with an error, as when the worker is not pooled.
+        workerProcess.waitForStop();
+    }
+
+    @Override
+    public void stop() {
+        synchronized (lock) {
+            if (stopped) {
+                return;
+            }
+            stopped = true;
+            if (!ended) {
+                remoteWorker.stop();
+            }
+        }
+        try {
+            workerProcess.waitForStop();
+        } catch (ExecException e) {
+            // A worker that failed while running tests has already failed the task it was running them for
+            LOGGER.debug("Test worker did not stop cleanly.", e);
+        }
+    }
+
+    /**
+     * Returns null between sessions, when anything the worker sends is dropped. For example, output from threads left behind by the tests.
+     */
+    private TestResultProcessor currentResultProcessor() {
+        synchronized (lock) {
+            return resultProcessor;
+        }
+    }
+
+    private class Receiver implements PooledTestResultProcessor, StreamCompletion {
+        @Override
+        public void started(TestDescriptorInternal test, TestStartEvent event) {
+            TestResultProcessor resultProcessor = currentResultProcessor();
+            if (resultProcessor != null) {
+                resultProcessor.started(test, event);
+            }
+        }
+
+        @Override
+        public void completed(Object testId, TestCompleteEvent event) {
+            TestResultProcessor resultProcessor = currentResultProcessor();
+            if (resultProcessor != null) {
+                resultProcessor.completed(testId, event);
+            }
+        }
+
+        @Override
+        public void output(Object testId, TestOutputEvent event) {
+            TestResultProcessor resultProcessor = currentResultProcessor();
+            if (resultProcessor != null) {
+                resultProcessor.output(testId, event);
+            }
+        }
+
+        @Override
+        public void failure(Object testId, Throwable result) {
+            TestResultProcessor resultProcessor = currentResultProcessor();
+            if (resultProcessor != null) {
+                resultProcessor.failure(testId, result);
+            }
+        }
+
+        @Override
+        public void sessionCompleted() {
+            synchronized (lock) {
+                sessionRunning = false;
+                resultProcessor = null;
+                lock.notifyAll();
+            }
+        }
+
+        @Override
+        public void sessionFailed(Throwable failure) {
+            synchronized (lock) {
+                sessionFailure = failure;
+            }
+        }
+
+        /**
+         * Called when the worker has exited. When a session is still running, it is ended, as it is when a forked worker exits.
+         */
+        @Override
+        public void endStream() {
+            TestResultProcessor resultProcessor;
+            synchronized (lock) {
+                ended = true;
+                resultProcessor = PooledTestWorkerClient.this.resultProcessor;
+                lock.notifyAll();
+            }
+            if (resultProcessor instanceof StreamCompletion) {
+                ((StreamCompletion) resultProcessor).endStream();
+            }
+        }
+    }
+}
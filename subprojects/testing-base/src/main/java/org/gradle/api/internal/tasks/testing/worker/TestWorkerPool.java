@@ -0,0 +1,156 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.gradle.api.logging.LogLevel;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.logging.LoggingManagerInternal;
+import org.gradle.process.JavaForkOptions;
+import org.gradle.process.internal.worker.WorkerProcess;
+import org.gradle.process.internal.worker.WorkerProcessBuilder;
+import org.gradle.process.internal.worker.WorkerProcessFactory;
+
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps test workers running between test tasks and builds, so that JVM startup is paid once rather than by every task. See {@link PooledTestWorker}.
+ *
+ * <p>A worker is only handed to a task whose fork options give the same command line, and runs the tests of one task at a time.
+ * Idle workers are kept until the pool is stopped, up to a limit, after which the least recently used ones are stopped.</p>
+ */
+public class TestWorkerPool implements Stoppable {
+
+    private static final Logger LOGGER = Logging.getLogger(TestWorkerPool.class);
+
+    private final Object lock = new Object();
+    private final List<PooledTestWorkerClient> allClients = Lists.newArrayList();
+    // Least recently used first
+    private final LinkedList<PooledTestWorkerClient> idleClients = Lists.newLinkedList();
+    private final WorkerProcessFactory workerFactory;
+    private final LoggingManagerInternal loggingManager;
+    private final int maxIdleWorkers;
+
+    public TestWorkerPool(WorkerProcessFactory workerFactory, LoggingManagerInternal loggingManager, int maxIdleWorkers) {
+        this.workerFactory = workerFactory;
+        this.loggingManager = loggingManager;
+        this.maxIdleWorkers = maxIdleWorkers;
+    }
+
+    PooledTestWorkerClient reserve(JavaForkOptions options, List<URL> implementationClasspath) {
+        Object forkOptionsKey = forkOptionsKey(options);
+        // Workers log at the level they were started with
+        LogLevel logLevel = loggingManager.getLevel();
+        List<PooledTestWorkerClient> toStop = Lists.newArrayList();
+        try {
+            synchronized (lock) {
+                // Most recently used first, as they are the warmest
+                Iterator<PooledTestWorkerClient> it = idleClients.descendingIterator();
+                while (it.hasNext()) {
+                    PooledTestWorkerClient candidate = it.next();
+                    if (!candidate.isIdle()) {
+                        // The worker has gone away
+                        it.remove();
+                        allClients.remove(candidate);
+                        toStop.add(candidate);
+                    } else if (candidate.isCompatibleWith(forkOptionsKey, logLevel)) {
+                        it.remove();
+                        return candidate;
+                    }
+                }
+            }
+        } finally {
+            CompositeStoppable.stoppable(toStop).stop();
+        }
+
+        // Start outside the lock, so that workers can be started concurrently
+        PooledTestWorkerClient client = startWorker(options, forkOptionsKey, logLevel, implementationClasspath);
+        synchronized (lock) {
+            allClients.add(client);
+        }
+        return client;
+    }
+
+    private PooledTestWorkerClient startWorker(JavaForkOptions options, Object forkOptionsKey, LogLevel logLevel, List<URL> implementationClasspath) {
+        WorkerProcessBuilder builder = workerFactory.create(new PooledTestWorker());
+        builder.setBaseName("Gradle Test Executor");
+        builder.setImplementationClasspath(implementationClasspath);
+        options.copyTo(builder.getJavaCommand());
+        builder.getJavaCommand().jvmArgs("-Dorg.gradle.native=false");
+
+        WorkerProcess workerProcess = builder.build();
+        workerProcess.start();
+        return new PooledTestWorkerClient(workerProcess, forkOptionsKey, logLevel);
+    }
+
+    void release(PooledTestWorkerClient client) {
+        List<PooledTestWorkerClient> toStop = Lists.newArrayList();
+        synchronized (lock) {
+            if (client.isIdle()) {
+                idleClients.addLast(client);
+            } else {
+                allClients.remove(client);
+                toStop.add(client);
+            }
+            while (idleClients.size() > maxIdleWorkers) {
+                PooledTestWorkerClient leastRecentlyUsed = idleClients.removeFirst();
+                allClients.remove(leastRecentlyUsed);
+                toStop.add(leastRecentlyUsed);
+            }
+        }
+        if (!toStop.isEmpty()) {
+            LOGGER.debug("Stopping {} test worker(s).", toStop.size());
+            CompositeStoppable.stoppable(toStop).stop();
+        }
+    }
+
+    @Override
+    public void stop() {
+        List<PooledTestWorkerClient> toStop;
+        synchronized (lock) {
+            toStop = Lists.newArrayList(allClients);
+            allClients.clear();
+            idleClients.clear();
+        }
+        if (!toStop.isEmpty()) {
+            LOGGER.debug("Stopping {} test worker(s).", toStop.size());
+            CompositeStoppable.stoppable(toStop).stop();
+            LOGGER.info("Stopped {} test worker(s).", toStop.size());
+        }
+    }
+
+    /**
+     * The parts of the fork options that end up on the command line or in the environment of the worker.
+     */
+    private static Object forkOptionsKey(JavaForkOptions options) {
+        Map<String, String> environment = Maps.newTreeMap();
+        for (Map.Entry<String, Object> entry : options.getEnvironment().entrySet()) {
+            environment.put(entry.getKey(), String.valueOf(entry.getValue()));
+        }
+        return ImmutableList.of(options.getExecutable(), options.getWorkingDir(), ImmutableList.copyOf(options.getAllJvmArgs()), environment);
+    }
+}
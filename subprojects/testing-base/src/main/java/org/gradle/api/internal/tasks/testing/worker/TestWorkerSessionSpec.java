@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.classloader.ClasspathUtil;
+import org.gradle.internal.classpath.DefaultClassPath;
+import org.gradle.internal.io.ClassLoaderObjectInputStream;
+import org.gradle.util.GUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.net.URL;
+import java.util.List;
+
+/**
+ * What a {@link PooledTestWorker} needs to run the tests of one task.
+ *
+ * <p>The test framework adapter is the package of the processor factory. A pooled worker loads it in a fresh ClassLoader for each session, next to the
+ * test runtime classpath, so the processor factory is kept serialized until that ClassLoader exists.</p>
+ */
+public class TestWorkerSessionSpec implements Serializable {
+    private final byte[] serializedProcessorFactory;
+    private final String frameworkAdapterPackage;
+    private final List<URL> frameworkAdapterClasspath;
+    private final List<URL> applicationClasspath;
+
+    public TestWorkerSessionSpec(WorkerTestClassProcessorFactory processorFactory, Iterable<File> applicationClasspath) {
+        this.serializedProcessorFactory = GUtil.serialize(processorFactory);
+        this.frameworkAdapterPackage = processorFactory.getClass().getPackage().getName();
+        this.frameworkAdapterClasspath = new DefaultClassPath(ClasspathUtil.getClasspathForClass(processorFactory.getClass())).getAsURLs();
+        this.applicationClasspath = new DefaultClassPath(applicationClasspath).getAsURLs();
+    }
+
+    public String getFrameworkAdapterPackage() {
+        return frameworkAdapterPackage;
+    }
+
+    public List<URL> getFrameworkAdapterClasspath() {
+        return frameworkAdapterClasspath;
+    }
+
+    public List<URL> getApplicationClasspath() {
+        return applicationClasspath;
+    }
+
+    /**
+     * Deserializes the processor factory in the given ClassLoader, which should be able to load the framework adapter.
+     */
+    public WorkerTestClassProcessorFactory getProcessorFactory(ClassLoader frameworkAdapterClassLoader) {
+        try {
+            ObjectInputStream inputStream = new ClassLoaderObjectInputStream(new ByteArrayInputStream(serializedProcessorFactory), frameworkAdapterClassLoader);
+            try {
+                return (WorkerTestClassProcessorFactory) inputStream.readObject();
+            } finally {
+                inputStream.close();
+            }
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+}
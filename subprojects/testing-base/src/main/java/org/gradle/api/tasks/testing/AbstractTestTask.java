@@ -30,6 +30,7 @@ import org.gradle.api.internal.ConventionTask;
 import org.gradle.api.internal.tasks.options.Option;
 import org.gradle.api.internal.tasks.testing.DefaultTestTaskReports;
 import org.gradle.api.internal.tasks.testing.NoMatchingTestsReporter;
+import org.gradle.api.internal.tasks.testing.PartialTestExecutionSpec;
 import org.gradle.api.internal.tasks.testing.TestExecuter;
 import org.gradle.api.internal.tasks.testing.TestExecutionSpec;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
@@ -459,7 +460,11 @@ public abstract class AbstractTestTask extends ConventionTask implements Verific
         TestExecuter testExecuter = createTestExecuter();
 
         try {
-            testExecuter.execute(createTestExecutionSpec(), resultProcessor);
+            TestExecutionSpec executionSpec = createTestExecutionSpec();
+            testExecuter.execute(executionSpec, resultProcessor);
+            if (executionSpec instanceof PartialTestExecutionSpec) {
+                ((PartialTestExecutionSpec) executionSpec).addPreviousResults(testReportDataCollector);
+            }
         } finally {
             parentProgressLogger.completed();
             testWorkerProgressListener.completeAll();
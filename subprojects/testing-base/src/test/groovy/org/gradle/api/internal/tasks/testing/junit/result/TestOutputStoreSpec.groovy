@@ -98,6 +98,65 @@ class TestOutputStoreSpec extends WorkspaceTest {
         reader.close()
     }
 
+    def "reads output of tests that ran at the same time"() {
+        when:
+        def writer = output.writer()
+        (1..50).each { i ->
+            (1..4).each { classId ->
+                writer.onOutput(classId, i, output(StdOut, "[$classId-$i]"))
+                writer.onOutput(classId, output(StdErr, "[$classId-$i]"))
+            }
+        }
+        writer.close()
+        def reader = output.reader()
+
+        then:
+        collectOutput(reader, 3, 17, StdOut) == "[3-17]"
+        collectOutput(reader, 2, StdErr) == (1..50).collect { "[2-$it]" }.join()
+        collectAllOutput(reader, 4, StdOut) == (1..50).collect { "[4-$it]" }.join()
+
+        cleanup:
+        reader.close()
+    }
+
+    def "reads messages with multi-byte characters"() {
+        when:
+        def writer = output.writer()
+        writer.onOutput(1, 1, output(StdOut, "\u00e9t\u00e9 "))
+        writer.onOutput(1, 1, output(StdOut, "\u65e5\u672c"))
+        writer.close()
+        def reader = output.reader()
+
+        then:
+        collectOutput(reader, 1, 1, StdOut) == "\u00e9t\u00e9 \u65e5\u672c"
+
+        cleanup:
+        reader.close()
+    }
+
+    def "reader can be used by several threads at once"() {
+        when:
+        def writer = output.writer()
+        (1..100).each { i ->
+            (1..8).each { classId ->
+                writer.onOutput(classId, i, output(StdOut, "[$classId-$i]"))
+            }
+        }
+        writer.close()
+        def reader = output.reader()
+        def outputs = new String[8]
+        def threads = (1..8).collect { classId ->
+            Thread.start { outputs[classId - 1] = collectAllOutput(reader, classId, StdOut) }
+        }
+        threads*.join()
+
+        then:
+        (1..8).every { classId -> outputs[classId - 1] == (1..100).collect { "[$classId-$it]" }.join() }
+
+        cleanup:
+        reader.close()
+    }
+
     def DefaultTestOutputEvent output(TestOutputEvent.Destination destination, String msg) {
         new DefaultTestOutputEvent(destination, msg)
     }
@@ -219,4 +219,43 @@ class TestReportDataCollectorSpec extends Specification {
         then:
         results.get("FooTest").startTime == 100
     }
+
+    def "adds previous result with its output"() {
+        def previous = new TestClassResult(7, "FooTest", 100)
+        previous.add(new TestMethodResult(8, "testMethod", SUCCESS, 50, 150))
+        previous.add(new TestMethodResult(9, "testMethod2", SUCCESS, 20, 170))
+        def reader = Mock(TestOutputStore.Reader)
+
+        when:
+        collector.addPreviousResult(previous, reader)
+
+        then:
+        1 * reader.writeNonTestOutput(7, StdOut, _) >> { args -> args[2].write("class-out") }
+        1 * reader.writeTestOutput(7, 8, StdErr, _) >> { args -> args[3].write("err-1") }
+        1 * writer.onOutput(1, new DefaultTestOutputEvent(StdOut, "class-out"))
+        1 * writer.onOutput(1, 2, new DefaultTestOutputEvent(StdErr, "err-1"))
+        0 * writer._
+
+        and:
+        def fooTest = results.get("FooTest")
+        fooTest.id == 1
+        fooTest.startTime == 100
+        fooTest.results*.id == [2L, 3L]
+        fooTest.results*.name == ["testMethod", "testMethod2"]
+        fooTest.results*.endTime == [150L, 170L]
+    }
+
+    def "does not replace result of executed test class with previous result"() {
+        def test = new DefaultTestDescriptor("1.1.1", "FooTest", "testMethod")
+        collector.beforeTest(test)
+        collector.afterTest(test, new DefaultTestResult(SUCCESS, 100, 200, 1, 1, 0, asList()))
+        def previous = new TestClassResult(7, "FooTest", 10)
+        previous.add(new TestMethodResult(8, "otherMethod", SUCCESS, 50, 60))
+
+        when:
+        collector.addPreviousResult(previous, Mock(TestOutputStore.Reader))
+
+        then:
+        results.get("FooTest").results*.name == ["testMethod"]
+    }
 }
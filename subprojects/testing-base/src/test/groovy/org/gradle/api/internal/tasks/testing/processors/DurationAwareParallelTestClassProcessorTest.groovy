@@ -0,0 +1,248 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.tasks.testing.processors
+
+import org.gradle.api.internal.tasks.testing.DefaultTestClassDescriptor
+import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo
+import org.gradle.api.internal.tasks.testing.TestClassProcessor
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.api.internal.tasks.testing.TestStartEvent
+import org.gradle.api.internal.tasks.testing.worker.WorkerTestClassProcessor
+import org.gradle.internal.Factory
+import org.gradle.internal.actor.Actor
+import org.gradle.internal.actor.ActorFactory
+import org.gradle.internal.dispatch.StreamCompletion
+import spock.lang.Specification
+
+class DurationAwareParallelTestClassProcessorTest extends Specification {
+    private final List<FakeProcessor> forks = []
+    private final Factory<TestClassProcessor> factory = {
+        def fork = new FakeProcessor()
+        forks << fork
+        fork
+    } as Factory<TestClassProcessor>
+    // Dispatches directly to the target, so that the outcome does not depend on timing
+    private final ActorFactory actorFactory = Stub(ActorFactory) {
+        createActor(_) >> { Object target ->
+            Stub(Actor) {
+                getProxy(_) >> target
+            }
+        }
+    }
+    private final TestResultProcessor resultProcessor = Mock()
+
+    def "hands out test classes longest first as forks complete them"() {
+        def processor = processor(1, [a: 100L, b: 300L, c: 200L, d: 400L])
+
+        when:
+        ["a", "b", "c", "d"].each { processor.processTestClass(testClass(it)) }
+
+        then:
+        forks.size() == 1
+        forks[0].classes == ["a", "b"]
+
+        when:
+        forks[0].complete("a")
+
+        then:
+        forks[0].classes == ["a", "b", "d"]
+
+        when:
+        forks[0].complete("b")
+        forks[0].complete("d")
+
+        then:
+        forks[0].classes == ["a", "b", "d", "c"]
+    }
+
+    def "hands out test classes without previous duration first"() {
+        def processor = processor(1, [a: 100L, b: 300L, c: 500L])
+
+        when:
+        ["a", "b", "c", "new"].each { processor.processTestClass(testClass(it)) }
+        forks[0].complete("a")
+
+        then:
+        forks[0].classes == ["a", "b", "new"]
+    }
+
+    def "starts a fork per test class before handing more classes to running forks"() {
+        def processor = processor(2, [:])
+
+        when:
+        ["a", "b", "c", "d", "e"].each { processor.processTestClass(testClass(it)) }
+
+        then:
+        forks.size() == 2
+        forks[0].classes == ["a", "c"]
+        forks[1].classes == ["b", "d"]
+
+        when:
+        forks[1].complete("b")
+
+        then:
+        forks[1].classes == ["b", "d", "e"]
+    }
+
+    def "forwards results"() {
+        def processor = processor(1, [:])
+
+        when:
+        processor.processTestClass(testClass("a"))
+        forks[0].complete("a")
+
+        then:
+        1 * resultProcessor.started({ it.className == "a" }, _)
+        1 * resultProcessor.completed(_, _)
+    }
+
+    def "stop waits for queued test classes to be handed out"() {
+        def processor = processor(1, [:])
+        ["a", "b", "c"].each { processor.processTestClass(testClass(it)) }
+
+        when:
+        def stopping = Thread.start { processor.stop() }
+        Thread.sleep(100)
+
+        then:
+        stopping.alive
+        !forks[0].stopped
+
+        when:
+        forks[0].complete("a")
+        stopping.join(10000)
+
+        then:
+        !stopping.alive
+        forks[0].classes == ["a", "b", "c"]
+        forks[0].stopped
+    }
+
+    def "hands no more test classes to a fork whose worker stopped unexpectedly"() {
+        def processor = processor(2, [:])
+        ["a", "b", "c", "d", "e"].each { processor.processTestClass(testClass(it)) }
+
+        when:
+        forks[0].startWorker()
+        forks[0].endStream()
+        forks[1].complete("b")
+
+        then:
+        forks[0].classes == ["a", "c"]
+        forks[1].classes == ["b", "d", "e"]
+    }
+
+    def "does not wait for queued test classes when a worker stopped before starting"() {
+        def processor = processor(1, [:])
+        ["a", "b", "c"].each { processor.processTestClass(testClass(it)) }
+
+        when:
+        forks[0].endStream()
+        processor.stop()
+
+        then:
+        forks[0].classes == ["a", "b", "c"]
+        forks[0].stopped
+    }
+
+    def "does not wait for queued test classes when all workers stopped unexpectedly"() {
+        def processor = processor(1, [:])
+        ["a", "b", "c"].each { processor.processTestClass(testClass(it)) }
+
+        when:
+        forks[0].startWorker()
+        forks[0].endStream()
+        processor.stop()
+
+        then:
+        forks[0].classes == ["a", "b", "c"]
+        forks[0].stopped
+    }
+
+    def "hands no more test classes to a fork that fails to run a test class"() {
+        def processor = processor(1, [:])
+        processor.processTestClass(testClass("a"))
+        forks[0].failure = new RuntimeException("broken")
+
+        when:
+        processor.processTestClass(testClass("b"))
+
+        then:
+        thrown(RuntimeException)
+
+        when:
+        forks[0].failure = null
+        processor.processTestClass(testClass("c"))
+        processor.stop()
+
+        then:
+        forks[0].classes == ["a", "b", "c"]
+    }
+
+    private DurationAwareParallelTestClassProcessor processor(int maxProcessors, Map<String, Long> durations) {
+        def processor = new DurationAwareParallelTestClassProcessor(maxProcessors, factory, actorFactory, durations)
+        processor.startProcessing(resultProcessor)
+        return processor
+    }
+
+    private static TestClassRunInfo testClass(String name) {
+        new DefaultTestClassRunInfo(name)
+    }
+
+    private static class FakeProcessor implements TestClassProcessor {
+        TestResultProcessor results
+        List<String> classes = []
+        RuntimeException failure
+        boolean stopped
+        long nextId
+
+        @Override
+        void startProcessing(TestResultProcessor resultProcessor) {
+            results = resultProcessor
+        }
+
+        @Override
+        void processTestClass(TestClassRunInfo testClass) {
+            classes << testClass.testClassName
+            if (failure != null) {
+                throw failure
+            }
+        }
+
+        @Override
+        void stop() {
+            stopped = true
+        }
+
+        void startWorker() {
+            results.started(new WorkerTestClassProcessor.WorkerTestSuiteDescriptor(nextId++, "worker"), new TestStartEvent(0))
+        }
+
+        void complete(String className) {
+            def id = nextId++
+            results.started(new DefaultTestClassDescriptor(id, className), new TestStartEvent(0))
+            results.completed(id, new TestCompleteEvent(0))
+        }
+
+        void endStream() {
+            ((StreamCompletion) results).endStream()
+        }
+    }
+}
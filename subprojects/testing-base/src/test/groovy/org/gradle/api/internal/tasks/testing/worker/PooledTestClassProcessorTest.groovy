@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.tasks.testing.worker
+
+import org.gradle.api.internal.classpath.Module
+import org.gradle.api.internal.classpath.ModuleRegistry
+import org.gradle.api.internal.tasks.testing.TestClassProcessor
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory
+import org.gradle.internal.classpath.ClassPath
+import org.gradle.internal.service.ServiceRegistry
+import org.gradle.internal.work.WorkerLeaseRegistry
+import org.gradle.process.JavaForkOptions
+import spock.lang.Specification
+
+class PooledTestClassProcessorTest extends Specification {
+    def workerLease = Mock(WorkerLeaseRegistry.WorkerLease)
+    def completion = Mock(WorkerLeaseRegistry.WorkerLeaseCompletion)
+    def workerPool = Mock(TestWorkerPool)
+    def worker = Mock(PooledTestWorkerClient)
+    def resultProcessor = Mock(TestResultProcessor)
+    def moduleRegistry = Stub(ModuleRegistry) {
+        getModule(_) >> module()
+        getExternalModule(_) >> module()
+    }
+    def processor = new PooledTestClassProcessor(workerLease, workerPool, new TestProcessorFactory(), Stub(JavaForkOptions), [new File("classpath.jar")], moduleRegistry)
+
+    def "reserves worker and starts session on first test"() {
+        def test1 = Mock(TestClassRunInfo)
+        def test2 = Mock(TestClassRunInfo)
+
+        when:
+        processor.startProcessing(resultProcessor)
+        processor.processTestClass(test1)
+        processor.processTestClass(test2)
+
+        then:
+        1 * workerLease.startChild() >> completion
+        1 * workerPool.reserve(_, _) >> worker
+        1 * worker.startSession({ it.applicationClasspath == [new File("classpath.jar").toURI().toURL()] }, resultProcessor)
+        1 * worker.processTestClass(test1)
+        1 * worker.processTestClass(test2)
+        0 * worker._
+    }
+
+    def "stops session and hands worker back to the pool when stopped"() {
+        given:
+        workerLease.startChild() >> completion
+        workerPool.reserve(_, _) >> worker
+        processor.startProcessing(resultProcessor)
+        processor.processTestClass(Mock(TestClassRunInfo))
+
+        when:
+        processor.stop()
+
+        then:
+        1 * worker.stopSession()
+
+        then:
+        1 * workerPool.release(worker)
+        1 * completion.leaseFinish()
+    }
+
+    def "hands worker back to the pool when session fails"() {
+        given:
+        def failure = new RuntimeException()
+        workerLease.startChild() >> completion
+        workerPool.reserve(_, _) >> worker
+        processor.startProcessing(resultProcessor)
+        processor.processTestClass(Mock(TestClassRunInfo))
+
+        when:
+        processor.stop()
+
+        then:
+        1 * worker.stopSession() >> { throw failure }
+        1 * workerPool.release(worker)
+        1 * completion.leaseFinish()
+
+        and:
+        def e = thrown(RuntimeException)
+        e.is(failure)
+    }
+
+    def "does nothing when stopped without tests"() {
+        when:
+        processor.startProcessing(resultProcessor)
+        processor.stop()
+
+        then:
+        0 * workerLease._
+        0 * workerPool._
+    }
+
+    def module() {
+        Stub(Module) {
+            getImplementationClasspath() >> Stub(ClassPath) {
+                getAsURLs() >> [new URL("file://module.jar")]
+            }
+        }
+    }
+
+    private static class TestProcessorFactory implements WorkerTestClassProcessorFactory, Serializable {
+        @Override
+        TestClassProcessor create(ServiceRegistry serviceRegistry) {
+            throw new UnsupportedOperationException()
+        }
+    }
+}
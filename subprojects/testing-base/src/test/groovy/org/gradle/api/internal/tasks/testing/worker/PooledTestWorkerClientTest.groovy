@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.tasks.testing.worker
+
+import org.gradle.api.GradleException
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.api.logging.LogLevel
+import org.gradle.internal.dispatch.StreamCompletion
+import org.gradle.internal.remote.ObjectConnection
+import org.gradle.process.internal.ExecException
+import org.gradle.process.internal.worker.WorkerProcess
+import spock.lang.Specification
+
+class PooledTestWorkerClientTest extends Specification {
+    def remoteWorker = Mock(RemotePooledTestWorker)
+    PooledTestResultProcessor receiver
+    def connection = Stub(ObjectConnection) {
+        addIncoming(PooledTestResultProcessor, _) >> { Class type, Object target -> receiver = target }
+        addOutgoing(RemotePooledTestWorker) >> remoteWorker
+    }
+    def workerProcess = Mock(WorkerProcess) {
+        getConnection() >> connection
+    }
+    def resultProcessor = Mock(SessionResultProcessor)
+    def client = new PooledTestWorkerClient(workerProcess, "options", LogLevel.LIFECYCLE)
+
+    interface SessionResultProcessor extends TestResultProcessor, StreamCompletion {}
+
+    def "ends the session of a worker that exits while running tests"() {
+        given:
+        client.startSession(Stub(TestWorkerSessionSpec), resultProcessor)
+
+        when:
+        receiver.endStream()
+
+        then:
+        1 * resultProcessor.endStream()
+        !client.idle
+
+        when:
+        client.stopSession()
+
+        then:
+        1 * remoteWorker.stopSession()
+        1 * workerProcess.waitForStop() >> { throw new ExecException("exited") }
+        thrown(ExecException)
+    }
+
+    def "fails the session when the worker could not start it"() {
+        given:
+        def failure = new RuntimeException("broken")
+        client.startSession(Stub(TestWorkerSessionSpec), resultProcessor)
+
+        when:
+        receiver.sessionFailed(failure)
+        receiver.endStream()
+
+        then:
+        1 * resultProcessor.endStream()
+
+        when:
+        client.stopSession()
+
+        then:
+        def e = thrown(GradleException)
+        e.cause.is(failure)
+        0 * workerProcess.waitForStop()
+    }
+
+    def "does not end a completed session when the worker exits later"() {
+        given:
+        client.startSession(Stub(TestWorkerSessionSpec), resultProcessor)
+
+        when:
+        receiver.sessionCompleted()
+        client.stopSession()
+
+        then:
+        client.idle
+
+        when:
+        receiver.endStream()
+
+        then:
+        0 * resultProcessor.endStream()
+        !client.idle
+    }
+}
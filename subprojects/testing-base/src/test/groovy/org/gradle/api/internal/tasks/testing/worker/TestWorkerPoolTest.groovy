@@ -0,0 +1,176 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.tasks.testing.worker
+
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.api.logging.LogLevel
+import org.gradle.api.tasks.testing.TestOutputEvent
+import org.gradle.internal.logging.LoggingManagerInternal
+import org.gradle.internal.remote.ObjectConnection
+import org.gradle.process.JavaForkOptions
+import org.gradle.process.internal.JavaExecHandleBuilder
+import org.gradle.process.internal.worker.WorkerProcess
+import org.gradle.process.internal.worker.WorkerProcessBuilder
+import org.gradle.process.internal.worker.WorkerProcessFactory
+import spock.lang.Specification
+
+class TestWorkerPoolTest extends Specification {
+    def workerProcessFactory = Mock(WorkerProcessFactory)
+    def loggingManager = Stub(LoggingManagerInternal) {
+        getLevel() >> { logLevel }
+    }
+    def logLevel = LogLevel.LIFECYCLE
+    def workers = []
+    def pool = new TestWorkerPool(workerProcessFactory, loggingManager, 2)
+
+    def setup() {
+        _ * workerProcessFactory.create(_ as PooledTestWorker) >> { startWorker() }
+    }
+
+    def "reuses idle worker with the same fork options"() {
+        when:
+        def first = pool.reserve(forkOptions(), [])
+        pool.release(first)
+        def second = pool.reserve(forkOptions(), [])
+
+        then:
+        second.is(first)
+        workers.size() == 1
+    }
+
+    def "starts a new worker when no idle worker has the same fork options"() {
+        when:
+        def first = pool.reserve(forkOptions("-Xmx64m"), [])
+        def second = pool.reserve(forkOptions("-Xmx64m"), [])
+        pool.release(first)
+        def third = pool.reserve(forkOptions("-Xmx128m"), [])
+
+        then:
+        !second.is(first)
+        !third.is(first)
+        workers.size() == 3
+    }
+
+    def "starts a new worker when the log level has changed"() {
+        def first = pool.reserve(forkOptions(), [])
+        pool.release(first)
+
+        when:
+        logLevel = LogLevel.DEBUG
+        def second = pool.reserve(forkOptions(), [])
+
+        then:
+        !second.is(first)
+        workers.size() == 2
+    }
+
+    def "hands session results to the processor of the current session only"() {
+        def resultProcessor = Mock(TestResultProcessor)
+        def client = pool.reserve(forkOptions(), [])
+        def worker = workers[0]
+        def event = Stub(TestOutputEvent)
+
+        when:
+        client.startSession(Stub(TestWorkerSessionSpec), resultProcessor)
+        worker.receiver.output("test", event)
+        worker.receiver.sessionCompleted()
+        client.stopSession()
+        worker.receiver.output("test", event)
+
+        then:
+        1 * worker.remote.startSession(_)
+        1 * worker.remote.stopSession()
+        1 * resultProcessor.output("test", event)
+        0 * resultProcessor._
+        client.idle
+    }
+
+    def "does not reuse a worker that has gone away"() {
+        def first = pool.reserve(forkOptions(), [])
+        first.startSession(Stub(TestWorkerSessionSpec), Mock(TestResultProcessor))
+
+        when:
+        workers[0].receiver.endStream()
+        first.stopSession()
+        pool.release(first)
+        def second = pool.reserve(forkOptions(), [])
+
+        then:
+        !second.is(first)
+        workers.size() == 2
+        0 * workers[0].remote.stop()
+    }
+
+    def "stops least recently used workers when there are too many idle ones"() {
+        def clients = (1..3).collect { pool.reserve(forkOptions(), []) }
+
+        when:
+        clients.each { pool.release(it) }
+
+        then:
+        1 * workers[0].remote.stop()
+        0 * workers[1].remote.stop()
+        0 * workers[2].remote.stop()
+    }
+
+    def "stops all workers when stopped"() {
+        def idle = pool.reserve(forkOptions(), [])
+        def busy = pool.reserve(forkOptions(), [])
+        pool.release(idle)
+
+        when:
+        pool.stop()
+
+        then:
+        1 * workers[0].remote.stop()
+        1 * workers[1].remote.stop()
+        1 * workers[0].process.waitForStop()
+        1 * workers[1].process.waitForStop()
+    }
+
+    private JavaForkOptions forkOptions(String... jvmArgs) {
+        Stub(JavaForkOptions) {
+            getExecutable() >> "java"
+            getWorkingDir() >> new File("work")
+            getAllJvmArgs() >> (jvmArgs as List)
+            getEnvironment() >> [:]
+        }
+    }
+
+    private WorkerProcessBuilder startWorker() {
+        def worker = new StartedWorker()
+        worker.remote = Mock(RemotePooledTestWorker)
+        worker.process = Mock(WorkerProcess) {
+            getConnection() >> Stub(ObjectConnection) {
+                addIncoming(PooledTestResultProcessor, _) >> { Class type, PooledTestResultProcessor receiver -> worker.receiver = receiver }
+                addOutgoing(RemotePooledTestWorker) >> worker.remote
+            }
+        }
+        workers << worker
+        Stub(WorkerProcessBuilder) {
+            getJavaCommand() >> Stub(JavaExecHandleBuilder)
+            build() >> worker.process
+        }
+    }
+
+    private static class StartedWorker {
+        RemotePooledTestWorker remote
+        WorkerProcess process
+        PooledTestResultProcessor receiver
+    }
+}
@@ -18,12 +18,16 @@ package org.gradle.api.internal.tasks.testing;
 
 import org.gradle.api.file.FileCollection;
 import org.gradle.api.file.FileTree;
+import org.gradle.api.internal.tasks.testing.junit.result.TestReportDataCollector;
+import org.gradle.api.internal.tasks.testing.selection.TestClassSelection;
 import org.gradle.process.JavaForkOptions;
 import org.gradle.util.Path;
 
+import javax.annotation.Nullable;
 import java.io.File;
+import java.util.Map;
 
-public class JvmTestExecutionSpec implements TestExecutionSpec {
+public class JvmTestExecutionSpec implements PartialTestExecutionSpec {
     private final TestFramework testFramework;
     private final Iterable<? extends File> classpath;
     private final FileTree candidateClassFiles;
@@ -34,8 +38,10 @@ public class JvmTestExecutionSpec implements TestExecutionSpec {
     private final long forkEvery;
     private final JavaForkOptions javaForkOptions;
     private final int maxParallelForks;
+    private final Map<String, Long> previousTestClassDurations;
+    private final TestClassSelection testClassSelection;
 
-    public JvmTestExecutionSpec(TestFramework testFramework, Iterable<? extends File> classpath, FileTree candidateClassFiles, boolean scanForTestClasses, FileCollection testClassesDirs, String path, Path identityPath, long forkEvery, JavaForkOptions javaForkOptions, int maxParallelForks) {
+    public JvmTestExecutionSpec(TestFramework testFramework, Iterable<? extends File> classpath, FileTree candidateClassFiles, boolean scanForTestClasses, FileCollection testClassesDirs, String path, Path identityPath, long forkEvery, JavaForkOptions javaForkOptions, int maxParallelForks, @Nullable Map<String, Long> previousTestClassDurations, @Nullable TestClassSelection testClassSelection) {
         this.testFramework = testFramework;
         this.classpath = classpath;
         this.candidateClassFiles = candidateClassFiles;
@@ -46,6 +52,8 @@ public class JvmTestExecutionSpec implements TestExecutionSpec {
         this.forkEvery = forkEvery;
         this.javaForkOptions = javaForkOptions;
         this.maxParallelForks = maxParallelForks;
+        this.previousTestClassDurations = previousTestClassDurations;
+        this.testClassSelection = testClassSelection;
     }
 
     public TestFramework getTestFramework() {
@@ -87,4 +95,27 @@ public class JvmTestExecutionSpec implements TestExecutionSpec {
     public int getMaxParallelForks() {
         return maxParallelForks;
     }
+
+    /**
+     * The duration of each test class in the previous run, by class name, when test classes should be scheduled by duration. Null otherwise.
+     */
+    @Nullable
+    public Map<String, Long> getPreviousTestClassDurations() {
+        return previousTestClassDurations;
+    }
+
+    /**
+     * The test classes to execute, when test classes that passed before and are unaffected by changes should not be executed again. Null otherwise.
+     */
+    @Nullable
+    public TestClassSelection getTestClassSelection() {
+        return testClassSelection;
+    }
+
+    @Override
+    public void addPreviousResults(TestReportDataCollector collector) {
+        if (testClassSelection != null) {
+            testClassSelection.addPreviousResults(collector);
+        }
+    }
 }
@@ -21,6 +21,8 @@ import org.apache.commons.lang.StringUtils;
 import org.gradle.api.GradleException;
 import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
+import org.gradle.internal.Factory;
+import org.gradle.internal.hash.FileHasher;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.Type;
 
@@ -29,14 +31,18 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.gradle.internal.FileUtils.hasExtension;
 
+/**
+ * Base class for detectors that scan class files with a {@link TestClassVisitor}. Once detection has started, class files can be processed by
+ * several threads at once, provided the {@link TestClassProcessor} can be called from any of them.
+ */
 public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor> implements TestFrameworkDetector {
     protected static final String TEST_CASE = "junit/framework/TestCase";
     protected static final String GROOVY_TEST_CASE = "groovy/util/GroovyTestCase";
@@ -51,10 +57,13 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
     private Set<File> testClassesDirectories;
     private Set<File> testClasspath;
 
+    private TestClassDetectionCache detectionCache;
+    private FileHasher fileHasher;
+
     protected AbstractTestFrameworkDetector(ClassFileExtractionManager classFileExtractionManager) {
         assert classFileExtractionManager != null;
         this.classFileExtractionManager = classFileExtractionManager;
-        this.superClasses = new HashMap<File, Boolean>();
+        this.superClasses = new ConcurrentHashMap<File, Boolean>();
         this.knownTestCaseClassNames = new ArrayList<String>();
         addKnownTestCaseClassNames(TEST_CASE, GROOVY_TEST_CASE);
     }
@@ -89,7 +98,7 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
         }
     }
 
-    private void prepareClasspath() {
+    private synchronized void prepareClasspath() {
         if (testClassDirectories != null) {
             return;
         }
@@ -120,7 +129,27 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
         this.testClasspath = testClasspath;
     }
 
-    protected TestClassVisitor classVisitor(final File testClassFile) {
+    /**
+     * Remembers scanned classes in the given cache, by the hash of their class file.
+     */
+    public void setDetectionCache(TestClassDetectionCache detectionCache, FileHasher fileHasher) {
+        this.detectionCache = detectionCache;
+        this.fileHasher = fileHasher;
+    }
+
+    protected ScannedClass scanClass(final File testClassFile) {
+        if (detectionCache == null) {
+            return readClass(testClassFile);
+        }
+        return detectionCache.get(getClass(), fileHasher.hash(testClassFile), new Factory<ScannedClass>() {
+            @Override
+            public ScannedClass create() {
+                return readClass(testClassFile);
+            }
+        });
+    }
+
+    private ScannedClass readClass(File testClassFile) {
         final TestClassVisitor classVisitor = createClassVisitor();
 
         InputStream classStream = null;
@@ -134,7 +163,7 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
             IOUtils.closeQuietly(classStream);
         }
 
-        return classVisitor;
+        return new ScannedClass(classVisitor.getClassName(), classVisitor.getSuperClassName(), classVisitor.isTest(), classVisitor.isAbstract());
     }
 
     @Override
@@ -164,9 +193,9 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
      * In none super class mode a test class is published when the class is a test and it is not abstract. In super class mode it must not publish the class otherwise it will get published multiple
      * times (for each extending class).
      */
-    protected void publishTestClass(boolean isTest, TestClassVisitor classVisitor, boolean superClass) {
-        if (isTest && !classVisitor.isAbstract() && !superClass) {
-            String className = Type.getObjectType(classVisitor.getClassName()).getClassName();
+    protected void publishTestClass(boolean isTest, ScannedClass scannedClass, boolean superClass) {
+        if (isTest && !scannedClass.isAbstract() && !superClass) {
+            String className = Type.getObjectType(scannedClass.getClassName()).getClassName();
             testClassProcessor.processTestClass(new DefaultTestClassRunInfo(className));
         }
     }
@@ -22,29 +22,51 @@ import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.internal.actor.Actor;
+import org.gradle.internal.actor.ActorFactory;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
 
 import java.io.File;
 
 /**
  * The default test class scanner. Depending on the availability of a test framework detector,
  * a detection or filename scan is performed to find test classes.
+ *
+ * <p>When given an executor factory, class files are handed to an {@link AbstractTestFrameworkDetector} on several threads, and test classes
+ * are passed on in the order they are detected, one at a time.</p>
  */
 public class DefaultTestClassScanner implements Runnable {
     private final FileTree candidateClassFiles;
     private final TestFrameworkDetector testFrameworkDetector;
     private final TestClassProcessor testClassProcessor;
+    private final ExecutorFactory executorFactory;
+    private final ActorFactory actorFactory;
+    private final int maxParallelDetectors;
 
     public DefaultTestClassScanner(FileTree candidateClassFiles, TestFrameworkDetector testFrameworkDetector,
                                    TestClassProcessor testClassProcessor) {
+        this(candidateClassFiles, testFrameworkDetector, testClassProcessor, null, null, 1);
+    }
+
+    public DefaultTestClassScanner(FileTree candidateClassFiles, TestFrameworkDetector testFrameworkDetector,
+                                   TestClassProcessor testClassProcessor, ExecutorFactory executorFactory, ActorFactory actorFactory,
+                                   int maxParallelDetectors) {
         this.candidateClassFiles = candidateClassFiles;
         this.testFrameworkDetector = testFrameworkDetector;
         this.testClassProcessor = testClassProcessor;
+        this.executorFactory = executorFactory;
+        this.actorFactory = actorFactory;
+        this.maxParallelDetectors = maxParallelDetectors;
     }
 
     @Override
     public void run() {
         if (testFrameworkDetector == null) {
             filenameScan();
+        } else if (executorFactory != null && maxParallelDetectors > 1 && testFrameworkDetector instanceof AbstractTestFrameworkDetector) {
+            parallelDetectionScan();
         } else {
             detectionScan();
         }
@@ -59,6 +81,28 @@ public class DefaultTestClassScanner implements Runnable {
         });
     }
 
+    private void parallelDetectionScan() {
+        Actor processorActor = actorFactory.createBlockingActor(testClassProcessor);
+        final ManagedExecutor executor = executorFactory.create("Test class detection", maxParallelDetectors);
+        try {
+            testFrameworkDetector.startDetection(processorActor.getProxy(TestClassProcessor.class));
+            candidateClassFiles.visit(new ClassFileVisitor() {
+                public void visitClassFile(FileVisitDetails fileDetails) {
+                    final File file = fileDetails.getFile();
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            testFrameworkDetector.processTestClass(file);
+                        }
+                    });
+                }
+            });
+        } finally {
+            // Waits for the detection of the visited classes, and rethrows the first failure
+            CompositeStoppable.stoppable(executor, processorActor).stop();
+        }
+    }
+
     private void filenameScan() {
         candidateClassFiles.visit(new ClassFileVisitor() {
             public void visitClassFile(FileVisitDetails fileDetails) {
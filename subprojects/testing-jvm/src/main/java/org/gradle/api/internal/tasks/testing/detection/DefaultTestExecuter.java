@@ -25,20 +25,30 @@ import org.gradle.api.internal.tasks.testing.TestExecuter;
 import org.gradle.api.internal.tasks.testing.TestFramework;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
+import org.gradle.api.internal.tasks.testing.junit.JUnitTestFramework;
+import org.gradle.api.internal.tasks.testing.processors.DurationAwareParallelTestClassProcessor;
 import org.gradle.api.internal.tasks.testing.processors.MaxNParallelTestClassProcessor;
 import org.gradle.api.internal.tasks.testing.processors.RestartEveryNTestClassProcessor;
 import org.gradle.api.internal.tasks.testing.processors.TestMainAction;
+import org.gradle.api.internal.tasks.testing.selection.SelectingTestClassProcessor;
+import org.gradle.api.internal.tasks.testing.selection.TestClassSelection;
 import org.gradle.api.internal.tasks.testing.worker.ForkingTestClassProcessor;
+import org.gradle.api.internal.tasks.testing.worker.PooledTestClassProcessor;
+import org.gradle.api.internal.tasks.testing.worker.TestWorkerPool;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.gradle.internal.Factory;
 import org.gradle.internal.actor.ActorFactory;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.time.Clock;
 import org.gradle.internal.work.WorkerLeaseRegistry;
 import org.gradle.process.internal.worker.WorkerProcessFactory;
 
+import javax.annotation.Nullable;
 import java.io.File;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -46,6 +56,27 @@ import java.util.Set;
  */
 public class DefaultTestExecuter implements TestExecuter<JvmTestExecutionSpec> {
 
+    /**
+     * When set, JUnit test classes are handed to the forks longest first, by their duration in the previous run, as forks become free,
+     * rather than in turn as they are found.
+     */
+    public static final String DURATION_AWARE_SCHEDULING_PROPERTY = "org.gradle.testing.internal.durationAwareScheduling";
+
+    /**
+     * When set, tests run in workers kept by a {@link TestWorkerPool}, which later test tasks and builds reuse, unless the task restarts its workers with forkEvery.
+     */
+    public static final String REUSE_WORKERS_PROPERTY = "org.gradle.testing.internal.reuseWorkers";
+
+    /**
+     * When set, the built-in test framework detectors scan the candidate class files on as many threads as there are max-workers.
+     */
+    public static final String PARALLEL_DETECTION_PROPERTY = "org.gradle.testing.internal.parallelDetection";
+
+    /**
+     * When set, test classes that passed in the previous run are not executed again unless a class they depend on has changed, and their previous results are kept.
+     */
+    public static final String INCREMENTAL_SELECTION_PROPERTY = "org.gradle.testing.internal.incrementalSelection";
+
     private static final Logger LOGGER = Logging.getLogger(DefaultTestExecuter.class);
 
     private final WorkerProcessFactory workerFactory;
@@ -55,10 +86,15 @@ public class DefaultTestExecuter implements TestExecuter<JvmTestExecutionSpec> {
     private final BuildOperationExecutor buildOperationExecutor;
     private final int maxWorkerCount;
     private final Clock clock;
+    private final TestWorkerPool workerPool;
+    private final ExecutorFactory detectionExecutorFactory;
+    private final TestClassDetectionCache detectionCache;
+    private final FileHasher fileHasher;
 
     public DefaultTestExecuter(WorkerProcessFactory workerFactory, ActorFactory actorFactory, ModuleRegistry moduleRegistry,
                                WorkerLeaseRegistry workerLeaseRegistry, BuildOperationExecutor buildOperationExecutor, int maxWorkerCount,
-                               Clock clock) {
+                               Clock clock, @Nullable TestWorkerPool workerPool, @Nullable ExecutorFactory detectionExecutorFactory,
+                               TestClassDetectionCache detectionCache, FileHasher fileHasher) {
         this.workerFactory = workerFactory;
         this.actorFactory = actorFactory;
         this.moduleRegistry = moduleRegistry;
@@ -66,6 +102,10 @@ public class DefaultTestExecuter implements TestExecuter<JvmTestExecutionSpec> {
         this.buildOperationExecutor = buildOperationExecutor;
         this.maxWorkerCount = maxWorkerCount;
         this.clock = clock;
+        this.workerPool = workerPool;
+        this.detectionExecutorFactory = detectionExecutorFactory;
+        this.detectionCache = detectionCache;
+        this.fileHasher = fileHasher;
     }
 
     @Override
@@ -74,18 +114,39 @@ public class DefaultTestExecuter implements TestExecuter<JvmTestExecutionSpec> {
         final WorkerTestClassProcessorFactory testInstanceFactory = testFramework.getProcessorFactory();
         final WorkerLeaseRegistry.WorkerLease currentWorkerLease = workerLeaseRegistry.getCurrentWorkerLease();
         final Set<File> classpath = ImmutableSet.copyOf(testExecutionSpec.getClasspath());
-        final Factory<TestClassProcessor> forkingProcessorFactory = new Factory<TestClassProcessor>() {
-            public TestClassProcessor create() {
-                return new ForkingTestClassProcessor(currentWorkerLease, workerFactory, testInstanceFactory, testExecutionSpec.getJavaForkOptions(),
-                    classpath, testFramework.getWorkerConfigurationAction(), moduleRegistry);
-            }
-        };
+        final Factory<TestClassProcessor> forkingProcessorFactory;
+        if (workerPool != null && testExecutionSpec.getForkEvery() == 0) {
+            forkingProcessorFactory = new Factory<TestClassProcessor>() {
+                public TestClassProcessor create() {
+                    return new PooledTestClassProcessor(currentWorkerLease, workerPool, testInstanceFactory, testExecutionSpec.getJavaForkOptions(),
+                        classpath, moduleRegistry);
+                }
+            };
+        } else {
+            forkingProcessorFactory = new Factory<TestClassProcessor>() {
+                public TestClassProcessor create() {
+                    return new ForkingTestClassProcessor(currentWorkerLease, workerFactory, testInstanceFactory, testExecutionSpec.getJavaForkOptions(),
+                        classpath, testFramework.getWorkerConfigurationAction(), moduleRegistry);
+                }
+            };
+        }
         final Factory<TestClassProcessor> reforkingProcessorFactory = new Factory<TestClassProcessor>() {
             public TestClassProcessor create() {
                 return new RestartEveryNTestClassProcessor(forkingProcessorFactory, testExecutionSpec.getForkEvery());
             }
         };
-        TestClassProcessor processor = new MaxNParallelTestClassProcessor(getMaxParallelForks(testExecutionSpec), reforkingProcessorFactory, actorFactory);
+        TestClassProcessor processor;
+        Map<String, Long> previousTestClassDurations = testExecutionSpec.getPreviousTestClassDurations();
+        // Only JUnit reports the completion of each test class as it happens
+        if (previousTestClassDurations != null && testFramework instanceof JUnitTestFramework) {
+            processor = new DurationAwareParallelTestClassProcessor(getMaxParallelForks(testExecutionSpec), reforkingProcessorFactory, actorFactory, previousTestClassDurations);
+        } else {
+            processor = new MaxNParallelTestClassProcessor(getMaxParallelForks(testExecutionSpec), reforkingProcessorFactory, actorFactory);
+        }
+        TestClassSelection testClassSelection = testExecutionSpec.getTestClassSelection();
+        if (testClassSelection != null) {
+            processor = new SelectingTestClassProcessor(processor, testClassSelection);
+        }
 
         final FileTree testClassFiles = testExecutionSpec.getCandidateClassFiles();
 
@@ -94,7 +155,10 @@ public class DefaultTestExecuter implements TestExecuter<JvmTestExecutionSpec> {
             TestFrameworkDetector testFrameworkDetector = testFramework.getDetector();
             testFrameworkDetector.setTestClasses(testExecutionSpec.getTestClassesDirs().getFiles());
             testFrameworkDetector.setTestClasspath(classpath);
-            detector = new DefaultTestClassScanner(testClassFiles, testFrameworkDetector, processor);
+            if (testFrameworkDetector instanceof AbstractTestFrameworkDetector) {
+                ((AbstractTestFrameworkDetector<?>) testFrameworkDetector).setDetectionCache(detectionCache, fileHasher);
+            }
+            detector = new DefaultTestClassScanner(testClassFiles, testFrameworkDetector, processor, detectionExecutorFactory, actorFactory, maxWorkerCount);
         } else {
             detector = new DefaultTestClassScanner(testClassFiles, null, processor);
         }
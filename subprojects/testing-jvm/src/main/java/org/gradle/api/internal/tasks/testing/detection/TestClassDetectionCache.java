@@ -0,0 +1,76 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.tasks.testing.detection;
+
+import org.gradle.cache.internal.CrossBuildInMemoryCache;
+import org.gradle.cache.internal.CrossBuildInMemoryCacheFactory;
+import org.gradle.internal.Factory;
+import org.gradle.internal.hash.HashCode;
+
+/**
+ * Remembers the classes scanned by test framework detectors across builds, by the hash of their class file. Unchanged test classes,
+ * and the classes they extend, are then not read again.
+ */
+public class TestClassDetectionCache {
+    private final CrossBuildInMemoryCache<Key, ScannedClass> cache;
+
+    public TestClassDetectionCache(CrossBuildInMemoryCacheFactory cacheFactory) {
+        this.cache = cacheFactory.newCache();
+    }
+
+    /**
+     * Returns the class scanned by the given type of detector from a class file with the given hash, scanning it when not known yet.
+     */
+    public ScannedClass get(Class<? extends TestFrameworkDetector> detectorType, HashCode classFileHash, Factory<ScannedClass> scanner) {
+        Key key = new Key(detectorType.getName(), classFileHash);
+        ScannedClass scannedClass = cache.get(key);
+        if (scannedClass == null) {
+            // Scan outside of the cache's lock, so that classes can be scanned in parallel. Scanning the same class twice does no harm.
+            scannedClass = scanner.create();
+            cache.put(key, scannedClass);
+        }
+        return scannedClass;
+    }
+
+    private static class Key {
+        private final String detectorType;
+        private final HashCode classFileHash;
+
+        Key(String detectorType, HashCode classFileHash) {
+            this.detectorType = detectorType;
+            this.classFileHash = classFileHash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key other = (Key) o;
+            return detectorType.equals(other.detectorType) && classFileHash.equals(other.classFileHash);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * detectorType.hashCode() + classFileHash.hashCode();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.tasks.testing.selection;
+
+import it.unimi.dsi.fastutil.ints.IntSet;
+import org.gradle.api.Action;
+import org.gradle.api.file.EmptyFileVisitor;
+import org.gradle.api.file.FileVisitDetails;
+import org.gradle.api.internal.file.collections.DirectoryFileTreeFactory;
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenciesAnalyzer;
+import org.gradle.api.internal.tasks.compile.incremental.deps.ClassAnalysis;
+import org.gradle.api.internal.tasks.compile.incremental.deps.ClassDependentsAccumulator;
+import org.gradle.api.internal.tasks.compile.incremental.deps.ClassSetAnalysisData;
+import org.gradle.api.internal.tasks.compile.incremental.deps.DependentsSet;
+import org.gradle.api.internal.tasks.testing.junit.result.TestClassResult;
+import org.gradle.api.internal.tasks.testing.junit.result.TestResultSerializer;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Selects the test classes to execute, using the class dependency analysis of the incremental Java compiler.
+ *
+ * <p>A test class that passed in the previous run is not executed again when neither it nor any class it transitively depends on has changed.
+ * Only the classes in the directories of the test runtime classpath are tracked. Any change to the rest of the classpath, such as a jar or a resource,
+ * to the configuration of the test run, or to a constant that may have been inlined, causes all test classes to be executed.
+ * Dependencies through reflection are not seen.</p>
+ */
+public class IncrementalTestSelection {
+    private static final Logger LOGGER = Logging.getLogger(IncrementalTestSelection.class);
+
+    private final DirectoryFileTreeFactory directoryFileTreeFactory;
+    private final FileHasher fileHasher;
+    private final ClassDependenciesAnalyzer analyzer;
+
+    public IncrementalTestSelection(DirectoryFileTreeFactory directoryFileTreeFactory, FileHasher fileHasher, ClassDependenciesAnalyzer analyzer) {
+        this.directoryFileTreeFactory = directoryFileTreeFactory;
+        this.fileHasher = fileHasher;
+        this.analyzer = analyzer;
+    }
+
+    /**
+     * Selects the test classes to execute.
+     *
+     * @param classpath the test runtime classpath
+     * @param configurationHash the hash of the configuration of the test run
+     * @param previousResultsDir the binary results of the previous run, or null when there are none
+     */
+    public TestClassSelection select(Iterable<? extends File> classpath, HashCode configurationHash, @Nullable File previousResultsDir) {
+        ClassDependentsAccumulator accumulator = new ClassDependentsAccumulator();
+        TestSelectionState state = snapshot(classpath, configurationHash, accumulator);
+
+        TestSelectionState previousState = previousResultsDir == null ? null : readPreviousState(previousResultsDir);
+        if (previousState == null) {
+            return TestClassSelection.all(state, previousResultsDir);
+        }
+        if (!previousState.getOtherInputsHash().equals(state.getOtherInputsHash())) {
+            LOGGER.info("Executing all test classes, as the test configuration or a classpath entry other than a class has changed.");
+            return TestClassSelection.all(state, previousResultsDir);
+        }
+        Set<String> affectedClasses = affectedClasses(previousState, state, accumulator.getAnalysis());
+        if (affectedClasses == null) {
+            return TestClassSelection.all(state, previousResultsDir);
+        }
+
+        Map<String, TestClassResult> passedResults = readPassedResults(previousResultsDir);
+        passedResults.keySet().removeAll(affectedClasses);
+        return new TestClassSelection(state, passedResults, previousResultsDir);
+    }
+
+    private TestSelectionState snapshot(Iterable<? extends File> classpath, HashCode configurationHash, final ClassDependentsAccumulator accumulator) {
+        Hasher hasher = Hashing.md5().newHasher();
+        hasher.putHash(configurationHash);
+        final Map<String, HashCode> classHashes = new HashMap<String, HashCode>();
+        final Map<String, IntSet> classConstants = new HashMap<String, IntSet>();
+        for (File entry : classpath) {
+            hasher.putString(entry.getAbsolutePath());
+            if (entry.isDirectory()) {
+                // Sorted, as the order in which files are visited may vary
+                final Map<String, HashCode> resourceHashes = new TreeMap<String, HashCode>();
+                directoryFileTreeFactory.create(entry).visit(new EmptyFileVisitor() {
+                    @Override
+                    public void visitFile(FileVisitDetails fileDetails) {
+                        HashCode hash = fileHasher.hash(fileDetails);
+                        if (!fileDetails.getName().endsWith(".class")) {
+                            resourceHashes.put(fileDetails.getRelativePath().getPathString(), hash);
+                            return;
+                        }
+                        ClassAnalysis analysis = analyzer.getClassAnalysis(hash, fileDetails);
+                        String className = analysis.getClassName();
+                        // The same class may be found in several directories, and only the first one is used
+                        if (!classHashes.containsKey(className)) {
+                            classHashes.put(className, hash);
+                            if (!analysis.getConstants().isEmpty()) {
+                                classConstants.put(className, analysis.getConstants());
+                            }
+                        }
+                        accumulator.addClass(analysis);
+                    }
+                });
+                for (Map.Entry<String, HashCode> resource : resourceHashes.entrySet()) {
+                    hasher.putString(resource.getKey());
+                    hasher.putHash(resource.getValue());
+                }
+            } else if (entry.isFile()) {
+                hasher.putHash(fileHasher.hash(entry));
+            }
+        }
+        return new TestSelectionState(hasher.hash(), classHashes, classConstants);
+    }
+
+    /**
+     * Returns the classes that have been added, changed or removed since the previous run, along with the classes that transitively depend on them.
+     *
+     * @return null when all test classes need to be executed.
+     */
+    @Nullable
+    private static Set<String> affectedClasses(TestSelectionState previousState, TestSelectionState state, ClassSetAnalysisData analysis) {
+        Deque<String> changedClasses = new ArrayDeque<String>();
+        for (Map.Entry<String, HashCode> entry : previousState.getClassHashes().entrySet()) {
+            String className = entry.getKey();
+            if (!entry.getValue().equals(state.getClassHashes().get(className))) {
+                if (!previousState.getConstants(className).equals(state.getConstants(className))) {
+                    // The previous value of a constant may have been inlined into any class
+                    LOGGER.info("Executing all test classes, as the constants of {} have changed.", className);
+                    return null;
+                }
+                changedClasses.add(className);
+            }
+        }
+        for (String className : state.getClassHashes().keySet()) {
+            if (!previousState.getClassHashes().containsKey(className)) {
+                changedClasses.add(className);
+            }
+        }
+
+        // Unlike the incremental compiler, inner classes are followed and kept, as they may be test classes themselves
+        Set<String> affectedClasses = new HashSet<String>();
+        while (!changedClasses.isEmpty()) {
+            String className = changedClasses.remove();
+            if (!affectedClasses.add(className)) {
+                continue;
+            }
+            DependentsSet dependents = analysis.getDependents(className);
+            if (dependents == null) {
+                continue;
+            }
+            if (dependents.isDependencyToAll()) {
+                LOGGER.info("Executing all test classes, as all classes may depend on {}.", className);
+                return null;
+            }
+            changedClasses.addAll(dependents.getDependentClasses());
+        }
+        return affectedClasses;
+    }
+
+    @Nullable
+    private static TestSelectionState readPreviousState(File previousResultsDir) {
+        try {
+            return TestSelectionState.read(previousResultsDir);
+        } catch (Exception e) {
+            LOGGER.debug("Could not read the inputs of the previous test run.", e);
+            return null;
+        }
+    }
+
+    private static Map<String, TestClassResult> readPassedResults(File previousResultsDir) {
+        final Map<String, TestClassResult> results = new HashMap<String, TestClassResult>();
+        try {
+            new TestResultSerializer(previousResultsDir).read(new Action<TestClassResult>() {
+                @Override
+                public void execute(TestClassResult result) {
+                    if (result.getFailuresCount() == 0) {
+                        results.put(result.getClassName(), result);
+                    }
+                }
+            });
+        } catch (Exception e) {
+            LOGGER.debug("Could not read previous test results.", e);
+            results.clear();
+        }
+        return results;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.tasks.testing.selection;
+
+import com.google.common.collect.Sets;
+import org.gradle.api.internal.tasks.testing.junit.result.TestClassResult;
+import org.gradle.api.internal.tasks.testing.junit.result.TestOutputStore;
+import org.gradle.api.internal.tasks.testing.junit.result.TestReportDataCollector;
+import org.gradle.api.internal.tasks.testing.junit.result.TestResultSerializer;
+import org.gradle.internal.UncheckedException;
+import org.gradle.util.GFileUtils;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The test classes of a run that need not be executed, because they passed in the previous run and nothing they depend on has changed since.
+ * Their previous results are added to the results of the run in place of executing them.
+ */
+public class TestClassSelection {
+    private final TestSelectionState state;
+    private final Map<String, TestClassResult> previousResults;
+    private final File previousResultsDir;
+    private final Set<String> skipped = Sets.newConcurrentHashSet();
+
+    TestClassSelection(TestSelectionState state, Map<String, TestClassResult> previousResults, @Nullable File previousResultsDir) {
+        this.state = state;
+        this.previousResults = previousResults;
+        this.previousResultsDir = previousResultsDir;
+    }
+
+    /**
+     * A selection that executes all test classes.
+     */
+    static TestClassSelection all(TestSelectionState state, @Nullable File previousResultsDir) {
+        return new TestClassSelection(state, Collections.<String, TestClassResult>emptyMap(), previousResultsDir);
+    }
+
+    /**
+     * Returns whether the given test class needs to be executed. Test classes that need not be executed are remembered to add their previous results later.
+     */
+    public boolean shouldExecute(String className) {
+        if (previousResults.containsKey(className)) {
+            skipped.add(className);
+            return false;
+        }
+        return true;
+    }
+
+    public int getSkippedCount() {
+        return skipped.size();
+    }
+
+    /**
+     * Adds the previous results and output of the test classes that were not executed.
+     */
+    public void addPreviousResults(TestReportDataCollector collector) {
+        if (skipped.isEmpty()) {
+            return;
+        }
+        TestOutputStore.Reader previousOutput = new TestOutputStore(previousResultsDir).reader();
+        try {
+            for (String className : skipped) {
+                collector.addPreviousResult(previousResults.get(className), previousOutput);
+            }
+        } finally {
+            try {
+                previousOutput.close();
+            } catch (IOException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+    }
+
+    /**
+     * Keeps the inputs of this run next to its results, once they have been written, and discards the results of the previous run.
+     */
+    public void completed(File resultsDir) {
+        if (new TestResultSerializer(resultsDir).isHasResults()) {
+            state.write(resultsDir);
+        }
+        GFileUtils.deleteQuietly(previousResultsDir);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.tasks.testing.selection;
+
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.ints.IntSets;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.FlushableEncoder;
+import org.gradle.internal.serialize.HashCodeSerializer;
+import org.gradle.internal.serialize.IntSetSerializer;
+import org.gradle.internal.serialize.MapSerializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+
+/**
+ * The inputs of a test run, as far as incremental test selection is concerned: a hash of everything but the classes in the classpath directories,
+ * and the hash and inlinable constants of each of those classes. Kept next to the binary results of the run.
+ */
+class TestSelectionState {
+    private static final int VERSION = 1;
+    private static final String FILE_NAME = "selection.bin";
+
+    private static final HashCodeSerializer HASH_SERIALIZER = new HashCodeSerializer();
+    private static final MapSerializer<String, HashCode> CLASS_HASHES_SERIALIZER = new MapSerializer<String, HashCode>(BaseSerializerFactory.STRING_SERIALIZER, HASH_SERIALIZER);
+    private static final MapSerializer<String, IntSet> CLASS_CONSTANTS_SERIALIZER = new MapSerializer<String, IntSet>(BaseSerializerFactory.STRING_SERIALIZER, IntSetSerializer.INSTANCE);
+
+    private final HashCode otherInputsHash;
+    private final Map<String, HashCode> classHashes;
+    private final Map<String, IntSet> classConstants;
+
+    TestSelectionState(HashCode otherInputsHash, Map<String, HashCode> classHashes, Map<String, IntSet> classConstants) {
+        this.otherInputsHash = otherInputsHash;
+        this.classHashes = classHashes;
+        this.classConstants = classConstants;
+    }
+
+    public HashCode getOtherInputsHash() {
+        return otherInputsHash;
+    }
+
+    public Map<String, HashCode> getClassHashes() {
+        return classHashes;
+    }
+
+    public IntSet getConstants(String className) {
+        IntSet constants = classConstants.get(className);
+        return constants == null ? IntSets.EMPTY_SET : constants;
+    }
+
+    /**
+     * Reads the state kept in the given results directory.
+     *
+     * @return null when there is no state, or it was written by another version.
+     */
+    @Nullable
+    public static TestSelectionState read(File resultsDir) {
+        File file = new File(resultsDir, FILE_NAME);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            InputStream inputStream = new FileInputStream(file);
+            try {
+                Decoder decoder = new KryoBackedDecoder(inputStream);
+                if (decoder.readSmallInt() != VERSION) {
+                    return null;
+                }
+                HashCode otherInputsHash = HASH_SERIALIZER.read(decoder);
+                Map<String, HashCode> classHashes = CLASS_HASHES_SERIALIZER.read(decoder);
+                Map<String, IntSet> classConstants = CLASS_CONSTANTS_SERIALIZER.read(decoder);
+                return new TestSelectionState(otherInputsHash, classHashes, classConstants);
+            } finally {
+                inputStream.close();
+            }
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    public void write(File resultsDir) {
+        try {
+            OutputStream outputStream = new FileOutputStream(new File(resultsDir, FILE_NAME));
+            try {
+                FlushableEncoder encoder = new KryoBackedEncoder(outputStream);
+                encoder.writeSmallInt(VERSION);
+                HASH_SERIALIZER.write(encoder, otherInputsHash);
+                CLASS_HASHES_SERIALIZER.write(encoder, classHashes);
+                CLASS_CONSTANTS_SERIALIZER.write(encoder, classConstants);
+                encoder.flush();
+            } finally {
+                outputStream.close();
+            }
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+}
@@ -27,15 +27,26 @@ import org.gradle.api.file.FileTree;
 import org.gradle.api.file.FileTreeElement;
 import org.gradle.api.internal.classpath.ModuleRegistry;
 import org.gradle.api.internal.file.FileResolver;
+import org.gradle.api.internal.file.collections.DirectoryFileTreeFactory;
 import org.gradle.api.internal.initialization.loadercache.ClassLoaderCache;
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.CachingClassDependenciesAnalyzer;
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenciesAnalyzer;
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.DefaultClassDependenciesAnalyzer;
+import org.gradle.api.internal.tasks.compile.incremental.cache.GeneralCompileCaches;
 import org.gradle.api.internal.tasks.options.Option;
 import org.gradle.api.internal.tasks.testing.JvmTestExecutionSpec;
 import org.gradle.api.internal.tasks.testing.TestExecuter;
 import org.gradle.api.internal.tasks.testing.TestFramework;
 import org.gradle.api.internal.tasks.testing.detection.DefaultTestExecuter;
+import org.gradle.api.internal.tasks.testing.detection.TestClassDetectionCache;
 import org.gradle.api.internal.tasks.testing.filter.DefaultTestFilter;
 import org.gradle.api.internal.tasks.testing.junit.JUnitTestFramework;
+import org.gradle.api.internal.tasks.testing.junit.result.TestClassResult;
+import org.gradle.api.internal.tasks.testing.junit.result.TestResultSerializer;
+import org.gradle.api.internal.tasks.testing.selection.IncrementalTestSelection;
+import org.gradle.api.internal.tasks.testing.selection.TestClassSelection;
 import org.gradle.api.internal.tasks.testing.testng.TestNGTestFramework;
+import org.gradle.api.internal.tasks.testing.worker.TestWorkerPool;
 import org.gradle.api.specs.Spec;
 import org.gradle.api.tasks.CacheableTask;
 import org.gradle.api.tasks.Classpath;
@@ -51,6 +62,10 @@ import org.gradle.api.tasks.util.PatternFilterable;
 import org.gradle.internal.Actions;
 import org.gradle.internal.Cast;
 import org.gradle.internal.actor.ActorFactory;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hashing;
 import org.gradle.internal.jvm.UnsupportedJavaRuntimeException;
 import org.gradle.internal.jvm.inspection.JvmVersionDetector;
 import org.gradle.internal.operations.BuildOperationExecutor;
@@ -62,13 +77,17 @@ import org.gradle.process.internal.DefaultJavaForkOptions;
 import org.gradle.process.internal.worker.WorkerProcessFactory;
 import org.gradle.util.CollectionUtils;
 import org.gradle.util.ConfigureUtil;
+import org.gradle.util.GFileUtils;
+import org.gradle.util.GUtil;
 import org.gradle.util.SingleMessageLogger;
 
 import javax.inject.Inject;
 import java.io.File;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import static org.gradle.util.ConfigureUtil.configureUsing;
 
@@ -131,6 +150,8 @@ public class Test extends AbstractTestTask implements JavaForkOptions, PatternFi
     private long forkEvery;
     private int maxParallelForks = 1;
     private TestExecuter<JvmTestExecutionSpec> testExecuter;
+    private Map<String, Long> previousTestClassDurations;
+    private TestClassSelection testClassSelection;
 
     public Test() {
         patternSet = getFileResolver().getPatternSetFactory().create();
@@ -506,7 +527,7 @@ public class Test extends AbstractTestTask implements JavaForkOptions, PatternFi
      */
     @Override
     protected JvmTestExecutionSpec createTestExecutionSpec() {
-        return new JvmTestExecutionSpec(getTestFramework(), getClasspath(), getCandidateClassFiles(), isScanForTestClasses(), getTestClassesDirs(), getPath(), getIdentityPath(), getForkEvery(), this, getMaxParallelForks());
+        return new JvmTestExecutionSpec(getTestFramework(), getClasspath(), getCandidateClassFiles(), isScanForTestClasses(), getTestClassesDirs(), getPath(), getIdentityPath(), getForkEvery(), this, getMaxParallelForks(), previousTestClassDurations, testClassSelection);
     }
 
     @TaskAction
@@ -517,12 +538,69 @@ public class Test extends AbstractTestTask implements JavaForkOptions, PatternFi
         }
 
         try {
+            if (Boolean.getBoolean(DefaultTestExecuter.DURATION_AWARE_SCHEDULING_PROPERTY)) {
+                // Read before the results of the previous run are deleted
+                previousTestClassDurations = readPreviousTestClassDurations();
+            }
+            if (Boolean.getBoolean(DefaultTestExecuter.INCREMENTAL_SELECTION_PROPERTY) && !isFiltered()) {
+                testClassSelection = selectTestClasses();
+            }
             super.executeTests();
         } finally {
+            if (testClassSelection != null) {
+                if (testClassSelection.getSkippedCount() > 0) {
+                    getLogger().info("Kept the previous results of {} test classes unaffected by changes.", testClassSelection.getSkippedCount());
+                }
+                testClassSelection.completed(getBinResultsDir());
+            }
             testFramework = null;
+            previousTestClassDurations = null;
+            testClassSelection = null;
         }
     }
 
+    private boolean isFiltered() {
+        return !getFilter().getIncludePatterns().isEmpty() || !((DefaultTestFilter) getFilter()).getCommandLineIncludePatterns().isEmpty();
+    }
+
+    private TestClassSelection selectTestClasses() {
+        // Moved aside before the results are deleted, so that the results of test classes that are not executed can be kept
+        File binResultsDir = getBinResultsDir();
+        File previousResultsDir = new File(getTemporaryDir(), "previous-results");
+        GFileUtils.deleteQuietly(previousResultsDir);
+        if (!binResultsDir.isDirectory() || !binResultsDir.renameTo(previousResultsDir)) {
+            previousResultsDir = null;
+        }
+        ClassDependenciesAnalyzer analyzer = new CachingClassDependenciesAnalyzer(new DefaultClassDependenciesAnalyzer(), getServices().get(GeneralCompileCaches.class).getClassAnalysisCache());
+        IncrementalTestSelection selection = new IncrementalTestSelection(getServices().get(DirectoryFileTreeFactory.class), getServices().get(FileHasher.class), analyzer);
+        return selection.select(getClasspath(), hashTestConfiguration(), previousResultsDir);
+    }
+
+    private HashCode hashTestConfiguration() {
+        Map<String, String> environment = new TreeMap<String, String>();
+        for (Map.Entry<String, Object> entry : getEnvironment().entrySet()) {
+            environment.put(entry.getKey(), String.valueOf(entry.getValue()));
+        }
+        List<Object> configuration = Lists.<Object>newArrayList(getTestFramework().getProcessorFactory(), getExecutable(), getWorkingDir().getAbsolutePath(), getAllJvmArgs(), environment);
+        return Hashing.md5().hashBytes(GUtil.serialize(configuration));
+    }
+
+    private Map<String, Long> readPreviousTestClassDurations() {
+        final Map<String, Long> durations = new HashMap<String, Long>();
+        try {
+            new TestResultSerializer(getBinResultsDir()).read(new Action<TestClassResult>() {
+                @Override
+                public void execute(TestClassResult result) {
+                    durations.put(result.getClassName(), result.getDuration());
+                }
+            });
+        } catch (Exception e) {
+            // For example, results written by another version of Gradle. Test classes are then run in the order they are found.
+            getLogger().debug("Could not read previous test results.", e);
+        }
+        return durations;
+    }
+
     @Override
     protected TestExecuter<JvmTestExecutionSpec> createTestExecuter() {
         if (testExecuter == null) {
@@ -530,7 +608,11 @@ public class Test extends AbstractTestTask implements JavaForkOptions, PatternFi
                 getServices().get(WorkerLeaseRegistry.class),
                 getServices().get(BuildOperationExecutor.class),
                 getServices().get(StartParameter.class).getMaxWorkerCount(),
-                getServices().get(Clock.class));
+                getServices().get(Clock.class),
+                Boolean.getBoolean(DefaultTestExecuter.REUSE_WORKERS_PROPERTY) ? getServices().get(TestWorkerPool.class) : null,
+                Boolean.getBoolean(DefaultTestExecuter.PARALLEL_DETECTION_PROPERTY) ? getServices().get(ExecutorFactory.class) : null,
+                getServices().get(TestClassDetectionCache.class),
+                getServices().get(FileHasher.class));
         } else {
             return testExecuter;
         }
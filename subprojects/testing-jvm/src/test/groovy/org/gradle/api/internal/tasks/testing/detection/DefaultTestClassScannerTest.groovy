@@ -21,9 +21,15 @@ import org.gradle.api.file.FileTree
 import org.gradle.api.file.FileVisitDetails
 import org.gradle.api.file.FileVisitor
 import org.gradle.api.internal.tasks.testing.TestClassProcessor
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo
+import org.gradle.internal.Factory
+import org.gradle.internal.actor.internal.DefaultActorFactory
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.junit.Test
 import spock.lang.Specification
 
+import java.util.concurrent.atomic.AtomicInteger
+
 public class DefaultTestClassScannerTest extends Specification {
     private final TestFrameworkDetector detector = Mock()
     private final TestClassProcessor processor = Mock()
@@ -52,4 +58,82 @@ public class DefaultTestClassScannerTest extends Specification {
 
         0 * _._
     }
+
+    def "detects class files on several threads and passes test classes on one at a time"() {
+        def executorFactory = new DefaultExecutorFactory()
+        def actorFactory = new DefaultActorFactory(executorFactory)
+        def scanner = new DefaultTestClassScanner(files, new FileNameDetector(), processor, executorFactory, actorFactory, 4)
+        def classNames = []
+        def processing = new AtomicInteger()
+        def overlapped = false
+
+        when:
+        scanner.run()
+
+        then:
+        1 * files.visit(_) >> { FileVisitor visitor ->
+            (1..20).each { i -> visitor.visitFile({ new File("Test${i}.class") } as FileVisitDetails) }
+        }
+        20 * processor.processTestClass(_) >> { TestClassRunInfo testClass ->
+            overlapped |= processing.incrementAndGet() > 1
+            classNames << testClass.testClassName
+            processing.decrementAndGet()
+        }
+
+        and:
+        !overlapped
+        classNames.sort() == (1..20).collect { "Test$it" }.sort()
+
+        cleanup:
+        actorFactory.stop()
+        executorFactory.stop()
+    }
+
+    def "rethrows failure to detect a class file after detecting the others"() {
+        def executorFactory = new DefaultExecutorFactory()
+        def actorFactory = new DefaultActorFactory(executorFactory)
+        def scanner = new DefaultTestClassScanner(files, new FileNameDetector(), processor, executorFactory, actorFactory, 4)
+
+        when:
+        scanner.run()
+
+        then:
+        1 * files.visit(_) >> { FileVisitor visitor ->
+            ["Test1.class", "Broken.class", "Test2.class"].each { name -> visitor.visitFile({ new File(name) } as FileVisitDetails) }
+        }
+        1 * processor.processTestClass({ it.testClassName == "Test1" })
+        1 * processor.processTestClass({ it.testClassName == "Test2" })
+
+        and:
+        def e = thrown(RuntimeException)
+        e.message == "Cannot read Broken.class"
+
+        cleanup:
+        actorFactory.stop()
+        executorFactory.stop()
+    }
+
+    /**
+     * Takes every class file for a test class named after the file, without reading it.
+     */
+    private static class FileNameDetector extends AbstractTestFrameworkDetector<TestClassVisitor> {
+        FileNameDetector() {
+            super(new ClassFileExtractionManager({ null } as Factory<File>))
+        }
+
+        @Override
+        protected TestClassVisitor createClassVisitor() {
+            throw new UnsupportedOperationException()
+        }
+
+        @Override
+        protected boolean processTestClass(File testClassFile, boolean superClass) {
+            def className = testClassFile.name - ".class"
+            if (className == "Broken") {
+                throw new RuntimeException("Cannot read $testClassFile")
+            }
+            publishTestClass(true, new ScannedClass(className, "java/lang/Object", true, false), superClass)
+            return true
+        }
+    }
 }
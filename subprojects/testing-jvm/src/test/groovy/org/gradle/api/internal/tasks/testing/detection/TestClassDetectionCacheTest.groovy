@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.tasks.testing.detection
+
+import org.gradle.api.internal.tasks.testing.junit.JUnitDetector
+import org.gradle.cache.internal.CrossBuildInMemoryCacheFactory
+import org.gradle.internal.Factory
+import org.gradle.internal.event.DefaultListenerManager
+import org.gradle.internal.hash.HashCode
+import spock.lang.Specification
+
+class TestClassDetectionCacheTest extends Specification {
+    def cache = new TestClassDetectionCache(new CrossBuildInMemoryCacheFactory(new DefaultListenerManager()))
+    def scanner = Mock(Factory)
+    def someTest = new ScannedClass("org/gradle/SomeTest", "java/lang/Object", true, false)
+    def otherTest = new ScannedClass("org/gradle/OtherTest", "java/lang/Object", true, false)
+
+    def "scans a class file once"() {
+        when:
+        def first = cache.get(JUnitDetector, HashCode.fromInt(1), scanner)
+        def second = cache.get(JUnitDetector, HashCode.fromInt(1), scanner)
+
+        then:
+        1 * scanner.create() >> someTest
+        0 * scanner._
+
+        and:
+        first.is(someTest)
+        second.is(someTest)
+    }
+
+    def "scans class files with different content separately"() {
+        when:
+        def first = cache.get(JUnitDetector, HashCode.fromInt(1), scanner)
+        def second = cache.get(JUnitDetector, HashCode.fromInt(2), scanner)
+
+        then:
+        2 * scanner.create() >>> [someTest, otherTest]
+
+        and:
+        first.is(someTest)
+        second.is(otherTest)
+    }
+
+    def "scans a class file again for another type of detector"() {
+        when:
+        def first = cache.get(JUnitDetector, HashCode.fromInt(1), scanner)
+        def second = cache.get(TestFrameworkDetector, HashCode.fromInt(1), scanner)
+
+        then:
+        2 * scanner.create() >>> [someTest, otherTest]
+
+        and:
+        first.is(someTest)
+        second.is(otherTest)
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.tasks.testing.selection
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet
+import org.gradle.api.file.FileTreeElement
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenciesAnalyzer
+import org.gradle.api.internal.tasks.compile.incremental.deps.ClassAnalysis
+import org.gradle.api.internal.tasks.testing.junit.result.TestClassResult
+import org.gradle.api.internal.tasks.testing.junit.result.TestMethodResult
+import org.gradle.api.internal.tasks.testing.junit.result.TestResultSerializer
+import org.gradle.internal.hash.HashCode
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import static org.gradle.api.tasks.testing.TestResult.ResultType.FAILURE
+import static org.gradle.api.tasks.testing.TestResult.ResultType.SUCCESS
+
+class IncrementalTestSelectionTest extends Specification {
+    @Rule TestNameTestDirectoryProvider tmp = new TestNameTestDirectoryProvider()
+    def classesDir = tmp.createDir("classes")
+    def dependencies = [ATest: ["A"], BTest: ["B"], CTest: [], A: [], B: []]
+    def constants = [:]
+    def analyzer = Stub(ClassDependenciesAnalyzer) {
+        getClassAnalysis(_, _) >> { HashCode hash, FileTreeElement file ->
+            def className = file.name - ".class"
+            new ClassAnalysis(className, dependencies[className] as Set, false, new IntOpenHashSet((constants[className] ?: []) as int[]), [] as Set)
+        }
+    }
+    def selection = new IncrementalTestSelection(TestFiles.directoryFileTreeFactory(), TestFiles.fileHasher(), analyzer)
+    def configuration = HashCode.fromInt(1)
+    def runs = 0
+    File previousResults
+
+    def setup() {
+        ["A", "B", "ATest", "BTest"].each { classFile(it).text = it }
+    }
+
+    def "executes all test classes without previous results"() {
+        expect:
+        executed(["ATest", "BTest"]) == ["ATest", "BTest"]
+    }
+
+    def "does not execute passed test classes unaffected by changes"() {
+        executed(["ATest", "BTest"])
+
+        when:
+        classFile("A").text = "changed"
+
+        then:
+        executed(["ATest", "BTest"]) == ["ATest"]
+
+        and:
+        executed(["ATest", "BTest"]) == []
+    }
+
+    def "executes test classes that failed in the previous run"() {
+        executed(["ATest", "BTest"], ["BTest"])
+
+        expect:
+        executed(["ATest", "BTest"]) == ["BTest"]
+    }
+
+    def "executes added test classes and test classes depending on removed classes"() {
+        executed(["ATest", "BTest"])
+
+        when:
+        classFile("B").delete()
+        classFile("CTest").text = "CTest"
+
+        then:
+        executed(["ATest", "BTest", "CTest"]) == ["BTest", "CTest"]
+    }
+
+    def "executes all test classes when a resource changes"() {
+        def resource = classesDir.file("test.properties")
+        resource.text = "a=1"
+        executed(["ATest", "BTest"])
+
+        when:
+        resource.text = "a=2"
+
+        then:
+        executed(["ATest", "BTest"]) == ["ATest", "BTest"]
+    }
+
+    def "executes all test classes when the configuration changes"() {
+        executed(["ATest", "BTest"])
+
+        when:
+        configuration = HashCode.fromInt(2)
+
+        then:
+        executed(["ATest", "BTest"]) == ["ATest", "BTest"]
+    }
+
+    def "executes all test classes when constants of a changed class change"() {
+        constants.A = [1]
+        executed(["ATest", "BTest"])
+
+        when:
+        classFile("A").text = "changed"
+        constants.A = [2]
+
+        then:
+        executed(["ATest", "BTest"]) == ["ATest", "BTest"]
+    }
+
+    private TestFile classFile(String className) {
+        classesDir.file(className + ".class")
+    }
+
+    /**
+     * Runs the given test classes, of which the given ones fail, and returns the test classes that were executed.
+     * The previous results of the test classes that were not executed are kept, as the test task does.
+     */
+    private List<String> executed(List<String> testClasses, List<String> failed = []) {
+        def testClassSelection = selection.select([classesDir], configuration, previousResults)
+        def executed = testClasses.findAll { testClassSelection.shouldExecute(it) }
+
+        def resultsDir = tmp.createDir("results${++runs}")
+        def results = testClasses.collect { className ->
+            def failure = className in executed && className in failed
+            def methodResult = new TestMethodResult(2, "test", failure ? FAILURE : SUCCESS, 10, 20)
+            if (failure) {
+                methodResult.addFailure("failed", "stack trace", "java.lang.AssertionError")
+            }
+            new TestClassResult(1, className, 10).add(methodResult)
+        }
+        new TestResultSerializer(resultsDir).write(results)
+        testClassSelection.completed(resultsDir)
+        previousResults = resultsDir
+        return executed
+    }
+}